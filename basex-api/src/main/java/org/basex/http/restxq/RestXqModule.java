@@ -113,7 +113,8 @@ final class RestXqModule {
   private QueryContext qc(final Context ctx) throws Exception {
     final QueryContext qc = new QueryContext(ctx);
     try {
-      qc.parse(string(file.read()), file.path(), null);
+      final String query = string(file.read());
+      ctx.plans.parse(qc, query, QueryProcessor.isLibrary(query), file.path());
       return qc;
     } catch(final IOException ex) {
       // may be triggered when reading the file
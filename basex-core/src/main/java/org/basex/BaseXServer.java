@@ -4,6 +4,7 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
 
 import org.basex.api.client.*;
@@ -33,6 +34,8 @@ public final class BaseXServer extends CLI implements Runnable {
   private StringList commands;
   /** Server socket. */
   private ServerSocket socket;
+  /** Non-blocking front-end ({@code null} if a thread is created for each client). */
+  private ServerSelector selector;
   /** Start as daemon. */
   private boolean service;
   /** Quiet flag. */
@@ -96,9 +99,12 @@ public final class BaseXServer extends CLI implements Runnable {
       // execute initial command-line arguments
       for(final String cmd : commands) execute(cmd);
 
-      socket = new ServerSocket();
+      final int workers = sopts.get(StaticOptions.SERVERWORKERS);
+      final ServerSocketChannel channel = workers > 0 ? ServerSocketChannel.open() : null;
+      socket = channel != null ? channel.socket() : new ServerSocket();
       socket.setReuseAddress(true);
       socket.bind(new InetSocketAddress(addr, port));
+      if(channel != null) selector = new ServerSelector(channel, workers, context, this);
       stopFile = stopFile(port);
     } catch(final IOException ex) {
       context.log.writeServer(LogType.ERROR, Util.message(ex));
@@ -125,37 +131,14 @@ public final class BaseXServer extends CLI implements Runnable {
   @Override
   public void run() {
     running = true;
+    if(selector != null) {
+      selector.run();
+      return;
+    }
     while(running) {
       try {
-        final Socket s = socket.accept();
-        if(stopFile.exists()) {
-          if(!stopFile.delete()) {
-            context.log.writeServer(LogType.ERROR, Util.info(FILE_NOT_DELETED_X, stopFile));
-          }
-          quit();
-        } else {
-          // drop inactive connections
-          final long ka = context.soptions.get(StaticOptions.KEEPALIVE) * 1000L;
-          if(ka > 0) {
-            final long ms = System.currentTimeMillis();
-            for(final ClientListener cs : context.sessions) {
-              if(ms - cs.last > ka) cs.quit();
-            }
-          }
-          final ClientListener cl = new ClientListener(s, context, this);
-          // start authentication timeout
-          final long to = context.soptions.get(StaticOptions.KEEPALIVE) * 1000L;
-          if(to > 0) {
-            cl.auth.schedule(new TimerTask() {
-              @Override
-              public void run() {
-                cl.quitAuth();
-              }
-            }, to);
-            auth.add(cl);
-          }
-          cl.start();
-        }
+        final ClientListener cl = accept(socket.accept());
+        if(cl != null) cl.start();
       } catch(final SocketException ex) {
         break;
       } catch(final Throwable ex) {
@@ -167,6 +150,45 @@ public final class BaseXServer extends CLI implements Runnable {
     }
   }
 
+  /**
+   * Creates a session for a new client connection.
+   * @param s client socket
+   * @return client listener, or {@code null} if the server has been stopped
+   */
+  public ClientListener accept(final Socket s) {
+    if(stopFile.exists()) {
+      if(!stopFile.delete()) {
+        context.log.writeServer(LogType.ERROR, Util.info(FILE_NOT_DELETED_X, stopFile));
+      }
+      quit();
+      return null;
+    }
+
+    // drop inactive connections
+    final long ka = context.soptions.get(StaticOptions.KEEPALIVE) * 1000L;
+    if(ka > 0) {
+      final long ms = System.currentTimeMillis();
+      for(final ClientListener cs : context.sessions) {
+        if(ms - cs.last > ka) cs.quit();
+      }
+    }
+    final ClientListener cl = new ClientListener(s, context, this);
+    // start authentication timeout
+    final long to = context.soptions.get(StaticOptions.KEEPALIVE) * 1000L;
+    if(to > 0) {
+      cl.auth.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          cl.quitAuth();
+        }
+      }, to);
+      synchronized(auth) {
+        auth.add(cl);
+      }
+    }
+    return cl;
+  }
+
   /**
    * Generates a stop file for the specified port.
    * @param port server port
@@ -194,6 +216,7 @@ public final class BaseXServer extends CLI implements Runnable {
     try {
       // close interactive input if server was stopped by another process
       socket.close();
+      if(selector != null) selector.close();
     } catch(final IOException ex) {
       Util.errln(ex);
       context.log.writeServer(LogType.ERROR, Util.message(ex));
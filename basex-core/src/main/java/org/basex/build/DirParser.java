@@ -4,14 +4,18 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.*;
 import java.util.zip.*;
 
 import org.basex.core.*;
 import org.basex.core.MainOptions.MainParser;
 import org.basex.core.cmd.*;
+import org.basex.data.*;
 import org.basex.io.*;
 import org.basex.io.in.*;
+import org.basex.io.serial.*;
+import org.basex.query.value.node.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -19,12 +23,19 @@ import org.basex.util.list.*;
  * This class recursively scans files and directories and parses all
  * relevant files.
  *
+ * If {@link MainOptions#PARSERTHREADS} is greater than 1, documents are parsed in parallel
+ * into main-memory instances. The calling thread remains the only one that writes to the
+ * builder, and documents are added in the order of their input. Large files are parsed
+ * sequentially, and the number and total size of pending documents are limited.
+ *
  * @author BaseX Team 2005-15, BSD License
  * @author Christian Gruen
  */
 public final class DirParser extends Parser {
   /** Number of skipped files to log. */
   private static final int SKIPLOG = 10;
+  /** Maximum size of files that are parsed in parallel. */
+  private static final long MAXSIZE = 1 << 24;
   /** Skipped files. */
   private final StringList skipped = new StringList();
   /** File pattern. */
@@ -42,9 +53,22 @@ public final class DirParser extends Parser {
   private final boolean dtd;
   /** Raw parsing. */
   private final boolean rawParser;
+  /** Number of parser threads. */
+  private final int threads;
   /** Database path for storing binary files. */
   private IOFile rawPath;
 
+  /** Parser threads (only assigned if documents are parsed in parallel). */
+  private ExecutorService pool;
+  /** Documents that are parsed in parallel, in the order of their input. */
+  private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+  /** Maximum total size of the inputs of pending documents. */
+  private long maxPending;
+  /** Total size of the inputs of pending documents. */
+  private long pendingSize;
+  /** Serializer for adding parsed documents to the builder. */
+  private Serializer ser;
+
   /** Last source. */
   private IO lastSrc;
   /** Parser reference. */
@@ -67,6 +91,7 @@ public final class DirParser extends Parser {
     addRaw = options.get(MainOptions.ADDRAW);
     dtd = options.get(MainOptions.DTD);
     rawParser = options.get(MainOptions.PARSER) == MainParser.RAW;
+    threads = options.get(MainOptions.PARSERTHREADS);
     filter = !source.isDir() && !source.isArchive() ? null :
       Pattern.compile(IOFile.regex(options.get(MainOptions.CREATEFILTER)));
   }
@@ -86,7 +111,26 @@ public final class DirParser extends Parser {
   public void parse(final Builder build) throws IOException {
     build.meta.filesize = 0;
     build.meta.original = source.path();
-    parse(build, source);
+    if(threads < 2 || rawParser) {
+      parse(build, source);
+      return;
+    }
+
+    pool = Executors.newFixedThreadPool(threads);
+    ser = new BuilderSerializer(build);
+    // main-memory representations take several times the size of their input
+    maxPending = Math.max(MAXSIZE, Runtime.getRuntime().maxMemory() >> 4);
+    try {
+      parse(build, source);
+      flush(build);
+    } finally {
+      for(final Pending pend : pending) pend.future.cancel(true);
+      pending.clear();
+      pendingSize = 0;
+      pool.shutdownNow();
+      pool = null;
+      ser = null;
+    }
   }
 
   /**
@@ -180,6 +224,15 @@ public final class DirParser extends Parser {
           Store.store(source.inputSource(), new IOFile(rawPath, targ + name));
         }
       } else {
+        if(pool != null) {
+          // parse files of unknown or large size sequentially
+          if(l != -1 && l <= MAXSIZE) {
+            submit(b, targ, l);
+            return;
+          }
+          flush(b);
+        }
+
         // store input as XML
         boolean ok = true;
         IO in = source;
@@ -212,6 +265,84 @@ public final class DirParser extends Parser {
     }
   }
 
+  /**
+   * Parses the current source in a separate thread.
+   * @param b builder instance
+   * @param targ target path
+   * @param size size of the input
+   * @throws IOException I/O exception
+   */
+  private void submit(final Builder b, final String targ, final long size) throws IOException {
+    // cache streamed inputs (archive entries), as they can only be read once
+    IO io = source;
+    if(io instanceof IOStream) {
+      io = new IOContent(source.read());
+      io.name(source.name());
+    }
+
+    final IO in = io;
+    final Future<MemData> future = pool.submit(new Callable<MemData>() {
+      @Override
+      public MemData call() throws IOException {
+        try {
+          return MemBuilder.build("", Parser.singleParser(in, options, targ));
+        } catch(final IOException ex) {
+          // skip corrupt files
+          if(!skipCorrupt) throw ex;
+          Util.debug(ex);
+          return null;
+        }
+      }
+    });
+    pending.add(new Pending(future, source.path(), size));
+    pendingSize += size;
+
+    // limit number and size of cached documents
+    while(pending.size() > threads << 1 || pendingSize > maxPending) append(b);
+  }
+
+  /**
+   * Adds all documents that have been parsed in parallel to the builder.
+   * @param b builder instance
+   * @throws IOException I/O exception
+   */
+  private void flush(final Builder b) throws IOException {
+    while(!pending.isEmpty()) append(b);
+  }
+
+  /**
+   * Adds the next document that has been parsed in parallel to the builder.
+   * @param b builder instance
+   * @throws IOException I/O exception
+   */
+  private void append(final Builder b) throws IOException {
+    final Pending pend = pending.poll();
+    pendingSize -= pend.size;
+    final MemData data;
+    try {
+      data = pend.future.get();
+    } catch(final InterruptedException ex) {
+      Util.debug(ex);
+      throw new ProcException();
+    } catch(final ExecutionException ex) {
+      final Throwable th = ex.getCause();
+      if(th instanceof IOException) throw (IOException) th;
+      if(th instanceof RuntimeException) throw (RuntimeException) th;
+      if(th instanceof Error) throw (Error) th;
+      throw Util.notExpected(th);
+    }
+
+    if(data == null) {
+      skipped.add(pend.path);
+    } else {
+      ser.serialize(new DBNode(data, 0));
+      b.encoding(data.meta.encoding);
+    }
+    b.checkStop();
+    // dump debug data
+    if(Prop.debug && (++c & 0x3FF) == 0) Util.err(";");
+  }
+
   @Override
   public String info() {
     final TokenBuilder tb = new TokenBuilder();
@@ -245,4 +376,26 @@ public final class DirParser extends Parser {
   public void close() throws IOException {
     if(parser != null) parser.close();
   }
+
+  /** Document that is parsed in parallel. */
+  private static final class Pending {
+    /** Parsed document ({@code null} if the input was skipped). */
+    private final Future<MemData> future;
+    /** Input path. */
+    private final String path;
+    /** Size of the input. */
+    private final long size;
+
+    /**
+     * Constructor.
+     * @param future parsed document
+     * @param path input path
+     * @param size size of the input
+     */
+    private Pending(final Future<MemData> future, final String path, final long size) {
+      this.future = future;
+      this.path = path;
+      this.size = size;
+    }
+  }
 }
@@ -1,9 +1,12 @@
 package org.basex.core;
 
+import java.util.*;
+
 import org.basex.core.locks.*;
 import org.basex.core.users.*;
 import org.basex.data.*;
 import org.basex.io.random.*;
+import org.basex.query.*;
 import org.basex.query.util.pkg.*;
 import org.basex.query.value.seq.*;
 import org.basex.server.*;
@@ -39,6 +42,10 @@ public final class Context {
   public final Databases databases;
   /** Log. */
   public final Log log;
+  /** Cached query results. */
+  public final QueryCache results;
+  /** Cached query plans. */
+  public final QueryPlans plans;
 
   /** Client listener. Set to {@code null} in standalone/server mode. */
   public ClientListener listener;
@@ -91,6 +98,8 @@ public final class Context {
     users = ctx.users;
     repo = ctx.repo;
     log = ctx.log;
+    results = ctx.results;
+    plans = ctx.plans;
   }
 
   /**
@@ -119,6 +128,8 @@ public final class Context {
     users = new Users(soptions);
     repo = new Repo(soptions);
     log = new Log(soptions);
+    results = new QueryCache(soptions);
+    plans = new QueryPlans(soptions);
     user = users.get(UserText.ADMIN);
   }
 
@@ -146,6 +157,7 @@ public final class Context {
   public synchronized void close() {
     while(!sessions.isEmpty()) sessions.get(0).quit();
     datas.close();
+    plans.close();
     log.close();
   }
 
@@ -269,7 +281,22 @@ public final class Context {
     pr.databases(lr);
     final StringList write = prepareLock(lr.write, lr.writeAll);
     final StringList read = write == null ? null : prepareLock(lr.read, lr.readAll);
-    locks.acquire(pr, read, write);
+    final StringList dbs = write != null && pr.deferrable() ?
+      prepareLock(lr.databases, false) : new StringList(0);
+    locks.acquire(pr, read, write, dbs);
+    // discard cached results of databases that may be updated
+    if(write == null || !write.isEmpty()) results.invalidate(write);
+  }
+
+  /**
+   * Acquires the write locks that have been deferred by the specified process
+   * (see {@link StaticOptions#SNAPSHOTREADS}).
+   * @param pr process
+   */
+  public void upgrade(final Proc pr) {
+    final StringList write = locks.upgrade(pr);
+    // discard results that may have been cached by readers in the meantime
+    if(!write.isEmpty()) results.invalidate(write);
   }
 
   /**
@@ -283,6 +310,14 @@ public final class Context {
     pr.stopTimeout();
   }
 
+  /**
+   * Returns information on the current locks and statistics on previous acquisitions.
+   * @return lock information
+   */
+  public List<LockInfo> locks() {
+    return locks.info();
+  }
+
   /**
    * Prepares the string list for locking.
    * @param sl string list
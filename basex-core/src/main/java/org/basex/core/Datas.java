@@ -30,6 +30,16 @@ public final class Datas {
     return data;
   }
 
+  /**
+   * Returns a database with the specified name without pinning it, or returns {@code null}.
+   * @param name name of the database
+   * @return data reference
+   */
+  public synchronized Data data(final String name) {
+    final Entry<Data, Integer> entry = get(name);
+    return entry == null ? null : entry.getKey();
+  }
+
   /**
    * Pins a data reference.
    * @param data data reference
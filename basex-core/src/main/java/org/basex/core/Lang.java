@@ -20,10 +20,14 @@ import org.basex.util.list.*;
 public final class Lang {
   /** Language suffix. */
   private static final String SUFFIX = "lang";
+  /** Default language, which is used if strings are missing in other languages. */
+  private static final String DEFAULT = "English";
   /** Cached source files. */
   private static final HashMap<String, String> TEXTS = new HashMap<>();
   /** Checks which strings have been applied. */
   private static final HashMap<String, Boolean> CHECK = new HashMap<>();
+  /** Strings of the default language (assigned on demand). */
+  private static HashMap<String, String> defaults;
 
   /** Private constructor. */
   private Lang() { }
@@ -38,6 +42,16 @@ public final class Lang {
   private static synchronized void read(final String lang) {
     TEXTS.clear();
     CHECK.clear();
+    read(lang, TEXTS);
+    for(final String key : TEXTS.keySet()) CHECK.put(key, true);
+  }
+
+  /**
+   * Reads the specified language file into the specified map.
+   * @param lang language
+   * @param texts map for strings
+   */
+  private static void read(final String lang, final HashMap<String, String> texts) {
     final String path = '/' + SUFFIX + '/' + lang + '.' + SUFFIX;
     final InputStream is = Lang.class.getResourceAsStream(path);
     if(is == null) {
@@ -50,14 +64,13 @@ public final class Lang {
           final String key = line.substring(0, i).trim();
           String val = line.substring(i + 1).trim();
           if("langright".equals(key)) {
-            Prop.langright = "true".equals(val);
+            if(texts == TEXTS) Prop.langright = "true".equals(val);
           } else {
             if(val.contains("\\n")) val = val.replaceAll("\\\\n", Prop.NL);
             if(Prop.langkeys) val = '[' + key + ": " + val + ']';
-            if(TEXTS.put(key, val) != null) {
+            if(texts.put(key, val) != null) {
               Util.errln("%." + SUFFIX + ": '%' is declared twice", lang, key);
             }
-            CHECK.put(key, true);
           }
         }
       } catch(final IOException ex) {
@@ -81,6 +94,15 @@ public final class Lang {
 
     final String val = TEXTS.get(key);
     if(val == null) {
+      // fall back to the default language
+      if(!DEFAULT.equals(Prop.language)) {
+        if(defaults == null) {
+          defaults = new HashMap<>();
+          read(DEFAULT, defaults);
+        }
+        final String dflt = defaults.get(key);
+        if(dflt != null) return dflt;
+      }
       Util.errln("%." + SUFFIX + ": '%' is missing", Prop.language, key);
       return '[' + key + ']';
     }
@@ -150,7 +172,7 @@ public final class Lang {
    * Checks the existing language files for correctness and completeness.
    */
   static void check() {
-    read("English");
+    read(DEFAULT);
     final StringBuilder sb = new StringBuilder();
     final HashSet<String> set = new HashSet<>();
     for(final String s : TEXTS.keySet()) set.add(s);
@@ -158,7 +180,7 @@ public final class Lang {
     final IOFile[] files = new IOFile("src/main/resources/lang").children();
     for(final IOFile f : files) {
       final String lang = f.name().replace('.' + SUFFIX, "");
-      if("English".equals(lang)) continue;
+      if(DEFAULT.equals(lang)) continue;
       read(lang);
       for(final String o : set.toArray(new String[set.size()])) {
         if(TEXTS.remove(o) == null) sb.append("- ").append(o).append('\n');
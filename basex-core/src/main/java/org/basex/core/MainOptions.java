@@ -48,6 +48,8 @@ public final class MainOptions extends Options {
   /** Define import parser. */
   public static final EnumOption<MainParser> PARSER =
       new EnumOption<>("PARSER", MainParser.XML);
+  /** Number of threads for parsing the files of directories and archives in parallel. */
+  public static final NumberOption PARSERTHREADS = new NumberOption("PARSERTHREADS", 1);
 
   // XML Parsing
 
@@ -82,6 +84,8 @@ public final class MainOptions extends Options {
   public static final NumberOption INDEXSPLITSIZE = new NumberOption("INDEXSPLITSIZE", 0);
   /** Maximum number of fulltext index entries to keep in memory during index creation. */
   public static final NumberOption FTINDEXSPLITSIZE = new NumberOption("FTINDEXSPLITSIZE", 0);
+  /** Number of threads for building index structures in parallel. */
+  public static final NumberOption INDEXTHREADS = new NumberOption("INDEXTHREADS", 1);
 
   /** Maximum length of index entries. */
   public static final NumberOption MAXLEN = new NumberOption("MAXLEN", 96);
@@ -89,8 +93,12 @@ public final class MainOptions extends Options {
   public static final NumberOption MAXCATS = new NumberOption("MAXCATS", 100);
   /** Flag for activating incremental index structures. */
   public static final BooleanOption UPDINDEX = new BooleanOption("UPDINDEX", false);
+  /** Maximum number of buffered additions to incremental indexes (0: no buffering). */
+  public static final NumberOption INDEXDELTA = new NumberOption("INDEXDELTA", 0);
   /** Flag for automatic index updates. */
   public static final BooleanOption AUTOOPTIMIZE = new BooleanOption("AUTOOPTIMIZE", false);
+  /** Flag for mapping the database table into memory. */
+  public static final BooleanOption MAPTABLE = new BooleanOption("MAPTABLE", false);
 
   // Full-Text
 
@@ -104,6 +112,8 @@ public final class MainOptions extends Options {
   public static final StringOption LANGUAGE = new StringOption("LANGUAGE", "en");
   /** Path to full-text stopword list. */
   public static final StringOption STOPWORDS = new StringOption("STOPWORDS", "");
+  /** Flag for indexing the n-grams of full-text tokens (speeds up leading wildcards). */
+  public static final BooleanOption FTNGRAMS = new BooleanOption("FTNGRAMS", false);
 
   // Query Options
 
@@ -119,6 +129,12 @@ public final class MainOptions extends Options {
   public static final NumberOption INLINELIMIT = new NumberOption("INLINELIMIT", 100);
   /** Flag for tail-call optimization. */
   public static final NumberOption TAILCALLS = new NumberOption("TAILCALLS", 256);
+  /** Number of threads for evaluating the tuples of for clauses in parallel. */
+  public static final NumberOption FORKJOIN = new NumberOption("FORKJOIN", 1);
+  /** Maximum number of tuples that will be sorted in main memory (0: no limit). */
+  public static final NumberOption SORTLIMIT = new NumberOption("SORTLIMIT", 0);
+  /** Maximum number of groups that will be built in main memory (0: no limit). */
+  public static final NumberOption GROUPLIMIT = new NumberOption("GROUPLIMIT", 0);
   /** Favor global database when opening resources. */
   public static final BooleanOption DEFAULTDB = new BooleanOption("DEFAULTDB", false);
   /** Forces database creation for unknown documents. */
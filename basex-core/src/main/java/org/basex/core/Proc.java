@@ -136,6 +136,15 @@ public abstract class Proc {
     lr.writeAll = true;
   }
 
+  /**
+   * Indicates if write locks on databases may be deferred until updates are applied
+   * (see {@link Context#upgrade(Proc)}).
+   * @return result of check
+   */
+  public boolean deferrable() {
+    return false;
+  }
+
   /**
    * Checks if the process is registered.
    * @return result of check
@@ -3,6 +3,7 @@ package org.basex.core;
 import java.util.*;
 
 import org.basex.io.*;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.options.*;
 
@@ -34,6 +35,17 @@ public final class StaticOptions extends Options {
   public static final BooleanOption LANGKEYS = new BooleanOption("LANGKEYS", false);
   /** Applied locking algorithm: local (database) vs. global (process) locking. */
   public static final BooleanOption GLOBALLOCK = new BooleanOption("GLOBALLOCK", false);
+  /** Snapshot reads: readers are only blocked while updates are applied, not while they are
+   *  evaluated (ignored if global locking is used). */
+  public static final BooleanOption SNAPSHOTREADS = new BooleanOption("SNAPSHOTREADS", false);
+  /** Size of the shared buffer pool (megabytes); deactivated if set to 0. */
+  public static final NumberOption BUFFERPOOL = new NumberOption("BUFFERPOOL", 0);
+  /** Size of the query result cache (kilobytes); deactivated if set to 0. */
+  public static final NumberOption QUERYCACHE = new NumberOption("QUERYCACHE", 0);
+  /** Lifetime of cached query results (seconds); deactivated if set to 0. */
+  public static final NumberOption CACHETIMEOUT = new NumberOption("CACHETIMEOUT", 60);
+  /** Maximum number of cached query plans; deactivated if set to 0. */
+  public static final NumberOption PLANCACHE = new NumberOption("PLANCACHE", 0);
 
   /** Comment: written to options file. */
   public static final Comment C_CLIENT = new Comment("Client/Server Architecture");
@@ -63,6 +75,8 @@ public final class StaticOptions extends Options {
   public static final NumberOption TIMEOUT = new NumberOption("TIMEOUT", 30);
   /** Keep alive time of clients; deactivated if set to 0. */
   public static final NumberOption KEEPALIVE = new NumberOption("KEEPALIVE", 600);
+  /** Server: number of worker threads of the non-blocking front-end; deactivated if set to 0. */
+  public static final NumberOption SERVERWORKERS = new NumberOption("SERVERWORKERS", 0);
   /** Defines the number of parallel readers. */
   public static final NumberOption PARALLEL = new NumberOption("PARALLEL", 8);
   /** Logging flag. */
@@ -129,6 +143,7 @@ public final class StaticOptions extends Options {
       Prop.setSystem("http.nonProxyHosts", nph);
     }
     if(get(IGNORECERT)) IOUrl.ignoreCert();
+    BufferPool.size(get(BUFFERPOOL));
   }
 
   /**
@@ -628,6 +628,8 @@ public interface Text {
 
   /** Index created. */
   String INDEX_CREATED_X_X = lang("index_created_%_%");
+  /** Partial indexes merged. */
+  String INDEX_MERGED_X_X_X_X_X = lang("index_merged_%_%_%_%_%");
   /** Index dropped. */
   String INDEX_DROPPED_X_X = lang("index_dropped_%_%");
   /** Index not dropped. */
@@ -1295,6 +1297,8 @@ public interface Text {
 
   /** Info on used main memory. */
   String USED_MEM = lang("used_mem");
+  /** Info on the buffer pool. */
+  String BUFFER_POOL = lang("buffer_pool");
   /** Memory information. */
   String TOTAL_MEM_C = lang("total_mem") + COLS;
   /** Memory information. */
@@ -3,6 +3,7 @@ package org.basex.core.cmd;
 import static org.basex.core.Text.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.core.locks.*;
@@ -100,21 +101,71 @@ public abstract class ACreate extends Command {
    */
   static void create(final IndexType type, final Data data, final MainOptions options,
       final ACreate cmd) throws IOException {
+    create(new IndexType[] { type }, data, options, cmd);
+  }
 
+  /**
+   * Builds the specified indexes. Depending on the {@link MainOptions#INDEXTHREADS} option,
+   * the indexes will be built in parallel.
+   * @param types indexes to be built
+   * @param data data reference
+   * @param options main options
+   * @param cmd calling command
+   * @throws IOException I/O exception
+   */
+  static void create(final IndexType[] types, final Data data, final MainOptions options,
+      final ACreate cmd) throws IOException {
+
+    if(types.length == 0) return;
     data.meta.dirty = true;
-    final boolean ok = data.dropIndex(type);
-    if(ok) {
-      if(type == IndexType.TEXT) {
-        data.meta.textindex = true;
-      } else if(type == IndexType.ATTRIBUTE) {
-        data.meta.attrindex = true;
-      } else if(type == IndexType.FULLTEXT) {
-        data.meta.ftxtindex = true;
-      } else {
-        throw Util.notExpected();
+    for(final IndexType type : types) {
+      final boolean ok = data.dropIndex(type);
+      if(ok) {
+        if(type == IndexType.TEXT) {
+          data.meta.textindex = true;
+        } else if(type == IndexType.ATTRIBUTE) {
+          data.meta.attrindex = true;
+        } else if(type == IndexType.FULLTEXT) {
+          data.meta.ftxtindex = true;
+        } else {
+          throw Util.notExpected();
+        }
       }
     }
-    data.createIndex(type, options, cmd);
+    if(cmd == null) {
+      data.createIndexes(types, options, null);
+      return;
+    }
+
+    // add information from the index builders to the command info
+    final InfoListener il = cmd.listen;
+    cmd.listen(new InfoListener() {
+      @Override
+      public void info(final String info) {
+        synchronized(cmd) {
+          cmd.info("%", info);
+        }
+        if(il != null) il.info(info);
+      }
+    });
+    try {
+      data.createIndexes(types, options, cmd);
+    } finally {
+      cmd.listen(il);
+    }
+  }
+
+  /**
+   * Returns the indexes that are to be built for a database.
+   * @param meta meta data
+   * @return index types
+   */
+  static IndexType[] indexes(final MetaData meta) {
+    final ArrayList<IndexType> types = new ArrayList<>(3);
+    if(meta.createtext) types.add(IndexType.TEXT);
+    if(meta.createattr) types.add(IndexType.ATTRIBUTE);
+    if(meta.createftxt) types.add(IndexType.FULLTEXT);
+    return types.toArray(new IndexType[types.size()]);
   }
 
   /**
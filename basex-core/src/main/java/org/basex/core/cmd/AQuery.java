@@ -65,19 +65,36 @@ public abstract class AQuery extends Command {
         final boolean run = options.get(MainOptions.RUNQUERY);
         final boolean serial = options.get(MainOptions.SERIALIZE);
         final int runs = Math.max(1, options.get(MainOptions.RUNS));
+        // results are cached if the query is evaluated and serialized once
+        QueryCache.Key key = null;
+        CacheOutput cache = null;
         for(int r = 0; r < runs; ++r) {
           // reuse existing processor instance
           if(r != 0) qp = null;
           qp(query, context);
           parse(p);
-          if(r == 0) plan(false);
+          if(r == 0) {
+            if(runs == 1 && run && serial && maxResults < 0 && !options.get(MainOptions.XMLPLAN)
+                && !options.get(MainOptions.DOTPLAN)) key = context.results.key(qp);
+            if(key != null) {
+              // return cached result
+              final QueryCache.Result cached = context.results.get(key);
+              if(cached != null) {
+                out.write(cached.output);
+                hits = cached.hits;
+                break;
+              }
+              cache = new CacheOutput(out, soptions.get(StaticOptions.QUERYCACHE) * 1024L);
+            }
+            plan(false);
+          }
 
           qp.compile();
           info.compiling += p.time();
           if(r == 0) plan(true);
           if(!run) continue;
 
-          final PrintOutput po = r == 0 && serial ? out : new NullOutput();
+          final PrintOutput po = cache != null ? cache : r == 0 && serial ? out : new NullOutput();
           try(final Serializer ser = qp.getSerializer(po)) {
             if(maxResults >= 0) {
               result = qp.cache(maxResults);
@@ -98,6 +115,9 @@ public abstract class AQuery extends Command {
           qp.close();
           info.serializing += p.time();
         }
+        if(cache != null && cache.cache != null) {
+          context.results.put(key, cache.cache.finish(), hits);
+        }
         // dump some query info
         out.flush();
         // remove string list if global locking is used and if query is updating
@@ -171,7 +191,7 @@ public abstract class AQuery extends Command {
    */
   protected QueryProcessor qp(final String query, final Context ctx) {
     if(qp == null) {
-      qp = proc(new QueryProcessor(query, ctx));
+      qp = proc(new QueryProcessor(query, ctx).cachePlan());
       if(info == null) info = qp.qc.info;
     }
     return qp;
@@ -302,6 +322,11 @@ public abstract class AQuery extends Command {
     }
   }
 
+  @Override
+  public boolean deferrable() {
+    return true;
+  }
+
   @Override
   public void build(final CmdBuilder cb) {
     cb.init().xquery(0);
@@ -318,4 +343,33 @@ public abstract class AQuery extends Command {
     result = null;
     return r;
   }
+
+  /**
+   * Output stream that caches the written bytes, up to a maximum size.
+   */
+  private static final class CacheOutput extends PrintOutput {
+    /** Maximum number of bytes to cache. */
+    private final long limit;
+    /** Cached bytes ({@code null} if the maximum size has been exceeded). */
+    private ArrayOutput cache = new ArrayOutput();
+
+    /**
+     * Constructor.
+     * @param os output stream
+     * @param limit maximum number of bytes to cache
+     */
+    private CacheOutput(final OutputStream os, final long limit) {
+      super(os);
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      super.write(b);
+      if(cache != null) {
+        if(cache.size() < limit) cache.write(b);
+        else cache = null;
+      }
+    }
+  }
 }
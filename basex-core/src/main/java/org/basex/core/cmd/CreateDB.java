@@ -12,7 +12,6 @@ import org.basex.core.parse.Commands.Cmd;
 import org.basex.core.parse.Commands.CmdCreate;
 import org.basex.core.users.*;
 import org.basex.data.*;
-import org.basex.index.*;
 import org.basex.io.*;
 import org.basex.io.in.*;
 import org.basex.util.*;
@@ -100,9 +99,7 @@ public final class CreateDB extends ACreate {
         if(!startUpdate()) return false;
         final boolean ok;
         try {
-          if(data.meta.createtext) create(IndexType.TEXT,      data, options, this);
-          if(data.meta.createattr) create(IndexType.ATTRIBUTE, data, options, this);
-          if(data.meta.createftxt) create(IndexType.FULLTEXT,  data, options, this);
+          create(indexes(data.meta), data, options, this);
         } finally {
           ok = finishUpdate();
         }
@@ -171,9 +168,7 @@ public final class CreateDB extends ACreate {
     new DiskBuilder(name, parser, ctx.soptions, options).build().close();
 
     final Data data = Open.open(name, ctx, options);
-    if(data.meta.createtext) create(IndexType.TEXT,      data, options, null);
-    if(data.meta.createattr) create(IndexType.ATTRIBUTE, data, options, null);
-    if(data.meta.createftxt) create(IndexType.FULLTEXT,  data, options, null);
+    create(indexes(data.meta), data, options, null);
     return data;
   }
 
@@ -86,9 +86,11 @@ public final class InfoDB extends AInfo {
         info(tb, MainOptions.STEMMING.name(), meta.stemming);
         info(tb, MainOptions.CASESENS.name(), meta.casesens);
         info(tb, MainOptions.DIACRITICS.name(), meta.diacritics);
+        info(tb, MainOptions.FTNGRAMS.name(), meta.ftngrams);
         info(tb, MainOptions.STOPWORDS.name(), meta.stopwords);
         info(tb, MainOptions.UPDINDEX.name(), meta.updindex);
         info(tb, MainOptions.AUTOOPTIMIZE.name(), meta.autoopt);
+        info(tb, MainOptions.MAPTABLE.name(), meta.maptable);
         info(tb, MainOptions.MAXCATS.name(), meta.maxcats);
         info(tb, MainOptions.MAXLEN.name(), meta.maxlen);
       }
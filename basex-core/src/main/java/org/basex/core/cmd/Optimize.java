@@ -3,6 +3,7 @@ package org.basex.core.cmd;
 import static org.basex.core.Text.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.core.users.*;
@@ -143,33 +144,39 @@ public final class Optimize extends ACreate {
       md.autoopt = autoopt;
       md.dirty = true;
     }
+    // reassign table mapping flag (will be considered when the table is flushed)
+    final boolean maptable = options.get(MainOptions.MAPTABLE);
+    if(maptable != md.maptable) {
+      md.maptable = maptable;
+      md.dirty = true;
+    }
 
     // rebuild value indexes
-    optimize(IndexType.ATTRIBUTE, data, options, md.createattr, md.attrindex, enforce, cmd);
-    optimize(IndexType.TEXT,      data, options, md.createtext, md.textindex, enforce, cmd);
-    optimize(IndexType.FULLTEXT,  data, options, md.createftxt, md.ftxtindex, enforceFT, cmd);
+    final ArrayList<IndexType> types = new ArrayList<>(3);
+    optimize(IndexType.ATTRIBUTE, data, md.createattr, md.attrindex, enforce, types);
+    optimize(IndexType.TEXT,      data, md.createtext, md.textindex, enforce, types);
+    optimize(IndexType.FULLTEXT,  data, md.createftxt, md.ftxtindex, enforceFT, types);
+    create(types.toArray(new IndexType[types.size()]), data, options, cmd);
   }
 
   /**
-   * Optimizes the specified index if the old and new state is different.
+   * Drops the specified index, or adds it to the indexes to be built, if the old and new state
+   * is different.
    * @param type index type
    * @param data data reference
-   * @param options main options
    * @param create new flag
    * @param old old flag
    * @param force enforce operation
-   * @param cmd calling command instance
-   * @throws IOException I/O exception
+   * @param types indexes to be built
    */
-  private static void optimize(final IndexType type, final Data data, final MainOptions options,
-      final boolean create, final boolean old, final boolean force, final Optimize cmd)
-      throws IOException {
+  private static void optimize(final IndexType type, final Data data, final boolean create,
+      final boolean old, final boolean force, final ArrayList<IndexType> types) {
 
     // check if flags have changed
     if(create == old && !force) return;
 
     // create or drop index
-    if(create) create(type, data, options, cmd);
+    if(create) types.add(type);
     else drop(type, data);
   }
 }
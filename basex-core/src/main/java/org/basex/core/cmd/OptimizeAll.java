@@ -11,7 +11,6 @@ import org.basex.core.parse.*;
 import org.basex.core.parse.Commands.Cmd;
 import org.basex.core.users.*;
 import org.basex.data.*;
-import org.basex.index.*;
 import org.basex.io.*;
 import org.basex.io.serial.*;
 import org.basex.query.value.item.*;
@@ -113,12 +112,14 @@ public final class OptimizeAll extends ACreate {
     // adopt original index options
     options.set(MainOptions.UPDINDEX, ometa.updindex);
     options.set(MainOptions.AUTOOPTIMIZE, ometa.autoopt);
+    options.set(MainOptions.MAPTABLE, ometa.maptable);
     options.set(MainOptions.MAXCATS,  ometa.maxcats);
     options.set(MainOptions.MAXLEN,   ometa.maxlen);
     // adopt original full-text index options
     options.set(MainOptions.STEMMING,   ometa.stemming);
     options.set(MainOptions.CASESENS,   ometa.casesens);
     options.set(MainOptions.DIACRITICS, ometa.diacritics);
+    options.set(MainOptions.FTNGRAMS,   ometa.ftngrams);
     options.set(MainOptions.LANGUAGE,   ometa.language.toString());
     options.set(MainOptions.STOPWORDS,  ometa.stopwords);
 
@@ -130,9 +131,7 @@ public final class OptimizeAll extends ACreate {
     try(final DiskBuilder builder = new DiskBuilder(tname, parser, sopts, options)) {
       final DiskData dt = builder.build();
       try {
-        if(ometa.createtext) create(IndexType.TEXT, dt, options, cmd);
-        if(ometa.createattr) create(IndexType.ATTRIBUTE, dt, options, cmd);
-        if(ometa.createftxt) create(IndexType.FULLTEXT, dt, options, cmd);
+        create(indexes(ometa), dt, options, cmd);
         // adopt original meta data
         dt.meta.createtext = ometa.createtext;
         dt.meta.createattr = ometa.createattr;
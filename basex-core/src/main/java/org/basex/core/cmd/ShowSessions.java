@@ -1,5 +1,7 @@
 package org.basex.core.cmd;
 
+import static org.basex.core.Text.*;
+
 import java.io.*;
 
 import org.basex.core.*;
@@ -26,6 +28,7 @@ public final class ShowSessions extends Command {
   @Override
   protected boolean run() throws IOException {
     out.println(context.sessions.info());
+    out.println(NL + LockInfo.table(context.locks()));
     return true;
   }
 
@@ -3,7 +3,6 @@ package org.basex.core.locks;
 import static org.basex.util.Prop.*;
 
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 import java.util.concurrent.locks.*;
@@ -14,10 +13,19 @@ import org.basex.util.list.*;
 /**
  * Manage read and write locks on arbitrary strings. Maximum of
  * {@link StaticOptions#PARALLEL} concurrent transactions are allowed,
- * further will be queued.
+ * further will be queued in FIFO order.
  *
  * This class prevents locking deadlocks by sorting all all strings
  *
+ * The locks are distributed to several stripes, which are synchronized independently.
+ * Each lock uses a fair queue. Statistics on the acquisitions of all locks are recorded.
+ *
+ * If {@link StaticOptions#SNAPSHOTREADS} is enabled, writers exclude each other via
+ * additional intent locks, which are ignored by readers. Write locks on databases are
+ * deferred by processes that apply all updates at the end (see {@link Proc#deferrable()})
+ * until {@link #upgrade(Proc)} is called. Until then, readers are not blocked, and they
+ * access the last committed state of the databases.
+ *
  * Locks can only be released by the same thread which acquired it.
  *
  * Locking methods are not synchronized to each other. The user must make sure not to call
@@ -33,6 +41,10 @@ import org.basex.util.list.*;
 public final class DBLocking implements Locking {
   /** Fair scheduling; prevents starvation, but reduces parallelism. */
   private static final boolean FAIR = true;
+  /** Number of lock stripes (must be a power of two). */
+  private static final int STRIPES = 1 << 5;
+  /** Number of objects whose statistics will be kept after their locks have been discarded. */
+  private static final int MAXSTATS = 1 << 10;
 
   /** Prefix for internal special locks. */
   public static final String PREFIX = "%";
@@ -44,18 +56,28 @@ public final class DBLocking implements Locking {
   public static final String BACKUP = PREFIX + "BACKUP";
   /** Special lock identifier for repository commands. */
   public static final String REPO = PREFIX + "REPO";
+  /** Name of the limit for concurrent transactions (only used for lock information). */
+  public static final String PARALLEL = PREFIX + "PARALLEL";
+  /** Name of the global lock (only used for lock information). */
+  public static final String GLOBAL = PREFIX + "GLOBAL";
 
   /** Prefix for user defined locks. */
   public static final String USER_PREFIX = "+";
   /** Prefix for locks in Java modules. */
   public static final String MODULE_PREFIX = "&";
 
-  /** Lock for running thread counters. */
+  /** State of a local writer that reads all databases (excludes all other intents). */
+  private static final int EXCLUSIVE = Integer.MIN_VALUE;
+  /**
+   * Intents of local writers and global readers, which exclude each other:
+   * number of running local writers (positive), negated number of running global readers
+   * (negative), or {@link #EXCLUSIVE}.
+   */
+  private final AtomicInteger intents = new AtomicInteger();
+  /** Monitor for transactions waiting for {@link #intents}. */
   private final Object globalLock = new Object();
-  /** Number of running local writers. Guarded by {@code globalLock}. */
-  private int localWriters;
-  /** Number of running local writers. Guarded by {@code globalLock}. */
-  private int globalReaders;
+  /** Number of transactions waiting for {@link #intents}. Guarded by {@code globalLock}. */
+  private volatile int waiting;
   /**
    * Lock for global write locking.
    *
@@ -63,21 +85,14 @@ public final class DBLocking implements Locking {
    * Shared lock    - else
    */
   private final ReentrantReadWriteLock writeAll = new ReentrantReadWriteLock();
-  /** Stores one lock for each object used for locking. */
-  private final Map<String, ReentrantReadWriteLock> locks = new HashMap<>();
-  /** Stores lock usage counters for each object used for locking. */
-  private final Map<String, AtomicInteger> lockUsage = new HashMap<>();
-  /**
-   * Currently running transactions.
-   * Used as monitor for atomizing access to {@link #queue}.
-   */
-  private int transactions;
-  /**
-   * Queue for transactions waiting.
-   *
-   * Used as monitor for waiting threads in queue.
-   */
-  private final Queue<Long> queue = new LinkedList<>();
+  /** Lock stripes. Each stripe stores the locks of the objects with the same hash code. */
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  /** Admission of transactions, limited by {@link StaticOptions#PARALLEL} (FIFO order). */
+  private final Semaphore transactions;
+  /** Maximum number of concurrent transactions. */
+  private final int parallel;
+  /** Snapshot reads. */
+  private final boolean snapshots;
   /**
    * Stores a list of objects each transaction has write-locked.
    * Null means lock everything, an empty array lock nothing.
@@ -88,68 +103,52 @@ public final class DBLocking implements Locking {
    * everything, an empty array lock nothing.
    */
   private final ConcurrentMap<Long, StringList> readLocked = new ConcurrentHashMap<>();
-  /** Static options. */
-  private final StaticOptions sopts;
+  /** Stores the transactions holding the global lock ({@code true}: write lock). */
+  private final ConcurrentMap<Long, Boolean> globalLocked = new ConcurrentHashMap<>();
+  /** Stores a list of objects each transaction has intent-locked (only used by writers). */
+  private final ConcurrentMap<Long, StringList> intentLocked = new ConcurrentHashMap<>();
+  /** Stores a list of objects each transaction will write-lock before applying updates. */
+  private final ConcurrentMap<Long, StringList> deferred = new ConcurrentHashMap<>();
+
+  /** Statistics of all objects used for locking. */
+  private final ConcurrentMap<String, LockStats> stats = new ConcurrentHashMap<>();
+  /** Statistics of the admission of transactions. */
+  private final LockStats parallelStats = new LockStats();
+  /** Statistics of the global lock. */
+  private final LockStats globalStats = new LockStats();
 
   /**
    * Initialize new Locking instance.
    * @param sopts static options
    */
   public DBLocking(final StaticOptions sopts) {
-    this.sopts = sopts;
+    parallel = Math.max(sopts.get(StaticOptions.PARALLEL), 1);
+    transactions = new Semaphore(parallel, true);
+    snapshots = sopts.get(StaticOptions.SNAPSHOTREADS);
+    for(int s = 0; s < STRIPES; s++) stripes[s] = new Stripe();
   }
 
   @Override
-  public void acquire(final Proc pr, final StringList read, final StringList write) {
+  public void acquire(final Proc pr, final StringList read, final StringList write,
+      final StringList dbs) {
     final long thread = Thread.currentThread().getId();
     if(writeLocked.containsKey(thread) || readLocked.containsKey(thread))
       throw new IllegalMonitorStateException("Thread already holds one or more locks.");
 
     // Wait in queue if necessary
-    synchronized(queue) { // Guard queue and transaction, monitor for waiting in queue
-      queue.add(thread);
-      while(transactions >= Math.max(sopts.get(StaticOptions.PARALLEL), 1)
-          || queue.peek() != thread) {
-        try {
-          queue.wait();
-        } catch(final InterruptedException ex) {
-          Thread.currentThread().interrupt();
-        }
-      }
-      final int t = transactions++;
-      assert t <= Math.max(sopts.get(StaticOptions.PARALLEL), 1);
-      queue.remove(thread);
-    }
+    long start = System.nanoTime();
+    transactions.acquireUninterruptibly();
+    parallelStats.add(start);
 
     // Global write lock if write StringList is not set
+    start = System.nanoTime();
     (write == null ? writeAll.writeLock() : writeAll.readLock()).lock();
+    globalStats.add(start);
+    if(write == null || read == null) globalLocked.put(thread, write == null);
 
-    synchronized(globalLock) {
-      // local write locking
-      if(write != null && !write.isEmpty()) {
-        while(globalReaders > 0) {
-          try {
-            globalLock.wait();
-          } catch(final InterruptedException ex) {
-            Thread.currentThread().interrupt();
-          }
-        }
-        localWriters++;
-      }
-      // global read locking
-      if(read == null) {
-        while(localWriters > 0 &&
-            // We're the only writer, allow global read lock anyway
-            !(1 == localWriters && !(null == write || write.isEmpty()))) {
-          try {
-            globalLock.wait();
-          } catch(final InterruptedException ex) {
-            Thread.currentThread().interrupt();
-          }
-        }
-        globalReaders++;
-      }
-    }
+    // local write locking or global read locking
+    final boolean localWrite = write != null && !write.isEmpty(), globalRead = read == null;
+    if(localWrite || globalRead) enter(localWrite, globalRead);
 
     // Local locking
     final StringList writeObjects;
@@ -167,6 +166,12 @@ public final class DBLocking implements Locking {
       readObjects = new StringList(0);
     }
 
+    // Writers with snapshot reads: intent and write locks
+    if(snapshots && !writeObjects.isEmpty()) {
+      acquire(thread, readObjects, writeObjects, dbs);
+      return;
+    }
+
     // Use pattern similar to merge sort
     int w = 0, r = 0;
     final int rs = readObjects.size(), ws = writeObjects.size();
@@ -174,102 +179,300 @@ public final class DBLocking implements Locking {
       // Look what token comes earlier in alphabet, prefer writing against reading
       if(w < ws && (r >= rs || writeObjects.get(w).compareTo(readObjects.get(r)) <= 0)) {
         final String writeObject = writeObjects.get(w++);
-        setLockUsed(writeObject);
-        getOrCreateLock(writeObject).writeLock().lock();
+        start = System.nanoTime();
+        use(writeObject).lock.writeLock().lock();
+        stats(writeObject).add(start);
       } else
       // Read lock only if not global write locking; otherwise no lock downgrading from
       // global write lock is possible
       if(write != null) {
         final String readObject = readObjects.get(r++);
-        setLockUsed(readObject);
-        getOrCreateLock(readObject).readLock().lock();
+        start = System.nanoTime();
+        use(readObject).lock.readLock().lock();
+        stats(readObject).add(start);
       }
     }
   }
 
   /**
-   * Gets or creates lock on object.
-   * @param object to fetch lock for
-   * @return lock on object
+   * Acquires the locks of a writer if snapshot reads are enabled.
+   * Intent locks are acquired for all objects. The write locks on databases that may be
+   * deferred are only deferred if they are placed at the end of the sorted objects: all other
+   * write locks are acquired before them, so the global order of acquisitions is preserved.
+   * @param thread thread id
+   * @param readObjects objects to read (sorted)
+   * @param writeObjects objects to write (sorted)
+   * @param dbs databases whose write locks may be deferred
    */
-  private ReentrantReadWriteLock getOrCreateLock(final String object) {
-    ReentrantReadWriteLock lock;
-    synchronized(locks) { // Make sure each object lock is a singleton
-      lock = locks.get(object);
-      if(lock == null) { // Create lock if needed
-        lock = new ReentrantReadWriteLock(FAIR);
-        locks.put(object, lock);
-      }
+  private void acquire(final long thread, final StringList readObjects,
+      final StringList writeObjects, final StringList dbs) {
+
+    final StringList intentObjects = new StringList().add(readObjects).add(writeObjects);
+    intentObjects.sort().unique();
+    intentLocked.put(thread, intentObjects);
+    for(final String object : intentObjects) {
+      final long start = System.nanoTime();
+      use(object).intent.lock();
+      stats(object).add(start);
     }
-    return lock;
+
+    int ws = writeObjects.size();
+    final StringList defer = new StringList();
+    while(ws > 0 && dbs.contains(writeObjects.get(ws - 1))) defer.add(writeObjects.get(--ws));
+    if(!defer.isEmpty()) deferred.put(thread, defer.sort());
+    for(int w = 0; w < ws; w++) write(writeObjects.get(w));
+  }
+
+  @Override
+  public StringList upgrade(final Proc pr) {
+    final StringList dbs = deferred.remove(Thread.currentThread().getId());
+    if(dbs == null) return new StringList(0);
+    for(final String object : dbs) write(object);
+    return dbs;
   }
 
   @Override
   public void release(final Proc pr) {
-    // Release all write locks
+    // Release all write locks (skip locks that have never been acquired)
     final Long thread = Thread.currentThread().getId();
     final StringList writeObjects = writeLocked.remove(thread);
-    if(writeObjects != null) for(final String object : writeObjects) {
-      final ReentrantReadWriteLock lock = getOrCreateLock(object);
-      assert lock.getWriteHoldCount() == 1 : "Unexpected write lock count: "
-          + lock.getWriteHoldCount();
-      lock.writeLock().unlock();
-      unsetLockIfUnused(object);
+    final StringList dbs = deferred.remove(thread);
+    if(writeObjects != null) {
+      for(final String object : writeObjects) {
+        if(dbs == null || !dbs.contains(object)) unlock(object, true);
+      }
     }
 
     // Release all read locks
     final StringList readObjects = readLocked.remove(thread);
-    if(!writeAll.isWriteLocked() && readObjects != null)
-      for(final String object : readObjects) {
-        getOrCreateLock(object).readLock().unlock();
-        unsetLockIfUnused(object);
-      }
+    final StringList intentObjects = intentLocked.remove(thread);
+    if(intentObjects != null) {
+      for(final String object : intentObjects) unlock(object);
+    } else if(!writeAll.isWriteLocked() && readObjects != null) {
+      for(final String object : readObjects) unlock(object, false);
+    }
 
     // Release global locks
+    globalLocked.remove(thread);
     (writeAll.isWriteLocked() ? writeAll.writeLock() : writeAll.readLock()).unlock();
-    if(writeObjects != null && !writeObjects.isEmpty()) synchronized(globalLock) {
-      localWriters--;
-      globalLock.notifyAll();
+    final boolean localWrite = writeObjects != null && !writeObjects.isEmpty();
+    final boolean globalRead = readObjects == null;
+    if(localWrite || globalRead) leave(localWrite, globalRead);
+
+    // Allow another transaction to run
+    transactions.release();
+  }
+
+  /**
+   * Registers the intent of a local writer or global reader. Local writers and global readers
+   * exclude each other, but they run in parallel with transactions of the same kind.
+   * A local writer that reads all databases runs exclusively. The monitor is only entered
+   * if the transaction needs to wait.
+   * @param localWrite local writer
+   * @param globalRead global reader
+   */
+  private void enter(final boolean localWrite, final boolean globalRead) {
+    while(true) {
+      final int s = intents.get();
+      final boolean free = localWrite ? globalRead ? s == 0 : s >= 0 : s <= 0 && s != EXCLUSIVE;
+      if(free) {
+        final int n = localWrite ? globalRead ? EXCLUSIVE : s + 1 : s - 1;
+        if(intents.compareAndSet(s, n)) return;
+      } else {
+        synchronized(globalLock) {
+          waiting++;
+          try {
+            // wait if the state has not changed in the meantime
+            if(intents.get() == s) globalLock.wait();
+          } catch(final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          } finally {
+            waiting--;
+          }
+        }
+      }
     }
-    if(readObjects == null) synchronized(globalLock) {
-      globalReaders--;
-      globalLock.notifyAll();
+  }
+
+  /**
+   * Removes the intent of a local writer or global reader, and wakes up waiting transactions
+   * if no other intents are registered.
+   * @param localWrite local writer
+   * @param globalRead global reader
+   */
+  private void leave(final boolean localWrite, final boolean globalRead) {
+    final int n;
+    if(localWrite && globalRead) {
+      intents.set(0);
+      n = 0;
+    } else {
+      n = localWrite ? intents.decrementAndGet() : intents.incrementAndGet();
     }
+    if(n == 0 && waiting > 0) {
+      synchronized(globalLock) {
+        globalLock.notifyAll();
+      }
+    }
+  }
 
-    // Allow another transaction to run
-    synchronized(queue) {
-      transactions--;
-      queue.notifyAll();
+  /**
+   * Acquires the write lock of the specified object.
+   * @param object object
+   */
+  private void write(final String object) {
+    final long start = System.nanoTime();
+    use(object).lock.writeLock().lock();
+    stats(object).add(start);
+  }
+
+  /**
+   * Checks if the specified object is an internal lock.
+   * @param object object
+   * @return result of check
+   */
+  public static boolean internal(final String object) {
+    return object.equals(ADMIN) || object.equals(BACKUP) || object.equals(REPO);
+  }
+
+  /**
+   * Returns the stripe of the specified object.
+   * @param object object
+   * @return stripe
+   */
+  private Stripe stripe(final String object) {
+    final int h = object.hashCode();
+    return stripes[(h ^ h >>> 16) & STRIPES - 1];
+  }
+
+  /**
+   * Returns the lock entry of the specified object and marks it as used.
+   * The entry is created if it does not exist yet.
+   * @param object object
+   * @return lock entry
+   */
+  private LockEntry use(final String object) {
+    final Stripe stripe = stripe(object);
+    synchronized(stripe) {
+      LockEntry entry = stripe.locks.get(object);
+      if(entry == null) {
+        entry = new LockEntry();
+        stripe.locks.put(object, entry);
+      }
+      entry.usage++;
+      return entry;
     }
   }
 
   /**
-   * Marks a lock as used.
-   * @param lock Lock to set used
+   * Releases the lock of the specified object. The lock is discarded if it is unused.
+   * @param object object
+   * @param write write lock
    */
-  private void setLockUsed(final String lock) {
-    synchronized(locks) {
-      final AtomicInteger usage = lockUsage.get(lock);
-      if(usage == null) {
-        lockUsage.put(lock, new AtomicInteger(1));
+  private void unlock(final String object, final boolean write) {
+    final Stripe stripe = stripe(object);
+    synchronized(stripe) {
+      final LockEntry entry = stripe.locks.get(object);
+      if(write) {
+        assert entry.lock.getWriteHoldCount() == 1 : "Unexpected write lock count: "
+            + entry.lock.getWriteHoldCount();
+        entry.lock.writeLock().unlock();
       } else {
-        usage.incrementAndGet();
+        entry.lock.readLock().unlock();
       }
+      if(--entry.usage == 0) discard(stripe, object);
     }
   }
 
   /**
-   * Unsets lock if unused.
-   * @param object Object to test
+   * Releases the intent lock of the specified object. The lock is discarded if it is unused.
+   * @param object object
    */
-  private void unsetLockIfUnused(final String object) {
-    synchronized(locks) {
-      final AtomicInteger usage = lockUsage.get(object);
-      if(usage.decrementAndGet() == 0) {
-        locks.remove(object);
-        lockUsage.remove(object);
+  private void unlock(final String object) {
+    final Stripe stripe = stripe(object);
+    synchronized(stripe) {
+      final LockEntry entry = stripe.locks.get(object);
+      entry.intent.unlock();
+      if(--entry.usage == 0) discard(stripe, object);
+    }
+  }
+
+  /**
+   * Discards the unused lock of the specified object. Its statistics are discarded as well
+   * if the statistics of too many objects are stored.
+   * @param stripe stripe of the object
+   * @param object object
+   */
+  private void discard(final Stripe stripe, final String object) {
+    stripe.locks.remove(object);
+    if(stats.size() > MAXSTATS) stats.remove(object);
+  }
+
+  /**
+   * Returns the statistics of the specified object.
+   * @param object object
+   * @return statistics
+   */
+  private LockStats stats(final String object) {
+    LockStats ls = stats.get(object);
+    if(ls == null) {
+      ls = new LockStats();
+      final LockStats old = stats.putIfAbsent(object, ls);
+      if(old != null) ls = old;
+    }
+    return ls;
+  }
+
+  @Override
+  public List<LockInfo> info() {
+    final ArrayList<LockInfo> list = new ArrayList<>();
+    final int running = parallel - transactions.availablePermits();
+    list.add(parallelStats.info(PARALLEL, running, 0, transactions.getQueueLength(), ""));
+    list.add(globalStats.info(GLOBAL, writeAll.getReadLockCount(),
+        writeAll.isWriteLocked() ? 1 : 0, writeAll.getQueueLength(), holders(null)));
+
+    for(final String object : new TreeSet<>(stats.keySet())) {
+      // skip statistics that have been discarded in the meantime
+      final LockStats ls = stats.get(object);
+      if(ls == null) continue;
+      int readers = 0, writers = 0, queue = 0;
+      final Stripe stripe = stripe(object);
+      synchronized(stripe) {
+        final LockEntry entry = stripe.locks.get(object);
+        if(entry != null) {
+          readers = entry.lock.getReadLockCount();
+          writers = entry.lock.isWriteLocked() ? 1 : 0;
+          queue = entry.lock.getQueueLength() + entry.intent.getQueueLength();
+        }
       }
+      list.add(ls.info(object, readers, writers, queue, holders(object)));
     }
+    return list;
+  }
+
+  /**
+   * Returns the threads holding the specified object.
+   * @param object object ({@code null}: global lock)
+   * @return thread ids, suffixed with the lock mode
+   */
+  private String holders(final String object) {
+    final StringList sl = new StringList();
+    if(object == null) {
+      for(final Map.Entry<Long, Boolean> entry : globalLocked.entrySet())
+        sl.add(entry.getKey() + (entry.getValue() ? "(w)" : "(r)"));
+    } else {
+      for(final Map.Entry<Long, StringList> entry : writeLocked.entrySet()) {
+        if(entry.getValue().contains(object)) sl.add(entry.getKey() + "(w)");
+      }
+      for(final Map.Entry<Long, StringList> entry : readLocked.entrySet()) {
+        if(entry.getValue().contains(object)) sl.add(entry.getKey() + "(r)");
+      }
+    }
+    final StringBuilder sb = new StringBuilder();
+    for(final String holder : sl.sort()) {
+      if(sb.length() != 0) sb.append(' ');
+      sb.append(holder);
+    }
+    return sb.toString();
   }
 
   /**
@@ -281,12 +484,15 @@ public final class DBLocking implements Locking {
     final StringBuilder sb = new StringBuilder(NL);
     sb.append("Locking" + NL);
     final String ind = "| ";
-    sb.append(ind + "Transactions running: " + transactions + NL);
-    sb.append(ind + "Transaction queue: " + queue + NL);
+    sb.append(ind + "Transactions running: " + (parallel - transactions.availablePermits()) +
+        NL);
+    sb.append(ind + "Transaction queue: " + transactions.getQueueLength() + NL);
     sb.append(ind + "Held locks by object:" + NL);
-    synchronized(locks) {
-      for(final Entry<String, ReentrantReadWriteLock> e : locks.entrySet())
-        sb.append(ind + ind + e.getKey() + " -> " + e.getValue() + NL);
+    for(final Stripe stripe : stripes) {
+      synchronized(stripe) {
+        for(final Map.Entry<String, LockEntry> e : stripe.locks.entrySet())
+          sb.append(ind + ind + e.getKey() + " -> " + e.getValue().lock + NL);
+      }
     }
     sb.append(ind + "Held write locks by transaction:" + NL);
     for(final Long thread : writeLocked.keySet())
@@ -297,4 +503,19 @@ public final class DBLocking implements Locking {
     return sb.toString();
   }
 
+  /** Lock stripe. */
+  private static final class Stripe {
+    /** Locks of the objects. */
+    private final HashMap<String, LockEntry> locks = new HashMap<>();
+  }
+
+  /** Lock of an object. */
+  private static final class LockEntry {
+    /** Lock. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(FAIR);
+    /** Intent lock of writers (only used for snapshot reads). */
+    private final ReentrantLock intent = new ReentrantLock(FAIR);
+    /** Number of transactions using the lock. */
+    private int usage;
+  }
 }
@@ -0,0 +1,98 @@
+package org.basex.core.locks;
+
+import java.util.*;
+
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Information on a lock: current holders and waiting transactions, and statistics on
+ * previous acquisitions.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class LockInfo {
+  /** Upper bounds of the wait time histogram (milliseconds). */
+  public static final long[] BOUNDS = { 1, 10, 100, 1000 };
+
+  /** Name of the lock. */
+  public final String name;
+  /** Number of transactions holding a read lock. */
+  public final int readers;
+  /** Number of transactions holding a write lock. */
+  public final int writers;
+  /** Number of waiting transactions. */
+  public final int queue;
+  /** Ids of the threads holding the lock (separated by spaces). */
+  public final String holders;
+  /** Number of acquisitions. */
+  public final long acquired;
+  /** Total wait time (nanoseconds). */
+  public final long waited;
+  /** Number of acquisitions per wait time interval (see {@link #BOUNDS}). */
+  public final long[] histogram;
+
+  /**
+   * Constructor.
+   * @param name name of the lock
+   * @param readers number of transactions holding a read lock
+   * @param writers number of transactions holding a write lock
+   * @param queue number of waiting transactions
+   * @param holders threads holding the lock
+   * @param acquired number of acquisitions
+   * @param waited total wait time
+   * @param histogram wait time histogram
+   */
+  LockInfo(final String name, final int readers, final int writers, final int queue,
+      final String holders, final long acquired, final long waited, final long[] histogram) {
+    this.name = name;
+    this.readers = readers;
+    this.writers = writers;
+    this.queue = queue;
+    this.holders = holders;
+    this.acquired = acquired;
+    this.waited = waited;
+    this.histogram = histogram;
+  }
+
+  /**
+   * Returns a label for the specified histogram interval.
+   * @param h index of the interval
+   * @return label
+   */
+  public static String label(final int h) {
+    return h < BOUNDS.length ? "<" + BOUNDS[h] + "ms" : ">=" + BOUNDS[h - 1] + "ms";
+  }
+
+  /**
+   * Returns a table with the specified lock information.
+   * @param locks lock information
+   * @return table
+   */
+  public static String table(final List<LockInfo> locks) {
+    final Table table = new Table();
+    final StringList header = new StringList("Lock", "Readers", "Writers", "Queue",
+        "Acquired", "Wait");
+    final int hl = BOUNDS.length + 1;
+    for(int h = 0; h < hl; h++) header.add(label(h));
+    header.add("Holders");
+    for(final String head : header) {
+      table.header.add(head);
+      table.align.add(!head.equals("Lock") && !head.equals("Holders"));
+    }
+    for(final LockInfo li : locks) {
+      final TokenList tl = new TokenList();
+      tl.add(li.name);
+      tl.add(li.readers);
+      tl.add(li.writers);
+      tl.add(li.queue);
+      tl.add(li.acquired);
+      tl.add(Performance.getTime(li.waited, 1));
+      for(final long h : li.histogram) tl.add(h);
+      tl.add(li.holders);
+      table.contents.add(tl);
+    }
+    return Token.string(table.finish());
+  }
+}
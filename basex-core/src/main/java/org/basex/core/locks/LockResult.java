@@ -16,6 +16,8 @@ public class LockResult {
   public final StringList read = new StringList(1);
   /** Write locks. */
   public final StringList write = new StringList(1);
+  /** Names of databases among the write locks. */
+  public final StringList databases = new StringList(1);
   /** Flag if global read lock is required. */
   public boolean readAll;
   /** Flag if global write lock is required. */
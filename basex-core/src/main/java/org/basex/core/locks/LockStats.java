@@ -0,0 +1,50 @@
+package org.basex.core.locks;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Statistics on the acquisitions of a lock.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+final class LockStats {
+  /** Number of acquisitions. */
+  private final AtomicLong acquired = new AtomicLong();
+  /** Total wait time (nanoseconds). */
+  private final AtomicLong waited = new AtomicLong();
+  /** Wait time histogram (see {@link LockInfo#BOUNDS}). */
+  private final AtomicLongArray histogram = new AtomicLongArray(LockInfo.BOUNDS.length + 1);
+
+  /**
+   * Registers an acquisition.
+   * @param start time at which the lock was requested (nanoseconds)
+   */
+  void add(final long start) {
+    final long time = System.nanoTime() - start, ms = time / 1000000;
+    acquired.incrementAndGet();
+    waited.addAndGet(time);
+    final int bl = LockInfo.BOUNDS.length;
+    int b = 0;
+    while(b < bl && ms >= LockInfo.BOUNDS[b]) b++;
+    histogram.incrementAndGet(b);
+  }
+
+  /**
+   * Returns information on the lock.
+   * @param name name of the lock
+   * @param readers number of transactions holding a read lock
+   * @param writers number of transactions holding a write lock
+   * @param queue number of waiting transactions
+   * @param holders threads holding the lock
+   * @return lock information
+   */
+  LockInfo info(final String name, final int readers, final int writers, final int queue,
+      final String holders) {
+    final int hl = histogram.length();
+    final long[] hist = new long[hl];
+    for(int h = 0; h < hl; h++) hist[h] = histogram.get(h);
+    return new LockInfo(name, readers, writers, queue, holders, acquired.get(), waited.get(),
+        hist);
+  }
+}
@@ -1,5 +1,7 @@
 package org.basex.core.locks;
 
+import java.util.*;
+
 import org.basex.core.*;
 import org.basex.util.list.*;
 
@@ -19,12 +21,29 @@ public interface Locking {
    * Global locking is performed if the passed on reference is {@code null}
    * @param write names of databases to put write locks on.
    * Global locking is performed if the passed on reference is {@code null}
+   * @param dbs names of databases whose write locks may be deferred until
+   * {@link #upgrade(Proc)} is called (subset of the write locks)
+   */
+  void acquire(final Proc pr, final StringList read, final StringList write,
+      final StringList dbs);
+
+  /**
+   * Acquires the write locks that have been deferred by the current transaction.
+   * Needs to be called before the updates of the transaction are applied.
+   * @param pr process
+   * @return names of the locked objects
    */
-  void acquire(final Proc pr, final StringList read, final StringList write);
+  StringList upgrade(final Proc pr);
 
   /**
    * Unlock all string locked by a transaction.
    * @param pr process
    */
   void release(final Proc pr);
+
+  /**
+   * Returns information on the current locks and statistics on previous acquisitions.
+   * @return lock information
+   */
+  List<LockInfo> info();
 }
@@ -25,6 +25,9 @@ public final class ProcLocking implements Locking {
   /** Database context. */
   private final StaticOptions sopts;
 
+  /** Statistics of all acquisitions. */
+  private final LockStats stats = new LockStats();
+
   /** Number of active readers. */
   private int readers;
   /** Writer flag. */
@@ -39,8 +42,10 @@ public final class ProcLocking implements Locking {
   }
 
   @Override
-  public void acquire(final Proc pr, final StringList read, final StringList write) {
+  public void acquire(final Proc pr, final StringList read, final StringList write,
+      final StringList dbs) {
     final Object o = new Object();
+    final long start = System.nanoTime();
 
     synchronized(mutex) {
       // add object to queue
@@ -76,6 +81,13 @@ public final class ProcLocking implements Locking {
       // start process, remove from queue
       queue.remove(0);
     }
+    stats.add(start);
+  }
+
+  @Override
+  public StringList upgrade(final Proc pr) {
+    // updating processes are always executed exclusively
+    return new StringList(0);
   }
 
   @Override
@@ -89,4 +101,13 @@ public final class ProcLocking implements Locking {
       mutex.notifyAll();
     }
   }
+
+  @Override
+  public List<LockInfo> info() {
+    final LockInfo info;
+    synchronized(mutex) {
+      info = stats.info(DBLocking.GLOBAL, readers, writer ? 1 : 0, queue.size(), "");
+    }
+    return Collections.singletonList(info);
+  }
 }
@@ -105,6 +105,8 @@ public abstract class Data {
   TableAccess table;
   /** ID->PRE mapping. */
   IdPreMap idmap;
+  /** ID->PRE runs, used if no ID->PRE mapping exists (created on demand). */
+  private volatile IdRuns idruns;
   /** States if distance caching is active. */
   public boolean cache;
 
@@ -136,6 +138,18 @@ public abstract class Data {
   public abstract void createIndex(IndexType type, MainOptions options, Command cmd)
       throws IOException;
 
+  /**
+   * Creates the specified index structures.
+   * @param types index types
+   * @param options main options
+   * @param cmd calling command
+   * @throws IOException I/O exception
+   */
+  public void createIndexes(final IndexType[] types, final MainOptions options, final Command cmd)
+      throws IOException {
+    for(final IndexType type : types) createIndex(type, options, cmd);
+  }
+
   /**
    * Drops the specified index.
    * @param type index to be dropped
@@ -256,7 +270,7 @@ public abstract class Data {
    * @return pre value or {@code -1} if id was not found
    */
   public final int pre(final int id) {
-    return meta.updindex ? idmap.pre(id) : findPre(id);
+    return meta.updindex ? idmap.pre(id) : idRuns().pre(id);
   }
 
   /**
@@ -267,24 +281,79 @@ public abstract class Data {
    * @return sorted pre values
    */
   public final int[] pre(final int[] ids, final int off, final int len) {
-    if(meta.updindex) return idmap.pre(ids, off, len);
-    final IntList il = new IntList(len - off);
-    for(int i = off; i < len; ++i) il.add(findPre(ids[i]));
-    return il.sort().finish();
+    return meta.updindex ? idmap.pre(ids, off, len) : idRuns().pre(ids, off, len);
   }
 
   /**
-   * Returns a pre value for the specified id by scanning the table.
-   * @param id unique node id
-   * @return pre value or -1 if id was not found
-   */
-  private int findPre(final int id) {
-    // find pre value in table; start with specified id
-    for(int p = Math.max(0, id); p < meta.size; ++p) if(id == id(p)) return p;
-    final int ps = Math.min(meta.size, id);
-    for(int p = 0; p < ps; ++p) if(id == id(p)) return p;
-    // id not found
-    return -1;
+   * Returns the ID->PRE runs.
+   * @return runs
+   */
+  private IdRuns idRuns() {
+    IdRuns ir = idruns;
+    if(ir == null) {
+      synchronized(this) {
+        ir = idruns;
+        if(ir == null) {
+          ir = openIdRuns();
+          idruns = ir;
+        }
+      }
+    }
+    return ir;
+  }
+
+  /**
+   * Opens or creates the ID->PRE runs.
+   * @return runs
+   */
+  protected IdRuns openIdRuns() {
+    return new IdRuns(this);
+  }
+
+  /**
+   * Invalidates the ID->PRE runs. Called before the table structure is modified.
+   */
+  private void invalidateIds() {
+    final IdRuns ir = idruns;
+    if(ir != null) ir.close();
+    idruns = null;
+    meta.idindex = false;
+  }
+
+  /**
+   * Compacts the ID->PRE mapping if it contains too many update records.
+   * Called after updates have been performed.
+   * @param file file to which the base mapping will be written ({@code null}: main memory)
+   * @throws IOException I/O exception
+   */
+  final void compactIds(final IOFile file) throws IOException {
+    if(meta.updindex && idmap.fragmented()) {
+      idmap = idmap.compact(new IdRuns(this), meta.lastid, file);
+      meta.dirty = true;
+    }
+  }
+
+  /**
+   * Writes the ID->PRE runs to the specified file if they have been created in main memory,
+   * and if no ID->PRE mapping exists.
+   * @param file file to write to
+   * @throws IOException I/O exception
+   */
+  final synchronized void writeIdRuns(final IOFile file) throws IOException {
+    final IdRuns ir = idruns;
+    if(ir == null || meta.updindex || meta.idindex) return;
+    ir.write(file);
+    meta.idindex = true;
+    meta.dirty = true;
+  }
+
+  /**
+   * Closes the ID->PRE lookup structures.
+   */
+  final void closeIds() {
+    final IdRuns ir = idruns;
+    if(ir != null) ir.close();
+    if(idmap != null) idmap.close();
   }
 
   /**
@@ -540,8 +609,8 @@ public abstract class Data {
     if(eq(val, text(pre, kind != ATTR))) return;
 
     meta.update();
-    updateText(pre, val, kind);
     if(kind == DOC) resources.rename(pre, value);
+    updateText(pre, val, kind);
   }
 
   /**
@@ -551,6 +620,7 @@ public abstract class Data {
    */
   public final void replace(final int pre, final DataClip source) {
     meta.update();
+    invalidateIds();
 
     final int sCount = source.size();
     final int tKind = kind(pre);
@@ -651,6 +721,7 @@ public abstract class Data {
    */
   public final void delete(final int pre) {
     meta.update();
+    invalidateIds();
 
     // delete references in document index
     int kind = kind(pre);
@@ -724,6 +795,7 @@ public abstract class Data {
    */
   public final void insert(final int pre, final int par, final DataClip source) {
     meta.update();
+    invalidateIds();
 
     // update value and document indexes
     if(meta.updindex) indexBegin();
@@ -14,7 +14,7 @@ public interface DataText {
   /** Database version; older version cannot open these instances. */
   String STORAGE = "7.8";
   /** Index version; older version cannot open indexes of these instances. */
-  String ISTORAGE = "7.8";
+  String ISTORAGE = "8.3";
 
   /** Database version. */
   String DBSTR = "STORAGE";
@@ -40,12 +40,18 @@ public interface DataText {
   String DBUPDIDX = "UPDINDEX";
   /** Automatic optimization. */
   String DBAUTOOPT = "AUTOOPT";
+  /** Memory-mapped table. */
+  String DBMAPTBL = "MAPTABLE";
   /** Text indexing. */
   String DBTXTIDX = "TXTINDEX";
   /** Attribute indexing. */
   String DBATVIDX = "ATVINDEX";
   /** Full-text indexing. */
   String DBFTXIDX = "FTXINDEX";
+  /** ID -> PRE lookup. */
+  String DBIDIDX = "IDINDEX";
+  /** Buffered index updates. */
+  String DBIDXDLT = "IDXDELTA";
   /** Full-text stemming. */
   String DBFTST = "FTSTEM";
   /** Full-text language. */
@@ -56,6 +62,8 @@ public interface DataText {
   String DBFTCS = "FTCS";
   /** Full-text diacritics removal. */
   String DBFTDC = "FTDC";
+  /** Full-text n-grams. */
+  String DBFTNG = "FTNGRAMS";
   /** Maximum token length. */
   String DBMAXLEN = "MAXLEN";
   /** Maximum number of categories. */
@@ -111,6 +119,10 @@ public interface DataText {
   String DATAPTH = "pth";
   /** Database - ID->PRE mapping. */
   String DATAIDP = "idp";
+  /** Database - ID->PRE runs. */
+  String DATAIDR = "idr";
+  /** Database - ID->PRE base mapping. */
+  String DATAIDB = "idb";
 
   // XML SERIALIZATION ============================================================================
 
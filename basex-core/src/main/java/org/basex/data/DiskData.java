@@ -4,6 +4,7 @@ import static org.basex.data.DataText.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.build.*;
 import org.basex.core.*;
@@ -76,9 +77,10 @@ public final class DiskData extends Data {
     // open data and indexes
     init();
     if(meta.updindex) {
-      idmap = new IdPreMap(meta.dbfile(DATAIDP));
-      if(meta.textindex) textIndex = new UpdatableDiskValues(this, true);
-      if(meta.attrindex) attrIndex = new UpdatableDiskValues(this, false);
+      recoverIds();
+      idmap = new IdPreMap(meta.dbfile(DATAIDP), meta.dbfile(DATAIDB));
+      if(meta.textindex) textIndex = UpdatableDiskValues.get(this, true);
+      if(meta.attrindex) attrIndex = UpdatableDiskValues.get(this, false);
     } else {
       if(meta.textindex) textIndex = new DiskValues(this, true);
       if(meta.attrindex) attrIndex = new DiskValues(this, false);
@@ -124,6 +126,10 @@ public final class DiskData extends Data {
    */
   private void write() throws IOException {
     if(meta.dirty) {
+      // indexes will be dropped when the database is reopened if deltas have not been merged
+      boolean deltas = false;
+      for(final DeltaValues dv : deltas()) deltas |= dv.buffered() != 0;
+      meta.deltas = deltas;
       try(final DataOutput out = new DataOutput(meta.dbfile(DATAINF))) {
         meta.write(out);
         out.writeToken(token(DBTAGS));
@@ -138,17 +144,54 @@ public final class DiskData extends Data {
         resources.write(out);
         out.write(0);
       }
-      if(idmap != null) idmap.write(meta.dbfile(DATAIDP));
+      if(idmap != null) writeIds();
       meta.dirty = false;
     }
   }
 
+  /**
+   * Writes the ID->PRE mapping. If the mapping has been compacted, the new base mapping has
+   * been written to a temporary file by {@link #finishUpdate}. In this case, the mapping is
+   * written to a temporary file as well, and both files replace the current files
+   * afterwards. Replacing the base mapping commits the changes.
+   * @throws IOException I/O exception
+   */
+  private void writeIds() throws IOException {
+    final IOFile base = meta.dbfile(DATAIDB + DATATMP);
+    if(base.exists()) {
+      final IOFile map = meta.dbfile(DATAIDP + DATATMP);
+      idmap.write(map);
+      base.moveTo(meta.dbfile(DATAIDB));
+      map.moveTo(meta.dbfile(DATAIDP));
+    } else {
+      idmap.write(meta.dbfile(DATAIDP));
+    }
+  }
+
+  /**
+   * Completes or discards an interrupted update of the ID->PRE mapping (see {@link #writeIds}).
+   * @throws IOException I/O exception
+   */
+  private void recoverIds() throws IOException {
+    final IOFile base = meta.dbfile(DATAIDB + DATATMP), map = meta.dbfile(DATAIDP + DATATMP);
+    if(base.exists()) {
+      base.delete();
+      map.delete();
+    } else if(map.exists()) {
+      map.moveTo(meta.dbfile(DATAIDP));
+    }
+  }
+
   @Override
   public synchronized void close() {
     if(closed) return;
     closed = true;
     try {
+      // merge buffered index updates before meta data is written
+      for(final DeltaValues dv : deltas()) dv.merge();
+      writeIdRuns(meta.dbfile(DATAIDR));
       write();
+      closeIds();
       table.close();
       texts.close();
       values.close();
@@ -181,18 +224,41 @@ public final class DiskData extends Data {
   @Override
   public void createIndex(final IndexType type, final MainOptions options, final Command cmd)
       throws IOException {
+    createIndexes(new IndexType[] { type }, options, cmd);
+  }
 
-    // close existing index
-    close(type);
-    final IndexBuilder ib;
-    switch(type) {
-      case TEXT:      ib = new DiskValuesBuilder(this, options, true); break;
-      case ATTRIBUTE: ib = new DiskValuesBuilder(this, options, false); break;
-      case FULLTEXT:  ib = new FTBuilder(this, options); break;
-      default:        throw Util.notExpected();
+  @Override
+  public void createIndexes(final IndexType[] types, final MainOptions options,
+      final Command cmd) throws IOException {
+
+    final int tl = types.length, threads = options.get(MainOptions.INDEXTHREADS);
+    if(tl == 0) return;
+    // threads that are not required for building different indexes are used for partitions
+    final int partitions = Math.max(1, threads / tl);
+    final IndexBudget budget = new IndexBudget();
+    final IndexBuilder[] ibs = new IndexBuilder[tl];
+    for(int t = 0; t < tl; t++) {
+      // close existing index
+      close(types[t]);
+      switch(types[t]) {
+        case TEXT:
+          ibs[t] = new DiskValuesBuilder(this, options, true).partitions(partitions);
+          break;
+        case ATTRIBUTE:
+          ibs[t] = new DiskValuesBuilder(this, options, false).partitions(partitions);
+          break;
+        case FULLTEXT:
+          ibs[t] = new FTBuilder(this, options);
+          break;
+        default:
+          throw Util.notExpected();
+      }
+      ibs[t].budget(budget);
     }
+    final IndexBuilders ib = new IndexBuilders(ibs, threads);
     if(cmd != null) cmd.proc(ib);
-    set(type, ib.build());
+    final ValueIndex[] indexes = ib.build();
+    for(int t = 0; t < tl; t++) set(types[t], indexes[t]);
   }
 
   @Override
@@ -218,8 +284,22 @@ public final class DiskData extends Data {
     }
   }
 
+  @Override
+  protected IdRuns openIdRuns() {
+    if(meta.idindex) {
+      try {
+        return new IdRuns(meta.dbfile(DATAIDR));
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    // runs will be stored on disk when the database is flushed or closed
+    return super.openIdRuns();
+  }
+
   @Override
   public void startUpdate(final MainOptions opts) throws IOException {
+    for(final DeltaValues dv : deltas()) dv.await();
     if(!table.lock(true)) throw new BaseXException(Text.DB_PINNED_X, meta.name);
     if(opts.get(MainOptions.AUTOFLUSH)) {
       final IOFile uf = meta.updateFile();
@@ -230,6 +310,15 @@ public final class DiskData extends Data {
 
   @Override
   public synchronized void finishUpdate(final MainOptions opts) {
+    // update ID->PRE lookup (db:optimize(..., true) will close the database before)
+    if(!closed) {
+      try {
+        compactIds(meta.dbfile(DATAIDB + DATATMP));
+      } catch(final IOException ex) {
+        Util.stack(ex);
+      }
+    }
+
     // remove updating file
     final boolean auto = opts.get(MainOptions.AUTOFLUSH);
     if(auto) {
@@ -242,7 +331,21 @@ public final class DiskData extends Data {
     if(!closed) {
       flush(auto);
       if(!table.lock(false)) throw Util.notExpected("Database '%': could not unlock.", meta.name);
+      // merge buffered index updates in the background
+      for(final DeltaValues dv : deltas()) dv.finish();
+    }
+  }
+
+  /**
+   * Returns the value indexes that buffer additions in main memory.
+   * @return indexes
+   */
+  private DeltaValues[] deltas() {
+    final ArrayList<DeltaValues> list = new ArrayList<>(2);
+    for(final ValueIndex index : new ValueIndex[] { textIndex, attrIndex }) {
+      if(index instanceof DeltaValues) list.add((DeltaValues) index);
     }
+    return list.toArray(new DeltaValues[list.size()]);
   }
 
   @Override
@@ -250,6 +353,7 @@ public final class DiskData extends Data {
     try {
       table.flush(all);
       if(all) {
+        writeIdRuns(meta.dbfile(DATAIDR));
         write();
         texts.flush();
         values.flush();
@@ -283,10 +387,10 @@ public final class DiskData extends Data {
   public int textLen(final int pre, final boolean text) {
     final long o = textOff(pre);
     if(number(o)) return numDigits((int) o);
-    final DataAccess da = text ? texts : values;
-    final int l = da.readNum(o & IO.OFFCOMP - 1);
+    final DataReader dr = (text ? texts : values).reader(o & IO.OFFCOMP - 1);
+    final int l = dr.readNum();
     // compressed: next number contains number of compressed bytes
-    return compressed(o) ? da.readNum() : l;
+    return compressed(o) ? dr.readNum() : l;
   }
 
   /**
@@ -296,7 +400,7 @@ public final class DiskData extends Data {
    * @return text
    */
   private byte[] txt(final long off, final boolean text) {
-    final byte[] txt = (text ? texts : values).readToken(off & IO.OFFCOMP - 1);
+    final byte[] txt = (text ? texts : values).reader(off & IO.OFFCOMP - 1).readToken();
     return compressed(off) ? COMPRESS.get().unpack(txt) : txt;
   }
 
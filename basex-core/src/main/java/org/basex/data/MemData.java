@@ -1,5 +1,7 @@
 package org.basex.data;
 
+import java.io.*;
+
 import org.basex.core.*;
 import org.basex.index.*;
 import org.basex.index.name.*;
@@ -98,7 +100,13 @@ public final class MemData extends Data {
   public void startUpdate(final MainOptions opts) { }
 
   @Override
-  public void finishUpdate(final MainOptions opts) { }
+  public void finishUpdate(final MainOptions opts) {
+    try {
+      compactIds(null);
+    } catch(final IOException ex) {
+      throw Util.notExpected(ex);
+    }
+  }
 
   @Override
   public void flush(final boolean all) { }
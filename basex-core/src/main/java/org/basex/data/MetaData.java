@@ -45,12 +45,18 @@ public final class MetaData {
   public volatile boolean updindex;
   /** Flag for automatic index updating. */
   public volatile boolean autoopt;
+  /** Flag for mapping the table into memory. */
+  public volatile boolean maptable;
   /** Indicates if a text index exists. */
   public volatile boolean textindex;
   /** Indicates if an attribute index exists. */
   public volatile boolean attrindex;
   /** Indicates if a full-text index exists. */
   public volatile boolean ftxtindex;
+  /** Indicates if the ID -> PRE runs are up-to-date. */
+  public volatile boolean idindex;
+  /** Indicates if additions to incremental indexes are buffered in main memory. */
+  public volatile boolean deltas;
   /** Indicates if text index is to be recreated. */
   public volatile boolean createtext;
   /** Indicates if attribute index is to be recreated. */
@@ -64,6 +70,8 @@ public final class MetaData {
   public volatile boolean casesens;
   /** Flag for full-text diacritics removal. */
   public volatile boolean diacritics;
+  /** Flag for full-text n-grams. */
+  public volatile boolean ftngrams;
   /** Full-text stopword file. */
   public volatile String stopwords = "";
 
@@ -71,6 +79,8 @@ public final class MetaData {
   public volatile int maxcats;
   /** Maximum token length. */
   public volatile int maxlen;
+  /** Maximum number of buffered additions to incremental indexes (not stored on disk). */
+  public volatile int indexdelta;
 
   /** Language of full-text search index. */
   public volatile Language language;
@@ -118,10 +128,13 @@ public final class MetaData {
     diacritics = options.get(MainOptions.DIACRITICS);
     stemming = options.get(MainOptions.STEMMING);
     casesens = options.get(MainOptions.CASESENS);
+    ftngrams = options.get(MainOptions.FTNGRAMS);
     updindex = options.get(MainOptions.UPDINDEX);
     autoopt = options.get(MainOptions.AUTOOPTIMIZE);
+    maptable = options.get(MainOptions.MAPTABLE);
     maxlen = options.get(MainOptions.MAXLEN);
     maxcats = options.get(MainOptions.MAXCATS);
+    indexdelta = options.get(MainOptions.INDEXDELTA);
     stopwords = options.get(MainOptions.STOPWORDS);
     language = Language.get(options);
   }
@@ -296,15 +309,19 @@ public final class MetaData {
         else if(k.equals(DBCHOP))     chop       = toBool(v);
         else if(k.equals(DBUPDIDX))   updindex   = toBool(v);
         else if(k.equals(DBAUTOOPT))  autoopt    = toBool(v);
+        else if(k.equals(DBMAPTBL))   maptable   = toBool(v);
         else if(k.equals(DBTXTIDX))   textindex  = toBool(v);
         else if(k.equals(DBATVIDX))   attrindex  = toBool(v);
         else if(k.equals(DBFTXIDX))   ftxtindex  = toBool(v);
+        else if(k.equals(DBIDIDX))    idindex    = toBool(v);
+        else if(k.equals(DBIDXDLT))   deltas     = toBool(v);
         else if(k.equals(DBCRTTXT))   createtext = toBool(v);
         else if(k.equals(DBCRTATV))   createattr = toBool(v);
         else if(k.equals(DBCRTFTX))   createftxt = toBool(v);
         else if(k.equals(DBWCIDX))    wcindex    = toBool(v);
         else if(k.equals(DBFTST))     stemming   = toBool(v);
         else if(k.equals(DBFTCS))     casesens   = toBool(v);
+        else if(k.equals(DBFTNG))     ftngrams   = toBool(v);
         else if(k.equals(DBUPTODATE)) uptodate   = toBool(v);
         // legacy: set up-to-date flag to false if path index does not exist
         else if(k.equals(DBPTHIDX) && !toBool(v)) uptodate = false;
@@ -320,6 +337,18 @@ public final class MetaData {
     corrupt = dbfile(DATAUPD).exists();
     // deactivate full-text index if obsolete trie structure was used
     if(wcindex) ftxtindex = false;
+    // deactivate value and full-text indexes with an obsolete posting list format
+    if(new Version(istorage).compareTo(new Version(ISTORAGE)) < 0) {
+      textindex = false;
+      attrindex = false;
+      ftxtindex = false;
+    }
+    // deactivate value indexes if buffered updates have not been written to disk
+    if(deltas) {
+      textindex = false;
+      attrindex = false;
+      deltas = false;
+    }
   }
 
   /**
@@ -339,15 +368,19 @@ public final class MetaData {
     writeInfo(out, DBCHOP,     chop);
     writeInfo(out, DBUPDIDX,   updindex);
     writeInfo(out, DBAUTOOPT,  autoopt);
+    writeInfo(out, DBMAPTBL,   maptable);
     writeInfo(out, DBTXTIDX,   textindex);
     writeInfo(out, DBATVIDX,   attrindex);
     writeInfo(out, DBFTXIDX,   ftxtindex);
+    writeInfo(out, DBIDIDX,    idindex);
+    writeInfo(out, DBIDXDLT,   deltas);
     writeInfo(out, DBCRTTXT,   createtext);
     writeInfo(out, DBCRTATV,   createattr);
     writeInfo(out, DBCRTFTX,   createftxt);
     writeInfo(out, DBFTST,     stemming);
     writeInfo(out, DBFTCS,     casesens);
     writeInfo(out, DBFTDC,     diacritics);
+    writeInfo(out, DBFTNG,     ftngrams);
     writeInfo(out, DBFTSW,     stopwords);
     writeInfo(out, DBMAXLEN,   maxlen);
     writeInfo(out, DBMAXCATS,  maxcats);
@@ -12,12 +12,22 @@ import org.basex.util.list.*;
 /**
  * ID -> PRE mapping.
  *
+ * The mapping records all inserts and deletes that have been performed since the
+ * database was created or since the mapping was compacted. Initially, the id of a node is
+ * identical to its pre value. A compacted mapping is based on the {@link IdRuns} of the
+ * database at the time of compaction, and the base ids are resolved via these runs.
+ *
  * @author BaseX Team 2005-15, BSD License
  * @author Dimitar Popov
  */
 public class IdPreMap {
   /** Invalid id-value. */
   private static final int INV = -1;
+  /** Minimum number of records before the mapping will be compacted. */
+  private static final int COMPACT = 1 << 12;
+
+  /** Base mapping ({@code null}: base ids are identical to the original pre values). */
+  private IdRuns base;
   /** Base ID value. */
   private int baseid;
   /** PRE values of the inserted/deleted IDs. */
@@ -47,12 +57,23 @@ public class IdPreMap {
     oids = new int[pres.length];
   }
 
+  /**
+   * Constructor for a compacted mapping.
+   * @param id last inserted ID
+   * @param base base mapping
+   */
+  public IdPreMap(final int id, final IdRuns base) {
+    this(id);
+    this.base = base;
+  }
+
   /**
    * Construct a map by reading it from a file.
    * @param f file to read from
+   * @param b file with the base mapping (only accessed if the mapping has been compacted)
    * @throws IOException I/O error while reading from the file
    */
-  public IdPreMap(final IOFile f) throws IOException {
+  public IdPreMap(final IOFile f, final IOFile b) throws IOException {
     try(final DataInput in = new DataInput(f)) {
       baseid = in.readNum();
       rows = in.readNum();
@@ -61,11 +82,13 @@ public class IdPreMap {
       nids = in.readNums();
       incs = in.readNums();
       oids = in.readNums();
+      // mappings of older versions have no base mapping
+      if(in.readBool()) base = new IdRuns(b);
     }
   }
 
   /**
-   * Write the map to the specified file.
+   * Write the map to the specified file. The base mapping is written by {@link #compact}.
    * @param file file to write to
    * @throws IOException I/O error while writing to the file
    */
@@ -78,28 +101,60 @@ public class IdPreMap {
       out.writeNums(nids);
       out.writeNums(incs);
       out.writeNums(oids);
+      out.writeBool(base != null);
     }
   }
 
+  /**
+   * Checks if the mapping should be compacted. This is the case if the number of records
+   * exceeds a minimum size and the number of runs of the base mapping.
+   * @return result of check
+   */
+  public boolean fragmented() {
+    return rows >= Math.max(COMPACT, base == null ? 0 : base.size());
+  }
+
+  /**
+   * Returns a compacted mapping that is based on the current runs of a database.
+   * Closes this mapping. The runs of the new mapping are kept in main memory.
+   * @param runs runs of the database
+   * @param id last inserted ID
+   * @param file file to which the base mapping will be written ({@code null}: main memory)
+   * @return new mapping
+   * @throws IOException I/O exception
+   */
+  public IdPreMap compact(final IdRuns runs, final int id, final IOFile file) throws IOException {
+    close();
+    if(file != null) runs.write(file);
+    return new IdPreMap(id, runs);
+  }
+
+  /**
+   * Closes the base mapping.
+   */
+  public void close() {
+    if(base != null) base.close();
+  }
   /**
    * Find the PRE value of a given ID.
    * @param id ID
    * @return PRE or -1 if the ID is already deleted
    */
   public int pre(final int id) {
-    // no updates or id is not affected by updates
-    if(rows == 0 || id < pres[0]) return id;
-
     if(id > baseid) {
+      if(rows == 0) return base == null ? id : -1;
       // id was inserted by update
       for(int i = 0; i < rows; ++i) {
         // if(fids[i] == id) return pres[i]; // is this optimization?
         if(fids[i] <= id && id <= nids[i]) return pres[i] + id - fids[i];
       }
     } else {
+      // no updates or id is not affected by updates
+      final int bp = basePre(id);
+      if(rows == 0 || bp < pres[0]) return bp;
       // id is affected by updates
-      final int i = sortedLastIndexOf(oids, id);
-      return id + incs[i < 0 ? -i - 2 : i];
+      final int i = sortedLastIndexOf(oids, bp);
+      return bp + incs[i < 0 ? -i - 2 : i];
     }
     return -1;
   }
@@ -124,7 +179,7 @@ public class IdPreMap {
    * @param c number of inserted records
    */
   public void insert(final int pre, final int id, final int c) {
-    if(rows == 0 && pre == id && id == baseid + 1) {
+    if(rows == 0 && base == null && pre == id && id == baseid + 1) {
       // no mapping and we append at the end => nothing to do
       baseid += c;
       return;
@@ -182,7 +237,7 @@ public class IdPreMap {
    * @param c number of deleted records
    */
   public void delete(final int pre, final int id, final int c) {
-    if(rows == 0 && pre == id && id - c == baseid + 1) {
+    if(rows == 0 && base == null && pre == id && id - c == baseid + 1) {
       // no mapping and we delete at the end => nothing to do
       baseid += c;
       return;
@@ -190,7 +245,7 @@ public class IdPreMap {
 
     if(rows == 0) {
       // no previous updates: add a new record
-      add(0, pre, INV, INV, c, id);
+      add(0, pre, INV, INV, c, basePre(id));
       return;
     }
 
@@ -216,7 +271,7 @@ public class IdPreMap {
       remove(removeStart, removeEnd);
     } else {
       inc = startIndex > 0 ? incs[startIndex - 1] : 0;
-      oid = id;
+      oid = basePre(id);
       endIndex = startIndex;
     }
 
@@ -292,6 +347,16 @@ public class IdPreMap {
     return rows;
   }
 
+  /**
+   * Returns the original pre value of an id that has been assigned before the mapping
+   * was created or compacted.
+   * @param id ID
+   * @return pre value
+   */
+  private int basePre(final int id) {
+    return base == null || id > baseid ? id : base.pre(id);
+  }
+
   /**
    * Search for a given pre value.
    * @param pre pre value
@@ -0,0 +1,168 @@
+package org.basex.index;
+
+import java.io.*;
+
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.out.DataOutput;
+import org.basex.io.random.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Compact ID -> PRE lookup. It is used for databases without updatable index structures,
+ * and as base mapping of compacted {@link IdPreMap} instances.
+ *
+ * The table is divided into runs of nodes with consecutive ids. As ids are assigned in
+ * ascending order, a database that has not been updated consists of a single run, and
+ * each update adds only a few runs. The runs are sorted by their first ids, so a pre value
+ * can be found via binary search. Runs that have been written to disk are accessed without
+ * loading them into main memory.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class IdRuns {
+  /** First ids of all runs (sorted; {@code null} if runs are accessed on disk). */
+  private final int[] ids;
+  /** First pre values of all runs. */
+  private final int[] pres;
+  /** Number of nodes of all runs. */
+  private final int[] sizes;
+  /** Runs on disk ({@code null} if runs are kept in main memory). */
+  private final DataAccess da;
+  /** Number of runs. */
+  private final int runs;
+
+  /**
+   * Constructor, scanning the ids of the specified database.
+   * @param data data reference
+   */
+  public IdRuns(final Data data) {
+    final IntList il = new IntList(), pl = new IntList(), sl = new IntList();
+    final int size = data.meta.size;
+    for(int pre = 0, last = -1; pre < size; pre++) {
+      final int id = data.id(pre);
+      if(pre != 0 && id == last + 1) {
+        sl.set(sl.size() - 1, sl.peek() + 1);
+      } else {
+        il.add(id);
+        pl.add(pre);
+        sl.add(1);
+      }
+      last = id;
+    }
+    ids = il.finish();
+    final int[] order = Array.createOrder(ids, true);
+    runs = order.length;
+    pres = new int[runs];
+    sizes = new int[runs];
+    for(int r = 0; r < runs; r++) {
+      pres[r] = pl.get(order[r]);
+      sizes[r] = sl.get(order[r]);
+    }
+    da = null;
+  }
+
+  /**
+   * Constructor, opening runs that have been written to disk.
+   * @param file file to read from
+   * @throws IOException I/O exception
+   */
+  public IdRuns(final IOFile file) throws IOException {
+    da = new DataAccess(file);
+    runs = da.read4(0);
+    ids = null;
+    pres = null;
+    sizes = null;
+  }
+
+  /**
+   * Writes the runs to the specified file. Format: number of runs, followed by the first ids,
+   * the first pre values and the sizes of all runs (4 bytes per value).
+   * @param file file to write to
+   * @throws IOException I/O exception
+   */
+  public void write(final IOFile file) throws IOException {
+    try(final DataOutput out = new DataOutput(file)) {
+      out.write4(runs);
+      for(int r = 0; r < runs; r++) out.write4(id(r));
+      for(int r = 0; r < runs; r++) out.write4(pre(r, 0));
+      for(int r = 0; r < runs; r++) out.write4(size(r));
+    }
+  }
+
+  /**
+   * Closes the file that is accessed by disk-based runs.
+   */
+  public void close() {
+    if(da != null) da.close();
+  }
+
+  /**
+   * Returns the pre value for the specified id.
+   * @param id unique node id
+   * @return pre value or {@code -1} if id was not found
+   */
+  public int pre(final int id) {
+    // find last run with a first id smaller than or equal to the specified id
+    int l = 0, h = runs - 1;
+    while(l <= h) {
+      final int m = l + h >>> 1;
+      if(id(m) <= id) l = m + 1;
+      else h = m - 1;
+    }
+    if(h < 0) return -1;
+    final int d = id - id(h);
+    return d < size(h) ? pre(h, d) : -1;
+  }
+
+  /**
+   * Returns the sorted pre values for the specified ids.
+   * @param nodes unique node ids
+   * @param off start offset
+   * @param len end offset
+   * @return sorted pre values
+   */
+  public int[] pre(final int[] nodes, final int off, final int len) {
+    final IntList il = new IntList(len - off);
+    for(int i = off; i < len; ++i) il.add(pre(nodes[i]));
+    return il.sort().finish();
+  }
+
+  /**
+   * Returns the number of runs.
+   * @return number of runs
+   */
+  public int size() {
+    return runs;
+  }
+
+  /**
+   * Returns the first id of the specified run.
+   * @param r run
+   * @return id
+   */
+  private int id(final int r) {
+    return da == null ? ids[r] : da.read4(4 + 4L * r);
+  }
+
+  /**
+   * Returns a pre value of the specified run.
+   * @param r run
+   * @param d offset to the first pre value
+   * @return pre value
+   */
+  private int pre(final int r, final int d) {
+    return (da == null ? pres[r] : da.read4(4 + 4L * (runs + r))) + d;
+  }
+
+  /**
+   * Returns the size of the specified run.
+   * @param r run
+   * @return size
+   */
+  private int size(final int r) {
+    return da == null ? sizes[r] : da.read4(4 + 4L * (2L * runs + r));
+  }
+}
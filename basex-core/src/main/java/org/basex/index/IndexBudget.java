@@ -0,0 +1,82 @@
+package org.basex.index;
+
+import static org.basex.core.Text.*;
+
+import org.basex.core.*;
+import org.basex.util.*;
+
+/**
+ * Memory budget of index builders, which may be shared by builders that run in parallel.
+ * If the budget is exhausted, all registered builders write their in-memory structures to
+ * disk before main memory consumption is checked again.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class IndexBudget {
+  /** Maximum memory to consume. */
+  private final long max = (long) (Runtime.getRuntime().maxMemory() * 0.8);
+
+  /** Number of registered builders. */
+  private int builders;
+  /** Number of builders that have not written their structures to disk yet. */
+  private int pending;
+  /** Number of times the budget has been exhausted. */
+  private int exhausted;
+  /** Threshold for freeing memory when estimating main memory consumption. */
+  private int gcCount;
+
+  /**
+   * Constructor.
+   */
+  public IndexBudget() {
+    if(Performance.memory() >= max) Performance.gc(1);
+  }
+
+  /**
+   * Registers a builder.
+   * @return current state, to be passed on to {@link #check(int)}
+   */
+  synchronized int register() {
+    builders++;
+    return exhausted;
+  }
+
+  /**
+   * Unregisters a builder.
+   * @param state last state of the builder
+   */
+  synchronized void unregister(final int state) {
+    builders--;
+    if(state != exhausted) pending--;
+  }
+
+  /**
+   * Checks if a builder must write its in-memory structures to disk. This is the case if
+   * the budget has been exhausted since the last check of the builder.
+   * @param state last state of the builder
+   * @return new state (differs from the old state if structures must be written)
+   * @throws BaseXException database exception
+   */
+  synchronized int check(final int state) throws BaseXException {
+    if(state != exhausted) {
+      pending--;
+      return exhausted;
+    }
+    // skip check until all other builders have written their structures
+    if(pending > 0) return state;
+
+    // stop operation if index splitting degenerates
+    int gc = gcCount;
+    if(Performance.memory() >= max) {
+      if(gc >= 0) throw new BaseXException(OUT_OF_MEM + H_OUT_OF_MEM);
+      gc = 30;
+      pending = builders - 1;
+      exhausted++;
+    } else {
+      gc = Math.max(-1, gc - 1);
+    }
+    gcCount = gc;
+    return exhausted;
+  }
+}
@@ -17,15 +17,18 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public abstract class IndexBuilder extends Proc {
+  /** Buffer size for sequentially reading and merging partial index files. */
+  public static final int MERGEBUFFER = 1 << 16;
+
   /** Data reference. */
   protected final Data data;
   /** Total parsing value. */
   protected final int size;
   /** Number of index operations to perform before writing a partial index to disk. */
-  private final int splitSize;
+  protected final int splitSize;
 
-  /** Maximum memory to consume. */
-  private final long maxMem = (long) (Runtime.getRuntime().maxMemory() * 0.8);
+  /** Memory budget. */
+  protected IndexBudget budget;
 
   /** Current pre value. */
   protected int pre;
@@ -33,8 +36,12 @@ public abstract class IndexBuilder extends Proc {
   protected long count;
   /** Number of partial index structures. */
   protected int splits;
-  /** Threshold for freeing memory when estimating main memory consumption. */
-  private int gcCount;
+  /** Number of bytes of merged partial index files. */
+  private long mergeSize;
+  /** Time needed for merging partial index files (nanoseconds). */
+  private long mergeTime;
+  /** State of the memory budget ({@code -1}: builder has not been registered yet). */
+  private int state = -1;
 
   /**
    * Constructor.
@@ -42,10 +49,29 @@ public abstract class IndexBuilder extends Proc {
    * @param max maximum number of operations per partial index
    */
   protected IndexBuilder(final Data data, final int max) {
+    this(data, max, data.meta.size);
+  }
+
+  /**
+   * Constructor.
+   * @param data reference
+   * @param max maximum number of operations per partial index
+   * @param size number of nodes to be indexed
+   */
+  protected IndexBuilder(final Data data, final int max, final int size) {
     this.data = data;
-    size = data.meta.size;
+    this.size = size;
     splitSize = max;
-    if(Performance.memory() >= maxMem) Performance.gc(1);
+  }
+
+  /**
+   * Assigns a memory budget, which may be shared with other builders.
+   * @param bdgt memory budget
+   * @return self reference
+   */
+  public final IndexBuilder budget(final IndexBudget bdgt) {
+    budget = bdgt;
+    return this;
   }
 
   /**
@@ -53,7 +79,21 @@ public abstract class IndexBuilder extends Proc {
    * @return index instance
    * @throws IOException I/O Exception
    */
-  public abstract ValueIndex build() throws IOException;
+  public final ValueIndex build() throws IOException {
+    if(budget == null) budget = new IndexBudget();
+    try {
+      return index();
+    } finally {
+      if(state != -1) budget.unregister(state);
+    }
+  }
+
+  /**
+   * Builds the index structure and returns an index instance.
+   * @return index instance (may be {@code null} if only a partial index is built)
+   * @throws IOException I/O Exception
+   */
+  protected abstract ValueIndex index() throws IOException;
 
   /**
    * Checks if the command was interrupted, and prints some debug output.
@@ -75,17 +115,11 @@ public abstract class IndexBuilder extends Proc {
     if(splitSize > 0) {
       split = count >= (splits + 1L) * splitSize;
     } else {
-      // if not, estimate how much main memory is left
-      split = Performance.memory() >= maxMem;
-      // stop operation if index splitting degenerates
-      int gc = gcCount;
-      if(split) {
-        if(gc >= 0) throw new BaseXException(OUT_OF_MEM + H_OUT_OF_MEM);
-        gc = 30;
-      } else {
-        gc = Math.max(-1, gc - 1);
-      }
-      gcCount = gc;
+      // if not, check if the memory budget has been exhausted
+      if(state == -1) state = budget.register();
+      final int st = budget.check(state);
+      split = st != state;
+      state = st;
     }
     if(split && Prop.debug) Util.err("|");
     return split;
@@ -99,15 +133,52 @@ public abstract class IndexBuilder extends Proc {
   }
 
   /**
-   * Prints some final debugging information.
-   * @param perf performance
+   * Returns the total size of the partial index files that will be merged.
+   * @param prefix file prefix
+   * @param suffixes file suffixes
+   * @return size in bytes
    */
-  protected final void finishIndex(final Performance perf) {
+  protected final long mergeSize(final String prefix, final char... suffixes) {
+    long sz = 0;
+    for(int s = 0; s < splits; s++) {
+      for(final char c : suffixes) sz += data.meta.dbfile(prefix + s + c).length();
+    }
+    return sz;
+  }
+
+  /**
+   * Registers the throughput of a merge of partial index files.
+   * @param bytes number of merged bytes
+   * @param perf performance, measured since the merge has been started
+   */
+  protected final void merged(final long bytes, final Performance perf) {
+    mergeSize += bytes;
+    mergeTime += perf.time();
+  }
+
+  /**
+   * Reports the throughput of merge operations to the info listener,
+   * and prints some final debugging information.
+   * @param type index type
+   * @param perf performance (only assigned in debug mode)
+   */
+  protected final void finishIndex(final IndexType type, final Performance perf) {
+    final long rate = mergeTime > 0 ? (long) (mergeSize * 1000000000d / mergeTime) : 0;
+    if(mergeTime > 0 && listen != null) {
+      listen.info(Util.info(INDEX_MERGED_X_X_X_X_X, type, splits,
+          Performance.format(mergeSize), Performance.getTime(mergeTime, 1),
+          Performance.format(rate)));
+    }
     if(!Prop.debug) return;
 
     final StringBuilder sb = new StringBuilder();
     if(splits > 1) sb.append(' ').append(splits).append(" splits,");
     sb.append(' ').append(count).append(" operations, ");
+    if(mergeTime > 0) {
+      sb.append("merged ").append(Performance.format(mergeSize)).append(" in ");
+      sb.append(Performance.getTime(mergeTime, 1)).append(" (");
+      sb.append(Performance.format(rate)).append("/s), ");
+    }
     sb.append(perf).append(" (").append(Performance.getMemory()).append(')');
     Util.errln(sb);
   }
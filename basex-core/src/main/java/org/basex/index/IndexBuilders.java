@@ -0,0 +1,122 @@
+package org.basex.index;
+
+import static org.basex.core.Text.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.index.value.*;
+import org.basex.util.*;
+
+/**
+ * This class runs several index builders, either sequentially or in parallel.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class IndexBuilders extends Proc {
+  /** Index builders. */
+  private final IndexBuilder[] builders;
+  /** Maximum number of threads. */
+  private final int threads;
+
+  /**
+   * Constructor.
+   * @param builders index builders
+   * @param threads maximum number of threads
+   */
+  public IndexBuilders(final IndexBuilder[] builders, final int threads) {
+    this.builders = builders;
+    this.threads = threads;
+  }
+
+  /**
+   * Runs all index builders and returns the index instances.
+   * @return index instances (in the order of the builders)
+   * @throws IOException I/O Exception
+   */
+  public ValueIndex[] build() throws IOException {
+    final int bl = builders.length;
+    final ValueIndex[] indexes = new ValueIndex[bl];
+    if(threads < 2 || bl < 2) {
+      for(int b = 0; b < bl; b++) indexes[b] = proc(builders[b]).build();
+      return indexes;
+    }
+
+    final ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, bl));
+    try {
+      final ArrayList<Future<ValueIndex>> futures = new ArrayList<>(bl);
+      for(final IndexBuilder builder : builders) {
+        builder.listen = listen;
+        futures.add(pool.submit(new Callable<ValueIndex>() {
+          @Override
+          public ValueIndex call() throws IOException {
+            return builder.build();
+          }
+        }));
+      }
+
+      // wait for all builders; stop remaining builders if an error occurs
+      Throwable error = null;
+      for(int b = 0; b < bl; b++) {
+        try {
+          indexes[b] = get(futures.get(b));
+        } catch(final ExecutionException ex) {
+          if(error == null) {
+            error = ex.getCause();
+            for(final IndexBuilder builder : builders) builder.stop();
+          }
+        }
+      }
+      if(error instanceof IOException) throw (IOException) error;
+      if(error instanceof RuntimeException) throw (RuntimeException) error;
+      if(error instanceof Error) throw (Error) error;
+      if(error != null) throw Util.notExpected(error);
+    } finally {
+      pool.shutdown();
+    }
+    return indexes;
+  }
+
+  /**
+   * Waits for the result of a builder. Stops all builders if this process is stopped.
+   * @param future future result
+   * @return index instance
+   * @throws ExecutionException execution exception
+   */
+  private ValueIndex get(final Future<ValueIndex> future) throws ExecutionException {
+    while(true) {
+      try {
+        return future.get(100, TimeUnit.MILLISECONDS);
+      } catch(final TimeoutException ex) {
+        try {
+          checkStop();
+        } catch(final ProcException e) {
+          for(final IndexBuilder builder : builders) builder.stop();
+        }
+      } catch(final InterruptedException ex) {
+        Util.debug(ex);
+        stop();
+      }
+    }
+  }
+
+  @Override
+  public String tit() {
+    return CREATING_INDEXES;
+  }
+
+  @Override
+  public String det() {
+    return builders.length == 1 ? builders[0].detail() : CREATING_INDEXES;
+  }
+
+  @Override
+  public double prog() {
+    double prog = 0;
+    for(final IndexBuilder builder : builders) prog += builder.prog();
+    return prog / builders.length;
+  }
+}
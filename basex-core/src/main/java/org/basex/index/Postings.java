@@ -0,0 +1,307 @@
+package org.basex.index;
+
+import org.basex.io.random.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * <p>This class encodes and decodes block-based posting lists, which are used by the value
+ * and full-text indexes. A list consists of sorted values (ids or pre values) and, optionally,
+ * a position for each value. The entries are divided into blocks of {@link #BLOCK} entries.
+ * All blocks, except for the last one, are preceded by a skip header, which allows
+ * iterators to skip blocks without decoding them:</p>
+ *
+ * <ul>
+ * <li>Skip header: {@code [last] [length]}<br/>
+ *   {@code last} is the distance between the last value of the block and the last value of
+ *   the previous block [{@link Num}].<br/>
+ *   {@code length} is the number of bytes of the block data [{@link Num}].</li>
+ * <li>Block data: {@code [first] [width] [deltas] ([pos] [width] [positions])}<br/>
+ *   {@code first} is the distance between the first value of the block and the last value of
+ *   the previous block [{@link Num}].<br/>
+ *   {@code width} is the number of bits of the bit-packed {@code deltas} [byte].<br/>
+ *   {@code deltas} are the distances between the remaining values of the block.<br/>
+ *   {@code pos} is the first position [{@link Num}], and {@code positions} are the
+ *   bit-packed remaining positions.<br/>
+ *   Widths and packed values are omitted if a block has a single entry.</li>
+ * </ul>
+ *
+ * <p>Instances of this class are iterators. They must not be shared by multiple threads.</p>
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class Postings {
+  /** Number of entries per block. */
+  public static final int BLOCK = 128;
+
+  /** Reader. */
+  private final DataReader reader;
+  /** Number of entries. */
+  private final int size;
+  /** Decoded values of the current block. */
+  private final int[] values = new int[BLOCK];
+  /** Decoded positions of the current block ({@code null} if no positions are stored). */
+  private final int[] positions;
+
+  /** Index of the first entry of the current block. */
+  private int start;
+  /** Number of entries of the current block. */
+  private int count;
+  /** Last value of the current block ({@link Integer#MAX_VALUE} for the last block). */
+  private int last;
+  /** Last value of the previous block. */
+  private int base;
+  /** File offset of the block data. */
+  private long data;
+  /** File offset of the next block. */
+  private long next;
+  /** Indicates if the current block has been decoded. */
+  private boolean decoded;
+  /** Cursor in the current block. */
+  private int cursor = -1;
+
+  /**
+   * Constructor.
+   * @param reader reader, pointing to the first block
+   * @param size number of entries
+   * @param pos positions are stored
+   */
+  public Postings(final DataReader reader, final int size, final boolean pos) {
+    this.reader = reader;
+    this.size = size;
+    positions = pos ? new int[BLOCK] : null;
+    next = reader.pos();
+  }
+
+  /**
+   * Moves the cursor to the next entry.
+   * @return {@code true} if an entry exists
+   */
+  public boolean more() {
+    if(cursor + 1 >= count && !block()) return false;
+    if(!decoded) decode();
+    cursor++;
+    return true;
+  }
+
+  /**
+   * Moves the cursor to the first entry with a value that is equal to or greater than the
+   * specified value. Blocks with smaller values are skipped without being decoded.
+   * @param value value
+   * @return {@code true} if an entry exists
+   */
+  public boolean advance(final int value) {
+    if(cursor >= 0 && cursor < count && values[cursor] >= value) return true;
+    // skip blocks with smaller values
+    while(cursor + 1 >= count || last < value) {
+      if(!block()) return false;
+    }
+    if(!decoded) decode();
+    // binary search in the current block
+    int l = cursor + 1, h = count - 1;
+    while(l < h) {
+      final int m = l + h >>> 1;
+      if(values[m] < value) l = m + 1;
+      else h = m;
+    }
+    cursor = l;
+    return values[l] >= value;
+  }
+
+  /**
+   * Returns the value of the current entry.
+   * @return value
+   */
+  public int value() {
+    return values[cursor];
+  }
+
+  /**
+   * Returns the position of the current entry.
+   * @return position
+   */
+  public int pos() {
+    return positions[cursor];
+  }
+
+  /**
+   * Returns the number of entries.
+   * @return number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Decodes all remaining entries. Afterwards, the reader points to the end of the list.
+   * @param vals list for values
+   * @param poss list for positions (can be {@code null})
+   */
+  public void read(final IntList vals, final IntList poss) {
+    while(cursor + 1 < count || block()) {
+      if(!decoded) decode();
+      for(int c = cursor + 1; c < count; c++) {
+        vals.add(values[c]);
+        if(poss != null) poss.add(positions[c]);
+      }
+      cursor = count - 1;
+    }
+  }
+
+  /**
+   * Returns the first value of a list.
+   * @param da data access
+   * @param offset file offset of the list
+   * @param size number of entries
+   * @return value
+   */
+  public static int first(final DataAccess da, final long offset, final int size) {
+    da.cursor(offset);
+    if(size > BLOCK) {
+      da.readNum();
+      da.readNum();
+    }
+    return da.readNum();
+  }
+
+  /**
+   * Encodes the specified entries.
+   * @param vals sorted values
+   * @param poss positions (can be {@code null})
+   * @param size number of entries
+   * @return encoded list
+   */
+  public static byte[] encode(final int[] vals, final int[] poss, final int size) {
+    final ByteList list = new ByteList(), block = new ByteList();
+    final int[] tmp = new int[BLOCK];
+    int base = 0;
+    for(int s = 0; s < size; s += BLOCK) {
+      final int e = Math.min(size, s + BLOCK);
+      block.reset();
+      num(block, vals[s] - base);
+      for(int v = s + 1; v < e; v++) tmp[v - s - 1] = vals[v] - vals[v - 1];
+      pack(block, tmp, e - s - 1);
+      if(poss != null) {
+        num(block, poss[s]);
+        System.arraycopy(poss, s + 1, tmp, 0, e - s - 1);
+        pack(block, tmp, e - s - 1);
+      }
+      // write skip header
+      if(e < size) {
+        num(list, vals[e - 1] - base);
+        num(list, block.size());
+      }
+      list.add(block.toArray());
+      base = vals[e - 1];
+    }
+    return list.finish();
+  }
+
+  /**
+   * Switches to the next block and reads its header.
+   * @return {@code true} if a block exists
+   */
+  private boolean block() {
+    final int s = start + count;
+    if(s >= size) return false;
+    base = last;
+    start = s;
+    count = Math.min(BLOCK, size - s);
+    reader.pos(next);
+    if(s + count < size) {
+      last = base + reader.readNum();
+      final int length = reader.readNum();
+      data = reader.pos();
+      next = data + length;
+    } else {
+      last = Integer.MAX_VALUE;
+      data = reader.pos();
+    }
+    decoded = false;
+    cursor = -1;
+    return true;
+  }
+
+  /**
+   * Decodes the current block.
+   */
+  private void decode() {
+    reader.pos(data);
+    final int c = count;
+    int v = base + reader.readNum();
+    values[0] = v;
+    unpack(values, c - 1);
+    for(int i = 1; i < c; i++) {
+      v += values[i];
+      values[i] = v;
+    }
+    if(positions != null) {
+      positions[0] = reader.readNum();
+      unpack(positions, c - 1);
+    }
+    decoded = true;
+  }
+
+  /**
+   * Reads bit-packed values.
+   * @param vals array to be filled, starting from the second entry
+   * @param n number of values
+   */
+  private void unpack(final int[] vals, final int n) {
+    if(n == 0) return;
+    final int w = reader.read1() & 0xFF;
+    if(w == 0) {
+      for(int i = 1; i <= n; i++) vals[i] = 0;
+      return;
+    }
+    final byte[] bytes = reader.readBytes((n * w + 7) >>> 3);
+    final long mask = (1L << w) - 1;
+    long acc = 0;
+    int bits = 0, b = 0;
+    for(int i = 1; i <= n; i++) {
+      while(bits < w) {
+        acc |= (long) (bytes[b++] & 0xFF) << bits;
+        bits += 8;
+      }
+      vals[i] = (int) (acc & mask);
+      acc >>>= w;
+      bits -= w;
+    }
+  }
+
+  /**
+   * Writes bit-packed values.
+   * @param list target list
+   * @param vals values
+   * @param n number of values
+   */
+  private static void pack(final ByteList list, final int[] vals, final int n) {
+    if(n == 0) return;
+    int or = 0;
+    for(int i = 0; i < n; i++) or |= vals[i];
+    final int w = 32 - Integer.numberOfLeadingZeros(or);
+    list.add(w);
+    long acc = 0;
+    int bits = 0;
+    for(int i = 0; i < n; i++) {
+      acc |= (vals[i] & 0xFFFFFFFFL) << bits;
+      bits += w;
+      while(bits >= 8) {
+        list.add((int) acc);
+        acc >>>= 8;
+        bits -= 8;
+      }
+    }
+    if(bits > 0) list.add((int) acc);
+  }
+
+  /**
+   * Writes a compressed number.
+   * @param list target list
+   * @param value value
+   */
+  private static void num(final ByteList list, final int value) {
+    list.add(Num.num(value));
+  }
+}
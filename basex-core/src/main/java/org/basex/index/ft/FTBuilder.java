@@ -5,13 +5,16 @@ import static org.basex.data.DataText.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
 import org.basex.index.*;
 import org.basex.io.out.DataOutput;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.ft.*;
+import org.basex.util.hash.*;
 import org.basex.util.list.*;
 
 /**
@@ -27,6 +30,12 @@ public final class FTBuilder extends IndexBuilder {
   private final FTLexer lex;
   /** Number of indexed tokens. */
   private long ntok;
+  /** N-grams and offsets of the tokens that contain them ({@code null} if not indexed). */
+  private TokenObjMap<IntList> ngrams;
+  /** Text lengths (assigned before the final index is written). */
+  private FTTop.Lengths lengths;
+  /** Number of texts with tokens. */
+  private int texts;
 
   /**
    * Constructor.
@@ -53,53 +62,66 @@ public final class FTBuilder extends IndexBuilder {
     lex = new FTLexer(fto);
   }
 
-  /**
-   * Extracts and indexes words from the specified data reference.
-   * @throws IOException I/O Exception
-   */
-  private void index() throws IOException {
+  @Override
+  protected FTIndex index() throws IOException {
     // delete old index
     abort();
 
     final Performance perf = Prop.debug ? new Performance() : null;
     Util.debug(det());
+    if(data.meta.ftngrams) ngrams = new TokenObjMap<>();
+
+    // write text lengths
+    long tokens = 0;
+    try(final DataOutput outL = new DataOutput(data.meta.dbfile(DATAFTX + 'l'))) {
+      for(pre = 0; pre < size; ++pre) {
+        if((pre & 0xFFFF) == 0) check();
+
+        final int k = data.kind(pre);
+        if(k != Data.TEXT) {
+          outL.write1(0);
+          continue;
+        }
 
-    for(pre = 0; pre < size; ++pre) {
-      if((pre & 0xFFFF) == 0) check();
-
-      final int k = data.kind(pre);
-      if(k != Data.TEXT) continue;
-
-      /* Current lexer position. */
-      final StopWords sw = lex.ftOpt().sw;
-      lex.init(data.text(pre, true));
-      int pos = -1;
-      while(lex.hasNext()) {
-        final byte[] tok = lex.nextToken();
-        ++pos;
-        // skip too long and stopword tokens
-        if(tok.length <= data.meta.maxlen && (sw.isEmpty() || !sw.contains(tok))) {
-          // check if main memory is exhausted
-          if((ntok++ & 0x0FFF) == 0 && split()) {
-            writeIndex(true);
-            finishSplit();
+        /* Current lexer position. */
+        final StopWords sw = lex.ftOpt().sw;
+        lex.init(data.text(pre, true));
+        int pos = -1;
+        while(lex.hasNext()) {
+          final byte[] tok = lex.nextToken();
+          ++pos;
+          // skip too long and stopword tokens
+          if(tok.length <= data.meta.maxlen && (sw.isEmpty() || !sw.contains(tok))) {
+            // check if main memory is exhausted
+            if((ntok++ & 0x0FFF) == 0 && split()) {
+              writeIndex(true);
+              finishSplit();
+            }
+            tree.index(tok, pre, pos, splits);
+            count++;
           }
-          tree.index(tok, pre, pos, splits);
-          count++;
+        }
+        outL.write1(FTTop.quantize(pos + 1));
+        if(pos != -1) {
+          texts++;
+          tokens += pos + 1;
         }
       }
+      outL.write4(texts);
+      outL.write5(tokens);
     }
 
     // finalize partial or all index structures
-    write(splits > 0);
+    try(final DataAccess inL = new DataAccess(data.meta.dbfile(DATAFTX + 'l'))) {
+      lengths = new FTTop.Lengths(inL.reader(0), texts == 0 ? 1 : (double) tokens / texts);
+      write(splits > 0);
+    } finally {
+      lengths = null;
+    }
+    if(ngrams != null) writeNGrams();
 
     data.meta.ftxtindex = true;
-    finishIndex(perf);
-  }
-
-  @Override
-  public FTIndex build() throws IOException {
-    index();
+    finishIndex(IndexType.FULLTEXT, perf);
     return new FTIndex(data);
   }
 
@@ -113,49 +135,60 @@ public final class FTBuilder extends IndexBuilder {
     if(!partial) return;
 
     // merges temporary index files
+    final Performance perf = new Performance();
+    final long bytes = mergeSize(DATAFTX, 'x', 'y', 'z');
     try(final DataOutput outX = new DataOutput(data.meta.dbfile(DATAFTX + 'x'));
-        final DataOutput outY = new DataOutput(data.meta.dbfile(DATAFTX + 'y'));
-        final DataOutput outZ = new DataOutput(data.meta.dbfile(DATAFTX + 'z'))) {
+        final DataOutput outY = new DataOutput(data.meta.dbfile(DATAFTX + 'y'), MERGEBUFFER);
+        final DataOutput outZ = new DataOutput(data.meta.dbfile(DATAFTX + 'z'), MERGEBUFFER)) {
 
       final IntList ind = new IntList();
 
-      // open all temporary sorted lists
-      final FTList[] v = new FTList[splits];
-      for(int b = 0; b < splits; ++b) v[b] = new FTList(data, b);
+      // open all temporary sorted lists, ordered by token length, tokens and merge ids
+      final MinHeap<FTList, FTList> heap = new MinHeap<>(splits, new Comparator<FTList>() {
+        @Override
+        public int compare(final FTList l1, final FTList l2) {
+          int d = l1.tok.length - l2.tok.length;
+          if(d == 0) d = diff(l1.tok, l2.tok);
+          return d != 0 ? d : l1.id - l2.id;
+        }
+      });
+      for(int b = 0; b < splits; ++b) add(heap, new FTList(data, b));
+
+      final ArrayList<FTList> ml = new ArrayList<>();
+      while(!heap.isEmpty()) {
+        checkStop();
 
-      final IntList il = new IntList();
-      while(check(v)) {
-        il.reset();
-        int m = 0;
-        il.add(m);
         // find next token to write on disk
-        for(int i = 0; i < splits; ++i) {
-          if(m == i || v[i].tok.length == 0) continue;
-          final int l = v[i].tok.length - v[m].tok.length;
-          final int d = diff(v[m].tok, v[i].tok);
-          if(l < 0 || l == 0 && d > 0 || v[m].tok.length == 0) {
-            m = i;
-            il.reset();
-            il.add(m);
-          } else if(d == 0 && v[i].tok.length > 0) {
-            il.add(i);
-          }
-        }
+        final FTList min = heap.removeMin();
+        ml.add(min);
+        while(!heap.isEmpty() && eq(heap.peek().tok, min.tok)) ml.add(heap.removeMin());
 
-        if(ind.isEmpty() || ind.get(ind.size() - 2) < v[m].tok.length) {
-          ind.add(v[m].tok.length);
+        final byte[] tok = min.tok;
+        if(ind.isEmpty() || ind.get(ind.size() - 2) < tok.length) {
+          ind.add(tok.length);
           ind.add((int) outY.size());
         }
 
         // write token
-        outY.writeBytes(v[m].tok);
-        // pointer on full-text data
-        outY.write5(outZ.size());
-        // merge and write data size
-        outY.write4(merge(outZ, il, v));
+        ngrams(tok, (int) outY.size());
+        outY.writeBytes(tok);
+        // merge and write full-text data
+        merge(outY, outZ, ml);
+        for(final FTList l : ml) add(heap, l);
+        ml.clear();
       }
       writeInd(outX, ind, ind.get(ind.size() - 2) + 1, (int) outY.size());
     }
+    merged(bytes, perf);
+  }
+
+  /**
+   * Adds a sorted list to the heap if it is not completely parsed yet.
+   * @param heap heap
+   * @param list sorted list
+   */
+  private static void add(final MinHeap<FTList, FTList> heap, final FTList list) {
+    if(list.tok.length != 0) heap.insert(list, list);
   }
 
   /**
@@ -206,13 +239,17 @@ public final class FTBuilder extends IndexBuilder {
           ind.add(j);
           ind.add(tr);
         }
+        if(!partial) ngrams(key, tr);
         for(int i = 0; i < j; ++i) outY.write1(key[i]);
-        // write pointer on full-text data
-        outY.write5(dr);
-        // write full-text data size (number of pre values)
-        outY.write4(t.nextNumPre());
-        // write compressed pre and pos arrays
-        writeFTData(outZ, t.nextPres(), t.nextPoss());
+        if(partial) {
+          // write pointer on full-text data and data size (number of pre values)
+          outY.write5(dr);
+          outY.write4(t.nextNumPre());
+          // write compressed pre and pos arrays
+          writeFTData(outZ, t.nextPres(), t.nextPoss());
+        } else {
+          writePostings(outY, outZ, t.nextPres(), t.nextPoss());
+        }
 
         dr = outZ.size();
         tr = (int) outY.size();
@@ -225,44 +262,132 @@ public final class FTBuilder extends IndexBuilder {
     splits++;
   }
 
+  /**
+   * Assigns the offset of a token to all of its n-grams.
+   * @param token token
+   * @param offset offset of the token
+   */
+  private void ngrams(final byte[] token, final int offset) {
+    if(ngrams == null) return;
+    final int tl = token.length - FTIndex.NGRAM;
+    for(int t = 0; t <= tl; t++) {
+      final byte[] ngram = Arrays.copyOfRange(token, t, t + FTIndex.NGRAM);
+      IntList offsets = ngrams.get(ngram);
+      if(offsets == null) {
+        offsets = new IntList(1);
+        ngrams.put(ngram, offsets);
+      } else if(offsets.peek() == offset) {
+        continue;
+      }
+      offsets.add(offset);
+    }
+  }
+
+  /**
+   * Writes the n-gram index to disk.<br/>
+   * Format: {@code count [n-gram pointer]... [size offset-diff1 offset-diff2 ...]...}
+   * @throws IOException I/O exception
+   */
+  private void writeNGrams() throws IOException {
+    final TokenList keys = new TokenList(ngrams.size());
+    for(final byte[] key : ngrams) keys.add(key);
+    keys.sort(true);
+
+    final int ks = keys.size();
+    try(final DataOutput out = new DataOutput(data.meta.dbfile(DATAFTX + 'n'))) {
+      out.write4(ks);
+      long off = 4 + (long) ks * (FTIndex.NGRAM + 5);
+      for(final byte[] key : keys) {
+        out.writeBytes(key);
+        out.write5(off);
+        final IntList offsets = ngrams.get(key);
+        final int os = offsets.size();
+        off += Num.length(os);
+        for(int o = 0, c = 0; o < os; o++) {
+          final int v = offsets.get(o);
+          off += Num.length(v - c);
+          c = v;
+        }
+      }
+      for(final byte[] key : keys) out.writeDiffs(ngrams.get(key));
+    }
+    ngrams = null;
+  }
+
   /**
    * Merges temporary indexes for the current token.
-   * @param out full-text data
-   * @param il array mapping
-   * @param v full-text list
-   * @return written size
+   * @param outY index entries
+   * @param outZ full-text data
+   * @param lists sorted lists with the current token, ordered by their merge ids
    * @throws IOException I/O exception
    */
-  private static int merge(final DataOutput out, final IntList il, final FTList[] v)
-      throws IOException {
+  private void merge(final DataOutput outY, final DataOutput outZ,
+      final ArrayList<FTList> lists) throws IOException {
 
-    final TokenBuilder tbp = new TokenBuilder();
-    final TokenBuilder tbo = new TokenBuilder();
-    tbp.add(new byte[4]);
-    tbo.add(new byte[4]);
     // merge full-text data of all sorted lists with the same token
-    int s = 0;
-    final int is = il.size();
-    for(int j = 0; j < is; ++j) {
-      final int m = il.get(j);
-      for(final int p : v[m].prv) tbp.add(Num.num(p));
-      for(final int p : v[m].pov) tbo.add(Num.num(p));
-      s += v[m].size;
-      v[m].next();
+    final IntList pr = new IntList(), ps = new IntList();
+    for(final FTList l : lists) {
+      pr.add(l.prv);
+      ps.add(l.pov);
+      l.next();
     }
-    // write compressed pre and pos arrays
-    final byte[] pr = tbp.finish();
-    Num.size(pr, pr.length);
-    final byte[] po = tbo.finish();
-    Num.size(po, po.length);
-
-    // write full-text data
-    writeFTData(out, pr, po);
-    return s;
+    writeEntry(outY, outZ, pr, ps);
   }
 
   /**
-   * Writes full-text data for a single token to disk.<br/>
+   * Writes the postings of a single token to disk.
+   * @param outY index entries
+   * @param outZ full-text data
+   * @param vpre compressed pre values
+   * @param vpos compressed pos values
+   * @throws IOException IOException
+   */
+  private void writePostings(final DataOutput outY, final DataOutput outZ, final byte[] vpre,
+      final byte[] vpos) throws IOException {
+
+    final IntList pr = new IntList(), ps = new IntList();
+    final int ns = Num.size(vpre);
+    for(int np = 4, pp = 4; np < ns; np += Num.length(vpre, np), pp += Num.length(vpos, pp)) {
+      pr.add(Num.get(vpre, np));
+      ps.add(Num.get(vpos, pp));
+    }
+    writeEntry(outY, outZ, pr, ps);
+  }
+
+  /**
+   * Writes the remaining index entry and the postings of a single token to disk.
+   * Besides the pointer and the number of postings, the entry contains the number of texts
+   * with the token and its maximum BM25 score, which are used for ranking results.
+   * @param outY index entries
+   * @param outZ full-text data
+   * @param pr sorted pre values
+   * @param ps positions
+   * @throws IOException IOException
+   */
+  private void writeEntry(final DataOutput outY, final DataOutput outZ, final IntList pr,
+      final IntList ps) throws IOException {
+
+    final int s = pr.size();
+    final int[] pres = pr.finish();
+    int txts = 0;
+    double max = 0;
+    for(int p = 0; p < s;) {
+      final int pre = pres[p];
+      int freq = 0;
+      for(; p < s && pres[p] == pre; p++) freq++;
+      max = Math.max(max, Scoring.bm25(1, freq, lengths.get(pre), 1));
+      txts++;
+    }
+    outY.write5(outZ.size());
+    outY.write4(s);
+    outY.write4(txts);
+    // round up to get an upper bound of the computed scores
+    outY.write4(Float.floatToIntBits(Math.nextUp((float) (max * Scoring.idf(txts, texts)))));
+    outZ.writeBytes(Postings.encode(pres, ps.finish(), s));
+  }
+
+  /**
+   * Writes temporary full-text data for a single token to disk.<br/>
    * Format: {@code score? pre1 pos1 pre2 pos2 ... (0 score)? pre...}
    * @param out DataOutput for disk access
    * @param vpre compressed pre values
@@ -282,16 +407,6 @@ public final class FTBuilder extends IndexBuilder {
     }
   }
 
-  /**
-   * Checks if any unprocessed pre values are remaining.
-   * @param lists lists
-   * @return boolean
-   */
-  private static boolean check(final FTList[] lists) {
-    for(final FTList l : lists) if(l.tok.length > 0) return true;
-    return false;
-  }
-
   @Override
   protected void abort() {
     data.meta.drop(DATAFTX + ".*");
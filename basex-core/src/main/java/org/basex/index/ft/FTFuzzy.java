@@ -0,0 +1,104 @@
+package org.basex.index.ft;
+
+import static org.basex.util.FTToken.*;
+import static org.basex.util.Token.*;
+
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * <p>Levenshtein automaton for fuzzy index lookups. The distance matrix is computed
+ * row by row, i.e., character by character of the index token. As a row only depends on
+ * the characters of the token prefix, the rows of a common prefix can be reused when the
+ * tokens of a sorted dictionary are traversed, and a prefix that cannot lead to a match
+ * will be detected as soon as it has been read.</p>
+ *
+ * <p>Distances and limits are computed in the same way as by {@link Levenshtein}.
+ * In contrast to the latter class, an instance is used by a single index request.</p>
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+final class FTFuzzy {
+  /** Maximum token size. */
+  private static final int MAX = 50;
+
+  /** Normalized characters of the query token. */
+  private final int[] query;
+  /** Characters of the current prefix of the index token. */
+  private final int[] chars;
+  /** Matrix rows: distances after the first characters of the index token. */
+  private final int[][] rows;
+  /** Maximum number of accepted errors. */
+  private final int k;
+  /** Exact search. */
+  private final boolean exact;
+
+  /**
+   * Constructor.
+   * @param token query token
+   * @param err number of allowed errors; dynamic calculation if value is 0
+   */
+  FTFuzzy(final byte[] token, final int err) {
+    final IntList cps = new IntList();
+    final int tl = token.length;
+    for(int t = 0; t < tl; t += cl(token, t)) cps.add(noDiacritics(lc(cp(token, t))));
+    query = cps.finish();
+
+    // use exact search for too short and too long values
+    final int ql = query.length;
+    exact = err == 0 && ql < 4 || ql > MAX;
+    k = exact ? 0 : err == 0 ? Math.max(1, ql >> 2) : err;
+    chars = new int[Math.max(ql, MAX)];
+    rows = new int[MAX + 1][];
+    if(!exact) {
+      for(int r = 0; r <= MAX; r++) {
+        final int[] row = new int[ql + 1];
+        row[0] = r;
+        rows[r] = row;
+      }
+      for(int q = 0; q <= ql; q++) rows[0][q] = q;
+    }
+  }
+
+  /**
+   * Consumes the next character of the index token.
+   * @param c number of preceding characters
+   * @param cp character
+   * @return {@code true} if the resulting prefix may lead to a match
+   */
+  boolean next(final int c, final int cp) {
+    final int e = noDiacritics(lc(cp)), ql = query.length;
+    if(exact) {
+      if(c >= ql || e != query[c]) return false;
+      chars[c] = e;
+      return true;
+    }
+    if(c >= MAX) return false;
+
+    final int e2 = c == 0 ? -1 : chars[c - 1];
+    final int[] prev = rows[c], row = rows[c + 1];
+    int f2 = c == 0 ? -1 : query[ql - 1], d = Integer.MAX_VALUE;
+    for(int q = 0; q < ql; q++) {
+      final int f = query[q];
+      int v = Math.min(Math.min(prev[q + 1] + 1, row[q] + 1), prev[q] + (e == f ? 0 : 1));
+      if(e == f2 && f == e2) v = prev[q];
+      row[q + 1] = v;
+      if(v < d) d = v;
+      f2 = f;
+    }
+    chars[c] = e;
+    return d <= k;
+  }
+
+  /**
+   * Checks if an index token with the specified number of consumed characters is similar
+   * to the query token.
+   * @param c number of characters
+   * @return result of check
+   */
+  boolean matches(final int c) {
+    final int ql = query.length;
+    return c != 0 && (exact ? c == ql : Math.abs(c - ql) <= k && rows[c][ql] <= k);
+  }
+}
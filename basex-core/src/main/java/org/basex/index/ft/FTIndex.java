@@ -6,6 +6,7 @@ import static org.basex.util.Token.*;
 import static org.basex.util.ft.FTFlag.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -13,6 +14,7 @@ import org.basex.index.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
 import org.basex.index.value.*;
+import org.basex.io.*;
 import org.basex.io.random.*;
 import org.basex.query.expr.ft.*;
 import org.basex.query.util.ft.*;
@@ -35,27 +37,44 @@ import org.basex.util.list.*;
  * {@code p} is the pointer of the first token with length {@code l} [int].
  * </li>
  * <li>File <b>y</b> contains the tokens and references:<br/>
- * Structure: {@code [t0, t1, ... tl, z, s]}<br/>
+ * Structure: {@code [t0, t1, ... tl, z, s, d, m]}<br/>
  * {@code t0, t1, ... tl-1} is the token [byte[l]]<br/>
  * {@code z} is the pointer on the data entries of the token [long]<br/>
- * {@code s} is the number of pre values, saved in data [int]
+ * {@code s} is the number of pre values, saved in data [int]<br/>
+ * {@code d} is the number of distinct pre values [int]<br/>
+ * {@code m} is the maximum BM25 score of the token, rounded up [float]
+ * </li>
+ * <li>File <b>z</b> contains the {@code pre/pos} references of each token, which are stored
+ *   as {@link Postings} with positions. The pre values are ordered, but not distinct.</li>
+ * <li>File <b>n</b> is optional (see {@link MainOptions#FTNGRAMS}) and contains the
+ *   offsets of all tokens in <b>y</b> that contain a specific n-gram:<br/>
+ *   Structure: {@code c [g, p] ... [s, o1, o2, ...] ...}<br/>
+ *   {@code c} is the number of n-grams [int].<br/>
+ *   {@code g} is the n-gram [byte[{@link #NGRAM}]].<br/>
+ *   {@code p} is the pointer on the offsets of the n-gram [long].<br/>
+ *   {@code s} is the number of offsets, and {@code o1, o2, ...} are the distances between
+ *   the sorted offsets [{@link Num}].
+ * </li>
+ * <li>File <b>l</b> contains the quantized number of tokens of each text node, which is
+ *   used for ranking results:<br/>
+ *   Structure: {@code l0, l1, ... t, n}<br/>
+ *   {@code l0, l1, ...} is the quantized length of the node with the given pre value [byte].<br/>
+ *   {@code t} is the number of texts with tokens [int].<br/>
+ *   {@code n} is the total number of tokens [long].
  * </li>
- * <li>File <b>z</b> contains the {@code id/pos} references.
- *   The values are ordered, but not distinct:<br/>
- *   {@code pre1/pos1, pre2/pos2, pre3/pos3, ...} [{@link Num}]</li>
  * </ul>
  *
  * @author BaseX Team 2005-15, BSD License
  * @author Christian Gruen
  */
 public final class FTIndex implements ValueIndex {
+  /** Length of indexed n-grams. */
+  static final int NGRAM = 3;
   /** Entry size. */
-  private static final int ENTRY = 9;
+  private static final int ENTRY = 17;
 
   /** Cached texts. Increases used memory, but speeds up repeated queries. */
   private final IntObjMap<byte[]> ctext = new IntObjMap<>();
-  /** Levenshtein reference. */
-  private final Levenshtein ls = new Levenshtein();
   /** Data reference. */
   private final Data data;
 
@@ -66,6 +85,16 @@ public final class FTIndex implements ValueIndex {
   private final DataAccess inY;
   /** Storing pre and pos values for each token. */
   private final DataAccess inZ;
+  /** Storing the token offsets for each n-gram ({@code null} if n-grams are not indexed). */
+  private final DataAccess inN;
+  /** Number of n-grams. */
+  private final int ngrams;
+  /** Storing the text lengths ({@code null} if not available). */
+  private final DataAccess inL;
+  /** Number of texts with tokens. */
+  private final int texts;
+  /** Average number of tokens per text. */
+  private final double avg;
 
   /** Cache for number of hits and data reference per token. */
   private final IndexCache cache = new IndexCache();
@@ -102,6 +131,21 @@ public final class FTIndex implements ValueIndex {
       tp[p] = r;
     }
     tp[tl - 1] = (int) inY.length();
+
+    final IOFile file = data.meta.dbfile(DATAFTX + 'n');
+    inN = data.meta.ftngrams && file.exists() ? new DataAccess(file) : null;
+    ngrams = inN != null ? inN.read4(0) : 0;
+
+    final IOFile lfile = data.meta.dbfile(DATAFTX + 'l');
+    inL = lfile.exists() ? new DataAccess(lfile) : null;
+    if(inL != null) {
+      final long ll = inL.length() - 9;
+      texts = inL.read4(ll);
+      avg = texts == 0 ? 1 : (double) inL.read5(ll + 4) / texts;
+    } else {
+      texts = data.meta.size;
+      avg = 1;
+    }
   }
 
   @Override
@@ -117,7 +161,7 @@ public final class FTIndex implements ValueIndex {
   }
 
   @Override
-  public synchronized IndexIterator iter(final IndexToken it) {
+  public IndexIterator iter(final IndexToken it) {
     final byte[] tok = it.get();
 
     // wildcard search
@@ -128,11 +172,41 @@ public final class FTIndex implements ValueIndex {
     // fuzzy search
     if(opt.is(FZ)) return fuzzy(tok, lexer.lserror(tok));
 
-    // return cached or new result
-    final IndexEntry e = entry(tok);
+    // return cached or new result (postings are read without locking)
+    final IndexEntry e;
+    synchronized(this) {
+      e = entry(tok);
+    }
     return e.size > 0 ? iter(e.offset, e.size, inZ, tok) : FTIndexIterator.FTEMPTY;
   }
 
+  /**
+   * Returns the pre values of the text nodes with the highest BM25 scores for the specified
+   * tokens (see {@link FTTop} for more details).
+   * @param tokens normalized tokens
+   * @param all all tokens must be found
+   * @param k maximum number of results
+   * @return results
+   */
+  public FTTop top(final TokenList tokens, final boolean all, final int k) {
+    final ArrayList<FTTop.Term> terms = new ArrayList<>();
+    for(final byte[] token : new TokenSet(tokens.toArray())) {
+      if(token == null) continue;
+      // postings are read without locking
+      final FTTop.Term term;
+      synchronized(this) {
+        final long p = token(token);
+        final int tl = token.length;
+        term = p == -1 ? null : new FTTop.Term(new Postings(inZ.reader(pointer(p, tl)),
+            size(p, tl), true), texts(p, tl), max(p, tl), texts);
+      }
+      if(term != null) terms.add(term);
+      else if(all) return new FTTop(0);
+    }
+    final FTTop.Lengths lengths = new FTTop.Lengths(inL != null ? inL.reader(0) : null, avg);
+    return new FTTop(k).compute(terms.toArray(new FTTop.Term[terms.size()]), all, lengths);
+  }
+
   /**
    * Returns a cache entry.
    * @param token token to be found or cached
@@ -221,7 +295,8 @@ public final class FTIndex implements ValueIndex {
   @Override
   public synchronized byte[] info(final MainOptions options) {
     final TokenBuilder tb = new TokenBuilder();
-    final long l = inX.length() + inY.length() + inZ.length();
+    final long l = inX.length() + inY.length() + inZ.length() +
+        (inN != null ? inN.length() : 0) + (inL != null ? inL.length() : 0);
     tb.add(LI_SIZE + Performance.format(l, true) + NL);
 
     final IndexStats stats = new IndexStats(options.get(MainOptions.MAXSTAT));
@@ -240,6 +315,8 @@ public final class FTIndex implements ValueIndex {
     inX.close();
     inY.close();
     inZ.close();
+    if(inN != null) inN.close();
+    if(inL != null) inL.close();
   }
 
   /**
@@ -313,14 +390,38 @@ public final class FTIndex implements ValueIndex {
     return inY.read4(pt + lt + 5);
   }
 
+  /**
+   * Gets the number of texts that contain the token.
+   * @param pt pointer on token
+   * @param lt length of the token
+   * @return number of texts
+   */
+  private int texts(final long pt, final int lt) {
+    return inY.read4(pt + lt + 9);
+  }
+
+  /**
+   * Gets the maximum score of the token.
+   * @param pt pointer on token
+   * @param lt length of the token
+   * @return maximum score
+   */
+  private double max(final long pt, final int lt) {
+    return Float.intBitsToFloat(inY.read4(pt + lt + 13));
+  }
+
   /**
    * Performs a fuzzy search for the specified token with a maximum number of errors.
+   * The sorted tokens of each length group are traversed by a Levenshtein automaton:
+   * the computed distances of a common prefix are reused, and all tokens that start with a
+   * prefix which cannot lead to a match are skipped. Entries are read without locking.
    * @param token token to look for
    * @param k number of errors allowed
    * @return iterator
    */
-  private synchronized IndexIterator fuzzy(final byte[] token, final int k) {
-    FTIndexIterator it = FTIndexIterator.FTEMPTY;
+  private IndexIterator fuzzy(final byte[] token, final int k) {
+    final FTFuzzy fuzzy = new FTFuzzy(token, k);
+    final IntList pr = new IntList(), ps = new IntList();
     final int tokl = token.length, tl = tp.length;
     final int e = Math.min(tl - 1, tokl + k);
     int s = Math.max(1, tokl - k) - 1;
@@ -330,14 +431,66 @@ public final class FTIndex implements ValueIndex {
       if(p == -1) continue;
       int t = s + 1, r = -1;
       while(t < tl && r == -1) r = tp[t++];
+
+      final DataReader dr = inY.reader(p);
+      byte[] last = null;
+      int valid = 0;
       while(p < r) {
-        if(ls.similar(inY.readBytes(p, s), token, k)) {
-          it = FTIndexIterator.union(iter(pointer(p, s), size(p, s), inZ, token), it);
+        final byte[] tok = dr.readBytes(s);
+        final long off = dr.read5();
+        final int size = dr.read4();
+
+        // reuse the distances of the characters shared with the previous token
+        int b = 0;
+        if(last != null) while(b < s && tok[b] == last[b]) b++;
+        int o = 0, c = 0;
+        while(c < valid && o + cl(tok, o) <= b) {
+          o += cl(tok, o);
+          c++;
+        }
+        while(o < s && fuzzy.next(c, cp(tok, o))) {
+          o += cl(tok, o);
+          c++;
+        }
+        valid = c;
+        last = tok;
+
+        if(o < s) {
+          // skip all tokens with the same prefix
+          p = skip(tok, o + cl(tok, o), p + s + ENTRY, r, s);
+          dr.pos(p);
+        } else {
+          if(fuzzy.matches(c)) postings(off, size, pr, ps);
+          p += s + ENTRY;
+          dr.pos(p);
         }
-        p += s + ENTRY;
       }
     }
-    return it;
+    return iter(new FTCache(pr, ps), token);
+  }
+
+  /**
+   * Returns the position of the first entry whose token does not start with the specified
+   * prefix. Entries are read without locking.
+   * @param token token
+   * @param pl length of the prefix
+   * @param start start position
+   * @param end end position
+   * @param ti entry length
+   * @return position
+   */
+  private int skip(final byte[] token, final int pl, final int start, final int end,
+      final int ti) {
+    final byte[] prefix = Arrays.copyOf(token, pl);
+    final DataReader dr = inY.reader(start);
+    final int tl = ti + ENTRY;
+    int l = 0, h = (end - start) / tl - 1;
+    while(l <= h) {
+      final int m = l + h >>> 1;
+      if(diff(dr.pos(start + m * tl).readBytes(pl), prefix) <= 0) l = m + 1;
+      else h = m - 1;
+    }
+    return start + l * tl;
   }
 
   /**
@@ -355,6 +508,27 @@ public final class FTIndex implements ValueIndex {
     final byte[] pref = wc.prefix();
     final int pl = pref.length, tl = tp.length;
     final int l = Math.min(tl - 1, wc.max());
+
+    // leading wildcard: choose candidates via the n-gram index
+    final IntList offsets = pl < NGRAM ? ngrams(wc.literals()) : null;
+    if(offsets != null) {
+      final int os = offsets.size();
+      for(int o = 0, ti = 0, e = 0; o < os; o++) {
+        final int i = offsets.get(o);
+        // find length of token
+        while(e <= i) {
+          if(tp[++ti] == -1) continue;
+          int c = ti + 1;
+          e = -1;
+          while(c < tl && e == -1) e = tp[c++];
+        }
+        if(ti > l) break;
+        final DataReader dr = inY.reader(i);
+        if(wc.match(dr.readBytes(ti))) postings(dr.read5(), dr.read4(), pr, ps);
+      }
+      return iter(new FTCache(pr, ps), token);
+    }
+
     for(int ti = pl; ti <= l; ti++) {
       int i = tp[ti];
       if(i == -1) continue;
@@ -366,14 +540,7 @@ public final class FTIndex implements ValueIndex {
       while(i < e) {
         final byte[] t = inY.readBytes(i, ti);
         if(!startsWith(t, pref)) break;
-        if(wc.match(t)) {
-          inZ.cursor(pointer(i, ti));
-          final int s = size(i, ti);
-          for(int d = 0; d < s; d++) {
-            pr.add(inZ.readNum());
-            ps.add(inZ.readNum());
-          }
-        }
+        if(wc.match(t)) postings(pointer(i, ti), size(i, ti), pr, ps);
         i += ti + ENTRY;
       }
     }
@@ -381,7 +548,86 @@ public final class FTIndex implements ValueIndex {
   }
 
   /**
-   * Returns an iterator for an index entry.
+   * Returns the sorted offsets of all tokens that contain the n-grams of the specified
+   * strings.
+   * @param strings strings
+   * @return offsets, or {@code null} if no n-grams are available
+   */
+  private IntList ngrams(final TokenList strings) {
+    if(inN == null) return null;
+    IntList offsets = null;
+    for(final byte[] string : strings) {
+      final int sl = string.length - NGRAM;
+      for(int s = 0; s <= sl; s++) {
+        final IntList list = ngram(Arrays.copyOfRange(string, s, s + NGRAM));
+        offsets = offsets == null ? list : intersect(offsets, list);
+        if(offsets.isEmpty()) return offsets;
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Returns the sorted offsets of all tokens that contain the specified n-gram.
+   * The n-gram index is read without locking.
+   * @param ngram n-gram
+   * @return offsets
+   */
+  private IntList ngram(final byte[] ngram) {
+    final DataReader dr = inN.reader(4);
+    final int el = NGRAM + 5;
+    int l = 0, h = ngrams - 1;
+    while(l <= h) {
+      final int m = l + h >>> 1;
+      final int d = diff(dr.pos(4 + (long) m * el).readBytes(NGRAM), ngram);
+      if(d == 0) {
+        dr.pos(dr.read5());
+        final int s = dr.readNum();
+        final IntList offsets = new IntList(s);
+        for(int i = 0, o = 0; i < s; i++) {
+          o += dr.readNum();
+          offsets.add(o);
+        }
+        return offsets;
+      }
+      if(d < 0) l = m + 1;
+      else h = m - 1;
+    }
+    return new IntList(0);
+  }
+
+  /**
+   * Intersects two sorted lists.
+   * @param list1 first list
+   * @param list2 second list
+   * @return resulting list
+   */
+  private static IntList intersect(final IntList list1, final IntList list2) {
+    final int s1 = list1.size(), s2 = list2.size();
+    final IntList list = new IntList(Math.min(s1, s2));
+    for(int i1 = 0, i2 = 0; i1 < s1 && i2 < s2;) {
+      final int v1 = list1.get(i1), v2 = list2.get(i2);
+      if(v1 <= v2) i1++;
+      if(v1 >= v2) i2++;
+      if(v1 == v2) list.add(v1);
+    }
+    return list;
+  }
+
+  /**
+   * Adds the pre and pos values of an index entry.
+   * @param off offset on entries
+   * @param size number of pre/pos entries
+   * @param pr pre values
+   * @param ps pos values
+   */
+  private void postings(final long off, final int size, final IntList pr, final IntList ps) {
+    new Postings(inZ.reader(off), size, true).read(pr, ps);
+  }
+
+  /**
+   * Returns an iterator for an index entry. Postings are decoded block by block, and
+   * blocks are skipped if the iterator is advanced.
    * @param off offset on entries
    * @param size number of id/pos entries
    * @param da data source
@@ -390,14 +636,64 @@ public final class FTIndex implements ValueIndex {
    */
   private static FTIndexIterator iter(final long off, final int size, final DataAccess da,
       final byte[] token) {
-    da.cursor(off);
-    final IntList pr = new IntList(size);
-    final IntList ps = new IntList(size);
-    for(int c = 0; c < size; c++) {
-      pr.add(da.readNum());
-      ps.add(da.readNum());
-    }
-    return iter(new FTCache(pr, ps), token);
+    final Postings postings = new Postings(da.reader(off), size, true);
+
+    return new FTIndexIterator() {
+      final FTMatches all = new FTMatches();
+      /** Indicates if the postings point to an unconsumed entry. */
+      boolean next = postings.more();
+      int pos, pre;
+
+      @Override
+      public synchronized boolean more() {
+        return next && group();
+      }
+
+      @Override
+      public synchronized boolean advance(final int p) {
+        if(next && postings.value() < p) next = postings.advance(p);
+        return next && group();
+      }
+
+      /**
+       * Assigns the positions of the current pre value.
+       * @return {@code true}
+       */
+      private boolean group() {
+        pre = postings.value();
+        all.reset(pos);
+        do {
+          all.or(postings.pos());
+          next = postings.more();
+        } while(next && postings.value() == pre);
+        return true;
+      }
+
+      @Override
+      public synchronized FTMatches matches() {
+        return all;
+      }
+
+      @Override
+      public synchronized int pre() {
+        return pre;
+      }
+
+      @Override
+      public void pos(final int p) {
+        pos = p;
+      }
+
+      @Override
+      public synchronized int size() {
+        return size;
+      }
+
+      @Override
+      public String toString() {
+        return new TokenBuilder(token).add('(').addExt(size).add("x)").toString();
+      }
+    };
   }
 
   /**
@@ -406,7 +702,7 @@ public final class FTIndex implements ValueIndex {
    * @param token index token
    * @return iterator
    */
-  private static synchronized FTIndexIterator iter(final FTCache ftc, final byte[] token) {
+  private static FTIndexIterator iter(final FTCache ftc, final byte[] token) {
     final int size = ftc.pre.size();
 
     return new FTIndexIterator() {
@@ -6,11 +6,14 @@ import static org.basex.util.Token.*;
 import java.io.*;
 
 import org.basex.data.*;
+import org.basex.index.*;
 import org.basex.io.*;
+import org.basex.io.in.DataInput;
 import org.basex.io.random.*;
 
 /**
  * This class provides temporary access to sorted list data.
+ * The partial index files are read sequentially.
  *
  * @author BaseX Team 2005-15, BSD License
  * @author Sebastian Gath
@@ -20,7 +23,7 @@ final class FTList {
   private static final int[] NOINTS = {};
 
   /** Storing pre and pos values for each token. */
-  private final DataAccess dat;
+  private final DataInput dat;
   /** Structure file. */
   private final IOFile files;
   /** Data file. */
@@ -40,8 +43,10 @@ final class FTList {
   private int ptok;
 
   /** Indexed tokens. */
-  private final DataAccess str;
+  private final DataInput str;
 
+  /** Merge id. */
+  final int id;
   /** Current data size. */
   int size;
   /** Next token. */
@@ -54,33 +59,35 @@ final class FTList {
   /**
    * Constructor, initializing the index structure.
    * @param data data
-   * @param prefix prefix
+   * @param id merge id
    * @throws IOException I/O exception
    */
-  FTList(final Data data, final int prefix) throws IOException {
-    files = data.meta.dbfile(DATAFTX + prefix + 'y');
-    filed = data.meta.dbfile(DATAFTX + prefix + 'z');
-    str = new DataAccess(files);
-    dat = new DataAccess(filed);
+  FTList(final Data data, final int id) throws IOException {
+    this.id = id;
+    files = data.meta.dbfile(DATAFTX + id + 'y');
+    filed = data.meta.dbfile(DATAFTX + id + 'z');
+    str = new DataInput(files, IndexBuilder.MERGEBUFFER);
+    dat = new DataInput(filed, IndexBuilder.MERGEBUFFER);
     tp = new int[data.meta.maxlen + 3];
     final int tl = tp.length;
     for(int t = 0; t < tl; t++) tp[t] = -1;
-    sizes = data.meta.dbfile(DATAFTX + prefix + 'x');
+    sizes = data.meta.dbfile(DATAFTX + id + 'x');
     try(final DataAccess li = new DataAccess(sizes)) {
       int is = li.readNum();
       while(--is >= 0) {
         final int p = li.readNum();
         tp[p] = li.read4();
       }
-      tp[tl - 1] = (int) str.length();
+      tp[tl - 1] = (int) files.length();
     }
     next();
   }
 
   /**
    * Checks if more tokens are found.
+   * @throws IOException I/O exception
    */
-  void next() {
+  void next() throws IOException {
     if(wasted) return;
 
     tok = token();
@@ -101,8 +108,9 @@ final class FTList {
 
   /**
    * Closes and deletes the input files.
+   * @throws IOException I/O exception
    */
-  private void close() {
+  private void close() throws IOException {
     str.close();
     dat.close();
     files.delete();
@@ -113,8 +121,9 @@ final class FTList {
   /**
    * Returns next token.
    * @return byte[] token
+   * @throws IOException I/O exception
    */
-  private byte[] token() {
+  private byte[] token() throws IOException {
     if(tp[tp.length - 1] == ptok) return EMPTY;
     if(tp[ntl] == ptok || ntl == 0) {
       ++ctl;
@@ -124,11 +133,13 @@ final class FTList {
     }
     if(ctl == tp.length) return EMPTY;
 
-    final byte[] t = str.readBytes(ptok, ctl);
+    final byte[] t = new byte[ctl];
+    for(int c = 0; c < ctl; c++) t[c] = (byte) str.read();
     // skip pointer
-    size = str.read4(str.cursor() + 5);
+    for(int c = 0; c < 5; c++) str.read();
+    size = str.read4();
     // position will always fit in an integer...
-    ptok = (int) str.cursor();
+    ptok += ctl + 9;
     return t;
   }
 }
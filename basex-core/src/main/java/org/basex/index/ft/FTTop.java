@@ -0,0 +1,352 @@
+package org.basex.index.ft;
+
+import java.util.*;
+
+import org.basex.index.*;
+import org.basex.io.random.*;
+import org.basex.util.*;
+import org.basex.util.ft.*;
+
+/**
+ * <p>This class returns the text nodes with the highest BM25 scores for a number of
+ * tokens. Results of disjunctive requests are computed with the MaxScore algorithm:
+ * the tokens are ordered by their maximum scores, and tokens whose accumulated maximum
+ * scores do not exceed the currently lowest score of the best results will not be used to
+ * find new candidates. Instead, the postings of these tokens will only be consulted for
+ * the remaining candidates, and blocks of postings without candidates are skipped.</p>
+ *
+ * <p>Postings of conjunctive requests are traversed by the token with the least number of
+ * texts. Postings are decoded lazily, and the maximum scores and numbers of texts are
+ * taken from the index entries of the tokens.</p>
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class FTTop {
+  /** Maximum number of results. */
+  private final int k;
+  /** Scores of the best results (min-heap). */
+  private double[] scores;
+  /** Pre values of the best results (min-heap). */
+  private int[] pres;
+  /** Number of results. */
+  private int size;
+
+  /**
+   * Constructor.
+   * @param k maximum number of results
+   */
+  FTTop(final int k) {
+    this.k = k;
+    final int c = Math.min(k, Array.CAPACITY);
+    scores = new double[c];
+    pres = new int[c];
+  }
+
+  /**
+   * Computes the best results.
+   * @param terms postings of the tokens
+   * @param all all tokens must be found
+   * @param lengths text lengths
+   * @return self reference
+   */
+  FTTop compute(final Term[] terms, final boolean all, final Lengths lengths) {
+    final int tl = terms.length;
+    if(tl == 0) return this;
+
+    if(all) {
+      // choose token with the least number of texts to find candidates
+      Arrays.sort(terms, new Comparator<Term>() {
+        @Override
+        public int compare(final Term t1, final Term t2) {
+          return t1.texts - t2.texts;
+        }
+      });
+      final Term first = terms[0];
+      int pre = first.pre();
+      while(pre != Integer.MAX_VALUE) {
+        int t = 1, p = pre;
+        while(t < tl && (p = terms[t].advance(pre)) == pre) t++;
+        if(t < tl) {
+          // skip postings of the first token that cannot be found in all other tokens
+          pre = first.advance(p);
+          continue;
+        }
+        final double length = lengths.get(pre);
+        double score = 0;
+        for(t = 0; t < tl; t++) score += terms[t].score(length);
+        add(pre, score);
+        first.next();
+        pre = first.pre();
+      }
+      return this;
+    }
+
+    // sort tokens by their maximum scores, compute accumulated maximum scores
+    Arrays.sort(terms, new Comparator<Term>() {
+      @Override
+      public int compare(final Term t1, final Term t2) {
+        return Double.compare(t1.max, t2.max);
+      }
+    });
+    final double[] acc = new double[tl], parts = new double[tl];
+    for(int t = 0; t < tl; t++) acc[t] = (t == 0 ? 0 : acc[t - 1]) + terms[t].max;
+
+    // first token that is required to find new candidates
+    int e = 0;
+    while(true) {
+      // candidates with the same score as the lowest result may still be added
+      final double min = size == k ? scores[0] : 0;
+      while(e < tl && acc[e] < min) e++;
+      if(e == tl) break;
+
+      // next candidate: smallest pre value of the required tokens
+      int pre = Integer.MAX_VALUE;
+      for(int t = e; t < tl; t++) pre = Math.min(pre, terms[t].pre());
+      if(pre == Integer.MAX_VALUE) break;
+
+      final double length = lengths.get(pre);
+      double score = 0;
+      for(int t = e; t < tl; t++) {
+        final Term term = terms[t];
+        parts[t] = 0;
+        if(term.pre() == pre) {
+          parts[t] = term.score(length);
+          score += parts[t];
+          term.next();
+        }
+      }
+      // consult remaining tokens as long as the candidate may be added to the results
+      int t = e - 1;
+      for(; t >= 0 && score + acc[t] >= min; t--) {
+        final Term term = terms[t];
+        parts[t] = term.advance(pre) == pre ? term.score(length) : 0;
+        score += parts[t];
+      }
+      if(t >= 0) continue;
+
+      // sum up scores in a fixed order to get identical results for all limits
+      score = 0;
+      for(t = 0; t < tl; t++) score += parts[t];
+      add(pre, score);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the number of results.
+   * @return number of results
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the pre values of the results, ordered by descending scores.
+   * Ties are ordered by ascending pre values.
+   * @param scrs scores (will be filled; the array size must be equal to {@link #size()})
+   * @return pre values
+   */
+  public int[] finish(final double[] scrs) {
+    final int[] list = new int[size];
+    for(int i = size - 1; i >= 0; i--) {
+      list[i] = pres[0];
+      scrs[i] = scores[0];
+      pres[0] = pres[--size];
+      scores[0] = scores[size];
+      down();
+    }
+    return list;
+  }
+
+  /**
+   * Adds a candidate if its score is higher than the lowest score of the current results.
+   * @param pre pre value
+   * @param score score
+   */
+  private void add(final int pre, final double score) {
+    if(size < k) {
+      if(size == pres.length) {
+        final int s = Math.min(k, Array.newSize(size));
+        pres = Arrays.copyOf(pres, s);
+        scores = Arrays.copyOf(scores, s);
+      }
+      // insert new entry and restore heap property upwards
+      int i = size++;
+      while(i > 0) {
+        final int p = i - 1 >>> 1;
+        if(!less(pre, score, pres[p], scores[p])) break;
+        pres[i] = pres[p];
+        scores[i] = scores[p];
+        i = p;
+      }
+      pres[i] = pre;
+      scores[i] = score;
+    } else if(less(pres[0], scores[0], pre, score)) {
+      pres[0] = pre;
+      scores[0] = score;
+      down();
+    }
+  }
+
+  /**
+   * Restores the heap property, starting from the root.
+   */
+  private void down() {
+    final int pre = pres[0];
+    final double score = scores[0];
+    int i = 0;
+    while(true) {
+      int c = (i << 1) + 1;
+      if(c >= size) break;
+      if(c + 1 < size && less(pres[c + 1], scores[c + 1], pres[c], scores[c])) c++;
+      if(!less(pres[c], scores[c], pre, score)) break;
+      pres[i] = pres[c];
+      scores[i] = scores[c];
+      i = c;
+    }
+    pres[i] = pre;
+    scores[i] = score;
+  }
+
+  /**
+   * Checks if the first entry is ranked lower than the second entry.
+   * @param pre1 first pre value
+   * @param score1 first score
+   * @param pre2 second pre value
+   * @param score2 second score
+   * @return result of check
+   */
+  private static boolean less(final int pre1, final double score1, final int pre2,
+      final double score2) {
+    return score1 < score2 || score1 == score2 && pre1 > pre2;
+  }
+
+  /** Postings of a single token. */
+  static final class Term {
+    /** Postings (pre values are sorted, but not distinct). */
+    private final Postings postings;
+    /** Number of texts that contain the token. */
+    private final int texts;
+    /** Inverse document frequency. */
+    private final double idf;
+    /** Maximum score. */
+    private final double max;
+    /** Current pre value ({@link Integer#MAX_VALUE} if all postings have been consumed). */
+    private int pre;
+    /** Number of occurrences of the token in the current text. */
+    private int freq;
+    /** Indicates if the postings point to the first entry of the next pre value. */
+    private boolean ahead;
+
+    /**
+     * Constructor.
+     * @param postings postings
+     * @param texts number of texts that contain the token
+     * @param max maximum score
+     * @param total total number of texts
+     */
+    Term(final Postings postings, final int texts, final double max, final int total) {
+      this.postings = postings;
+      this.texts = texts;
+      this.max = max;
+      idf = Scoring.idf(texts, total);
+      next();
+    }
+
+    /**
+     * Returns the current pre value.
+     * @return pre value, or {@link Integer#MAX_VALUE} if all postings have been consumed
+     */
+    private int pre() {
+      return pre;
+    }
+
+    /**
+     * Moves the cursor to the next pre value and counts the occurrences of the token.
+     */
+    private void next() {
+      if(!ahead && !postings.more()) {
+        pre = Integer.MAX_VALUE;
+        return;
+      }
+      pre = postings.value();
+      freq = 1;
+      ahead = false;
+      while(postings.more()) {
+        if(postings.value() != pre) {
+          ahead = true;
+          return;
+        }
+        freq++;
+      }
+    }
+
+    /**
+     * Moves the cursor to the first pre value that is equal to or greater than the
+     * specified value. Blocks of postings with smaller values are skipped.
+     * @param p pre value
+     * @return pre value at the new cursor position
+     */
+    private int advance(final int p) {
+      if(pre < p) {
+        if(ahead && postings.value() >= p || postings.advance(p)) {
+          ahead = true;
+          next();
+        } else {
+          pre = Integer.MAX_VALUE;
+        }
+      }
+      return pre;
+    }
+
+    /**
+     * Returns the score of the token for the current text.
+     * @param length number of tokens of the text, divided by the average number of tokens
+     * @return score
+     */
+    private double score(final double length) {
+      return Scoring.bm25(idf, freq, length, 1);
+    }
+  }
+
+  /**
+   * Returns the quantized number of tokens of a text. Numbers up to 127 are stored exactly,
+   * larger numbers are stored on a logarithmic scale.
+   * @param tokens number of tokens
+   * @return quantized value [0, 255]
+   */
+  static int quantize(final int tokens) {
+    return tokens < 0x80 ? tokens :
+      Math.min(0xFF, 0x80 + (int) (16 * (Math.log(tokens) / Math.log(2) - 7)));
+  }
+
+  /** Text lengths. */
+  static final class Lengths {
+    /** Reader for the quantized text lengths ({@code null} if not available). */
+    private final DataReader reader;
+    /** Average number of tokens per text. */
+    private final double avg;
+
+    /**
+     * Constructor.
+     * @param reader reader for the quantized text lengths ({@code null} if not available)
+     * @param avg average number of tokens per text
+     */
+    Lengths(final DataReader reader, final double avg) {
+      this.reader = reader;
+      this.avg = avg;
+    }
+
+    /**
+     * Returns the number of tokens of a text, divided by the average number of tokens.
+     * @param pre pre value
+     * @return relative length
+     */
+    double get(final int pre) {
+      if(reader == null) return 1;
+      final int q = reader.pos(pre).read1() & 0xFF;
+      return (q < 0x80 ? q : Math.pow(2, 7 + (q - 0x80) / 16d)) / avg;
+    }
+  }
+}
@@ -50,6 +50,22 @@ public abstract class FTIndexIterator extends IndexIterator {
       public boolean more() {
         if(diff <= 0) ii1 = i1.more() ? i1 : null;
         if(diff >= 0) ii2 = i2.more() ? i2 : null;
+        return next();
+      }
+
+      @Override
+      public boolean advance(final int pre) {
+        // advance iterators whose results have been returned or are smaller than the target
+        if(diff <= 0 || ii1 != null && ii1.pre() < pre) ii1 = i1.advance(pre) ? i1 : null;
+        if(diff >= 0 || ii2 != null && ii2.pre() < pre) ii2 = i2.advance(pre) ? i2 : null;
+        return next();
+      }
+
+      /**
+       * Chooses the iterator with the next result.
+       * @return true if another result was found
+       */
+      private boolean next() {
         diff = ii1 != null ? ii2 != null ? ii1.pre() - ii2.pre() : -1 : 1;
         next = diff <= 0 ? ii1 : ii2;
         return next != null;
@@ -87,7 +103,8 @@ public abstract class FTIndexIterator extends IndexIterator {
   }
 
   /**
-   * Merges two index array iterators.
+   * Intersects two index array iterators. The iterator with fewer results is traversed,
+   * and the other iterator is advanced to its pre values.
    * @param i1 first index array iterator to merge
    * @param i2 second index array iterator to merge
    * @param dis word distance. Ignored if {@code 0}
@@ -97,27 +114,62 @@ public abstract class FTIndexIterator extends IndexIterator {
       final int dis) {
 
     return new FTIndexIterator() {
-      private FTIndexIterator ii1, ii2;
+      /** Iterator with fewer results ({@code null} if not assigned yet). */
+      private FTIndexIterator lead;
+      /** Iterator with more results. */
+      private FTIndexIterator other;
+      /** Indicates if the other iterator points to a result. */
+      private boolean valid;
+      /** Current matches. */
       private FTMatches all;
 
       @Override
       public boolean more() {
-        int d = 0;
+        init();
+        return lead.more() && align();
+      }
+
+      @Override
+      public boolean advance(final int pre) {
+        init();
+        return lead.advance(pre) && align();
+      }
+
+      /**
+       * Assigns the iterator with fewer results.
+       */
+      private void init() {
+        if(lead != null) return;
+        final boolean first = i1.size() <= i2.size();
+        lead = first ? i1 : i2;
+        other = first ? i2 : i1;
+      }
+
+      /**
+       * Advances the iterators until they point to the same pre value.
+       * @return true if another result was found
+       */
+      private boolean align() {
         while(true) {
-          if(d <= 0) ii1 = i1.more() ? i1 : null;
-          if(d >= 0) ii2 = i2.more() ? i2 : null;
-          if(ii1 == null || ii2 == null) return false;
-          d = ii1.pre() - ii2.pre();
-          if(d != 0) continue;
-          all = ii1.matches();
-          final FTMatches all2 = ii2.matches();
-          if(dis == 0) {
-            for(final FTMatch m1 : all) {
-              for(final FTMatch m2 : all2) m1.add(m2);
+          final int pre = lead.pre();
+          if(!valid || other.pre() < pre) {
+            valid = other.advance(pre);
+            if(!valid) return false;
+          }
+          final int p = other.pre();
+          if(p == pre) {
+            all = i1.matches();
+            final FTMatches all2 = i2.matches();
+            if(dis == 0) {
+              for(final FTMatch m1 : all) {
+                for(final FTMatch m2 : all2) m1.add(m2);
+              }
+              return true;
             }
-            return true;
-          } else if(all.phrase(all2, dis)) {
-            return true;
+            if(all.phrase(all2, dis)) return true;
+            if(!lead.more()) return false;
+          } else if(!lead.advance(p)) {
+            return false;
           }
         }
       }
@@ -129,7 +181,7 @@ public abstract class FTIndexIterator extends IndexIterator {
 
       @Override
       public int pre() {
-        return ii1.pre();
+        return lead.pre();
       }
 
       @Override
@@ -29,6 +29,20 @@ public abstract class IndexIterator {
    */
   public abstract int pre();
 
+  /**
+   * Moves the iterator to the next result with a pre value that is equal to or greater than
+   * the specified value. The iterator will be moved by at least one result.
+   * This method can be overwritten by iterators that are able to skip results.
+   * @param pre pre value
+   * @return true if another result was found
+   */
+  public boolean advance(final int pre) {
+    while(more()) {
+      if(pre() >= pre) return true;
+    }
+    return false;
+  }
+
   /**
    * Returns an approximate number of index results.
    * @return result approximate number of results
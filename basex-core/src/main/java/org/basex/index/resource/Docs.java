@@ -16,10 +16,11 @@ import org.basex.util.list.*;
  * <p>This data structure contains references to all document nodes in a
  * database. The document nodes are incrementally updated.</p>
  *
- * <p>If updates are performed, the path order is discarded, as its continuous
- * update would be more expensive in some cases (e.g. when bulk insertions of
- * new documents are performed). A tree structure could be introduced to
- * offer better general performance.</p>
+ * <p>The document paths are organized in a {@link PathTrie}, which is updated incrementally
+ * as well. The trie references documents by keys, which are stored in the order of the
+ * pre values. Keys do not change if pre values are shifted; positions of keys are only
+ * recomputed if the trie is accessed after an update. Lookups are not synchronized:
+ * updates are only performed if no other transaction is accessing the database.</p>
  *
  * @author BaseX Team 2005-15, BSD License
  * @author Christian Gruen
@@ -30,13 +31,17 @@ final class Docs {
   private final Data data;
   /** Pre values of document nodes (may be {@code null}).
    * This variable should always be requested via {@link #docs()}. */
-  private IntList docList;
-  /** Sorted document paths (may be {@code null}).
+  private volatile IntList docList;
+  /** Document paths (may be {@code null}).
    * This variable should always be requested via {@link #paths()}. */
-  private TokenList pathList;
-  /** Ordered path indexes (may be {@code null}).
-   * This variable should always be requested via {@link #order()}. */
-  private int[] pathOrder;
+  private volatile PathTrie pathTrie;
+  /** Keys of the documents in the path trie, sorted by pre values (may be {@code null}). */
+  private IntList keyList;
+  /** Positions of the documents in {@link #docList}, indexed by their keys (may be {@code null}).
+   * This variable should always be requested via {@link #positions()}. */
+  private volatile int[] positions;
+  /** Next document key. */
+  private int nextKey;
   /** Dirty flag. */
   private boolean dirty;
   /** Indicates if a path index is available. */
@@ -66,13 +71,15 @@ final class Docs {
    * @throws IOException I/O exception
    */
   void write(final DataOutput out) throws IOException {
-    out.writeDiffs(docs());
+    final IntList docs = docs();
+    out.writeDiffs(docs);
     if(dirty && pathIndex) {
       // retrieve paths (must be called before file is opened for writing!)
-      final TokenList paths = paths();
-      // write paths
+      final byte[][] paths = new byte[docs.size()][];
+      paths().paths(positions(), paths);
+      // write paths in document order
       try(final DataOutput doc = new DataOutput(data.meta.dbfile(DATAPTH))) {
-        doc.writeNum(paths.size());
+        doc.writeNum(paths.length);
         for(final byte[] path : paths) doc.writeToken(path);
       }
       dirty = false;
@@ -83,56 +90,97 @@ final class Docs {
    * Returns the {@code pre} values of all document nodes.
    * @return document nodes (internal representation!)
    */
-  synchronized IntList docs() {
-    if(docList == null) {
-      final IntList il = new IntList();
-      final int is = data.meta.size;
-      for(int i = 0; i < is;) {
-        final int k = data.kind(i);
-        if(k == Data.DOC) il.add(i);
-        i += data.size(i, k);
+  IntList docs() {
+    IntList docs = docList;
+    if(docs == null) {
+      synchronized(this) {
+        docs = docList;
+        if(docs == null) {
+          docs = new IntList();
+          final int is = data.meta.size;
+          for(int i = 0; i < is;) {
+            final int k = data.kind(i);
+            if(k == Data.DOC) docs.add(i);
+            i += data.size(i, k);
+          }
+          update();
+          docList = docs;
+        }
       }
-      update();
-      docList = il;
     }
-    return docList;
+    return docs;
   }
 
   /**
    * Returns the document paths, and initializes them if necessary.
    * @return document paths (internal representation!)
    */
-  private synchronized TokenList paths() {
-    if(pathList == null && pathIndex) {
-      // try to read paths from disk
-      try(final DataInput in = new DataInput(data.meta.dbfile(DATAPTH))) {
-        pathList = new TokenList(in.readTokens());
-      } catch(final IOException ignore) { }
+  private PathTrie paths() {
+    PathTrie paths = pathTrie;
+    if(paths == null) {
+      synchronized(this) {
+        paths = pathTrie;
+        if(paths == null) {
+          final IntList docs = docs();
+          final int ds = docs.size();
+          final IntList keys = new IntList(ds);
+          for(int d = 0; d < ds; d++) keys.add(d);
+          paths = new PathTrie();
+          byte[][] tokens = null;
+          if(pathIndex) {
+            // try to read paths from disk
+            try(final DataInput in = new DataInput(data.meta.dbfile(DATAPTH))) {
+              tokens = in.readTokens();
+            } catch(final IOException ex) {
+              Util.debug(ex);
+            }
+          }
+          if(tokens != null && tokens.length == ds) {
+            for(int d = 0; d < ds; d++) paths.add(tokens[d], d);
+          } else {
+            // paths have not been stored to disk yet; scan table
+            for(int d = 0; d < ds; d++) paths.add(normalize(data.text(docs.get(d), true)), d);
+            pathIndex = true;
+            update();
+          }
+          keyList = keys;
+          nextKey = ds;
+          positions = null;
+          pathTrie = paths;
+        }
+      }
     }
+    return paths;
+  }
 
-    // generate paths
-    if(pathList == null) {
-      // paths have not been stored to disk yet; scan table
-      final IntList docs = docs();
-      final int ds = docs.size();
-      final TokenList paths = new TokenList(ds);
-      for(int d = 0; d < ds; d++) {
-        paths.add(normalize(data.text(docs.get(d), true)));
-      }
-      pathIndex = true;
-      pathList = paths;
-      update();
+  /**
+   * Returns the positions of all documents, and initializes them if necessary.
+   * Must be called after {@link #paths()}.
+   * @return positions, indexed by document keys
+   */
+  private int[] positions() {
+    int[] pos = positions;
+    if(pos == null) {
+      final IntList keys = keyList;
+      pos = new int[nextKey];
+      final int ks = keys.size();
+      for(int k = 0; k < ks; k++) pos[keys.get(k)] = k;
+      positions = pos;
     }
-    return pathList;
+    return pos;
   }
 
   /**
-   * Returns the document path order, and initialize the array if necessary.
-   * @return path order (internal representation!)
+   * Replaces the specified document keys by the pre values of their documents.
+   * @param keys document keys
+   * @return pre values
    */
-  private synchronized int[] order() {
-    if(pathOrder == null) pathOrder = Array.createOrder(paths().toArray(), false, true);
-    return pathOrder;
+  private IntList pres(final IntList keys) {
+    final int[] pos = positions();
+    final IntList docs = docs();
+    final int ks = keys.size();
+    for(int k = 0; k < ks; k++) keys.set(k, docs.get(pos[keys.get(k)]));
+    return keys;
   }
 
   /**
@@ -157,12 +205,17 @@ final class Docs {
     int i = docs.sortedIndexOf(pre);
     if(i < 0) i = -i - 1;
 
-    // insert paths from given data instance
+    // insert paths from given data instance; keys of existing documents remain valid
     if(pathIndex) {
-      final TokenList paths = paths();
-      final byte[][] tmp = new byte[ps][];
-      for(int t = 0; t < ps; t++) tmp[t] = normalize(clip.data.text(pres[t] - pre, true));
-      paths.insert(i, tmp);
+      final PathTrie paths = paths();
+      if(nextKey > Math.max(keyList.size(), 1 << 8) << 1) rekey(paths);
+      final int[] keys = new int[ps];
+      for(int p = 0; p < ps; p++) {
+        keys[p] = nextKey++;
+        paths.add(normalize(clip.data.text(pres[p] - pre, true)), keys[p]);
+      }
+      keyList.insert(i, keys);
+      positions = null;
     }
 
     // insert pre values
@@ -185,7 +238,11 @@ final class Docs {
 
     // pre value points to a document node...
     if(doc >= 0) {
-      if(pathIndex) paths().remove(doc);
+      if(pathIndex) {
+        paths().delete(normalize(data.text(pre, true)), keyList.get(doc));
+        keyList.remove(doc);
+        positions = null;
+      }
       docs.remove(doc);
     }
 
@@ -196,11 +253,17 @@ final class Docs {
 
   /**
    * Updates the index after a document has been renamed.
+   * Must be called before the new name is assigned.
    * @param pre pre value of updated document
    * @param value new name
    */
   void rename(final int pre, final byte[] value) {
-    if(pathIndex) paths().set(docs().sortedIndexOf(pre), normalize(value));
+    if(pathIndex) {
+      final PathTrie paths = paths();
+      final int key = keyList.get(docs().sortedIndexOf(pre));
+      paths.delete(normalize(data.text(pre, true)), key);
+      paths.add(normalize(value), key);
+    }
     update();
   }
 
@@ -216,10 +279,26 @@ final class Docs {
   }
 
   /**
-   * Notifies the meta structures of an update and invalidates the indexes.
+   * Assigns new keys to all documents. Called if too many keys have become unused.
+   * @param paths path trie
+   */
+  private void rekey(final PathTrie paths) {
+    final IntList keys = keyList;
+    final int ks = keys.size();
+    final int[] map = new int[nextKey];
+    for(int k = 0; k < ks; k++) {
+      map[keys.get(k)] = k;
+      keys.set(k, k);
+    }
+    paths.rekey(map);
+    nextKey = ks;
+    positions = null;
+  }
+
+  /**
+   * Notifies the meta structures of an update.
    */
-  private synchronized void update() {
-    pathOrder = null;
+  private void update() {
     data.meta.dirty = true;
     dirty = true;
   }
@@ -230,7 +309,7 @@ final class Docs {
    * @param exact exact (no prefix) matches
    * @return pre values (internal representation!)
    */
-  synchronized IntList docs(final String path, final boolean exact) {
+  IntList docs(final String path, final boolean exact) {
     // invalid path, or no documents: return empty list
     final String pth = MetaData.normPath(path);
     if(pth == null) return new IntList(0);
@@ -239,23 +318,9 @@ final class Docs {
     final IntList docs = docs();
     if(pth.isEmpty()) return docs;
 
-    // normalize paths
-    byte[] exct = EMPTY, pref = normalize(token(pth));
-    // check for explicit directory indicator
-    if(!pth.endsWith("/")) {
-      exct = pref;
-      pref = concat(exct, SLASH);
-    }
-
-    // relevant paths: exact hits and prefixes
-    final IntList il = new IntList();
-    final TokenList paths = paths();
-    final int ps = paths.size();
-    for(int p = 0; p < ps; p++) {
-      final byte[] pt = paths.get(p);
-      if(eq(pt, exct) || !exact && startsWith(pt, pref)) il.add(docs.get(p));
-    }
-    return il.sort();
+    // exact hits (unless path ends with explicit directory indicator) and prefixes
+    final boolean dir = pth.endsWith("/");
+    return pres(paths().keys(normalize(token(pth)), !dir, !exact)).sort();
   }
 
   /**
@@ -263,22 +328,22 @@ final class Docs {
    * @param path input path
    * @return pre value of document node, or {@code -1}
    */
-  synchronized int doc(final String path) {
+  int doc(final String path) {
     // invalid or empty path, or no documents: return -1
     final String pth = MetaData.normPath(path);
-    // find path; return -1 if path is empty or does not exist
-    return pth == null || pth.isEmpty() ? -1 : Math.max(-1, find(normalize(token(pth))));
+    if(pth == null || pth.isEmpty()) return -1;
+    // find path; return -1 if path does not exist
+    final IntList pres = pres(paths().keys(normalize(token(pth)), true, false));
+    return pres.isEmpty() ? -1 : pres.sort().get(0);
   }
 
   /**
    * Determines whether the given path is the path to a document directory.
-   * @param path given path (will be normalized by adding a trailing slash)
+   * @param path given path
    * @return path to a directory or not
    */
-  synchronized boolean isDir(final byte[] path) {
-    final byte[] pa = concat(path, SLASH);
-    for(final byte[] b : paths()) if(startsWith(b, pa)) return true;
-    return false;
+  boolean isDir(final byte[] path) {
+    return paths().isDir(Prop.CASE ? path : lc(path));
   }
 
   /**
@@ -287,46 +352,19 @@ final class Docs {
    * @param dir returns directories instead of files
    * @param tbm map; values will be {@code false} to indicate documents
    */
-  synchronized void children(final byte[] path, final boolean dir, final TokenBoolMap tbm) {
+  void children(final byte[] path, final boolean dir, final TokenBoolMap tbm) {
     final String pth = MetaData.normPath(string(path));
     if(pth == null) return;
 
-    // normalize root path
-    byte[] root = token(pth);
-    if(root.length != 0) root = concat(root, SLASH);
-
-    final IntList docs = docs();
-    final int ds = docs.size();
-    for(int d = 0; d < ds; d++) {
-      byte[] np = data.text(docs.get(d), true);
-      if(startsWith(np, root)) {
-        np = substring(np, root.length, np.length);
-        final int i = indexOf(np, SLASH);
-        // no more slashes means this must be a leaf
-        if(!dir && i == -1) tbm.put(np, false);
-        else if(dir && i >= 0) tbm.put(substring(np, 0, i), false);
-      }
-    }
-  }
-
-  /**
-   * Returns the pre value of the addressed resource.
-   * @param path path to be found
-   * @return pre value, or {@code -1}
-   */
-  private int find(final byte[] path) {
-    // binary search
-    final TokenList paths = paths();
-    final int[] order = order();
-    int l = 0, h = order.length - 1;
-    while(l <= h) {
-      final int m = l + h >>> 1;
-      final int c = diff(paths.get(order[m]), path);
-      if(c == 0) return docs().get(m);
-      if(c < 0) l = m + 1;
-      else h = m - 1;
+    // original names are taken from the document paths
+    final byte[] root = normalize(token(pth));
+    final int depth = split(root, '/').length;
+    final IntList pres = pres(paths().children(root, dir));
+    final int ps = pres.size();
+    for(int p = 0; p < ps; p++) {
+      final byte[][] segments = split(data.text(pres.get(p), true), '/');
+      if(depth < segments.length) tbm.put(segments[depth], false);
     }
-    return -1;
   }
 
   /**
@@ -0,0 +1,283 @@
+package org.basex.index.resource;
+
+import static org.basex.util.Token.*;
+
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * <p>This trie contains the paths of all documents in a database. Each node represents
+ * a path segment and references the keys of all documents with the resulting path.
+ * Keys are assigned by {@link Docs}; in contrast to pre values, they do not change if
+ * documents are inserted or deleted.</p>
+ *
+ * <p>Paths are resolved segment by segment. The costs of a lookup depend on the number of
+ * path segments and on the number of results, but not on the number of documents.</p>
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+final class PathTrie {
+  /** Root node. */
+  private final Node root = new Node();
+
+  /**
+   * Adds a document.
+   * @param path normalized path
+   * @param key document key
+   */
+  void add(final byte[] path, final int key) {
+    Node node = root;
+    for(final byte[] segment : split(path, '/')) {
+      if(node.children == null) node.children = new TokenObjMap<>();
+      Node child = node.children.get(segment);
+      if(child == null) {
+        child = new Node();
+        node.children.put(segment, child);
+        node.count++;
+      }
+      node = child;
+    }
+    if(node.keys == null) node.keys = new IntList(1);
+    node.keys.add(key);
+  }
+
+  /**
+   * Deletes a document. Nodes that have become obsolete are removed.
+   * @param path normalized path
+   * @param key document key
+   */
+  void delete(final byte[] path, final int key) {
+    final byte[][] segments = split(path, '/');
+    final int sl = segments.length;
+    final Node[] nodes = new Node[sl + 1];
+    nodes[0] = root;
+    for(int s = 0; s < sl; s++) {
+      final Node node = nodes[s].child(segments[s]);
+      if(node == null) return;
+      nodes[s + 1] = node;
+    }
+
+    final Node node = nodes[sl];
+    if(node.keys == null) return;
+    node.keys.delete(key);
+    if(node.keys.isEmpty()) node.keys = null;
+
+    // remove empty nodes
+    for(int s = sl; s > 0 && nodes[s].keys == null && nodes[s].count == 0; s--) {
+      nodes[s - 1].remove(segments[s - 1]);
+    }
+  }
+
+  /**
+   * Replaces all document keys.
+   * @param map new keys, indexed by the old keys
+   */
+  void rekey(final int[] map) {
+    root.rekey(map);
+  }
+
+  /**
+   * Returns the keys of the documents with the specified path.
+   * @param path normalized path
+   * @param self include documents with the specified path
+   * @param desc include documents in the specified directory and its descendants
+   * @return document keys
+   */
+  IntList keys(final byte[] path, final boolean self, final boolean desc) {
+    final IntList keys = new IntList();
+    final Node node = node(path);
+    if(node != null) {
+      if(self && node.keys != null) keys.add(node.keys.toArray());
+      if(desc && node.children != null) {
+        for(final Node child : node.children.values()) {
+          if(child != null) child.keys(keys);
+        }
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Checks if the specified path references a directory.
+   * @param path normalized path
+   * @return result of check
+   */
+  boolean isDir(final byte[] path) {
+    final Node node = node(path);
+    return node != null && node.count != 0;
+  }
+
+  /**
+   * Returns the keys of the documents that represent the children of the specified path.
+   * @param path normalized path
+   * @param dir return directories instead of documents (one key per directory)
+   * @return document keys
+   */
+  IntList children(final byte[] path, final boolean dir) {
+    final IntList keys = new IntList();
+    final Node node = node(path);
+    if(node != null && node.children != null) {
+      for(final Node child : node.children.values()) {
+        if(child == null) continue;
+        if(!dir) {
+          if(child.keys != null) keys.add(child.keys.toArray());
+        } else if(child.count != 0) {
+          keys.add(child.first());
+        }
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Assigns the paths of all documents to the positions of their keys.
+   * The root node has no segment. The paths of all other nodes consist of their segments,
+   * each preceded by a slash, which yields the normalized paths that have been added.
+   * @param positions positions of all documents, indexed by their keys
+   * @param paths paths (will be filled)
+   */
+  void paths(final int[] positions, final byte[][] paths) {
+    root.paths(SLASH, positions, paths);
+    final int cs = root.children == null ? 0 : root.children.size();
+    for(int c = 1; c <= cs; c++) {
+      final byte[] key = root.children.key(c);
+      if(key != null) {
+        final Node child = root.children.get(key);
+        child.paths(new TokenBuilder().add('/').add(key), positions, paths);
+      }
+    }
+  }
+
+  /**
+   * Returns the node of the specified path.
+   * @param path normalized path
+   * @return node or {@code null}
+   */
+  private Node node(final byte[] path) {
+    Node node = root;
+    for(final byte[] segment : split(path, '/')) {
+      node = node.child(segment);
+      if(node == null) break;
+    }
+    return node;
+  }
+
+  /** Trie node. */
+  private static final class Node {
+    /** Child nodes, indexed by path segments (may be {@code null}). */
+    private TokenObjMap<Node> children;
+    /** Keys of the documents with this path (may be {@code null}). */
+    private IntList keys;
+    /** Number of child nodes. */
+    private int count;
+
+    /**
+     * Returns the child node of the specified path segment.
+     * @param segment segment
+     * @return node or {@code null}
+     */
+    private Node child(final byte[] segment) {
+      return children == null ? null : children.get(segment);
+    }
+
+    /**
+     * Removes the child node of the specified path segment.
+     * @param segment segment
+     */
+    private void remove(final byte[] segment) {
+      children.delete(segment);
+      if(--count == 0) {
+        children = null;
+      } else if(children.size() > count << 1) {
+        // reorganize map if too many entries have been deleted
+        final TokenObjMap<Node> map = new TokenObjMap<>();
+        final int cs = children.size();
+        for(int c = 1; c <= cs; c++) {
+          final byte[] key = children.key(c);
+          if(key != null) map.put(key, children.get(key));
+        }
+        children = map;
+      }
+    }
+
+    /**
+     * Returns the first key of a document in the subtree of this node.
+     * @return document key
+     */
+    private int first() {
+      Node node = this;
+      while(node.keys == null) {
+        for(final Node child : node.children.values()) {
+          if(child != null) {
+            node = child;
+            break;
+          }
+        }
+      }
+      return node.keys.get(0);
+    }
+
+    /**
+     * Adds the keys of all documents in the subtree of this node.
+     * @param list document keys
+     */
+    private void keys(final IntList list) {
+      if(keys != null) list.add(keys.toArray());
+      if(children != null) {
+        for(final Node child : children.values()) {
+          if(child != null) child.keys(list);
+        }
+      }
+    }
+
+    /**
+     * Replaces the keys in the subtree of this node.
+     * @param map new keys, indexed by the old keys
+     */
+    private void rekey(final int[] map) {
+      if(keys != null) {
+        final int ks = keys.size();
+        for(int k = 0; k < ks; k++) keys.set(k, map[keys.get(k)]);
+      }
+      if(children != null) {
+        for(final Node child : children.values()) {
+          if(child != null) child.rekey(map);
+        }
+      }
+    }
+
+    /**
+     * Assigns the paths of the documents in the subtree of this node.
+     * @param path path of this node
+     * @param positions positions of all documents, indexed by their keys
+     * @param paths paths
+     */
+    private void paths(final TokenBuilder path, final int[] positions, final byte[][] paths) {
+      paths(path.toArray(), positions, paths);
+      if(children != null) {
+        final int cs = children.size(), size = path.size();
+        for(int c = 1; c <= cs; c++) {
+          final byte[] key = children.key(c);
+          if(key == null) continue;
+          children.get(key).paths(path.add('/').add(key), positions, paths);
+          path.size(size);
+        }
+      }
+    }
+
+    /**
+     * Assigns a path to the documents of this node.
+     * @param path path
+     * @param positions positions of all documents, indexed by their keys
+     * @param paths paths
+     */
+    private void paths(final byte[] path, final int[] positions, final byte[][] paths) {
+      if(keys != null) {
+        final int ks = keys.size();
+        for(int k = 0; k < ks; k++) paths[positions[keys.get(k)]] = path;
+      }
+    }
+  }
+}
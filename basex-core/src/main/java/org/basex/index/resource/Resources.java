@@ -55,7 +55,7 @@ public final class Resources implements Index {
    * Returns the {@code pre} values of all document nodes.
    * @return document nodes (internal representation!)
    */
-  public synchronized IntList docs() {
+  public IntList docs() {
     return docs.docs();
   }
 
@@ -79,6 +79,7 @@ public final class Resources implements Index {
 
   /**
    * Updates the index after a document has been renamed.
+   * Must be called before the new name is assigned.
    * @param pre pre value of updated document
    * @param value new name
    */
@@ -101,7 +102,7 @@ public final class Resources implements Index {
    * @param path input path
    * @return pre values (internal representation!)
    */
-  public synchronized IntList docs(final String path) {
+  public IntList docs(final String path) {
     return docs.docs(path, false);
   }
 
@@ -128,7 +129,7 @@ public final class Resources implements Index {
    * @param path given path
    * @return result of check
    */
-  public synchronized boolean isDir(final byte[] path) {
+  public boolean isDir(final byte[] path) {
     return docs.isDir(path) || bins.isDir(Token.string(path));
   }
 
@@ -138,7 +139,7 @@ public final class Resources implements Index {
    * @param dir returns directories
    * @return paths; values of documents will be {@code false}
    */
-  public synchronized TokenBoolMap children(final byte[] path, final boolean dir) {
+  public TokenBoolMap children(final byte[] path, final boolean dir) {
     final TokenBoolMap tbm = new TokenBoolMap();
     docs.children(path, dir, tbm);
     bins.children(path, dir, tbm);
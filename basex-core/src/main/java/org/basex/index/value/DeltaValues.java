@@ -0,0 +1,317 @@
+package org.basex.index.value;
+
+import static org.basex.util.Token.*;
+
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.index.query.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class buffers additions to an updatable index in main memory (see
+ * {@link MainOptions#INDEXDELTA}). Deletions are directly applied to the disk-based index,
+ * as its keys are resolved via the ids of their first entries.
+ *
+ * Query results of the disk-based index and the buffered entries are merged. If an update
+ * has been finalized and the number of buffered ids exceeds the specified limit, the
+ * entries are merged into the disk-based index in a separate thread. Subsequent
+ * index requests and database updates will wait until the merge has been completed.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class DeltaValues implements ValueIndex {
+  /** Disk-based index. */
+  private final UpdatableDiskValues index;
+  /** Signals that no merge is running. */
+  private final Semaphore idle = new Semaphore(1);
+  /** Data reference. */
+  private final Data data;
+
+  /** Buffered keys and ids. */
+  private TokenObjMap<IntList> delta = new TokenObjMap<>();
+  /** Number of buffered ids. */
+  private int count;
+
+  /**
+   * Constructor.
+   * @param index disk-based index
+   */
+  DeltaValues(final UpdatableDiskValues index) {
+    this.index = index;
+    data = index.data;
+  }
+
+  /**
+   * Returns the number of buffered ids.
+   * Waits until a running merge has been completed.
+   * @return number of ids
+   */
+  public int buffered() {
+    await();
+    return count;
+  }
+
+  /**
+   * Called after an update has been finalized. Starts a merge in a separate thread
+   * if the number of buffered ids exceeds the specified limit.
+   */
+  public void finish() {
+    await();
+    if(count < data.meta.indexdelta) return;
+
+    idle.acquireUninterruptibly();
+    final Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          write();
+        } finally {
+          idle.release();
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void add(final TokenObjMap<IntList> map) {
+    await();
+    for(final byte[] key : map) {
+      if(key != null) add(key, map.get(key));
+    }
+  }
+
+  @Override
+  public void delete(final TokenObjMap<IntList> map) {
+    await();
+    final TokenObjMap<IntList> disk = new TokenObjMap<>();
+    for(final byte[] key : map) {
+      if(key == null) continue;
+      final IntList ids = remove(key, map.get(key));
+      if(!ids.isEmpty()) disk.put(key, ids);
+    }
+    if(!disk.isEmpty()) index.delete(disk);
+  }
+
+  @Override
+  public void replace(final byte[] old, final byte[] key, final int id) {
+    await();
+    if(remove(old, new IntList(1).add(id)).size() != 0 && index.get(old) >= 0) {
+      final TokenObjMap<IntList> disk = new TokenObjMap<>();
+      disk.put(old, new IntList(1).add(id));
+      index.delete(disk);
+    }
+    if(key.length <= data.meta.maxlen) add(key, new IntList(1).add(id));
+  }
+
+  @Override
+  public byte[] info(final MainOptions options) {
+    await();
+    return index.info(options);
+  }
+
+  @Override
+  public EntryIterator entries(final IndexEntries entries) {
+    await();
+    final EntryIterator disk = index.entries(entries);
+    if(count == 0) return disk;
+
+    // collect buffered keys that match the request
+    final byte[] key = entries.get();
+    final boolean asc = !entries.descending;
+    final TokenList keys = new TokenList();
+    for(final byte[] k : delta) {
+      if(k != null && (key.length == 0 || (entries.prefix ? startsWith(k, key) :
+        asc == diff(k, key) >= 0))) keys.add(k);
+    }
+    keys.sort(true, asc);
+
+    return new EntryIterator() {
+      byte[] next = disk.next();
+      int nc = disk.count(), k, c = -1;
+
+      @Override
+      public byte[] next() {
+        final byte[] dk = next, bk = k < keys.size() ? keys.get(k) : null;
+        if(dk == null && bk == null) {
+          c = -1;
+          return null;
+        }
+        final int d = dk == null ? 1 : bk == null ? -1 : asc ? diff(dk, bk) : diff(bk, dk);
+        c = 0;
+        if(d <= 0) {
+          c += nc;
+          next = disk.next();
+          nc = disk.count();
+        }
+        if(d >= 0) {
+          c += delta.get(bk).size();
+          k++;
+        }
+        return d <= 0 ? dk : bk;
+      }
+
+      @Override
+      public int count() {
+        return c;
+      }
+    };
+  }
+
+  @Override
+  public IndexIterator iter(final IndexToken token) {
+    await();
+    final IndexIterator disk = index.iter(token);
+    final IntList ids = ids(token);
+    if(ids.isEmpty()) return disk;
+
+    final IntList pres = new IntList(disk.size() + ids.size());
+    while(disk.more()) pres.add(disk.pre());
+    final int is = ids.size();
+    for(int i = 0; i < is; i++) pres.add(data.pre(ids.get(i)));
+    return DiskValues.iter(pres.sort());
+  }
+
+  @Override
+  public int costs(final IndexToken token) {
+    await();
+    final int costs = index.costs(token);
+    return costs == Integer.MAX_VALUE ? costs : costs + ids(token).size();
+  }
+
+  @Override
+  public boolean drop() {
+    return index.drop();
+  }
+
+  @Override
+  public void close() {
+    merge();
+    index.close();
+  }
+
+  @Override
+  public void flush() {
+    await();
+    index.flush();
+  }
+
+  /**
+   * Waits until a running merge has been completed.
+   */
+  public void await() {
+    idle.acquireUninterruptibly();
+    idle.release();
+  }
+
+  /**
+   * Merges the buffered entries into the disk-based index.
+   * Waits until a running merge has been completed.
+   */
+  public void merge() {
+    await();
+    write();
+  }
+
+  /**
+   * Writes the buffered entries to the disk-based index.
+   */
+  private void write() {
+    if(count == 0) return;
+
+    // skip keys that have been deleted
+    final TokenObjMap<IntList> map = new TokenObjMap<>();
+    for(final byte[] key : delta) {
+      if(key != null) map.put(key, delta.get(key));
+    }
+    index.add(map);
+    index.flush();
+    delta = new TokenObjMap<>();
+    count = 0;
+    data.meta.dirty = true;
+  }
+
+  /**
+   * Buffers ids of the specified key.
+   * @param key key
+   * @param ids ids
+   */
+  private void add(final byte[] key, final IntList ids) {
+    IntList list = delta.get(key);
+    if(list == null) {
+      list = new IntList(ids.size());
+      delta.put(key, list);
+    }
+    list.add(ids.toArray());
+    count += ids.size();
+  }
+
+  /**
+   * Removes buffered ids of the specified key.
+   * @param key key
+   * @param ids ids
+   * @return ids that have not been buffered
+   */
+  private IntList remove(final byte[] key, final IntList ids) {
+    final IntList list = delta.get(key);
+    if(list == null) return ids;
+
+    final IntList rest = new IntList(), removed = new IntList();
+    list.sort();
+    final int is = ids.size();
+    for(int i = 0; i < is; i++) {
+      final int id = ids.get(i);
+      (list.sortedIndexOf(id) >= 0 ? removed : rest).add(id);
+    }
+    if(!removed.isEmpty()) {
+      removed.sort();
+      final IntList kept = new IntList(list.size() - removed.size());
+      final int ls = list.size();
+      for(int l = 0; l < ls; l++) {
+        final int id = list.get(l);
+        if(removed.sortedIndexOf(id) < 0) kept.add(id);
+      }
+      if(kept.isEmpty()) delta.delete(key);
+      else delta.put(key, kept);
+      count -= removed.size();
+    }
+    return rest;
+  }
+
+  /**
+   * Returns the buffered ids that match the specified token.
+   * @param token index token
+   * @return ids
+   */
+  private IntList ids(final IndexToken token) {
+    final IntList ids = new IntList();
+    if(count == 0) return ids;
+
+    if(token instanceof StringRange) {
+      final StringRange sr = (StringRange) token;
+      for(final byte[] key : delta) {
+        if(key == null) continue;
+        final int mn = diff(key, sr.min), mx = diff(key, sr.max);
+        if((sr.mni ? mn >= 0 : mn > 0) && (sr.mxi ? mx <= 0 : mx < 0)) {
+          ids.add(delta.get(key).toArray());
+        }
+      }
+    } else if(token instanceof NumericRange) {
+      final NumericRange nr = (NumericRange) token;
+      for(final byte[] key : delta) {
+        if(key == null) continue;
+        final double v = toDouble(key);
+        if(v >= nr.min && v <= nr.max) ids.add(delta.get(key).toArray());
+      }
+    } else {
+      final IntList list = delta.get(token.get());
+      if(list != null) ids.add(list.toArray());
+    }
+    return ids;
+  }
+}
@@ -81,7 +81,9 @@ public class DiskValues implements ValueIndex {
       for(int m = 0; m < s; ++m) {
         final long pos = idxr.read5(m * 5L);
         final int oc = idxl.readNum(pos);
-        if(stats.adding(oc)) stats.add(data.text(pre(idxl.readNum()), text));
+        if(stats.adding(oc)) {
+          stats.add(data.text(pre(Postings.first(idxl, pos + Num.length(oc), oc)), text));
+        }
       }
     }
     stats.print(tb);
@@ -355,31 +357,61 @@ public class DiskValues implements ValueIndex {
     final int sz = idxl.readNum(pos);
     final long off = pos + Num.length(sz);
     if(key == null) {
-      key = data.text(pre(idxl.readNum()), text);
+      key = data.text(pre(Postings.first(idxl, off, sz)), text);
       ctext.put(index, key);
     }
     return cache.add(key, sz, off);
   }
 
   /**
-   * Iterator method.
-   * <p><em>Important:</em> This method is thread-safe.</p>
+   * Iterator method. As ids and pre values are identical, the ids are decoded block by
+   * block, and blocks are skipped if the iterator is advanced.
+   * <p><em>Important:</em> This method is thread-safe. No lock is acquired as long as
+   * the index has no pending changes.</p>
    * @param sz number of values
    * @param offset offset
    * @return iterator
    */
-  private IndexIterator iter(final int sz, final long offset) {
-    final IntList pres = new IntList(sz);
-    synchronized(monitor) {
-      idxl.cursor(offset);
-      for(int i = 0, id = 0; i < sz; i++) {
-        id += idxl.readNum();
-        pres.add(pre(id));
+  IndexIterator iter(final int sz, final long offset) {
+    final Postings postings = new Postings(idxl.reader(offset), sz, false);
+    return new IndexIterator() {
+      @Override
+      public boolean more() {
+        return postings.more();
       }
-    }
-    return iter(pres.sort());
+
+      @Override
+      public boolean advance(final int pre) {
+        return postings.more() && (postings.value() >= pre || postings.advance(pre));
+      }
+
+      @Override
+      public int pre() {
+        return postings.value();
+      }
+
+      @Override
+      public int size() {
+        return sz;
+      }
+    };
+  }
+
+  /**
+   * Decodes the ids of an index entry.
+   * <p><em>Important:</em> This method is thread-safe. No lock is acquired as long as
+   * the index has no pending changes.</p>
+   * @param sz number of ids
+   * @param offset offset of the id list
+   * @return ids
+   */
+  final IntList ids(final int sz, final long offset) {
+    final IntList ids = new IntList(sz);
+    new Postings(idxl.reader(offset), sz, false).read(ids, null);
+    return ids;
   }
 
+
   /**
    * Performs a string-based range query.
    * <p><em>Important:</em> This method is thread-safe.</p>
@@ -393,18 +425,16 @@ public class DiskValues implements ValueIndex {
       final int i = get(tok.min);
       final int s = size();
       for(int l = i < 0 ? -i - 1 : tok.mni ? i : i + 1; l < s; l++) {
-        final int ps = idxl.readNum(idxr.read5(l * 5L));
-        int id = idxl.readNum();
-        final int pre = pre(id);
+        final long pos = idxr.read5(l * 5L);
+        final int ps = idxl.readNum(pos);
+        final long off = pos + Num.length(ps);
+        final int pre = pre(Postings.first(idxl, off, ps));
 
         // value is too large: skip traversal
         final int d = diff(data.text(pre, text), tok.max);
         if(d > 0 || !tok.mxi && d == 0) break;
         // add pre values
-        for(int p = 0; p < ps; ++p) {
-          pres.add(pre(id));
-          id += idxl.readNum();
-        }
+        add(pres, ps, off);
       }
     }
     return iter(pres.sort());
@@ -426,17 +456,15 @@ public class DiskValues implements ValueIndex {
     synchronized(monitor) {
       final int s = size();
       for(int l = 0; l < s; ++l) {
-        final int ds = idxl.readNum(idxr.read5(l * 5L));
-        int id = idxl.readNum();
-        final int pre = pre(id);
+        final long pos = idxr.read5(l * 5L);
+        final int ds = idxl.readNum(pos);
+        final long off = pos + Num.length(ds);
+        final int pre = pre(Postings.first(idxl, off, ds));
 
         final double v = data.textDbl(pre, text);
         if(v >= min && v <= max) {
           // value is in range
-          for(int d = 0; d < ds; ++d) {
-            pres.add(pre(id));
-            id += idxl.readNum();
-          }
+          add(pres, ds, off);
         } else if(simple && v > max && data.textLen(pre, text) == len) {
           // if limits are integers, if min, max and current value have the same
           // string length, and if current value is larger than max, test can be
@@ -448,12 +476,23 @@ public class DiskValues implements ValueIndex {
     return iter(pres.sort());
   }
 
+  /**
+   * Adds the pre values of an index entry.
+   * @param pres pre values
+   * @param sz number of ids
+   * @param offset offset of the id list
+   */
+  private void add(final IntList pres, final int sz, final long offset) {
+    final IntList ids = ids(sz, offset);
+    for(int i = 0; i < sz; i++) pres.add(pre(ids.get(i)));
+  }
+
   /**
    * Returns an iterator for the specified id list.
    * @param pres pre values
    * @return iterator
    */
-  private static IndexIterator iter(final IntList pres) {
+  static IndexIterator iter(final IntList pres) {
     return new IndexIterator() {
       final int s = pres.size();
       int p = -1;
@@ -463,6 +502,26 @@ public class DiskValues implements ValueIndex {
         return ++p < s;
       }
 
+      @Override
+      public boolean advance(final int pre) {
+        // galloping search: find upper limit by doubling the distance
+        int l = p + 1, d = 1, h = l;
+        while(h < s && pres.get(h) < pre) {
+          l = h + 1;
+          h += d;
+          d <<= 1;
+        }
+        // binary search
+        h = Math.min(h, s);
+        while(l < h) {
+          final int m = l + h >>> 1;
+          if(pres.get(m) < pre) l = m + 1;
+          else h = m;
+        }
+        p = l;
+        return p < s;
+      }
+
       @Override
       public int pre() {
         return pres.get(p);
@@ -485,12 +544,13 @@ public class DiskValues implements ValueIndex {
       tb.add("- references:").add("\n");
       for(int m = 0; m < sz; m++) {
         final long pos = idxr.read5(m * 5L);
-        int oc = idxl.readNum(pos), id = idxl.readNum(), pre = pre(id);
+        final int oc = idxl.readNum(pos);
+        final IntList ids = ids(oc, pos + Num.length(oc));
         tb.add("  ").addInt(m).add(". offset: ").addLong(pos).add(", key: \"");
-        tb.add(data.text(pre, text)).add("\", ids/pres: ").addInt(id).add('/').addInt(pre);
-        for(int n = 1; n < oc; n++) {
-          id += idxl.readNum();
-          tb.add(",").addInt(id).add('/').addInt(pre(id));
+        tb.add(data.text(pre(ids.get(0)), text)).add("\", ids/pres: ");
+        for(int n = 0; n < oc; n++) {
+          if(n > 0) tb.add(",");
+          tb.addInt(ids.get(n)).add('/').addInt(pre(ids.get(n)));
         }
         tb.add("\n");
       }
@@ -5,6 +5,7 @@ import static org.basex.data.DataText.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -21,9 +22,10 @@ import org.basex.util.list.*;
  * <p>The data is stored on disk in the following format:</p>
  * <ul>
  * <li> {@code DATATXT/ATV + 'l'}: contains the index values, which are dense id
- *   lists to all text nodes/attribute values, stored in the {@link Num} format:
- *   [size0, id1, id2, ...]. The number of index keys is stored in the first 4
- *   bytes of the file.</li>
+ *   lists to all text nodes/attribute values: [size0, list0, size1, list1, ...].
+ *   The sizes are stored in the {@link Num} format, and the sorted ids are stored as
+ *   {@link Postings} with skip headers and bit-packed distances. The number of index keys is
+ *   stored in the first 4 bytes of the file.</li>
  * <li> {@code DATATXT/ATV + 'r'}: contains 5-byte references to the id lists
  *   for all keys. To save space, the keys itself are not stored in the index
  *   structure. Instead, they can be found by following the id references to
@@ -35,10 +37,21 @@ import org.basex.util.list.*;
  * @author Christian Gruen
  */
 public final class DiskValuesBuilder extends IndexBuilder {
+  /** Minimum number of nodes of a partition. */
+  private static final int PARTSIZE = 1 << 16;
+
   /** Temporary value tree. */
   private IndexTree index = new IndexTree();
   /** Index type (attributes/texts). */
   private final boolean text;
+  /** Builder of the complete index if this builder indexes a partition ({@code null} otherwise). */
+  private final DiskValuesBuilder parent;
+  /** Pre value of the first node to be indexed. */
+  private final int offset;
+  /** Number of partitions to be built in parallel. */
+  private int partitions = 1;
+  /** Number of partial index files written by partitions. */
+  private int files;
 
   /**
    * Constructor.
@@ -49,18 +62,92 @@ public final class DiskValuesBuilder extends IndexBuilder {
   public DiskValuesBuilder(final Data data, final MainOptions options, final boolean text) {
     super(data, options.get(MainOptions.INDEXSPLITSIZE));
     this.text = text;
+    parent = null;
+    offset = 0;
+  }
+
+  /**
+   * Constructor for building a partition of the index.
+   * @param parent builder of the complete index
+   * @param splitSize maximum number of operations per partial index
+   * @param offset pre value of the first node
+   * @param size number of nodes
+   */
+  private DiskValuesBuilder(final DiskValuesBuilder parent, final int splitSize,
+      final int offset, final int size) {
+    super(parent.data, splitSize, size);
+    text = parent.text;
+    this.parent = parent;
+    this.offset = offset;
+  }
+
+  /**
+   * Sets the number of partitions to be built in parallel. Each partition comprises a
+   * range of pre values, and the resulting partial indexes are merged.
+   * @param parts number of partitions
+   * @return self reference
+   */
+  public DiskValuesBuilder partitions(final int parts) {
+    partitions = parts;
+    return this;
   }
 
   @Override
-  public DiskValues build() throws IOException {
+  protected ValueIndex index() throws IOException {
+    if(parent != null) {
+      // partition: write partial index
+      scan();
+      writeIndex(true);
+      return null;
+    }
+
     // delete old index
     abort();
 
     final Performance perf = Prop.debug ? new Performance() : null;
     Util.debug(det());
 
-    final int k = text ? Data.TEXT : Data.ATTR;
+    final int ps = Math.min(partitions, size / PARTSIZE);
+    if(ps > 1) {
+      // build partitions in parallel
+      final DiskValuesBuilder[] parts = new DiskValuesBuilder[ps];
+      for(int p = 0; p < ps; p++) {
+        final int start = (int) ((long) size * p / ps);
+        final int end = (int) ((long) size * (p + 1) / ps);
+        parts[p] = new DiskValuesBuilder(this, splitSize, start, end - start);
+        parts[p].budget(budget);
+      }
+      proc(new IndexBuilders(parts, ps)).build();
+      proc(null);
+      for(final DiskValuesBuilder part : parts) count += part.count;
+      splits = files;
+      pre = size;
+    } else {
+      scan();
+      writeIndex(splits > 0);
+    }
 
+    // merge partial index structures
+    if(splits > 1) {
+      index = null;
+      Performance.gc(1);
+      merge();
+    }
+
+    if(text) data.meta.textindex = true;
+    else data.meta.attrindex = true;
+
+    finishIndex(text ? IndexType.TEXT : IndexType.ATTRIBUTE, perf);
+    return data.meta.updindex ? UpdatableDiskValues.get(data, text) : new DiskValues(data, text);
+  }
+
+  /**
+   * Indexes all values of the assigned range, and writes partial indexes to disk if
+   * main memory is exhausted.
+   * @throws IOException I/O exception
+   */
+  private void scan() throws IOException {
+    final int k = text ? Data.TEXT : Data.ATTR;
     for(pre = 0; pre < size; ++pre) {
       if((pre & 0x0FFF) == 0) {
         check();
@@ -72,77 +159,69 @@ public final class DiskValuesBuilder extends IndexBuilder {
         }
       }
       // skip too long values
-      if(data.kind(pre) == k && data.textLen(pre, text) <= data.meta.maxlen) {
-        index.index(data.text(pre, text), data.meta.updindex ? data.id(pre) : pre);
+      final int p = offset + pre;
+      if(data.kind(p) == k && data.textLen(p, text) <= data.meta.maxlen) {
+        index.index(data.text(p, text), data.meta.updindex ? data.id(p) : p);
         count++;
       }
     }
+  }
 
-    writeIndex(splits > 0);
-    // merge partial index structures
-    if(splits > 1) {
-      index = null;
-      Performance.gc(1);
-      merge();
-    }
-
-    if(text) data.meta.textindex = true;
-    else data.meta.attrindex = true;
-
-    finishIndex(perf);
-    return data.meta.updindex ? new UpdatableDiskValues(data, text) : new DiskValues(data, text);
+  /**
+   * Returns the number of the next partial index file written by a partition.
+   * @return file number
+   */
+  private synchronized int file() {
+    return files++;
   }
 
   /**
-   * Merges cached index files.
+   * Merges cached index files. The partial indexes are sorted by their keys; they are
+   * read sequentially, and a heap is used to find the partial indexes with the smallest key.
    * @throws IOException I/O exception
    */
   private void merge() throws IOException {
     final String f = text ? DATATXT : DATAATV;
+    final Performance perf = new Performance();
+    final long bytes = mergeSize(f, 'l', 't');
     int sz = 0;
-    try(final DataOutput outL = new DataOutput(data.meta.dbfile(f + 'l'));
-        final DataOutput outR = new DataOutput(data.meta.dbfile(f + 'r'))) {
+    try(final DataOutput outL = new DataOutput(data.meta.dbfile(f + 'l'), MERGEBUFFER);
+        final DataOutput outR = new DataOutput(data.meta.dbfile(f + 'r'), MERGEBUFFER)) {
       outL.write4(0);
 
-      // initialize cached index iterators
-      final IntList ml = new IntList();
-      final IntList il = new IntList();
-      final DiskValuesMerger[] vm = new DiskValuesMerger[splits];
-      for(int i = 0; i < splits; ++i) vm[i] = new DiskValuesMerger(data, text, i);
+      // initialize cached index iterators, ordered by their current keys and merge ids
+      final MinHeap<DiskValuesMerger, DiskValuesMerger> heap = new MinHeap<>(splits,
+          new Comparator<DiskValuesMerger>() {
+        @Override
+        public int compare(final DiskValuesMerger m1, final DiskValuesMerger m2) {
+          final int d = diff(m1.key, m2.key);
+          return d != 0 ? d : m1.id - m2.id;
+        }
+      });
+      for(int i = 0; i < splits; ++i) add(heap, new DiskValuesMerger(data, text, i));
 
       // parse through all values
-      while(true) {
+      final ArrayList<DiskValuesMerger> ml = new ArrayList<>();
+      final IntList il = new IntList();
+      while(!heap.isEmpty()) {
         checkStop();
 
-        // find first index which is not completely parsed yet
-        int min = -1;
-        while(++min < splits && vm[min].values.length == 0);
-        if(min == splits) break;
-
-        // find index entry with smallest key
-        ml.reset();
-        for(int i = min; i < splits; ++i) {
-          if(vm[i].values.length == 0) continue;
-          final int d = diff(vm[min].key, vm[i].key);
-          if(d < 0) continue;
-          if(d > 0) {
-            min = i;
-            ml.reset();
-          }
-          ml.add(i);
-        }
+        // find all index entries with the smallest key
+        final DiskValuesMerger min = heap.removeMin();
+        ml.add(min);
+        while(!heap.isEmpty() && eq(heap.peek().key, min.key)) ml.add(heap.removeMin());
 
         // parse through all values, cache and sort id values
-        final int ms = ml.size();
-        for(int m = 0; m < ms; ++m) {
-          final DiskValuesMerger t = vm[ml.get(m)];
+        for(final DiskValuesMerger t : ml) {
           final int vl = t.values.length;
           for(int l = 4, v; l < vl; l += Num.length(v)) {
             v = Num.get(t.values, l);
             il.add(v);
           }
           t.next();
+          add(heap, t);
         }
+        ml.clear();
         // write final structure to disk
         write(outL, outR, il);
         ++sz;
@@ -153,6 +232,17 @@ public final class DiskValuesBuilder extends IndexBuilder {
     try(final DataAccess da = new DataAccess(data.meta.dbfile(f + 'l'))) {
       da.write4(sz);
     }
+    merged(bytes, perf);
+  }
+
+  /**
+   * Adds an index iterator to the heap if it is not completely parsed yet.
+   * @param heap heap
+   * @param merger index iterator
+   */
+  private static void add(final MinHeap<DiskValuesMerger, DiskValuesMerger> heap,
+      final DiskValuesMerger merger) {
+    if(merger.values.length != 0) heap.insert(merger, merger);
   }
 
   /**
@@ -162,9 +252,11 @@ public final class DiskValuesBuilder extends IndexBuilder {
    */
   private void writeIndex(final boolean partial) throws IOException {
     // write id arrays and references
-    final String name = (text ? DATATXT : DATAATV) + (partial ? splits : "");
+    final String name = (text ? DATATXT : DATAATV) +
+        (partial ? parent != null ? parent.file() : splits : "");
+    // partial indexes will be read sequentially: no references need to be written
     try(final DataOutput outL = new DataOutput(data.meta.dbfile(name + 'l'));
-        final DataOutput outR = new DataOutput(data.meta.dbfile(name + 'r'))) {
+        final DataOutput outR = partial ? null : new DataOutput(data.meta.dbfile(name + 'r'))) {
       outL.write4(index.size());
 
       final IntList il = new IntList();
@@ -175,7 +267,6 @@ public final class DiskValuesBuilder extends IndexBuilder {
 
         if(partial) {
           // write temporary structure to disk: number of entries, absolute values
-          outR.write5(outL.size());
           outL.write(values, 0, vs);
         } else {
           // cache and sort all values
@@ -210,16 +301,10 @@ public final class DiskValuesBuilder extends IndexBuilder {
       throws IOException {
 
     // sort values before writing
-    il.sort();
     final int is = il.size();
     outR.write5(outL.size());
     outL.writeNum(is);
-    for(int i = 0, o = 0; i < is; i++) {
-      final int v = il.get(i);
-      outL.writeNum(v - o);
-      o = v;
-    }
-    il.reset();
+    outL.writeBytes(Postings.encode(il.sort().next(), null, is));
   }
 
   @Override
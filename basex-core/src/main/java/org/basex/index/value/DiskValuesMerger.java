@@ -6,24 +6,31 @@ import static org.basex.util.Token.*;
 import java.io.*;
 
 import org.basex.data.*;
+import org.basex.index.*;
 import org.basex.io.in.DataInput;
+import org.basex.util.*;
 
 /**
  * This class provides data for merging temporary value indexes.
+ * The partial index files are read sequentially.
  *
  * @author BaseX Team 2005-15, BSD License
  * @author Christian Gruen
  */
 final class DiskValuesMerger {
-  /** Index instance. */
-  private final DiskValues dv;
+  /** Index values. */
+  private final DataInput dv;
   /** Index keys. */
   private final DataInput dk;
   /** File prefix. */
   private final String pref;
   /** Data reference. */
   private final Data data;
+  /** Number of remaining entries. */
+  private int entries;
 
+  /** Merge id. */
+  final int id;
   /** Current key. */
   byte[] key;
   /** Current values. */
@@ -33,14 +40,16 @@ final class DiskValuesMerger {
    * Constructor.
    * @param data data reference
    * @param text text flag
-   * @param i merge id
+   * @param id merge id
    * @throws IOException I/O exception
    */
-  DiskValuesMerger(final Data data, final boolean text, final int i) throws IOException {
-    pref = (text ? DATATXT : DATAATV) + i;
-    dk = new DataInput(data.meta.dbfile(pref + 't'));
-    dv = new DiskValues(data, text, pref);
+  DiskValuesMerger(final Data data, final boolean text, final int id) throws IOException {
+    pref = (text ? DATATXT : DATAATV) + id;
+    dk = new DataInput(data.meta.dbfile(pref + 't'), IndexBuilder.MERGEBUFFER);
+    dv = new DataInput(data.meta.dbfile(pref + 'l'), IndexBuilder.MERGEBUFFER);
+    entries = dv.read4();
     this.data = data;
+    this.id = id;
     next();
   }
 
@@ -62,9 +71,16 @@ final class DiskValuesMerger {
   /**
    * Returns next values. Called by the {@link DiskValuesBuilder}.
    * @return compressed values
+   * @throws IOException I/O exception
    */
-  private byte[] nextValues() {
-    return dv.idxr.cursor() >= dv.idxr.length() ? EMPTY :
-      dv.idxl.readBytes(dv.idxr.read5(), dv.idxl.read4());
+  private byte[] nextValues() throws IOException {
+    if(entries == 0) return EMPTY;
+    entries--;
+    // size of the compressed values, including the size itself
+    final int vs = dv.read4();
+    final byte[] v = new byte[vs];
+    Num.size(v, vs);
+    for(int i = 4; i < vs; i++) v[i] = (byte) dv.read();
+    return v;
   }
 }
@@ -5,6 +5,9 @@ import static org.basex.data.DataText.*;
 import java.io.*;
 
 import org.basex.data.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.hash.*;
 import org.basex.util.list.*;
@@ -30,11 +33,34 @@ public final class UpdatableDiskValues extends DiskValues {
     super(data, text, text ? DATATXT : DATAATV);
   }
 
+  /**
+   * Opens an updatable index. Additions will be buffered if {@link MetaData#indexdelta}
+   * is greater than zero.
+   * @param data data reference
+   * @param text value type (texts/attributes)
+   * @return index
+   * @throws IOException I/O Exception
+   */
+  public static ValueIndex get(final Data data, final boolean text) throws IOException {
+    final UpdatableDiskValues index = new UpdatableDiskValues(data, text);
+    return data.meta.indexdelta > 0 ? new DeltaValues(index) : index;
+  }
+
   @Override
   protected int pre(final int id) {
     return data.pre(id);
   }
 
+  @Override
+  IndexIterator iter(final int sz, final long offset) {
+    // no monitor is required for mapping ids to pre values: the id/pre map is only read here,
+    // and it is only modified by updates, which exclude readers via the database write lock.
+    // order of pre values may differ from order of ids: decode and sort all values
+    final IntList pres = ids(sz, offset);
+    for(int i = 0; i < sz; i++) pres.set(i, pre(pres.get(i)));
+    return iter(pres.sort());
+  }
+
   @Override
   public synchronized void add(final TokenObjMap<IntList> map) {
     // create a sorted list of the new keys and update the old keys
@@ -46,18 +72,10 @@ public final class UpdatableDiskValues extends DiskValues {
     for(final byte[] key : new TokenList(map).sort(true)) {
       index = get(key, index, sz);
       if(index >= 0) {
-        final int[] ids = map.get(key).finish();
-        final long off = idxr.read5(index * 5L);
-        final int oldSize = idxl.readNum(off);
-        final IntList il = new IntList(oldSize + ids.length);
-        for(int o = 0, c = 0; o < oldSize; ++o) {
-          c += idxl.readNum();
-          il.add(c);
-        }
-        // mark old slot as empty
-        free.add((int) (idxl.cursor() - off), off);
+        // read old ids, mark old slot as empty
+        final IntList il = ids(idxr.read5(index * 5L), true);
         // write new ids
-        writeIds(key, il.add(ids), index++);
+        writeIds(key, il.add(map.get(key).finish()), index++);
       } else {
         index = -(index + 1);
         newKeys.add(key);
@@ -129,13 +147,13 @@ public final class UpdatableDiskValues extends DiskValues {
 
     } else {
       // add id to the existing id list
-      final long off = idxr.read5(index * 5L);
-      final int count = idxl.readNum(off);
+      final IntList ids = ids(idxr.read5(index * 5L), false);
+      final int count = ids.size();
       newIds = new IntList(count + 1);
 
       boolean notadded = true;
-      for(int c = 0, currId = 0; c < count; ++c) {
-        currId += idxl.readNum();
+      for(int c = 0; c < count; ++c) {
+        final int currId = ids.get(c);
         if(notadded && id < currId) {
           // add the new id
           newIds.add(id);
@@ -157,20 +175,18 @@ public final class UpdatableDiskValues extends DiskValues {
    * @return {@code true} if list was completely deleted
    */
   private boolean deleteIds(final int index, final byte[] key, final int[] ids) {
-    final long off = idxr.read5(index * 5L);
+    // read old ids, mark old slot as empty
+    final IntList oldIds = ids(idxr.read5(index * 5L), true);
 
-    // read each id from the list and skip the ones that should be deleted
-    final int oldSize = idxl.readNum(off), delSize = ids.length, newSize = oldSize - delSize;
+    // skip the ids that should be deleted
+    final int oldSize = oldIds.size(), delSize = ids.length, newSize = oldSize - delSize;
     final IntList newIds = new IntList(newSize);
-    for(int o = 0, d = 0, currId = 0; o < oldSize; o++) {
-      currId += idxl.readNum();
+    for(int o = 0, d = 0; o < oldSize; o++) {
+      final int currId = oldIds.get(o);
       if(d < delSize && currId == ids[d]) d++;
       else newIds.add(currId);
     }
 
-    // remove old ids
-    free.add((int) (idxl.cursor() - off), off);
-
     // delete cached index entry if no ids remain
     if(newSize == 0) {
       cache.delete(key);
@@ -182,6 +198,21 @@ public final class UpdatableDiskValues extends DiskValues {
     return false;
   }
 
+  /**
+   * Reads the ids of an index entry.
+   * @param off offset of the id list
+   * @param release mark the slot of the id list as empty
+   * @return ids
+   */
+  private IntList ids(final long off, final boolean release) {
+    final DataReader dr = idxl.reader(off);
+    final int size = dr.readNum();
+    final IntList ids = new IntList(size);
+    new Postings(dr, size, false).read(ids, null);
+    if(release) free.add((int) (dr.pos() - off), off);
+    return ids;
+  }
+
   /**
    * Deletes keys from the index.
    * @param keys list of key positions to delete
@@ -222,18 +253,19 @@ public final class UpdatableDiskValues extends DiskValues {
    * @param index index in reference file
    */
   private void writeIds(final byte[] key, final IntList ids, final int index) {
-    // compute compressed size of distance list
-    final int[] dists = distances(ids);
-    final int sz = dists.length;
-    int bytes = Num.length(sz);
-    for(final int id : dists) bytes += Num.length(id);
+    // compress sorted id list
+    final int[] list = ids.sort().finish();
+    final int sz = list.length;
+    final byte[] postings = Postings.encode(list, null, sz);
+    final int bytes = Num.length(sz) + postings.length;
 
     // choose new insertion position (append at the end if no slot is found)
     final long offset = free.get(bytes, idxl.length());
 
     // write new id values
     writeIdOffset(index, offset, key);
-    idxl.writeNums(offset, dists);
+    idxl.writeNum(offset, sz);
+    idxl.writeBytes(postings, 0, postings.length);
 
     // update the cache entry
     cache.add(key, sz, offset + Num.length(sz));
@@ -259,17 +291,6 @@ public final class UpdatableDiskValues extends DiskValues {
     idxl.write4(0, sz);
   }
 
-  /**
-   * Returns a new array which contains the id distances in ascending order.
-   * @param ids id list
-   * @return differences
-   */
-  private static int[] distances(final IntList ids) {
-    final int[] tmp = ids.sort().finish();
-    for(int l = tmp.length - 1; l > 0; --l) tmp[l] -= tmp[l - 1];
-    return tmp;
-  }
-
   @Override
   public String toString() {
     return super.toString() + free;
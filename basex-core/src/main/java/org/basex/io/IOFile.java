@@ -259,6 +259,15 @@ public final class IOFile extends IO {
     return file.renameTo(target.file);
   }
 
+  /**
+   * Atomically moves a file to another target. An existing target will be replaced.
+   * @param target target
+   * @throws IOException I/O exception
+   */
+  public void moveTo(final IOFile target) throws IOException {
+    Files.move(toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+  }
+
   /**
    * Copies a file to another target.
    * @param target target
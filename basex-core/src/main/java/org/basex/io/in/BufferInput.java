@@ -36,7 +36,17 @@ public class BufferInput extends InputStream {
    * @throws IOException I/O Exception
    */
   public BufferInput(final IO input) throws IOException {
-    this(input.inputStream());
+    this(input, IO.BLOCKSIZE);
+  }
+
+  /**
+   * Constructor, specifying a buffer size.
+   * @param input input to be read
+   * @param bs buffer size
+   * @throws IOException I/O Exception
+   */
+  public BufferInput(final IO input, final int bs) throws IOException {
+    this(input.inputStream(), bs);
     this.input = input;
     length = input.length();
   }
@@ -23,6 +23,16 @@ public final class DataInput extends BufferInput {
     super(io);
   }
 
+  /**
+   * Constructor, specifying a buffer size.
+   * @param io the input to be read
+   * @param bs buffer size
+   * @throws IOException I/O Exception
+   */
+  public DataInput(final IO io, final int bs) throws IOException {
+    super(io, bs);
+  }
+
   /**
    * Reads a boolean value.
    * @return boolean value
@@ -131,6 +141,15 @@ public final class DataInput extends BufferInput {
     return tmp;
   }
 
+  /**
+   * Reads an integer value.
+   * @return read value
+   * @throws IOException I/O Exception
+   */
+  public int read4() throws IOException {
+    return (read() << 24) + (read() << 16) + (read() << 8) + read();
+  }
+
   /**
    * Read a long value.
    * @return read value
@@ -15,4 +15,6 @@ final class Buffer {
   long pos = -1;
   /** Dirty flag. */
   boolean dirty;
+  /** Generation of the file contents (only used by thread-local buffers). */
+  int gen;
 }
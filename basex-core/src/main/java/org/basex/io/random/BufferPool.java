@@ -0,0 +1,299 @@
+package org.basex.io.random;
+
+import java.util.concurrent.atomic.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+
+/**
+ * This class provides a process-wide pool of clean blocks, which is shared by all
+ * {@link DataAccess} and {@link TableDiskAccess} instances. It serves as second-level cache
+ * for the buffers of the single files: dirty blocks are always kept in the local buffers,
+ * and the pool is updated whenever a block is read from or written to disk.
+ *
+ * Blocks are identified by a file id, which is unique for each opened file, and their disk
+ * offset. The pool is split into stripes, each of which is guarded by its own lock.
+ * A clock algorithm is applied to evict blocks from a stripe.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class BufferPool {
+  /** Number of stripes (must be 1 << n). */
+  private static final int STRIPES = 1 << 4;
+  /** Counter for file ids. */
+  private static final AtomicLong FILES = new AtomicLong();
+  /** Current pool (the initial pool is deactivated). */
+  private static volatile BufferPool pool = new BufferPool(0);
+
+  /** Stripes ({@code null} if the pool is deactivated). */
+  private final Stripe[] stripes;
+
+  /**
+   * Constructor.
+   * @param blocks maximum number of blocks
+   */
+  private BufferPool(final int blocks) {
+    if(blocks < STRIPES) {
+      stripes = null;
+    } else {
+      stripes = new Stripe[STRIPES];
+      for(int s = 0; s < STRIPES; s++) stripes[s] = new Stripe(blocks / STRIPES);
+    }
+  }
+
+  /**
+   * Assigns a new pool size. The existing pool will be discarded if the size changes.
+   * @param mb size in megabytes (deactivated if set to 0)
+   */
+  public static synchronized void size(final int mb) {
+    final int blocks = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, mb) * (1 << 20) /
+        IO.BLOCKSIZE);
+    final Stripe[] sts = pool.stripes;
+    if(sts == null ? blocks >= STRIPES : sts[0].capacity() != blocks / STRIPES)
+      pool = new BufferPool(blocks);
+  }
+
+  /**
+   * Returns a new file id.
+   * @return file id
+   */
+  static long file() {
+    return FILES.incrementAndGet();
+  }
+
+  /**
+   * Discards all pooled blocks of the specified file.
+   * @param file file id
+   */
+  static void drop(final long file) {
+    final Stripe[] sts = pool.stripes;
+    if(sts == null) return;
+    for(final Stripe st : sts) st.drop(file);
+  }
+
+  /**
+   * Copies the contents of a pooled block into the specified array.
+   * @param file file id
+   * @param pos disk offset of the block
+   * @param data target array
+   * @return {@code true} if the block was found in the pool
+   */
+  static boolean read(final long file, final long pos, final byte[] data) {
+    final Stripe[] sts = pool.stripes;
+    if(sts == null) return false;
+    final int h = hash(file, pos);
+    return sts[h & STRIPES - 1].read(file, pos, h, data);
+  }
+
+  /**
+   * Stores a copy of the specified block in the pool.
+   * @param file file id
+   * @param pos disk offset of the block
+   * @param data block data
+   */
+  static void write(final long file, final long pos, final byte[] data) {
+    final Stripe[] sts = pool.stripes;
+    if(sts == null) return;
+    final int h = hash(file, pos);
+    sts[h & STRIPES - 1].write(file, pos, h, data);
+  }
+
+  /**
+   * Returns information on the pool.
+   * @return info string
+   */
+  public static String info() {
+    final Stripe[] sts = pool.stripes;
+    if(sts == null) return Text.OFF;
+    long hits = 0, misses = 0, size = 0, capacity = 0;
+    for(final Stripe st : sts) {
+      synchronized(st) {
+        hits += st.hits;
+        misses += st.misses;
+        size += st.size;
+        capacity += st.capacity();
+      }
+    }
+    final long total = hits + misses;
+    return size + "/" + capacity + " blocks, " + hits + " hits, " + misses + " misses" +
+      (total == 0 ? "" : " (" + hits * 100 / total + "% hits)");
+  }
+
+  /**
+   * Computes a hash value for the specified block.
+   * @param file file id
+   * @param pos disk offset of the block
+   * @return hash value
+   */
+  private static int hash(final long file, final long pos) {
+    long h = file * 0x9E3779B97F4A7C15L + pos / IO.BLOCKSIZE;
+    h ^= h >>> 29;
+    h *= 0xBF58476D1CE4E5B9L;
+    return (int) (h ^ h >>> 32);
+  }
+
+  /**
+   * Stripe of the pool, containing a fixed number of block slots.
+   */
+  private static final class Stripe {
+    /** File ids. */
+    private final long[] files;
+    /** Disk offsets. */
+    private final long[] poss;
+    /** Block data (allocated on demand). */
+    private final byte[][] blocks;
+    /** Reference bits of the clock algorithm. */
+    private final boolean[] refs;
+    /** Pointers to the next slots with the same bucket (offset by 1, {@code 0}: none). */
+    private final int[] next;
+    /** Hash buckets (slot offset by 1, {@code 0}: empty). */
+    private final int[] buckets;
+    /** Number of occupied slots. */
+    private int size;
+    /** Clock hand. */
+    private int hand;
+    /** Number of hits. */
+    private long hits;
+    /** Number of misses. */
+    private long misses;
+
+    /**
+     * Constructor.
+     * @param capacity number of slots
+     */
+    Stripe(final int capacity) {
+      files = new long[capacity];
+      poss = new long[capacity];
+      blocks = new byte[capacity][];
+      refs = new boolean[capacity];
+      next = new int[capacity];
+      buckets = new int[Integer.highestOneBit(Math.max(1, capacity - 1)) << 1];
+    }
+
+    /**
+     * Returns the capacity of this stripe.
+     * @return number of slots
+     */
+    int capacity() {
+      return files.length;
+    }
+
+    /**
+     * Copies the contents of a block into the specified array.
+     * @param file file id
+     * @param pos disk offset of the block
+     * @param hash hash value
+     * @param data target array
+     * @return {@code true} if the block was found
+     */
+    synchronized boolean read(final long file, final long pos, final int hash,
+        final byte[] data) {
+      final int s = find(file, pos, hash);
+      if(s == -1) {
+        misses++;
+        return false;
+      }
+      hits++;
+      refs[s] = true;
+      System.arraycopy(blocks[s], 0, data, 0, IO.BLOCKSIZE);
+      return true;
+    }
+
+    /**
+     * Stores a copy of a block.
+     * @param file file id
+     * @param pos disk offset of the block
+     * @param hash hash value
+     * @param data block data
+     */
+    synchronized void write(final long file, final long pos, final int hash,
+        final byte[] data) {
+      int s = find(file, pos, hash);
+      if(s == -1) {
+        if(size < files.length) {
+          s = size++;
+          blocks[s] = new byte[IO.BLOCKSIZE];
+        } else {
+          s = evict();
+        }
+        files[s] = file;
+        poss[s] = pos;
+        final int b = bucket(hash);
+        next[s] = buckets[b];
+        buckets[b] = s + 1;
+      }
+      refs[s] = true;
+      System.arraycopy(data, 0, blocks[s], 0, IO.BLOCKSIZE);
+    }
+
+    /**
+     * Discards all blocks of the specified file. The released slots will be reused first.
+     * @param file file id
+     */
+    synchronized void drop(final long file) {
+      for(int s = 0; s < size; s++) {
+        if(files[s] != file) continue;
+        unlink(s);
+        files[s] = 0;
+        refs[s] = false;
+      }
+    }
+
+    /**
+     * Returns the slot of the specified block.
+     * @param file file id
+     * @param pos disk offset of the block
+     * @param hash hash value
+     * @return slot, or {@code -1} if the block was not found
+     */
+    private int find(final long file, final long pos, final int hash) {
+      for(int s = buckets[bucket(hash)] - 1; s != -1; s = next[s] - 1) {
+        if(files[s] == file && poss[s] == pos) return s;
+      }
+      return -1;
+    }
+
+    /**
+     * Chooses a slot that has not been referenced recently and unlinks it from its bucket.
+     * @return slot
+     */
+    private int evict() {
+      final int cap = files.length;
+      while(refs[hand]) {
+        refs[hand] = false;
+        hand = (hand + 1) % cap;
+      }
+      final int s = hand;
+      hand = (hand + 1) % cap;
+      // slots of dropped files have already been unlinked
+      if(files[s] != 0) unlink(s);
+      return s;
+    }
+
+    /**
+     * Unlinks a slot from its bucket.
+     * @param s slot
+     */
+    private void unlink(final int s) {
+      final int b = bucket(hash(files[s], poss[s]));
+      if(buckets[b] == s + 1) {
+        buckets[b] = next[s];
+      } else {
+        int p = buckets[b] - 1;
+        while(next[p] != s + 1) p = next[p] - 1;
+        next[p] = next[s];
+      }
+    }
+
+    /**
+     * Returns the bucket for the specified hash value.
+     * @param hash hash value
+     * @return bucket
+     */
+    private int bucket(final int hash) {
+      // skip the bits that have been consumed for choosing the stripe
+      return hash >>> 4 & buckets.length - 1;
+    }
+  }
+}
@@ -1,12 +1,14 @@
 package org.basex.io.random;
 
 import java.io.*;
+import java.nio.*;
 
 import org.basex.io.*;
 import org.basex.util.*;
 
 /**
  * This class allows positional read and write access to a database file.
+ * Lock-free sequential read access is provided via {@link #reader(long)}.
  *
  * @author BaseX Team 2005-15, BSD License
  * @author Christian Gruen
@@ -14,6 +16,8 @@ import org.basex.util.*;
 public final class DataAccess implements Closeable {
   /** Buffer manager. */
   private final Buffers bm = new Buffers();
+  /** File id in the buffer pool. */
+  private final long id = BufferPool.file();
   /** Reference to the data input stream. */
   private final RandomAccessFile raf;
   /** File length. */
@@ -22,6 +26,17 @@ public final class DataAccess implements Closeable {
   private boolean changed;
   /** Offset. */
   private int off;
+  /** Indicates if changes have not been written yet. */
+  private volatile boolean dirty;
+  /** Generation of the file contents (incremented whenever changes have been written). */
+  private volatile int gen;
+  /** Thread-local buffers for positional reads. */
+  private final ThreadLocal<Buffer> local = new ThreadLocal<Buffer>() {
+    @Override
+    protected Buffer initialValue() {
+      return new Buffer();
+    }
+  };
 
   /**
    * Constructor, initializing the file reader.
@@ -51,6 +66,10 @@ public final class DataAccess implements Closeable {
         raf.setLength(length);
         changed = false;
       }
+      if(dirty) {
+        gen++;
+        dirty = false;
+      }
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -59,6 +78,7 @@ public final class DataAccess implements Closeable {
   @Override
   public synchronized void close() {
     flush();
+    BufferPool.drop(id);
     try {
       raf.close();
     } catch(final IOException ex) {
@@ -66,6 +86,15 @@ public final class DataAccess implements Closeable {
     }
   }
 
+  /**
+   * Returns a reader, starting from the specified file position.
+   * @param pos file position
+   * @return reader
+   */
+  public DataReader reader(final long pos) {
+    return new DataReader(this, pos);
+  }
+
   /**
    * Returns the current file position.
    * @return position in the file
@@ -221,9 +250,11 @@ public final class DataAccess implements Closeable {
     try {
       if(bf.dirty) writeBlock(bf);
       bf.pos = b;
-      raf.seek(bf.pos);
-      if(bf.pos < raf.length())
-        raf.readFully(bf.data, 0, (int) Math.min(length - bf.pos, IO.BLOCKSIZE));
+      if(b < raf.length() && !BufferPool.read(id, b, bf.data)) {
+        raf.seek(b);
+        raf.readFully(bf.data, 0, (int) Math.min(length - b, IO.BLOCKSIZE));
+        BufferPool.write(id, b, bf.data);
+      }
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -318,6 +349,7 @@ public final class DataAccess implements Closeable {
       final int l = Math.min(last - o, IO.BLOCKSIZE - off);
       System.arraycopy(buffer, o, bf.data, off, l);
       bf.dirty = true;
+      if(!dirty) dirty = true;
       off += l;
       o += l;
       // adjust file size
@@ -382,10 +414,42 @@ public final class DataAccess implements Closeable {
   private synchronized void length(final long len) {
     if(len != length) {
       changed = true;
+      dirty = true;
       length = len;
     }
   }
 
+  /**
+   * Returns a thread-local buffer with the contents of the specified block.
+   * @param block disk offset of the block
+   * @return buffer, or {@code null} if changes are pending
+   */
+  Buffer block(final long block) {
+    if(dirty) return null;
+    final Buffer bf = local.get();
+    // discard buffered contents if changes have been written in the meantime
+    final int g = gen;
+    if(bf.gen != g) {
+      bf.gen = g;
+      bf.pos = -1;
+    }
+    if(bf.pos != block) {
+      bf.pos = block;
+      final long len = Math.min(length - block, IO.BLOCKSIZE);
+      if(len > 0 && !BufferPool.read(id, block, bf.data)) {
+        try {
+          final ByteBuffer bb = ByteBuffer.wrap(bf.data, 0, (int) len);
+          while(bb.hasRemaining() && raf.getChannel().read(bb, block + bb.position()) != -1);
+          BufferPool.write(id, block, bf.data);
+        } catch(final IOException ex) {
+          bf.pos = -1;
+          Util.stack(ex);
+        }
+      }
+    }
+    return bf;
+  }
+
   // PRIVATE METHODS ==========================================================
 
   /**
@@ -404,6 +468,7 @@ public final class DataAccess implements Closeable {
   private void write(final int value) {
     final Buffer bf = buffer();
     bf.dirty = true;
+    if(!dirty) dirty = true;
     bf.data[off++] = (byte) value;
     final long nl = bf.pos + off;
     if(nl > length) length(nl);
@@ -446,6 +511,7 @@ public final class DataAccess implements Closeable {
     final long pos = buffer.pos, len = Math.min(IO.BLOCKSIZE, length - pos);
     raf.seek(pos);
     raf.write(buffer.data, 0, (int) len);
+    BufferPool.write(id, pos, buffer.data);
     buffer.dirty = false;
   }
 
@@ -0,0 +1,187 @@
+package org.basex.io.random;
+
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * This class provides sequential read access to a {@link DataAccess} instance, starting
+ * from a given file position. In contrast to the positional methods of {@link DataAccess},
+ * it keeps its own file pointer: if no changes are pending, blocks will be read via
+ * positional reads into thread-local buffers, and no locks will be acquired.
+ *
+ * Instances of this class are cheap and must not be shared by multiple threads.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class DataReader {
+  /** Data access. */
+  private final DataAccess da;
+  /** Current file position. */
+  private long pos;
+  /** Current buffer ({@code null} if it needs to be requested). */
+  private Buffer bf;
+
+  /**
+   * Constructor.
+   * @param da data access
+   * @param pos file position
+   */
+  DataReader(final DataAccess da, final long pos) {
+    this.da = da;
+    this.pos = pos;
+  }
+
+  /**
+   * Returns the current file position.
+   * @return file position
+   */
+  public long pos() {
+    return pos;
+  }
+
+  /**
+   * Sets the file position.
+   * @param p file position
+   * @return self reference
+   */
+  public DataReader pos(final long p) {
+    pos = p;
+    return this;
+  }
+
+  /**
+   * Reads a byte value.
+   * @return byte value
+   */
+  public byte read1() {
+    bf = null;
+    return (byte) read();
+  }
+
+  /**
+   * Reads an integer value.
+   * @return integer value
+   */
+  public int read4() {
+    bf = null;
+    return (read() << 24) + (read() << 16) + (read() << 8) + read();
+  }
+
+  /**
+   * Reads a 5-byte value.
+   * @return long value
+   */
+  public long read5() {
+    bf = null;
+    return ((long) read() << 32) + ((long) read() << 24) + (read() << 16) + (read() << 8) + read();
+  }
+
+  /**
+   * Reads a {@link Num} value.
+   * @return integer value
+   */
+  public int readNum() {
+    bf = null;
+    return num();
+  }
+
+  /**
+   * Reads the specified number of {@link Num} values.
+   * @param nums array to be filled
+   * @param off array offset
+   * @param len number of values
+   */
+  public void readNums(final int[] nums, final int off, final int len) {
+    bf = null;
+    final int l = off + len;
+    for(int n = off; n < l; n++) nums[n] = num();
+  }
+
+  /**
+   * Reads a token, represented by its compressed length and its byte array.
+   * @return byte array
+   */
+  public byte[] readToken() {
+    bf = null;
+    return bytes(num());
+  }
+
+  /**
+   * Reads a number of bytes.
+   * @param len length
+   * @return byte array
+   */
+  public byte[] readBytes(final int len) {
+    bf = null;
+    return bytes(len);
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Reads the next compressed number.
+   * @return next integer
+   */
+  private int num() {
+    final int value = read();
+    switch(value & 0xC0) {
+      case 0:
+        return value;
+      case 0x40:
+        return (value - 0x40 << 8) + read();
+      case 0x80:
+        return (value - 0x80 << 24) + (read() << 16) + (read() << 8) + read();
+      default:
+        return (read() << 24) + (read() << 16) + (read() << 8) + read();
+    }
+  }
+
+  /**
+   * Reads the specified number of bytes.
+   * @param len length
+   * @return byte array
+   */
+  private byte[] bytes(final int len) {
+    final byte[] b = new byte[len];
+    int o = 0;
+    while(o < len) {
+      final int off = (int) (pos & IO.BLOCKSIZE - 1);
+      final Buffer buf = buffer(pos - off);
+      final int l = Math.min(len - o, IO.BLOCKSIZE - off);
+      if(buf != null) {
+        System.arraycopy(buf.data, off, b, o, l);
+      } else {
+        System.arraycopy(da.readBytes(pos, l), 0, b, o, l);
+      }
+      pos += l;
+      o += l;
+    }
+    return b;
+  }
+
+  /**
+   * Reads the next byte.
+   * @return next byte
+   */
+  private int read() {
+    final long p = pos++;
+    final int off = (int) (p & IO.BLOCKSIZE - 1);
+    final Buffer buf = buffer(p - off);
+    return (buf != null ? buf.data[off] : da.read1(p)) & 0xFF;
+  }
+
+  /**
+   * Returns the buffer for the specified block.
+   * @param block disk offset of the block
+   * @return buffer, or {@code null} if the data access has pending changes
+   */
+  private Buffer buffer(final long block) {
+    Buffer buf = bf;
+    if(buf == null || buf.pos != block) {
+      buf = da.block(block);
+      bf = buf;
+    }
+    return buf;
+  }
+}
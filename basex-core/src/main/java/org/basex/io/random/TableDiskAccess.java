@@ -3,6 +3,9 @@ package org.basex.io.random;
 import static org.basex.data.DataText.*;
 
 import java.io.*;
+import java.nio.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.channels.*;
 import java.util.*;
 
@@ -16,21 +19,59 @@ import org.basex.util.*;
 /**
  * This class stores the table on disk and reads it block-wise.
  *
- * NOTE: this class is not thread-safe.
+ * If {@link MetaData#maptable} is enabled, the table file will additionally be mapped into
+ * memory, and all read operations will be performed without locking as long as no updates
+ * are pending. Updates will always be written via the block buffers.
+ *
+ * Lock-free reads of the mappings and of the block index ({@link #fpres}, {@link #pages},
+ * {@link #used}) are safe because of the database locks: the table is only updated by a
+ * transaction that holds the write lock of the database, so no other transaction reads it at
+ * the same time. The mappings are explicitly released when the first update is performed and
+ * when the table is closed (at this point, no other references to the database exist).
+ *
+ * NOTE: write operations are not thread-safe.
  *
  * @author BaseX Team 2005-15, BSD License
  * @author Christian Gruen
  * @author Tim Petrowsky
  */
 public final class TableDiskAccess extends TableAccess {
+  /** Size of a memory-mapped segment (must be a multiple of the block size). */
+  private static final int SEGMENT = 1 << 30;
+  /** Unsafe instance for releasing mappings (Java 9 and later; may be {@code null}). */
+  private static final Object UNSAFE;
+  /** Method for releasing mappings (Java 9 and later; may be {@code null}). */
+  private static final Method CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method cleaner = null;
+    try {
+      final Class<?> clazz = Class.forName("sun.misc.Unsafe");
+      cleaner = clazz.getMethod("invokeCleaner", ByteBuffer.class);
+      final Field field = clazz.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+    } catch(final Throwable ex) {
+      Util.debug(ex);
+      cleaner = null;
+    }
+    UNSAFE = unsafe;
+    CLEANER = cleaner;
+  }
+
   /** Buffer manager. */
   private final Buffers bm = new Buffers();
+  /** File id in the buffer pool. */
+  private final long id = BufferPool.file();
   /** File storing all blocks. */
   private final RandomAccessFile file;
   /** Bitmap storing free (=0) and used (=1) pages. */
   private BitArray usedPages;
   /** File lock. */
   private FileLock fl;
+  /** Memory-mapped segments ({@code null} if reads must be performed via the buffers). */
+  private volatile ByteBuffer[] segments;
 
   /** First pre values (ascending order); will be initialized with the first update. */
   private int[] fpres;
@@ -85,6 +126,7 @@ public final class TableDiskAccess extends TableAccess {
     // initialize data file
     file = new RandomAccessFile(meta.dbfile(DATATBL).file(), "rw");
     if(!lock(write)) throw new BaseXException(Text.DB_PINNED_X, md.name);
+    map();
   }
 
   /**
@@ -107,6 +149,7 @@ public final class TableDiskAccess extends TableAccess {
   @Override
   public synchronized void flush(final boolean all) throws IOException {
     for(final Buffer b : bm.all()) if(b.dirty) writeBlock(b);
+    if(segments == null || !meta.maptable) map();
     if(!dirty || !all) return;
 
     try(final DataOutput out = new DataOutput(meta.dbfile(DATATBL + 'i'))) {
@@ -128,6 +171,8 @@ public final class TableDiskAccess extends TableAccess {
   @Override
   public synchronized void close() throws IOException {
     flush(true);
+    unmap();
+    BufferPool.drop(id);
     file.close();
   }
 
@@ -144,38 +189,70 @@ public final class TableDiskAccess extends TableAccess {
   }
 
   @Override
-  public synchronized int read1(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return b[o] & 0xFF;
+  public int read1(final int pre, final int off) {
+    final ByteBuffer[] sgm = segments;
+    if(sgm != null) {
+      final long p = position(pre, sgm);
+      if(p != -1) return sgm[(int) (p / SEGMENT)].get((int) (p % SEGMENT) + off) & 0xFF;
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return b[o] & 0xFF;
+    }
   }
 
   @Override
-  public synchronized int read2(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  public int read2(final int pre, final int off) {
+    final ByteBuffer[] sgm = segments;
+    if(sgm != null) {
+      final long p = position(pre, sgm);
+      if(p != -1) return sgm[(int) (p / SEGMENT)].getShort((int) (p % SEGMENT) + off) & 0xFFFF;
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+    }
   }
 
   @Override
-  public synchronized int read4(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
-      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  public int read4(final int pre, final int off) {
+    final ByteBuffer[] sgm = segments;
+    if(sgm != null) {
+      final long p = position(pre, sgm);
+      if(p != -1) return sgm[(int) (p / SEGMENT)].getInt((int) (p % SEGMENT) + off);
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
+        ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+    }
   }
 
   @Override
-  public synchronized long read5(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
-      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  public long read5(final int pre, final int off) {
+    final ByteBuffer[] sgm = segments;
+    if(sgm != null) {
+      final long p = position(pre, sgm);
+      if(p != -1) {
+        final ByteBuffer bb = sgm[(int) (p / SEGMENT)];
+        final int o = (int) (p % SEGMENT) + off;
+        return ((long) (bb.get(o) & 0xFF) << 32) + (bb.getInt(o + 1) & 0xFFFFFFFFL);
+      }
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      final byte[] b = bm.current().data;
+      return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
+        ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+    }
   }
 
   @Override
   public void write1(final int pre, final int off, final int v) {
-    final int o = off + cursor(pre);
+    final int o = off + update(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
     b[o] = (byte) v;
@@ -184,7 +261,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write2(final int pre, final int off, final int v) {
-    final int o = off + cursor(pre);
+    final int o = off + update(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
     b[o] = (byte) (v >>> 8);
@@ -194,7 +271,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write4(final int pre, final int off, final int v) {
-    final int o = off + cursor(pre);
+    final int o = off + update(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
     b[o]     = (byte) (v >>> 24);
@@ -206,7 +283,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write5(final int pre, final int off, final long v) {
-    final int o = off + cursor(pre);
+    final int o = off + update(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
     b[o]     = (byte) (v >>> 32);
@@ -428,11 +505,100 @@ public final class TableDiskAccess extends TableAccess {
       }
       usedPages = new BitArray(used, true);
     }
+    unmap();
     dirty = true;
   }
 
   // PRIVATE METHODS ==========================================================
 
+  /**
+   * Maps the table file into memory if this is requested by the meta data.
+   * Must only be called if no buffers are dirty.
+   * @throws IOException I/O exception
+   */
+  private void map() throws IOException {
+    unmap();
+    if(!meta.maptable) return;
+    final FileChannel fc = file.getChannel();
+    final long size = fc.size();
+    if(size == 0) return;
+
+    final int sl = (int) ((size + SEGMENT - 1) / SEGMENT);
+    final ByteBuffer[] sgm = new ByteBuffer[sl];
+    for(int s = 0; s < sl; s++) {
+      final long pos = (long) s * SEGMENT;
+      sgm[s] = fc.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SEGMENT, size - pos));
+    }
+    segments = sgm;
+  }
+
+  /**
+   * Returns the file position of the entry for the specified pre value in the mapped segments.
+   * @param pre pre value
+   * @param sgm mapped segments
+   * @return file position, or {@code -1} if the entry is not available in the mapped segments
+   */
+  private long position(final int pre, final ByteBuffer[] sgm) {
+    if(pre < 0 || pre >= meta.size) return -1;
+    final int[] fp = fpres;
+    int m;
+    if(fp == null) {
+      m = pre / IO.ENTRIES;
+    } else {
+      // find the last block with a first pre value that is smaller than or equal to the pre value
+      int l = 0, h = used - 1;
+      m = 0;
+      while(l <= h) {
+        final int c = l + h >>> 1;
+        if(fp[c] <= pre) {
+          m = c;
+          l = c + 1;
+        } else {
+          h = c - 1;
+        }
+      }
+    }
+    final long p = (long) page(m) * IO.BLOCKSIZE + (pre - fpre(m) << IO.NODEPOWER);
+    final int s = (int) (p / SEGMENT);
+    return s < sgm.length && p % SEGMENT + IO.NODESIZE <= sgm[s].limit() ? p : -1;
+  }
+
+  /**
+   * Invalidates the memory mappings, moves the cursor to the block containing the entry
+   * for the specified pre value and returns its offset inside the block.
+   * @param pre pre of the entry to be updated
+   * @return offset of the entry in the block
+   */
+  private int update(final int pre) {
+    unmap();
+    return cursor(pre);
+  }
+
+  /**
+   * Releases the memory mappings. Must only be called if no other thread reads the table.
+   * If the mappings cannot be released explicitly, this will be done by the garbage collector.
+   */
+  private void unmap() {
+    final ByteBuffer[] sgm = segments;
+    if(sgm == null) return;
+    segments = null;
+    for(final ByteBuffer bb : sgm) {
+      try {
+        if(CLEANER != null) {
+          CLEANER.invoke(UNSAFE, bb);
+        } else {
+          // Java 8: call sun.misc.Cleaner#clean
+          final Method method = bb.getClass().getMethod("cleaner");
+          method.setAccessible(true);
+          final Object cleaner = method.invoke(bb);
+          if(cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      } catch(final Throwable ex) {
+        Util.debug(ex);
+      }
+    }
+  }
+
   /**
    * Searches for the block containing the entry for the specified pre value.
    * Reads the block and returns its offset inside the block.
@@ -517,8 +683,12 @@ public final class TableDiskAccess extends TableAccess {
       if(b >= blocks) {
         blocks = b + 1;
       } else {
-        file.seek(bf.pos * IO.BLOCKSIZE);
-        file.readFully(bf.data);
+        final long pos = bf.pos * IO.BLOCKSIZE;
+        if(!BufferPool.read(id, pos, bf.data)) {
+          file.seek(pos);
+          file.readFully(bf.data);
+          BufferPool.write(id, pos, bf.data);
+        }
       }
     } catch(final IOException ex) {
       Util.stack(ex);
@@ -542,8 +712,10 @@ public final class TableDiskAccess extends TableAccess {
    * @throws IOException I/O exception
    */
   private void writeBlock(final Buffer bf) throws IOException {
-    file.seek(bf.pos * IO.BLOCKSIZE);
+    final long pos = bf.pos * IO.BLOCKSIZE;
+    file.seek(pos);
     file.write(bf.data);
+    BufferPool.write(id, pos, bf.data);
     bf.dirty = false;
   }
 
@@ -25,6 +25,14 @@ public final class LibraryModule extends StaticScope {
     this.name = name;
   }
 
+  /**
+   * Creates a copy of this module. The static context is shared.
+   * @return copy
+   */
+  LibraryModule copy() {
+    return new LibraryModule(name, docString(), sc);
+  }
+
   @Override
   public boolean visit(final ASTVisitor visitor) {
     return true;
@@ -14,6 +14,7 @@ import org.basex.query.value.node.*;
 import org.basex.query.value.type.*;
 import org.basex.query.var.*;
 import org.basex.util.*;
+import org.basex.util.hash.*;
 import org.basex.util.list.*;
 
 /**
@@ -77,6 +78,17 @@ public final class MainModule extends StaticScope {
     }
   }
 
+  /**
+   * Creates an uncompiled copy of this module for another query context.
+   * @param qc query context
+   * @return copy
+   */
+  MainModule copy(final QueryContext qc) {
+    final VarScope scp = new VarScope(sc);
+    final Expr ex = expr.copy(qc, scp, new IntObjMap<Var>());
+    return new MainModule(ex, scp, declType, docString(), sc, info);
+  }
+
   /**
    * Evaluates this module and returns the result as a cached value iterator.
    * @param qc query context
@@ -0,0 +1,311 @@
+package org.basex.query;
+
+import static org.basex.query.func.Function.*;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+import org.basex.core.*;
+import org.basex.core.locks.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.query.expr.Expr.Flag;
+import org.basex.query.func.*;
+import org.basex.query.util.*;
+import org.basex.query.value.item.*;
+import org.basex.query.var.*;
+import org.basex.util.list.*;
+
+/**
+ * This class caches the serialized results of read-only queries.
+ *
+ * A result is identified by the query string, the external bindings, the user, the
+ * session options and the databases accessed by the query, along with their modification
+ * timestamps. Queries are only cached if all accessed databases can be statically
+ * determined, and if they do not contain non-deterministic functions or functions that
+ * access external resources. Results are discarded when the referenced databases are locked
+ * for writing, when their timestamps change, when the maximum lifetime is exceeded, or when
+ * the maximum cache size would be exceeded (least recently used results are discarded first).
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCache {
+  /** Functions whose results depend on the current time or on external resources. */
+  private static final EnumSet<Function> VOLATILE = EnumSet.of(CURRENT_DATE, CURRENT_DATETIME,
+      CURRENT_TIME, IMPLICIT_TIMEZONE, ENVIRONMENT_VARIABLE, AVAILABLE_ENVIRONMENT_VARIABLES,
+      UNPARSED_TEXT, UNPARSED_TEXT_LINES, UNPARSED_TEXT_AVAILABLE, _FILE_CURRENT_DIR, _DB_SYSTEM);
+
+  /** Cached results, in the order of their last access. */
+  private final LinkedHashMap<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+  /** Static options. */
+  private final StaticOptions sopts;
+  /** Size of all cached results (bytes). */
+  private long size;
+
+  /**
+   * Constructor.
+   * @param sopts static options
+   */
+  public QueryCache(final StaticOptions sopts) {
+    this.sopts = sopts;
+  }
+
+  /**
+   * Returns a key for the result of the specified query, or {@code null} if the result
+   * cannot be cached. Must be called after the query has been parsed, and after the accessed
+   * databases have been locked.
+   * @param qp query processor
+   * @return key or {@code null}
+   */
+  public Key key(final QueryProcessor qp) {
+    final QueryContext qc = qp.qc;
+    if(sopts.get(StaticOptions.QUERYCACHE) <= 0 || qp.bound == null || qc.updating ||
+        qc.root == null || qc.ctxItem != null && !deterministic(qc.ctxItem) ||
+        !deterministic(qc.root)) return null;
+
+    final LockResult lr = new LockResult();
+    qc.databases(lr);
+    if(lr.readAll || lr.writeAll || !lr.write.isEmpty()) return null;
+
+    // assign modification timestamps of the accessed databases
+    final Context ctx = qc.context;
+    final StringList names = new StringList();
+    final StringBuilder state = new StringBuilder();
+    for(final String db : lr.read.sort().unique()) {
+      final Data data;
+      if(db.equals(DBLocking.CONTEXT)) {
+        data = ctx.data();
+        if(data == null) continue;
+        // current node set is a subset of the opened database
+        if(!ctx.root()) return null;
+      } else {
+        if(!Databases.validName(db)) return null;
+        data = ctx.datas.data(db);
+      }
+
+      final long time;
+      if(data != null) {
+        time = data.meta.time;
+      } else {
+        final IO inf = MetaData.file(sopts.dbpath(db), DataText.DATAINF);
+        if(!inf.exists()) return null;
+        time = inf.timeStamp();
+      }
+      final String name = data != null ? data.meta.name : db;
+      names.add(name);
+      state.append(name).append('=').append(time).append(';');
+    }
+
+    // the query parser normalizes line endings
+    final String query = qp.query().trim().replace("\r\n", "\n").replace('\r', '\n');
+    final StringBuilder id = new StringBuilder();
+    for(final Object part : new Object[] { ctx.user().name(), ctx.options, qp.bound, query }) {
+      final String string = part.toString();
+      id.append(string.length()).append(':').append(string);
+    }
+    return new Key(id.toString(), names.toArray(), state.toString());
+  }
+
+  /**
+   * Returns the cached result for the specified key.
+   * @param key key
+   * @return result or {@code null}
+   */
+  public synchronized Result get(final Key key) {
+    final Result result = results.get(key.id);
+    if(result == null) return null;
+    if(result.state.equals(key.state) && !expired(result)) return result;
+    remove(key.id);
+    return null;
+  }
+
+  /**
+   * Caches a result.
+   * @param key key
+   * @param output serialized result
+   * @param hits number of returned items
+   */
+  public synchronized void put(final Key key, final byte[] output, final long hits) {
+    final long max = max();
+    final Result result = new Result(key, output, hits);
+    if(result.size > max) return;
+
+    remove(key.id);
+    results.put(key.id, result);
+    size += result.size;
+    // discard expired and least recently used results
+    final Iterator<Result> iter = results.values().iterator();
+    while(iter.hasNext()) {
+      final Result r = iter.next();
+      if(size <= max && !expired(r)) break;
+      iter.remove();
+      size -= r.size;
+    }
+  }
+
+  /**
+   * Discards all results that refer to the specified databases.
+   * Called before databases are locked for writing.
+   * @param dbs names of databases ({@code null}: discard all results)
+   */
+  public synchronized void invalidate(final StringList dbs) {
+    if(results.isEmpty()) return;
+    if(dbs == null || dbs.contains(DBLocking.ADMIN)) {
+      results.clear();
+      size = 0;
+      return;
+    }
+    final Iterator<Entry<String, Result>> iter = results.entrySet().iterator();
+    while(iter.hasNext()) {
+      final Result r = iter.next().getValue();
+      for(final String db : r.dbs) {
+        if(dbs.contains(db)) {
+          iter.remove();
+          size -= r.size;
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached results.
+   * @return number of results
+   */
+  public synchronized int size() {
+    return results.size();
+  }
+
+  /**
+   * Removes the result with the specified key.
+   * @param id key
+   */
+  private void remove(final String id) {
+    final Result result = results.remove(id);
+    if(result != null) size -= result.size;
+  }
+
+  /**
+   * Checks if the lifetime of the specified result has been exceeded.
+   * @param result result
+   * @return result of check
+   */
+  private boolean expired(final Result result) {
+    final long ttl = sopts.get(StaticOptions.CACHETIMEOUT) * 1000L;
+    return ttl > 0 && System.currentTimeMillis() - result.created > ttl;
+  }
+
+  /**
+   * Returns the maximum cache size in bytes.
+   * @return maximum size
+   */
+  private long max() {
+    return sopts.get(StaticOptions.QUERYCACHE) * 1024L;
+  }
+
+  /**
+   * Checks if the specified scope is deterministic and does not access external resources.
+   * @param scope scope
+   * @return result of check
+   */
+  private static boolean deterministic(final StaticScope scope) {
+    return !scope.expr.has(Flag.NDT) && scope.visit(new ASTVisitor() {
+      /** Already visited scopes. */
+      private final IdentityHashMap<Scope, Object> funcs = new IdentityHashMap<>();
+
+      @Override
+      public boolean funcCall(final StandardFunc call) {
+        return !VOLATILE.contains(call.sig);
+      }
+
+      @Override
+      public boolean staticVar(final StaticVar var) {
+        return func(var);
+      }
+
+      @Override
+      public boolean staticFuncCall(final StaticFuncCall call) {
+        return func(call.func());
+      }
+
+      @Override
+      public boolean inlineFunc(final Scope sub) {
+        return sub.visit(this);
+      }
+
+      @Override
+      public boolean funcItem(final FuncItem func) {
+        return func(func);
+      }
+
+      /**
+       * Visits a scope.
+       * @param scp scope
+       * @return if more expressions should be visited
+       */
+      private boolean func(final Scope scp) {
+        if(scp == null) return false;
+        if(funcs.containsKey(scp)) return true;
+        funcs.put(scp, null);
+        return scp.visit(this);
+      }
+    });
+  }
+
+  /**
+   * Key of a cached result.
+   */
+  public static final class Key {
+    /** Identifier (query, bindings, user and options). */
+    private final String id;
+    /** Names of the accessed databases. */
+    private final String[] dbs;
+    /** Modification timestamps of the accessed databases. */
+    private final String state;
+
+    /**
+     * Constructor.
+     * @param id identifier
+     * @param dbs names of the accessed databases
+     * @param state modification timestamps
+     */
+    private Key(final String id, final String[] dbs, final String state) {
+      this.id = id;
+      this.dbs = dbs;
+      this.state = state;
+    }
+  }
+
+  /**
+   * Cached result.
+   */
+  public static final class Result {
+    /** Serialized result. */
+    public final byte[] output;
+    /** Number of returned items. */
+    public final long hits;
+    /** Names of the accessed databases. */
+    private final String[] dbs;
+    /** Modification timestamps of the accessed databases. */
+    private final String state;
+    /** Creation time. */
+    private final long created = System.currentTimeMillis();
+    /** Estimated memory consumption. */
+    private final long size;
+
+    /**
+     * Constructor.
+     * @param key key
+     * @param output serialized result
+     * @param hits number of returned items
+     */
+    private Result(final Key key, final byte[] output, final long hits) {
+      this.output = output;
+      this.hits = hits;
+      dbs = key.dbs;
+      state = key.state;
+      size = output.length + (key.id.length() + state.length() << 1);
+    }
+  }
+}
@@ -266,6 +266,38 @@ public final class QueryContext extends Proc implements Closeable {
     }
   }
 
+  /**
+   * Adopts copies of the declarations, expressions and prolog settings of a parsed query
+   * (see {@link QueryPlans}).
+   * @param qc query context of the parsed query
+   */
+  void adopt(final QueryContext qc) {
+    info.query = qc.info.query;
+    updating = qc.updating;
+
+    // declare all functions and variables before copying expressions that reference them
+    funcs.copy(this, qc.funcs);
+    vars.copy(qc.vars);
+    funcs.copyExprs(this);
+    vars.copyExprs(this);
+    if(qc.ctxItem != null) ctxItem = qc.ctxItem.copy(this);
+    if(qc.root != null) root = qc.root.copy(this);
+    funcs.copied();
+    vars.copied();
+
+    // bindings of the query options override the specified bindings
+    bindings.putAll(qc.bindings);
+    for(final Option<?> opt : qc.staticOpts.keySet()) {
+      staticOpts.put(opt, context.options.get(opt));
+    }
+    tempOpts.add(qc.tempOpts);
+    readLocks.add(qc.readLocks);
+    writeLocks.add(qc.writeLocks);
+    for(final byte[] path : qc.modParsed) modParsed.put(path, qc.modParsed.get(path));
+    if(qc.serParams != null) serParams = new SerializerOptions(qc.serParams);
+    if(qc.ftOpt != null) ftOpt = new FTOpt().copy(qc.ftOpt);
+  }
+
   /**
    * Compiles and optimizes the expression.
    * @throws QueryException query exception
@@ -363,6 +395,8 @@ public final class QueryContext extends Proc implements Closeable {
           copy(cache, datas, dbs);
           copy(output, datas, dbs);
 
+          // acquire deferred write locks: readers may have accessed the databases until now
+          context.upgrade(this);
           if(context.data() != null) context.invalidate();
           updates.apply(this);
 
@@ -442,6 +476,15 @@ public final class QueryContext extends Proc implements Closeable {
     // replace collection lock with context lock
     if(lr.read.delete(Docs.COLL)) lr.read.add(DBLocking.CONTEXT);
     if(lr.write.delete(Docs.COLL)) lr.write.add(DBLocking.CONTEXT);
+    // databases among the write locks: exclude user, module and internal locks
+    for(final String object : lr.write) {
+      if(!writeLocks.contains(object) && !DBLocking.internal(object)) lr.databases.add(object);
+    }
+  }
+
+  @Override
+  public boolean deferrable() {
+    return true;
   }
 
   /**
@@ -812,6 +855,32 @@ public final class QueryContext extends Proc implements Closeable {
     return as;
   }
 
+  /**
+   * Creates a child context for evaluating parts of the query in a separate thread.
+   * The current focus, the bindings of the current stack frame and the date and time
+   * context are adopted.
+   * @return child context
+   * @throws QueryException query exception
+   */
+  public QueryContext child() throws QueryException {
+    initDateTime();
+    final QueryContext qc = new QueryContext(this);
+    qc.stack.enterFrame(stack);
+    qc.value = value;
+    qc.pos = pos;
+    qc.size = size;
+    qc.scoring = scoring;
+    qc.ftOpt = ftOpt;
+    qc.collations = collations;
+    qc.maxCalls = maxCalls;
+    qc.time = time;
+    qc.date = date;
+    qc.datm = datm;
+    qc.zone = zone;
+    qc.nano = nano;
+    return qc;
+  }
+
   /**
    * Initializes the static date and time context of a query if not done yet.
    * @return self reference
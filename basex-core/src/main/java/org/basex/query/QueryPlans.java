@@ -0,0 +1,221 @@
+package org.basex.query;
+
+import static org.basex.util.Token.*;
+
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.query.func.*;
+import org.basex.query.var.*;
+
+/**
+ * This class caches parsed queries and library modules.
+ *
+ * A parsed query serves as template: if the same query string is parsed again by the same
+ * user, with the same session options and file path, the parser is skipped, and the
+ * declarations and expressions of the template are copied to the new query context
+ * (see {@link QueryContext#adopt(QueryContext)}). The copies are compiled and optimized as
+ * usual, as compiled expression trees contain inlined external bindings, database contents
+ * and pre-evaluated expressions. As the static contexts of a template are shared with its
+ * copies, a template can only be used by one query at a time: if it is in use, another
+ * template will be parsed. Templates are discarded if an imported module file has been
+ * modified, or if the maximum number of templates is exceeded (least recently used templates
+ * are discarded first).
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryPlans {
+  /** Unused templates, in the order of their last access. */
+  private final LinkedHashMap<String, ArrayList<Plan>> plans =
+      new LinkedHashMap<>(16, 0.75f, true);
+  /** Static options. */
+  private final StaticOptions sopts;
+  /** Number of unused templates. */
+  private int size;
+
+  /**
+   * Constructor.
+   * @param sopts static options
+   */
+  public QueryPlans(final StaticOptions sopts) {
+    this.sopts = sopts;
+  }
+
+  /**
+   * Parses the specified query or library module, or copies a template of a query that has
+   * been parsed before. The template will be released when the query context is closed.
+   * @param qc query context
+   * @param query query string
+   * @param library library/main module
+   * @param path file path (may be {@code null})
+   * @return main module or library module
+   * @throws QueryException query exception
+   */
+  public StaticScope parse(final QueryContext qc, final String query, final boolean library,
+      final String path) throws QueryException {
+
+    // static contexts of templates must not be customized
+    if(sopts.get(StaticOptions.PLANCACHE) <= 0 || qc.stop != null || qc.thes != null ||
+        !qc.modDeclared.isEmpty()) return qc.parse(query, library, path, null);
+
+    final StringBuilder key = new StringBuilder();
+    for(final Object part : new Object[] { qc.context.user().name(), qc.context.options,
+        path, library, query }) {
+      final String string = String.valueOf(part);
+      key.append(string.length()).append(':').append(string);
+    }
+
+    Plan plan = take(key.toString());
+    if(plan == null) {
+      final QueryContext tqc = new QueryContext(qc.context);
+      try {
+        plan = new Plan(key.toString(), tqc, tqc.parse(query, library, path, null));
+      } catch(final QueryException ex) {
+        tqc.close();
+        throw ex;
+      }
+    }
+    qc.adopt(plan.qc);
+    qc.resources.add(plan);
+    return library ? ((LibraryModule) plan.scope).copy() : qc.root;
+  }
+
+  /**
+   * Returns the number of unused templates.
+   * @return number of templates
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Discards all unused templates.
+   */
+  public synchronized void close() {
+    for(final ArrayList<Plan> list : plans.values()) {
+      for(final Plan plan : list) plan.qc.close();
+    }
+    plans.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns an unused template for the specified query.
+   * @param key key
+   * @return template or {@code null}
+   */
+  private synchronized Plan take(final String key) {
+    final ArrayList<Plan> list = plans.get(key);
+    if(list == null) return null;
+
+    Plan plan = null;
+    while(plan == null && !list.isEmpty()) {
+      plan = list.remove(list.size() - 1);
+      size--;
+      if(!plan.valid()) {
+        plan.qc.close();
+        plan = null;
+      }
+    }
+    if(list.isEmpty()) plans.remove(key);
+    return plan;
+  }
+
+  /**
+   * Releases a template after its copy has been closed.
+   * @param plan template
+   */
+  private synchronized void release(final Plan plan) {
+    final int max = sopts.get(StaticOptions.PLANCACHE);
+    if(!plan.cache || max <= 0) {
+      plan.qc.close();
+      return;
+    }
+
+    ArrayList<Plan> list = plans.get(plan.key);
+    if(list == null) {
+      list = new ArrayList<>(1);
+      plans.put(plan.key, list);
+    }
+    list.add(plan);
+    size++;
+
+    // discard least recently used templates
+    final Iterator<ArrayList<Plan>> iter = plans.values().iterator();
+    while(size > max && iter.hasNext()) {
+      final ArrayList<Plan> lru = iter.next();
+      while(size > max && !lru.isEmpty()) {
+        lru.remove(0).qc.close();
+        size--;
+      }
+      if(lru.isEmpty()) iter.remove();
+    }
+  }
+
+  /**
+   * Template of a parsed query. Returned to the cache when the query context of its copy
+   * is closed.
+   */
+  private final class Plan implements QueryResource {
+    /** Key. */
+    private final String key;
+    /** Query context of the parsed query. */
+    private final QueryContext qc;
+    /** Main module or library module. */
+    private final StaticScope scope;
+    /** Parsed module files. */
+    private final IO[] files;
+    /** Timestamps of the parsed module files. */
+    private final long[] times;
+    /** Indicates if the template can be cached. */
+    private final boolean cache;
+
+    /**
+     * Constructor.
+     * @param key key
+     * @param qc query context of the parsed query
+     * @param scope main module or library module
+     */
+    private Plan(final String key, final QueryContext qc, final StaticScope scope) {
+      this.key = key;
+      this.qc = qc;
+      this.scope = scope;
+
+      final int fs = qc.modParsed.size();
+      files = new IO[fs];
+      times = new long[fs];
+      int f = 0;
+      for(final byte[] path : qc.modParsed) {
+        final IO io = IO.get(string(path));
+        files[f] = io;
+        times[f++] = io.timeStamp();
+      }
+      // Java module instances must not be shared by different queries
+      cache = !qc.resources.modules().java();
+    }
+
+    /**
+     * Checks if the parsed module files are still up-to-date.
+     * @return result of check
+     */
+    private boolean valid() {
+      final int fs = files.length;
+      for(int f = 0; f < fs; f++) {
+        if(files[f].timeStamp() != times[f]) return false;
+      }
+      return true;
+    }
+
+    @Override
+    public void close() {
+      // reset namespaces that may not have been removed after an error
+      if(qc.root != null) qc.root.sc.ns.size(0);
+      if(qc.ctxItem != null) qc.ctxItem.sc.ns.size(0);
+      for(final StaticFunc sf : qc.funcs.funcs()) sf.sc.ns.size(0);
+      for(final StaticVar sv : qc.vars) sv.sc.ns.size(0);
+      release(this);
+    }
+  }
+}
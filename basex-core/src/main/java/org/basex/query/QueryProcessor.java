@@ -37,6 +37,11 @@ public final class QueryProcessor extends Proc implements Closeable {
   private final String query;
   /** Parsed flag. */
   private boolean parsed;
+  /** Indicates if the parsed query may be cached and reused (see {@link QueryPlans}). */
+  private boolean cachePlan;
+  /** String representations of the bound values, sorted by name
+   * ({@code null} if a bound value has no string representation, see {@link QueryCache}). */
+  TreeMap<String, String> bound = new TreeMap<>();
 
   /**
    * Default constructor.
@@ -56,7 +61,8 @@ public final class QueryProcessor extends Proc implements Closeable {
   public void parse() throws QueryException {
     if(parsed) return;
     parsed = true;
-    qc.parseMain(query, null, sc);
+    if(cachePlan) qc.context.plans.parse(qc, query, false, null);
+    else qc.parseMain(query, null, sc);
     updating = qc.updating;
   }
 
@@ -118,6 +124,7 @@ public final class QueryProcessor extends Proc implements Closeable {
   public QueryProcessor bind(final String name, final Object value, final String type)
       throws QueryException {
     qc.bind(name, value, type, sc);
+    bound(name, value, type);
     return this;
   }
 
@@ -141,6 +148,7 @@ public final class QueryProcessor extends Proc implements Closeable {
    */
   public QueryProcessor bind(final String name, final Value value) throws QueryException {
     qc.bind(name, value, sc);
+    bound(name, value, null);
     return this;
   }
 
@@ -161,6 +169,7 @@ public final class QueryProcessor extends Proc implements Closeable {
    */
   public QueryProcessor context(final Value value) {
     qc.context(value, sc);
+    bound(".", value, null);
     return this;
   }
 
@@ -184,9 +193,26 @@ public final class QueryProcessor extends Proc implements Closeable {
    */
   public QueryProcessor context(final Object value, final String type) throws QueryException {
     qc.context(value, type, sc);
+    bound(".", value, type);
     return this;
   }
 
+  /**
+   * Registers the string representation of a bound value.
+   * @param name name of variable ({@code "."} for the context value)
+   * @param value bound value
+   * @param type type (may be {@code null})
+   */
+  private void bound(final String name, final Object value, final String type) {
+    if(bound == null) return;
+    if(value instanceof String) {
+      final String string = (String) value;
+      bound.put(name, type + ' ' + string.length() + ' ' + string);
+    } else {
+      bound = null;
+    }
+  }
+
   /**
    * Declares a namespace.
    * A namespace is undeclared if the {@code uri} is an empty string.
@@ -198,6 +224,7 @@ public final class QueryProcessor extends Proc implements Closeable {
    */
   public QueryProcessor namespace(final String prefix, final String uri) throws QueryException {
     sc.namespace(prefix, uri);
+    cachePlan = false;
     return this;
   }
 
@@ -208,6 +235,18 @@ public final class QueryProcessor extends Proc implements Closeable {
    */
   public QueryProcessor uriResolver(final UriResolver resolver) {
     sc.resolver = resolver;
+    cachePlan = false;
+    return this;
+  }
+
+  /**
+   * Allows the query to be parsed from a cached template of the same query. If this option
+   * is chosen, the default static context will be used for parsing, and changes to the
+   * {@link #sc} instance will be ignored.
+   * @return self reference
+   */
+  public QueryProcessor cachePlan() {
+    cachePlan = true;
     return this;
   }
 
@@ -223,7 +262,8 @@ public final class QueryProcessor extends Proc implements Closeable {
   public Serializer getSerializer(final OutputStream os) throws IOException, QueryException {
     compile();
     try {
-      return Serializer.get(os, qc.serParams()).sc(sc);
+      // the static context of a cached query is adopted from its template
+      return Serializer.get(os, qc.serParams()).sc(qc.root != null ? qc.root.sc : sc);
     } catch(final QueryIOException ex) {
       throw ex.getCause();
     }
@@ -256,6 +296,11 @@ public final class QueryProcessor extends Proc implements Closeable {
     qc.databases(lr);
   }
 
+  @Override
+  public boolean deferrable() {
+    return true;
+  }
+
   /**
    * Returns the number of performed updates after query execution, or {@code 0}.
    * @return number of updates
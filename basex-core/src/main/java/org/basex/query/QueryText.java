@@ -755,6 +755,8 @@ public interface QueryText {
   byte[] INF = token("inf");
   /** Tailcall. */
   byte[] TCL = token("tailCall");
+  /** Query Plan. */
+  byte[] PARALLEL = token("parallel");
 
   /** Example for a Date format. */
   String XDATE = "2000-12-31";
@@ -810,6 +812,10 @@ public interface QueryText {
   /** Optimization info. */
   String OPTPRED = "rewriting % to predicate(s)";
   /** Optimization info. */
+  String OPTJOIN = "rewriting % to hash join";
+  /** Optimization info. */
+  String OPTAGGR = "aggregating % during grouping";
+  /** Optimization info. */
   String OPTCAST = "removing redundant % cast.";
   /** Optimization info. */
   String OPTVAR = "removing variable %";
@@ -53,6 +53,14 @@ public abstract class StaticScope extends ExprInfo implements Scope {
     return compiled;
   }
 
+  /**
+   * Returns the xqdoc documentation string, which is needed for creating copies of this scope.
+   * @return documentation or {@code null}
+   */
+  protected final String docString() {
+    return doc == null ? null : Token.string(doc);
+  }
+
   /**
    * Returns a map with all documentation tags found for this scope or {@code null} if
    * no documentation exists. The main description is flagged with the "description" key.
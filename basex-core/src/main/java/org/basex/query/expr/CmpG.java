@@ -328,6 +328,14 @@ public final class CmpG extends Cmp {
     return cmp;
   }
 
+  /**
+   * Checks if this is an equality comparison on the default collation.
+   * @return result of check
+   */
+  public boolean equality() {
+    return op == OpG.EQ && coll == null;
+  }
+
   @Override
   public boolean indexAccessible(final IndexInfo ii) throws QueryException {
     // only equality expressions on default collation can be rewritten
@@ -42,10 +42,21 @@ public final class InterSect extends Set {
     for(int e = 1; e < el && list.size() != 0; ++e) {
       final ANodeList nt = new ANodeList().check();
       final Iter ir = iter[e];
-      for(Item it; (it = ir.next()) != null;) {
-        final ANode n = toNode(it);
-        final int i = list.indexOf(n, db);
-        if(i != -1) nt.add(n);
+      if(db && ir instanceof ValueAccess.IndexIter) {
+        // traverse current results, skip index results
+        final ValueAccess.IndexIter ii = (ValueAccess.IndexIter) ir;
+        ANode n = null;
+        for(final ANode node : list) {
+          if(n == null || n.diff(node) < 0) n = ii.skip(node);
+          if(n == null) break;
+          if(n.diff(node) == 0) nt.add(n);
+        }
+      } else {
+        for(Item it; (it = ir.next()) != null;) {
+          final ANode n = toNode(it);
+          final int i = list.indexOf(n, db);
+          if(i != -1) nt.add(n);
+        }
       }
       list = nt;
     }
@@ -73,9 +84,9 @@ public final class InterSect extends Set {
         for(int i = 1; i < il;) {
           final int d = item[0].diff(item[i]);
           if(d > 0) {
-            if(!next(i)) return null;
+            if(!skip(i, item[0])) return null;
           } else if(d < 0) {
-            if(!next(0)) return null;
+            if(!skip(0, item[i])) return null;
             i = 1;
           } else {
             ++i;
@@ -83,6 +94,22 @@ public final class InterSect extends Set {
         }
         return item[0];
       }
+
+      /**
+       * Sets the next iterator item that is equal to or follows the specified node.
+       * Index results will be skipped if possible.
+       * @param i index
+       * @param node node
+       * @return true if another item was found
+       * @throws QueryException query exception
+       */
+      private boolean skip(final int i, final ANode node) throws QueryException {
+        final Iter ir = iter[i];
+        if(!(ir instanceof ValueAccess.IndexIter)) return next(i);
+        final ANode n = ((ValueAccess.IndexIter) ir).skip(node);
+        item[i] = n;
+        return n != null;
+      }
     };
   }
 }
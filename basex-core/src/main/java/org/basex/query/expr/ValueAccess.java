@@ -79,10 +79,25 @@ public final class ValueAccess extends IndexAccess {
 
     final int kind = text ? Data.TEXT : Data.ATTR;
     final DBNode tmp = new DBNode(data, 0, test == null ? kind : Data.ELEM);
-    return new BasicNodeIter() {
+    return new IndexIter() {
       @Override
       public ANode next() {
-        while(ii.more()) {
+        return ii.more() ? node() : null;
+      }
+
+      @Override
+      ANode skip(final ANode node) {
+        // pre values of parent nodes (attribute owners, leaf elements) are ordered as well
+        if(!(node instanceof DBNode) || ((DBNode) node).data() != data) return next();
+        return ii.advance(((DBNode) node).pre()) ? node() : null;
+      }
+
+      /**
+       * Returns the node of the current or the next index result.
+       * @return node or {@code null}
+       */
+      private ANode node() {
+        do {
           if(test == null) {
             tmp.pre(ii.pre());
           } else {
@@ -90,7 +105,7 @@ public final class ValueAccess extends IndexAccess {
             if(!test.eq(tmp)) continue;
           }
           return tmp.finish();
-        }
+        } while(ii.more());
         return null;
       }
     };
@@ -152,6 +167,19 @@ public final class ValueAccess extends IndexAccess {
     };
   }
 
+  /**
+   * Iterator for index results, which can skip nodes.
+   */
+  abstract static class IndexIter extends BasicNodeIter {
+    /**
+     * Returns the next node that is equal to or follows the specified node.
+     * If the node cannot be found via the index, the next node will be returned.
+     * @param node node
+     * @return node or {@code null}
+     */
+    abstract ANode skip(final ANode node);
+  }
+
   @Override
   public boolean has(final Flag flag) {
     return expr.has(flag);
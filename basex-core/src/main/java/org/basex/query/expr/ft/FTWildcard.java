@@ -3,6 +3,7 @@ package org.basex.query.expr.ft;
 import static org.basex.util.Token.*;
 
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * Wildcard expression.
@@ -125,6 +126,20 @@ public final class FTWildcard {
     return tb.finish();
   }
 
+  /**
+   * Returns the character sequences between the wildcards, which occur in all matches.
+   * @return character sequences
+   */
+  public TokenList literals() {
+    final TokenList list = new TokenList();
+    final TokenBuilder tb = new TokenBuilder();
+    for(int s = 0; s <= size; s++) {
+      if(s < size && wc[s] != DOT) tb.add(wc[s]);
+      else if(!tb.isEmpty()) list.add(tb.next());
+    }
+    return list;
+  }
+
   /**
    * Checks if the wildcard can match a sub-string in a string.
    * @param t token to search for match
@@ -81,10 +81,7 @@ public final class For extends ForLet {
           }
           if(it != null) {
             // there's another item to serve
-            ++p;
-            qc.set(var, it, info);
-            if(pos != null) qc.set(pos, Int.get(p), info);
-            if(score != null) qc.set(score, Dbl.get(it.score()), info);
+            bind(it, ++p, qc);
             return true;
           }
           if(empty && iter != null && p == 0) {
@@ -116,6 +113,36 @@ public final class For extends ForLet {
     };
   }
 
+  /**
+   * Binds the specified item and its position to the variables of this clause.
+   * @param it item
+   * @param p position of the item
+   * @param qc query context
+   * @throws QueryException query exception
+   */
+  void bind(final Item it, final long p, final QueryContext qc) throws QueryException {
+    qc.set(var, it, info);
+    if(pos != null) qc.set(pos, Int.get(p), info);
+    if(score != null) qc.set(score, Dbl.get(it.score()), info);
+  }
+
+  /**
+   * Evaluates the bound expression.
+   * @param qc query context
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  Value items(final QueryContext qc) throws QueryException {
+    if(!scoring) return qc.value(expr);
+    final boolean s = qc.scoring;
+    try {
+      qc.scoring = true;
+      return qc.value(expr);
+    } finally {
+      qc.scoring = s;
+    }
+  }
+
   @Override
   public For optimize(final QueryContext qc, final VarScope scp) throws QueryException {
     final SeqType tp = expr.seqType();
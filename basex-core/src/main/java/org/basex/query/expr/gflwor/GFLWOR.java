@@ -1,10 +1,13 @@
 package org.basex.query.expr.gflwor;
 
 import java.util.*;
+import java.util.concurrent.*;
 
+import org.basex.core.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.path.*;
+import org.basex.query.func.*;
 import org.basex.query.func.fn.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
@@ -29,6 +32,8 @@ public final class GFLWOR extends ParseExpr {
   private final LinkedList<Clause> clauses;
   /** Return expression. */
   public Expr ret;
+  /** Indicates if the tuples of the leading for clause can be evaluated in parallel. */
+  private boolean parallel;
 
   /**
    * Constructor.
@@ -67,6 +72,9 @@ public final class GFLWOR extends ParseExpr {
 
   @Override
   public Value value(final QueryContext qc) throws QueryException {
+    final Value par = parallel(qc);
+    if(par != null) return par;
+
     final Eval eval = newEval();
     if(!eval.next(qc)) return Empty.SEQ;
     final Value v1 = ret.value(qc);
@@ -80,7 +88,10 @@ public final class GFLWOR extends ParseExpr {
   }
 
   @Override
-  public Iter iter(final QueryContext qc) {
+  public Iter iter(final QueryContext qc) throws QueryException {
+    final Value par = parallel(qc);
+    if(par != null) return par.iter();
+
     return new Iter() {
       /** Clause evaluator. */
       private final Eval ev = newEval();
@@ -102,6 +113,101 @@ public final class GFLWOR extends ParseExpr {
     };
   }
 
+  /**
+   * Evaluates the tuples of this expression in parallel if the {@link MainOptions#FORKJOIN}
+   * option is assigned, and if the tuples of the leading for clause are independent.
+   * @param qc query context
+   * @return resulting value, or {@code null} if the expression is to be evaluated sequentially
+   * @throws QueryException query exception
+   */
+  private Value parallel(final QueryContext qc) throws QueryException {
+    final int threads = qc.context.options.get(MainOptions.FORKJOIN);
+    if(!parallel || threads < 2 || ForkJoinTask.inForkJoinPool()) return null;
+    return ParallelFor.value(this, ((For) clauses.getFirst()).items(qc), threads, qc);
+  }
+
+  /**
+   * Checks if the tuples of the leading for clause are independent and can be evaluated
+   * in parallel. The check is performed once after the expression has been optimized.
+   * @return result of check
+   */
+  private boolean parallelizable() {
+    return !clauses.isEmpty() && clauses.getFirst() instanceof For &&
+        !((For) clauses.getFirst()).empty && isFLWR() && !has(Flag.UPD) && !has(Flag.NDT) &&
+        !has(Flag.HOF) && threadSafe();
+  }
+
+  /**
+   * Checks if the tuples can be evaluated by multiple threads. This is not the case if
+   * static variables or functions are referenced, which are evaluated lazily, or if
+   * databases or documents are opened, as the resources of the query are shared.
+   * @return result of check
+   */
+  private boolean threadSafe() {
+    final ASTVisitor visitor = new ASTVisitor() {
+      @Override
+      public boolean staticVar(final StaticVar var) {
+        return false;
+      }
+
+      @Override
+      public boolean staticFuncCall(final StaticFuncCall call) {
+        return false;
+      }
+
+      @Override
+      public boolean dynFuncCall(final DynFuncCall call) {
+        return false;
+      }
+
+      @Override
+      public boolean lock(final String db) {
+        return false;
+      }
+    };
+    // the items of the leading for clause are computed before the evaluation is split
+    for(final Iterator<Clause> iter = clauses.listIterator(1); iter.hasNext();) {
+      if(!iter.next().accept(visitor)) return false;
+    }
+    return ret.accept(visitor);
+  }
+
+  /**
+   * Evaluates the tuples generated by the specified range of items of the leading
+   * for clause.
+   * @param items items of the for clause
+   * @param start start position
+   * @param end end position (exclusive)
+   * @param qc query context (checked for interruptions)
+   * @param proc process to be checked for interruptions
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  Value value(final Value items, final long start, final long end, final QueryContext qc,
+      final Proc proc) throws QueryException {
+
+    final For fr = (For) clauses.getFirst();
+    // the remaining clauses are chained once, so that joins index their items only once
+    Eval eval = new Eval() {
+      /** Current position. */
+      private long i = start;
+      @Override
+      boolean next(final QueryContext q) throws QueryException {
+        if(i == end) return false;
+        proc.checkStop();
+        q.checkStop();
+        fr.bind(items.itemAt(i), ++i, q);
+        return true;
+      }
+    };
+    for(final Iterator<Clause> iter = clauses.listIterator(1); iter.hasNext();) {
+      eval = iter.next().eval(eval);
+    }
+    final ValueBuilder vb = new ValueBuilder();
+    while(eval.next(qc)) vb.add(ret.value(qc));
+    return vb.value();
+  }
+
   @Override
   public Expr compile(final QueryContext qc, final VarScope scp) throws QueryException {
     final ListIterator<Clause> iter = clauses.listIterator();
@@ -153,9 +259,15 @@ public final class GFLWOR extends ParseExpr {
       // clean unused variables from group-by and order-by expression
       changed |= cleanDeadVars();
 
+      // compute aggregates of non-grouping variables during grouping
+      changed |= aggregate(qc, scp);
+
       // include the clauses of nested FLWR expressions into this one
       changed |= unnestFLWR(qc, scp);
 
+      // rewrite joins that depend on preceding clauses after unnesting
+      changed |= splitJoins(qc, scp);
+
       // float where expressions upwards to filter earlier
       changed |= optimizeWhere(qc, scp);
 
@@ -250,13 +362,14 @@ public final class GFLWOR extends ParseExpr {
 
     seqType = SeqType.get(ret.seqType().type, size);
 
+    Expr expr = this;
     if(clauses.getFirst() instanceof Where) {
       // where A <...> return B  ===>  if(A) then <...> return B else ()
       final Where wh = (Where) clauses.removeFirst();
-      return new If(info, wh.expr, clauses.isEmpty() ? ret : this, Empty.SEQ);
+      expr = new If(info, wh.expr, clauses.isEmpty() ? ret : this, Empty.SEQ);
     }
-
-    return this;
+    parallel = parallelizable();
+    return expr;
   }
 
   /**
@@ -447,6 +560,37 @@ public final class GFLWOR extends ParseExpr {
     return changed;
   }
 
+  /**
+   * Rewrites aggregate function calls on non-grouping variables of {@link GroupBy} clauses.
+   * @param qc query context
+   * @param scp variable scope
+   * @return change flag
+   */
+  private boolean aggregate(final QueryContext qc, final VarScope scp) {
+    boolean changed = false;
+    final int cs = clauses.size();
+    for(int c = 0; c < cs; c++) {
+      final Clause clause = clauses.get(c);
+      if(!(clause instanceof GroupBy)) continue;
+      final GroupBy gb = (GroupBy) clause;
+      final ArrayList<Expr> exprs = new ArrayList<>();
+      exprs.addAll(clauses.subList(c + 1, cs));
+      exprs.add(ret);
+      if(gb.aggregates(exprs.toArray(new Expr[exprs.size()])).isEmpty()) continue;
+
+      // rewrite the calls in copies of the subsequent clauses and the return expression
+      final IntObjMap<Var> vs = new IntObjMap<>();
+      exprs.clear();
+      for(int n = c + 1; n < cs; n++) exprs.add(clauses.get(n).copy(qc, scp, vs));
+      exprs.add(ret.copy(qc, scp, vs));
+      clauses.set(c, gb.aggregate(qc, scp, gb.aggregates(exprs.toArray(new Expr[exprs.size()]))));
+      for(int n = c + 1; n < cs; n++) clauses.set(n, (Clause) exprs.get(n - c - 1));
+      ret = exprs.get(cs - c - 1);
+      changed = true;
+    }
+    return changed;
+  }
+
   /**
    * Cleans dead entries from the tuples that {@link GroupBy} and {@link OrderBy} handle.
    * @return change flag
@@ -496,7 +640,7 @@ public final class GFLWOR extends ParseExpr {
         if(!curr.skippable(let)) break;
         // insert directly above the highest skippable for or window clause
         // this guarantees that no unnecessary swaps occur
-        if(curr instanceof For || curr instanceof Window) insert = j;
+        if(curr instanceof For || curr instanceof Window || curr instanceof Join) insert = j;
       }
 
       if(insert >= 0) {
@@ -556,7 +700,10 @@ public final class GFLWOR extends ParseExpr {
           final Clause before = clauses.get(b4);
           if(before instanceof For) {
             final For f = (For) before;
-            if(f.toPredicate(qc, scp, wh.expr)) {
+            if(join(qc, scp, b4, newPos)) {
+              i--;
+              changed = true;
+            } else if(f.toPredicate(qc, scp, wh.expr)) {
               fors.add((For) before);
               clauses.remove(newPos);
               i--;
@@ -575,6 +722,96 @@ public final class GFLWOR extends ParseExpr {
     return changed;
   }
 
+  /**
+   * Tries to rewrite a for clause and a subsequent where clause to a hash join.
+   * The for clause must bind a single variable and iterate over an expression that is
+   * independent of the preceding clauses, and the where clause must compare a key of the
+   * bound items with a value of the preceding tuples. The rewrite is skipped if the
+   * comparison could be rewritten to an index access instead.
+   * @param qc query context
+   * @param scp variable scope
+   * @param f position of the for clause
+   * @param w position of the where clause
+   * @return success
+   * @throws QueryException query exception
+   */
+  private boolean join(final QueryContext qc, final VarScope scp, final int f, final int w)
+      throws QueryException {
+
+    final For fr = (For) clauses.get(f);
+    final Where wh = (Where) clauses.get(w);
+    if(fr.vars.length != 1 || fr.empty || fr.has(Flag.NDT) ||
+        !(wh.expr instanceof CmpG) || !((CmpG) wh.expr).equality()) return false;
+
+    // collect variables of the preceding clauses; at least one of them must be a loop
+    final ArrayList<Var> vars = new ArrayList<>();
+    boolean loop = false;
+    for(int c = 0; c < f; c++) {
+      final Clause clause = clauses.get(c);
+      loop |= clause instanceof For || clause instanceof Window || clause instanceof Join;
+      Collections.addAll(vars, clause.vars);
+    }
+    if(!loop || uses(fr.expr, vars)) return false;
+
+    // one operand must refer to the bound items, the other one to the preceding tuples
+    final Expr[] ops = ((CmpG) wh.expr).exprs;
+    final boolean k = ops[0].uses(fr.var);
+    final Expr key = ops[k ? 0 : 1], probe = ops[k ? 1 : 0];
+    if(!key.uses(fr.var) || probe.uses(fr.var) || uses(key, vars) || !uses(probe, vars))
+      return false;
+
+    // check if the comparison could be rewritten to an index access
+    if(fr.expr.data() != null) {
+      final IntObjMap<Var> vs = new IntObjMap<>();
+      final For tmp = fr.copy(qc, scp, vs);
+      if(tmp.toPredicate(qc, scp, wh.expr.copy(qc, scp, vs))) {
+        final Expr ex = tmp.expr.optimize(qc, scp);
+        if((ex instanceof Path ? ((Path) ex).root : ex) instanceof ValueAccess) return false;
+      }
+    }
+
+    qc.compInfo(QueryText.OPTJOIN, fr);
+    clauses.set(f, new Join(fr.var, fr.expr, wh.expr, fr.info).optimize(qc, scp));
+    clauses.remove(w);
+    return true;
+  }
+
+  /**
+   * Checks if the specified expression uses one of the given variables.
+   * @param expr expression
+   * @param vars variables
+   * @return result of check
+   */
+  private static boolean uses(final Expr expr, final ArrayList<Var> vars) {
+    for(final Var var : vars) if(expr.uses(var)) return true;
+    return false;
+  }
+
+  /**
+   * Rewrites join clauses to for and where clauses if their bound expressions depend on
+   * the preceding clauses. This can happen if nested FLWOR expressions have been unnested.
+   * @param qc query context
+   * @param scp variable scope
+   * @return change flag
+   * @throws QueryException query exception
+   */
+  private boolean splitJoins(final QueryContext qc, final VarScope scp) throws QueryException {
+    boolean changed = false;
+    final ArrayList<Var> vars = new ArrayList<>();
+    final ListIterator<Clause> iter = clauses.listIterator();
+    while(iter.hasNext()) {
+      final Clause clause = iter.next();
+      if(clause instanceof Join && uses(((Join) clause).expr, vars)) {
+        final Join jn = (Join) clause;
+        iter.set(new For(jn.vars[0], null, null, jn.expr, false, jn.info).optimize(qc, scp));
+        iter.add(new Where(jn.cmp, jn.info));
+        changed = true;
+      }
+      Collections.addAll(vars, clause.vars);
+    }
+    return changed;
+  }
+
   /**
    * Rewrite positional variables to predicates.
    * @param qc query context
@@ -748,7 +985,8 @@ public final class GFLWOR extends ParseExpr {
     // check if an outer clause can prevent the error
     while(iter.hasPrevious()) {
       final Clause b4 = iter.previous();
-      if(b4 instanceof For || b4 instanceof Window || b4 instanceof Where) {
+      if(b4 instanceof For || b4 instanceof Join || b4 instanceof Window ||
+          b4 instanceof Where) {
         iter.next();
         while(iter.hasNext()) {
           iter.next();
@@ -767,7 +1005,9 @@ public final class GFLWOR extends ParseExpr {
   public Expr copy(final QueryContext qc, final VarScope scp, final IntObjMap<Var> vs) {
     final LinkedList<Clause> cls = new LinkedList<>();
     for(final Clause clause : clauses) cls.add(clause.copy(qc, scp, vs));
-    return copyType(new GFLWOR(info, cls, ret.copy(qc, scp, vs)));
+    final GFLWOR gflwor = new GFLWOR(info, cls, ret.copy(qc, scp, vs));
+    gflwor.parallel = parallel;
+    return copyType(gflwor);
   }
 
   /**
@@ -775,8 +1015,10 @@ public final class GFLWOR extends ParseExpr {
    * @return result of check
    */
   private boolean isFLWR() {
-    for(final Clause clause : clauses)
-      if(!(clause instanceof For || clause instanceof Let || clause instanceof Where)) return false;
+    for(final Clause clause : clauses) {
+      if(!(clause instanceof For || clause instanceof Join || clause instanceof Let ||
+          clause instanceof Where)) return false;
+    }
     return true;
   }
 
@@ -820,6 +1062,7 @@ public final class GFLWOR extends ParseExpr {
   @Override
   public void plan(final FElem plan) {
     final FElem e = planElem();
+    if(parallel) e.add(planAttr(QueryText.PARALLEL, Token.TRUE));
     for(final Clause clause : clauses) clause.plan(e);
     ret.plan(e);
     plan.add(e);
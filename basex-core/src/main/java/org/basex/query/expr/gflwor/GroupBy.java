@@ -2,12 +2,18 @@ package org.basex.query.expr.gflwor;
 
 import static org.basex.query.QueryText.*;
 
+import java.io.*;
 import java.util.*;
 
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.gflwor.GFLWOR.Clause;
 import org.basex.query.expr.gflwor.GFLWOR.Eval;
+import org.basex.query.func.*;
 import org.basex.query.util.*;
 import org.basex.query.util.collation.*;
 import org.basex.query.value.*;
@@ -27,12 +33,19 @@ import org.basex.util.hash.*;
  * @author Leo Woerteler
  */
 public final class GroupBy extends Clause {
+  /** Number of partitions for spilled tuples (must be a power of two). */
+  private static final int PARTITIONS = 1 << 5;
+  /** Maximum number of times the tuples of a partition will be partitioned again. */
+  private static final int MAXDEPTH = 3;
+
   /** Grouping specs. */
   private final Spec[] specs;
   /** Non-grouping variable expressions. */
   private Expr[] preExpr;
   /** Non-grouping variables. */
   private Var[] post;
+  /** Aggregations of non-grouping variables ({@code null} entries: values will be cached). */
+  private Aggr[] aggrs;
   /** Number of non-occluded grouping variables. */
   private final int nonOcc;
 
@@ -49,6 +62,7 @@ public final class GroupBy extends Clause {
     this.post = post;
     preExpr = new Expr[pre.length];
     System.arraycopy(pre, 0, preExpr, 0, pre.length);
+    aggrs = new Aggr[pre.length];
     int n = 0;
     for(final Spec spec : specs) if(!spec.occluded) n++;
     nonOcc = n;
@@ -59,15 +73,17 @@ public final class GroupBy extends Clause {
    * @param specs grouping specs
    * @param pre pre-grouping expressions
    * @param post post-grouping variables
+   * @param aggrs aggregations of non-grouping variables
    * @param nonOcc number of non-occluded grouping variables
    * @param info input info
    */
-  private GroupBy(final Spec[] specs, final Expr[] pre, final Var[] post, final int nonOcc,
-      final InputInfo info) {
+  private GroupBy(final Spec[] specs, final Expr[] pre, final Var[] post, final Aggr[] aggrs,
+      final int nonOcc, final InputInfo info) {
     super(info, vars(specs, post));
     this.specs = specs;
     preExpr = pre;
     this.post = post;
+    this.aggrs = aggrs;
     this.nonOcc = nonOcc;
   }
 
@@ -88,15 +104,27 @@ public final class GroupBy extends Clause {
   @Override
   Eval eval(final Eval sub) {
     return new Eval() {
-      /** Groups to iterate over. */
+      /** Partitions with spilled tuples that have not been grouped yet. */
+      private final LinkedList<Partition> partitions = new LinkedList<>();
+      /** Serializer for spilled tuples. */
+      private Spill spill;
+      /** Groups to iterate over ({@code null} if the groups have not been built yet). */
       private Group[] groups;
       /** Current position. */
       private int pos;
 
       @Override
       public boolean next(final QueryContext qc) throws QueryException {
-        if(groups == null) groups = init(qc);
-        if(pos == groups.length) return false;
+        if(groups == null) {
+          spill = new Spill(qc, info);
+          groups = groups(new Groups(0, spill, qc), qc);
+        }
+        while(pos == groups.length) {
+          if(partitions.isEmpty()) return false;
+          final Partition part = partitions.removeFirst();
+          groups = part.groups(new Groups(part.depth + 1, spill, qc), partitions, qc);
+          pos = 0;
+        }
 
         final Group curr = groups[pos];
         // be nice to the garbage collector
@@ -110,24 +138,18 @@ public final class GroupBy extends Clause {
           }
         }
         final int pl = post.length;
-        for(int i = 0; i < pl; i++) qc.set(post[i], curr.ngv[i].value(), info);
+        for(int i = 0; i < pl; i++) qc.set(post[i], value(curr, i), info);
         return true;
       }
 
       /**
-       * Builds up the groups.
+       * Builds up the groups of all incoming tuples.
+       * @param grps groups
        * @param qc query context
+       * @return groups
        * @throws QueryException query exception
        */
-      private Group[] init(final QueryContext qc) throws QueryException {
-        final ArrayList<Group> grps = new ArrayList<>();
-        final IntObjMap<Group> map = new IntObjMap<>();
-        final Collation[] colls = new Collation[nonOcc];
-        int c = 0;
-        for(final Spec spec : specs) {
-          if(!spec.occluded) colls[c++] = spec.coll;
-        }
-
+      private Group[] groups(final Groups grps, final QueryContext qc) throws QueryException {
         while(sub.next(qc)) {
           final Item[] key = new Item[nonOcc];
           int p = 0, hash = 1;
@@ -143,46 +165,71 @@ public final class GroupBy extends Clause {
             qc.set(spec.var, atom == null ? Empty.SEQ : atom, info);
           }
 
-          // find the group for this key
-          final Group fst;
-          Group grp = null;
-          // no collations, so we can use hashing
-          for(Group g = fst = map.get(hash); g != null; g = g.next) {
-            if(eq(key, g.key, colls)) {
-              grp = g;
-              break;
-            }
-          }
-
           final int pl = preExpr.length;
-          if(grp == null) {
-            // new group, add it to the list
-            final ValueBuilder[] ngs = new ValueBuilder[pl];
-            final int nl = ngs.length;
-            for(int n = 0; n < nl; n++) ngs[n] = new ValueBuilder();
-            grp = new Group(key, ngs);
-            grps.add(grp);
-
-            // insert the group into the hash table
-            if(fst == null) {
-              map.put(hash, grp);
-            } else {
-              final Group nxt = fst.next;
-              fst.next = grp;
-              grp.next = nxt;
-            }
-          }
-
-          // add values of non-grouping variables to the group
-          for(int g = 0; g < pl; g++) grp.ngv[g].add(preExpr[g].value(qc));
+          final Value[] vals = new Value[pl];
+          for(int g = 0; g < pl; g++) vals[g] = preExpr[g].value(qc);
+          grps.add(key, hash, vals);
         }
-
-        // we're finished, copy the array so the list can be garbage-collected
-        return grps.toArray(new Group[grps.size()]);
+        return grps.finish(partitions);
       }
     };
   }
 
+  /**
+   * Adds the values of non-grouping variables to a group.
+   * @param grp group
+   * @param vals values
+   * @param qc query context
+   * @throws QueryException query exception
+   */
+  private void add(final Group grp, final Value[] vals, final QueryContext qc)
+      throws QueryException {
+
+    final int pl = vals.length;
+    for(int p = 0; p < pl; p++) {
+      final Value v = vals[p];
+      final Aggr aggr = aggrs[p];
+      if(aggr == null) {
+        grp.ngv[p].add(v);
+      } else if(grp.counts[p] != -1) {
+        if(aggr.func == Function.COUNT) {
+          grp.counts[p] += v.size();
+        } else if(!v.isEmpty()) {
+          final Value curr = grp.aggrs[p];
+          try {
+            final Value atoms = v.atomValue(info);
+            qc.set(post[p], curr == null ? atoms : ValueBuilder.concat(curr, atoms), info);
+            grp.aggrs[p] = aggr.fold.item(qc, info);
+            if(aggr.func == Function.AVG) grp.counts[p] += atoms.size();
+          } catch(final QueryException ex) {
+            // bind the erroneous input: the error will be raised when the function is called
+            Util.debug(ex);
+            grp.aggrs[p] = curr == null ? v : ValueBuilder.concat(curr, v);
+            grp.counts[p] = -1;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the value of a non-grouping variable.
+   * @param grp group
+   * @param p index of the variable
+   * @return value
+   * @throws QueryException query exception
+   */
+  private Value value(final Group grp, final int p) throws QueryException {
+    final Aggr aggr = aggrs[p];
+    if(aggr == null) return grp.ngv[p].value();
+    if(aggr.func == Function.COUNT) return RangeSeq.get(1, grp.counts[p], true);
+
+    final Value v = grp.aggrs[p];
+    if(v == null) return Empty.SEQ;
+    return aggr.func == Function.AVG && grp.counts[p] != -1 ?
+      Calc.DIV.ev(info, (Item) v, Int.get(grp.counts[p])) : v;
+  }
+
   /**
    * Checks two keys for equality.
    * @param its1 first keys
@@ -219,12 +266,90 @@ public final class GroupBy extends Clause {
   public GroupBy optimize(final QueryContext qc, final VarScope scp) throws QueryException {
     final int pl = preExpr.length;
     for(int p = 0; p < pl; p++) {
+      if(aggrs[p] != null) continue;
       final SeqType it = preExpr[p].seqType();
       post[p].refineType(it.withOcc(it.mayBeZero() ? Occ.ZERO_MORE : Occ.ONE_MORE), qc, info);
     }
     return this;
   }
 
+  /**
+   * Returns the calls of {@code count}, {@code sum}, {@code avg}, {@code min} and
+   * {@code max} on non-grouping variables in the specified expressions.
+   * @param exprs expressions that follow this clause
+   * @return calls
+   */
+  ArrayList<StandardFunc> aggregates(final Expr... exprs) {
+    final ArrayList<StandardFunc> calls = new ArrayList<>();
+    final ASTVisitor visitor = new ASTVisitor() {
+      @Override
+      public boolean funcCall(final StandardFunc call) {
+        final Function f = call.sig;
+        if(call.exprs.length == 1 && call.exprs[0] instanceof VarRef && (f == Function.COUNT ||
+           f == Function.SUM || f == Function.AVG || f == Function.MIN || f == Function.MAX)) {
+          final Var var = ((VarRef) call.exprs[0]).var;
+          final int pl = post.length;
+          for(int p = 0; p < pl; p++) {
+            if(aggrs[p] == null && post[p].is(var)) calls.add(call);
+          }
+        }
+        return true;
+      }
+    };
+    for(final Expr expr : exprs) expr.accept(visitor);
+    return calls;
+  }
+
+  /**
+   * Rewrites calls of {@code count}, {@code sum}, {@code avg}, {@code min} and {@code max}
+   * on non-grouping variables (see {@link #aggregates(Expr...)}). A new non-grouping variable
+   * is introduced for each call, and its result is computed while the tuples are grouped.
+   * The arguments of the calls are replaced. The calls must therefore belong to copies of the
+   * expressions that follow this clause, which will replace the original expressions.
+   * The original variable can then be dropped if it is not referenced anymore.
+   * <ul>
+   *   <li>The result of {@code count} is bound as integer range of the required size.</li>
+   *   <li>The other results are bound as single item, to which the function will be applied
+   *   again. For {@code avg}, the intermediate sum is divided by the number of items.</li>
+   * </ul>
+   * @param qc query context
+   * @param scp variable scope
+   * @param calls calls to be rewritten
+   * @return new clause
+   */
+  GroupBy aggregate(final QueryContext qc, final VarScope scp,
+      final ArrayList<StandardFunc> calls) {
+    Expr[] pre = preExpr;
+    Var[] vars = post;
+    Aggr[] aggs = aggrs;
+    for(final StandardFunc call : calls) {
+      final Var var = ((VarRef) call.exprs[0]).var;
+      // reuse existing aggregation
+      int p = -1, o = -1;
+      final int vl = vars.length;
+      for(int v = 0; v < vl; v++) {
+        if(aggs[v] == null) {
+          if(vars[v].is(var)) o = v;
+        } else if(aggs[v].func == call.sig && aggs[v].var.is(var)) {
+          p = v;
+        }
+      }
+      if(p == -1) {
+        qc.compInfo(OPTAGGR, call);
+        final Var nv = scp.newLocal(qc, var.name, null, false);
+        final Function f = call.sig == Function.AVG ? Function.SUM : call.sig;
+        final Expr fold = call.sig == Function.COUNT ? null :
+          f.get(call.sc, call.info, new VarRef(call.info, nv));
+        pre = Array.add(pre, pre[o].copy(qc, scp, new IntObjMap<Var>()));
+        vars = Array.add(vars, nv);
+        aggs = Array.add(aggs, new Aggr(call.sig, var, fold));
+        p = vars.length - 1;
+      }
+      call.exprs[0] = new VarRef(call.info, vars[p]);
+    }
+    return new GroupBy(specs, pre, vars, aggs, nonOcc, info);
+  }
+
   @Override
   public boolean removable(final Var var) {
     for(final Spec b : specs) if(!b.removable(var)) return false;
@@ -256,9 +381,13 @@ public final class GroupBy extends Clause {
       ps[p] = scp.newCopyOf(qc, old);
       vs.put(old.id, ps[p]);
     }
+    final Aggr[] ags = new Aggr[pl];
+    for(int p = 0; p < pl; p++) {
+      if(aggrs[p] != null) ags[p] = aggrs[p].copy(qc, scp, vs);
+    }
 
     // done
-    return new GroupBy(Arr.copyAll(qc, scp, vs, specs), pEx, ps, nonOcc, info);
+    return new GroupBy(Arr.copyAll(qc, scp, vs, specs), pEx, ps, ags, nonOcc, info);
   }
 
   @Override
@@ -276,6 +405,7 @@ public final class GroupBy extends Clause {
     for(int p = 0; p < post.length; p++) {
       if(!used.get(post[p].id)) {
         preExpr = Array.delete(preExpr, p);
+        aggrs = Array.delete(aggrs, p);
         post = Array.delete(post, p--);
       }
     }
@@ -319,7 +449,13 @@ public final class GroupBy extends Clause {
     final int pl = post.length;
     for(int p = 0; p < pl; p++) {
       sb.append(LET).append(" (: post-group :) ").append(post[p]);
-      sb.append(' ').append(ASSIGN).append(' ').append(preExpr[p]).append(' ');
+      sb.append(' ').append(ASSIGN).append(' ');
+      if(aggrs[p] == null) {
+        sb.append(preExpr[p]);
+      } else {
+        sb.append(Token.string(aggrs[p].func.id())).append('(').append(preExpr[p]).append(')');
+      }
+      sb.append(' ');
     }
     sb.append(GROUP).append(' ').append(BY);
     final int sl = specs.length;
@@ -396,6 +532,46 @@ public final class GroupBy extends Clause {
     }
   }
 
+  /**
+   * Incremental aggregation of a non-grouping variable.
+   *
+   * @author BaseX Team 2005-15, BSD License
+   * @author Christian Gruen
+   */
+  private static final class Aggr {
+    /** Aggregate function. */
+    final Function func;
+    /** Original non-grouping variable. */
+    final Var var;
+    /** Function that combines the current result and the next items
+     * ({@code null} for {@code count}). */
+    final Expr fold;
+
+    /**
+     * Constructor.
+     * @param func aggregate function
+     * @param var original non-grouping variable
+     * @param fold function that combines the current result and the next items
+     */
+    Aggr(final Function func, final Var var, final Expr fold) {
+      this.func = func;
+      this.var = var;
+      this.fold = fold;
+    }
+
+    /**
+     * Creates a copy of this aggregation.
+     * @param qc query context
+     * @param scp variable scope
+     * @param vs mapping from old variable IDs to new variable copies
+     * @return copy
+     */
+    Aggr copy(final QueryContext qc, final VarScope scp, final IntObjMap<Var> vs) {
+      final Var v = vs.get(var.id);
+      return new Aggr(func, v != null ? v : var, fold == null ? null : fold.copy(qc, scp, vs));
+    }
+  }
+
   /**
    * A group of tuples of post-grouping variables.
    *
@@ -405,19 +581,240 @@ public final class GroupBy extends Clause {
   private static final class Group {
     /** Grouping key, may contain {@code null} values. */
     final Item[] key;
-    /** Non-grouping variables. */
+    /** Non-grouping variables ({@code null} entries: variables are aggregated). */
     final ValueBuilder[] ngv;
+    /** Current results of aggregated variables. */
+    final Value[] aggrs;
+    /** Number of aggregated items ({@code -1}: evaluation of aggregation failed). */
+    final long[] counts;
     /** Overflow list. */
     Group next;
 
     /**
      * Constructor.
      * @param k grouping key
-     * @param ng non-grouping variables
+     * @param ag aggregations of non-grouping variables
      */
-    Group(final Item[] k, final ValueBuilder[] ng) {
+    Group(final Item[] k, final Aggr[] ag) {
       key = k;
-      ngv = ng;
+      final int al = ag.length;
+      ngv = new ValueBuilder[al];
+      aggrs = new Value[al];
+      counts = new long[al];
+      for(int a = 0; a < al; a++) {
+        if(ag[a] == null) ngv[a] = new ValueBuilder();
+      }
+    }
+  }
+
+  /**
+   * Groups that are built in main memory. If the number of groups exceeds the
+   * {@link MainOptions#GROUPLIMIT}, the tuples of all new keys will be written to
+   * partitions, which will be grouped after the groups in main memory have been returned.
+   */
+  private final class Groups {
+    /** Groups in the order of their creation. */
+    private final ArrayList<Group> list = new ArrayList<>();
+    /** Groups, indexed by the hash values of their keys. */
+    private final IntObjMap<Group> map = new IntObjMap<>();
+    /** Collations of the keys. */
+    private final Collation[] colls = new Collation[nonOcc];
+    /** Partitioning depth. */
+    private final int depth;
+    /** Serializer for spilled tuples. */
+    private final Spill spill;
+    /** Query context. */
+    private final QueryContext qc;
+    /** Maximum number of groups in main memory (0: no limit). */
+    private final int limit;
+    /** Partitions ({@code null} if no tuples have been spilled). */
+    private Partition[] parts;
+
+    /**
+     * Constructor.
+     * @param depth partitioning depth
+     * @param spill serializer for spilled tuples
+     * @param qc query context
+     */
+    Groups(final int depth, final Spill spill, final QueryContext qc) {
+      this.depth = depth;
+      this.spill = spill;
+      this.qc = qc;
+      limit = depth < MAXDEPTH ? qc.context.options.get(MainOptions.GROUPLIMIT) : 0;
+      int c = 0;
+      for(final Spec spec : specs) {
+        if(!spec.occluded) colls[c++] = spec.coll;
+      }
+    }
+
+    /**
+     * Adds a tuple.
+     * @param key grouping key
+     * @param hash hash value of the key
+     * @param vals values of the non-grouping variables
+     * @throws QueryException query exception
+     */
+    void add(final Item[] key, final int hash, final Value[] vals) throws QueryException {
+      // find the group for this key
+      final Group fst;
+      Group grp = null;
+      // no collations, so we can use hashing
+      for(Group g = fst = map.get(hash); g != null; g = g.next) {
+        if(eq(key, g.key, colls)) {
+          grp = g;
+          break;
+        }
+      }
+
+      if(grp == null) {
+        if(limit > 0 && list.size() >= limit) {
+          write(key, hash, vals);
+          return;
+        }
+        // new group, add it to the list
+        grp = new Group(key, aggrs);
+        list.add(grp);
+
+        // insert the group into the hash table
+        if(fst == null) {
+          map.put(hash, grp);
+        } else {
+          final Group nxt = fst.next;
+          fst.next = grp;
+          grp.next = nxt;
+        }
+      }
+
+      // add values of non-grouping variables to the group
+      GroupBy.this.add(grp, vals, qc);
+    }
+
+    /**
+     * Writes a tuple to a partition.
+     * @param key grouping key
+     * @param hash hash value of the key
+     * @param vals values of the non-grouping variables
+     * @throws QueryException query exception
+     */
+    private void write(final Item[] key, final int hash, final Value[] vals)
+        throws QueryException {
+
+      if(parts == null) parts = new Partition[PARTITIONS];
+      final int p = Integer.rotateRight(hash, depth * Integer.numberOfTrailingZeros(PARTITIONS)) &
+          PARTITIONS - 1;
+      if(parts[p] == null) parts[p] = new Partition(depth, spill);
+      parts[p].write(key, hash, vals);
+    }
+
+    /**
+     * Finishes grouping.
+     * @param partitions list to which new partitions will be prepended
+     * @return groups in main memory
+     * @throws QueryException query exception
+     */
+    Group[] finish(final LinkedList<Partition> partitions) throws QueryException {
+      if(parts != null) {
+        for(int p = PARTITIONS - 1; p >= 0; p--) {
+          final Partition part = parts[p];
+          if(part != null) {
+            part.close();
+            partitions.addFirst(part);
+          }
+        }
+      }
+      // we're finished, copy the array so the list can be garbage-collected
+      return list.toArray(new Group[list.size()]);
+    }
+  }
+
+  /**
+   * Partition with spilled tuples.
+   */
+  private final class Partition {
+    /** Partitioning depth. */
+    final int depth;
+    /** Serializer for spilled tuples. */
+    private final Spill spill;
+    /** File. */
+    private final IOFile file;
+    /** Output stream ({@code null} if the partition has been closed). */
+    private DataOutput out;
+    /** Number of tuples. */
+    private int size;
+
+    /**
+     * Constructor.
+     * @param depth partitioning depth
+     * @param spill serializer for spilled tuples
+     * @throws QueryException query exception
+     */
+    Partition(final int depth, final Spill spill) throws QueryException {
+      this.depth = depth;
+      this.spill = spill;
+      file = spill.file("group");
+      try {
+        out = new DataOutput(file);
+      } catch(final IOException ex) {
+        throw spill.error(ex);
+      }
+    }
+
+    /**
+     * Writes a tuple.
+     * @param key grouping key
+     * @param hash hash value of the key
+     * @param vals values of the non-grouping variables
+     * @throws QueryException query exception
+     */
+    void write(final Item[] key, final int hash, final Value[] vals) throws QueryException {
+      try {
+        out.write4(hash);
+        for(final Item it : key) spill.write(it, out);
+        for(final Value v : vals) spill.write(v, out);
+        size++;
+      } catch(final IOException ex) {
+        throw spill.error(ex);
+      }
+    }
+
+    /**
+     * Closes the output stream.
+     * @throws QueryException query exception
+     */
+    void close() throws QueryException {
+      try {
+        out.close();
+      } catch(final IOException ex) {
+        throw spill.error(ex);
+      }
+    }
+
+    /**
+     * Groups the tuples of this partition, and deletes the file.
+     * @param grps groups
+     * @param partitions list to which new partitions will be prepended
+     * @param qc query context
+     * @return groups
+     * @throws QueryException query exception
+     */
+    Group[] groups(final Groups grps, final LinkedList<Partition> partitions,
+        final QueryContext qc) throws QueryException {
+      final int kl = nonOcc, vl = preExpr.length;
+      try(final DataInput in = new DataInput(file)) {
+        for(int s = 0; s < size; s++) {
+          qc.checkStop();
+          final int hash = Spill.read4(in);
+          final Item[] key = new Item[kl];
+          for(int k = 0; k < kl; k++) key[k] = spill.item(in);
+          final Value[] vals = new Value[vl];
+          for(int v = 0; v < vl; v++) vals[v] = spill.value(in);
+          grps.add(key, hash, vals);
+        }
+      } catch(final IOException ex) {
+        throw spill.error(ex);
+      }
+      file.delete();
+      return grps.finish(partitions);
     }
   }
 }
@@ -0,0 +1,272 @@
+package org.basex.query.expr.gflwor;
+
+import static org.basex.query.QueryText.*;
+
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.GFLWOR.Clause;
+import org.basex.query.expr.gflwor.GFLWOR.Eval;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.query.value.type.SeqType.Occ;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * FLWOR {@code for} clause, which is followed by an equality comparison between the bound
+ * items and the preceding tuples, and which is evaluated as hash join.
+ *
+ * The bound expression is independent of the preceding clauses. It is evaluated once,
+ * and the items are indexed by the string values of their keys. For each incoming tuple,
+ * the matching items are looked up and returned in their original order. If the
+ * compared values are not strings or untyped, the comparison is evaluated for all items.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class Join extends Clause {
+  /** Item variable. */
+  private final Var var;
+  /** Bound expression. */
+  Expr expr;
+  /** Comparison. */
+  Expr cmp;
+
+  /**
+   * Constructor.
+   * @param var item variable
+   * @param expr bound expression
+   * @param cmp comparison
+   * @param info input info
+   */
+  public Join(final Var var, final Expr expr, final Expr cmp, final InputInfo info) {
+    super(info, var);
+    this.var = var;
+    this.expr = expr;
+    this.cmp = cmp;
+  }
+
+  @Override
+  Eval eval(final Eval sub) {
+    return new Eval() {
+      /** Bound items ({@code null} if not evaluated yet). */
+      private Value items;
+      /** Positions of the items, indexed by the string values of their keys. */
+      private TokenObjMap<IntList> index;
+      /** Positions of the matching items. */
+      private IntList matches;
+      /** Current offset. */
+      private int m;
+
+      @Override
+      public boolean next(final QueryContext qc) throws QueryException {
+        while(true) {
+          if(matches != null && m < matches.size()) {
+            qc.set(var, items.itemAt(matches.get(m++)), info);
+            return true;
+          }
+          if(!sub.next(qc)) return false;
+          if(items == null) {
+            items = qc.value(expr);
+            index = index(items, qc);
+          }
+          matches = index != null ? probe(items, index, qc) : null;
+          if(matches == null) matches = loop(items, qc);
+          m = 0;
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the operand of the comparison that refers to the item variable.
+   * @return operand, or {@code null} if the comparison cannot be evaluated as hash join
+   */
+  private Expr key() {
+    if(!(cmp instanceof CmpG) || !((CmpG) cmp).equality()) return null;
+    final Expr[] ops = ((CmpG) cmp).exprs;
+    final boolean k1 = ops[0].uses(var), k2 = ops[1].uses(var);
+    return k1 == k2 ? null : ops[k1 ? 0 : 1];
+  }
+
+  /**
+   * Indexes the positions of the bound items by the string values of their keys.
+   * @param items bound items
+   * @param qc query context
+   * @return index, or {@code null} if not all keys are strings or untyped
+   * @throws QueryException query exception
+   */
+  private TokenObjMap<IntList> index(final Value items, final QueryContext qc)
+      throws QueryException {
+
+    final Expr key = key();
+    final long is = items.size();
+    if(key == null || is > Integer.MAX_VALUE) return null;
+
+    final TokenObjMap<IntList> map = new TokenObjMap<>();
+    for(int i = 0; i < is; i++) {
+      qc.checkStop();
+      qc.set(var, items.itemAt(i), info);
+      final Iter ir = key.atomIter(qc, info);
+      for(Item it; (it = ir.next()) != null;) {
+        if(!it.type.isStringOrUntyped()) return null;
+        final byte[] k = it.string(info);
+        IntList il = map.get(k);
+        if(il == null) {
+          il = new IntList(1);
+          map.put(k, il);
+        }
+        if(il.isEmpty() || il.peek() != i) il.add(i);
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Returns the positions of the items matching the current tuple.
+   * @param items bound items
+   * @param map index
+   * @param qc query context
+   * @return positions, or {@code null} if the index cannot be used
+   * @throws QueryException query exception
+   */
+  private IntList probe(final Value items, final TokenObjMap<IntList> map,
+      final QueryContext qc) throws QueryException {
+
+    final Expr[] ops = ((CmpG) cmp).exprs;
+    final Expr probe = ops[0].uses(var) ? ops[1] : ops[0];
+    final Iter ir = probe.atomIter(qc, info);
+    IntList matches = null;
+    boolean merge = false;
+    for(Item it; (it = ir.next()) != null;) {
+      if(!it.type.isStringOrUntyped()) return null;
+      final IntList il = map.get(it.string(info));
+      if(il == null) continue;
+      if(matches == null) {
+        matches = il;
+      } else {
+        if(!merge) {
+          matches = new IntList(matches.toArray());
+          merge = true;
+        }
+        for(int i = 0; i < il.size(); i++) matches.add(il.get(i));
+      }
+    }
+    if(merge) matches.sort().distinct();
+    return matches != null ? matches : new IntList(0);
+  }
+
+  /**
+   * Returns the positions of the items matching the current tuple by evaluating the
+   * comparison for all items.
+   * @param items bound items
+   * @param qc query context
+   * @return positions
+   * @throws QueryException query exception
+   */
+  private IntList loop(final Value items, final QueryContext qc) throws QueryException {
+    final IntList matches = new IntList();
+    final long is = items.size();
+    for(int i = 0; i < is; i++) {
+      qc.checkStop();
+      qc.set(var, items.itemAt(i), info);
+      if(cmp.ebv(qc, info).bool(info)) matches.add(i);
+    }
+    return matches;
+  }
+
+  @Override
+  public Join compile(final QueryContext qc, final VarScope scp) throws QueryException {
+    expr = expr.compile(qc, scp);
+    cmp = cmp.compile(qc, scp);
+    return optimize(qc, scp);
+  }
+
+  @Override
+  public Join optimize(final QueryContext qc, final VarScope scp) throws QueryException {
+    seqType = SeqType.get(expr.seqType().type, Occ.ONE);
+    var.refineType(seqType, qc, info);
+    size = 1;
+    var.size = size;
+    var.data = expr.data();
+    return this;
+  }
+
+  @Override
+  public Clause inline(final QueryContext qc, final VarScope scp, final Var v, final Expr ex)
+      throws QueryException {
+    final Expr sub = expr.inline(qc, scp, v, ex), c = cmp.inline(qc, scp, v, ex);
+    if(sub == null && c == null) return null;
+    if(sub != null) expr = sub;
+    if(c != null) cmp = c;
+    return optimize(qc, scp);
+  }
+
+  @Override
+  public boolean has(final Flag flag) {
+    return expr.has(flag) || cmp.has(flag);
+  }
+
+  @Override
+  public boolean removable(final Var v) {
+    return expr.removable(v) && cmp.removable(v);
+  }
+
+  @Override
+  public VarUsage count(final Var v) {
+    return expr.count(v).plus(cmp.count(v).times(2));
+  }
+
+  @Override
+  public Join copy(final QueryContext qc, final VarScope scp, final IntObjMap<Var> vs) {
+    final Var v = scp.newCopyOf(qc, var);
+    vs.put(var.id, v);
+    return new Join(v, expr.copy(qc, scp, vs), cmp.copy(qc, scp, vs), info);
+  }
+
+  @Override
+  public boolean accept(final ASTVisitor visitor) {
+    return expr.accept(visitor) && visitor.declared(var) && cmp.accept(visitor);
+  }
+
+  @Override
+  public void checkUp() throws QueryException {
+    checkNoUp(expr);
+    checkNoUp(cmp);
+  }
+
+  @Override
+  void calcSize(final long[] minMax) {
+    final long sz = expr.size();
+    minMax[0] = 0;
+    final long max = minMax[1];
+    minMax[1] = sz < 0 ? -1 : max > 0 ? max * sz : max;
+  }
+
+  @Override
+  public int exprSize() {
+    return expr.exprSize() + cmp.exprSize();
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    final FElem e = planElem();
+    var.plan(e);
+    expr.plan(e);
+    final FElem e2 = new FElem(WHERE);
+    cmp.plan(e2);
+    e.add(e2);
+    plan.add(e);
+  }
+
+  @Override
+  public String toString() {
+    return FOR + ' ' + var + ' ' + IN + ' ' + expr + ' ' + WHERE + ' ' + cmp;
+  }
+}
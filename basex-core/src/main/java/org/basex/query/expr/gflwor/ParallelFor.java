@@ -0,0 +1,118 @@
+package org.basex.query.expr.gflwor;
+
+import java.util.concurrent.*;
+
+import org.basex.query.*;
+import org.basex.query.value.*;
+
+/**
+ * Task for evaluating a range of the tuples of a FLWOR expression in parallel.
+ * The tuples are generated by the items of the leading {@code for} clause.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+final class ParallelFor extends RecursiveTask<Value> {
+  /** Serial version. */
+  private static final long serialVersionUID = 1L;
+  /** Number of chunks per thread. */
+  private static final int CHUNKS = 4;
+  /** Shared pool. */
+  private static ForkJoinPool pool;
+
+  /** FLWOR expression. */
+  private final GFLWOR flwor;
+  /** Items of the leading for clause. */
+  private final Value items;
+  /** Start position (inclusive). */
+  private final long start;
+  /** End position (exclusive). */
+  private final long end;
+  /** Query context of the task. */
+  private final QueryContext qc;
+  /** Parent query context. */
+  private final QueryContext parent;
+
+  /**
+   * Constructor.
+   * @param flwor FLWOR expression
+   * @param items items of the leading for clause
+   * @param start start position
+   * @param end end position
+   * @param parent parent query context
+   * @throws QueryException query exception
+   */
+  private ParallelFor(final GFLWOR flwor, final Value items, final long start, final long end,
+      final QueryContext parent) throws QueryException {
+    this.flwor = flwor;
+    this.items = items;
+    this.start = start;
+    this.end = end;
+    this.parent = parent;
+    qc = parent.child();
+  }
+
+  /**
+   * Evaluates the tuples of the specified FLWOR expression in parallel.
+   * The items are split into chunks, which are evaluated by the threads of a shared pool.
+   * The results are concatenated in the order of the chunks.
+   * @param flwor FLWOR expression
+   * @param items items of the leading for clause
+   * @param threads number of threads
+   * @param qc query context
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  static Value value(final GFLWOR flwor, final Value items, final int threads,
+      final QueryContext qc) throws QueryException {
+
+    final long is = items.size();
+    final int cs = (int) Math.min(is, threads * CHUNKS);
+    if(cs < 2) return flwor.value(items, 0, is, qc, qc);
+
+    final ParallelFor[] tasks = new ParallelFor[cs];
+    for(int c = 0; c < cs; c++) {
+      tasks[c] = new ParallelFor(flwor, items, is * c / cs, is * (c + 1) / cs, qc);
+    }
+    execute(tasks, threads);
+
+    final ValueBuilder vb = new ValueBuilder();
+    boolean done = false;
+    try {
+      for(final ParallelFor task : tasks) vb.add(task.join());
+      done = true;
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    } finally {
+      if(!done) {
+        // stop remaining chunks and wait until running chunks have been stopped
+        for(final ParallelFor task : tasks) task.qc.stop();
+        for(final ParallelFor task : tasks) task.quietlyJoin();
+      }
+    }
+    return vb.value();
+  }
+
+  @Override
+  protected Value compute() {
+    try {
+      return flwor.value(items, start, end, qc, parent);
+    } catch(final QueryException ex) {
+      throw new QueryRTException(ex);
+    }
+  }
+
+  /**
+   * Executes tasks in the shared pool. A new pool will be created if the number of threads
+   * has changed. The previous pool will be shut down after its running tasks are completed.
+   * @param tasks tasks
+   * @param threads number of threads
+   */
+  private static synchronized void execute(final ParallelFor[] tasks, final int threads) {
+    if(pool == null || pool.getParallelism() != threads) {
+      if(pool != null) pool.shutdown();
+      pool = new ForkJoinPool(threads);
+    }
+    for(final ParallelFor task : tasks) pool.execute(task);
+  }
+}
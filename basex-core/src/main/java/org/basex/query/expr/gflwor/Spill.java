@@ -0,0 +1,264 @@
+package org.basex.query.expr.gflwor;
+
+import static org.basex.query.QueryError.*;
+
+import java.io.*;
+import java.math.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.util.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+
+/**
+ * Writes tuples of FLWOR clauses to temporary files, and reads them back.
+ *
+ * Database nodes are stored as references to their database. Strings, untyped atomic
+ * values, integers, doubles, floats, booleans and decimals are stored as values.
+ * All other items (e.g. main-memory nodes or function items) are kept in main memory and
+ * referenced by their index. As every written item is read only once, the reference is
+ * dropped as soon as the item has been read. The same applies to values with more than
+ * {@link Integer#MAX_VALUE} items.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+final class Spill {
+  /** Item type: absent item. */
+  private static final int NULL = 0;
+  /** Item type: database node. */
+  private static final int NODE = 1;
+  /** Item type: string. */
+  private static final int STR = 2;
+  /** Item type: untyped atomic value. */
+  private static final int ATM = 3;
+  /** Item type: integer. */
+  private static final int ITR = 4;
+  /** Item type: double. */
+  private static final int DBL = 5;
+  /** Item type: float. */
+  private static final int FLT = 6;
+  /** Item type: boolean. */
+  private static final int BLN = 7;
+  /** Item type: decimal. */
+  private static final int DEC = 8;
+  /** Item type: reference to an item in main memory. */
+  private static final int REF = 9;
+
+  /** Query context. */
+  private final QueryContext qc;
+  /** Input info. */
+  private final InputInfo info;
+  /** Databases of written nodes. */
+  private final ArrayList<Data> datas = new ArrayList<>();
+  /** Items and values kept in main memory. */
+  private final ArrayList<Value> refs = new ArrayList<>();
+
+  /**
+   * Constructor.
+   * @param qc query context
+   * @param info input info
+   */
+  Spill(final QueryContext qc, final InputInfo info) {
+    this.qc = qc;
+    this.info = info;
+  }
+
+  /**
+   * Creates a temporary file, which will be deleted when the query is closed.
+   * @param prefix prefix of the file name
+   * @return file
+   * @throws QueryException query exception
+   */
+  IOFile file(final String prefix) throws QueryException {
+    try {
+      return TempFiles.create(qc, prefix);
+    } catch(final IOException ex) {
+      throw error(ex);
+    }
+  }
+
+  /**
+   * Opens an input stream for a temporary file, which will be closed when the query is closed.
+   * @param file file
+   * @return input stream
+   * @throws QueryException query exception
+   */
+  DataInput open(final IOFile file) throws QueryException {
+    try {
+      return TempFiles.open(qc, file);
+    } catch(final IOException ex) {
+      throw error(ex);
+    }
+  }
+
+  /**
+   * Closes an input stream and deletes its temporary file.
+   * @param in input stream
+   * @param file file
+   */
+  void delete(final DataInput in, final IOFile file) {
+    TempFiles.delete(qc, in, file);
+  }
+
+  /**
+   * Returns an error for the specified I/O exception.
+   * @param ex I/O exception
+   * @return query exception
+   */
+  QueryException error(final IOException ex) {
+    return IOERR_X.get(info, ex);
+  }
+
+  /**
+   * Writes a value.
+   * @param value value
+   * @param out output stream
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  void write(final Value value, final DataOutput out) throws IOException, QueryException {
+    final long vs = value.size();
+    if(vs < Integer.MAX_VALUE) {
+      out.writeNum((int) vs + 1);
+      for(final Item it : value) write(it, out);
+    } else {
+      out.writeNum(0);
+      ref(value, out);
+    }
+  }
+
+  /**
+   * Writes an item.
+   * @param it item (can be {@code null})
+   * @param out output stream
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  void write(final Item it, final DataOutput out) throws IOException, QueryException {
+    final Class<?> c = it == null ? null : it.getClass();
+    if(it == null) {
+      out.write1(NULL);
+    } else if(c == DBNode.class) {
+      final DBNode node = (DBNode) it;
+      final Data data = node.data();
+      int d = datas.indexOf(data);
+      if(d == -1) {
+        d = datas.size();
+        datas.add(data);
+      }
+      out.write1(NODE);
+      out.writeNum(d);
+      out.writeNum(node.pre());
+    } else if(c == Int.class && it.type == AtomType.ITR) {
+      out.write1(ITR);
+      write8(((Int) it).itr(), out);
+    } else if(c == Dbl.class) {
+      out.write1(DBL);
+      write8(Double.doubleToRawLongBits(((Dbl) it).dbl()), out);
+    } else if(c == Flt.class) {
+      out.write1(FLT);
+      out.write4(Float.floatToRawIntBits(((Flt) it).flt()));
+    } else if(c == Bln.class) {
+      out.write1(BLN);
+      out.writeBool(((Bln) it).bool(info));
+    } else if(c == Str.class && it.type == AtomType.STR || c == Atm.class ||
+        c == Dec.class && it.type == AtomType.DEC) {
+      out.write1(c == Str.class ? STR : c == Atm.class ? ATM : DEC);
+      out.writeToken(it.string(info));
+    } else {
+      out.write1(REF);
+      ref(it, out);
+    }
+  }
+
+  /**
+   * Keeps a value in main memory and writes its reference.
+   * @param value value
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  private void ref(final Value value, final DataOutput out) throws IOException {
+    out.writeNum(refs.size());
+    refs.add(value);
+  }
+
+  /**
+   * Reads a value.
+   * @param in input stream
+   * @return value
+   * @throws IOException I/O exception
+   */
+  Value value(final DataInput in) throws IOException {
+    final int n = in.readNum() - 1;
+    if(n == -1) return refs.set(in.readNum(), null);
+    if(n == 0) return Empty.SEQ;
+    if(n == 1) return item(in);
+    final ValueBuilder vb = new ValueBuilder();
+    for(int i = 0; i < n; i++) vb.add(item(in));
+    return vb.value();
+  }
+
+  /**
+   * Reads an item.
+   * @param in input stream
+   * @return item (can be {@code null})
+   * @throws IOException I/O exception
+   */
+  Item item(final DataInput in) throws IOException {
+    switch(in.read()) {
+      case NODE:
+        final Data data = datas.get(in.readNum());
+        return new DBNode(data, in.readNum());
+      case STR: return Str.get(in.readToken());
+      case ATM: return new Atm(in.readToken());
+      case ITR: return Int.get(read8(in));
+      case DBL: return Dbl.get(Double.longBitsToDouble(read8(in)));
+      case FLT: return Flt.get(Float.intBitsToFloat(read4(in)));
+      case BLN: return Bln.get(in.readBool());
+      case DEC: return Dec.get(new BigDecimal(Token.string(in.readToken())));
+      case REF: return (Item) refs.set(in.readNum(), null);
+      default: return null;
+    }
+  }
+
+  /**
+   * Writes a long value as two integers.
+   * @param l long value
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  static void write8(final long l, final DataOutput out) throws IOException {
+    out.write4((int) (l >>> 32));
+    out.write4((int) l);
+  }
+
+  /**
+   * Reads an integer that has been written with {@link DataOutput#write4(int)}.
+   * @param in input stream
+   * @return integer
+   * @throws IOException I/O exception
+   */
+  static int read4(final DataInput in) throws IOException {
+    return in.read() << 24 | in.read() << 16 | in.read() << 8 | in.read();
+  }
+
+  /**
+   * Reads a long value that has been written with {@link #write8(long, DataOutput)}.
+   * @param in input stream
+   * @return long value
+   * @throws IOException I/O exception
+   */
+  static long read8(final DataInput in) throws IOException {
+    return (long) read4(in) << 32 | read4(in) & 0xFFFFFFFFL;
+  }
+}
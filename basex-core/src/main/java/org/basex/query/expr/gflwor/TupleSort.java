@@ -0,0 +1,418 @@
+package org.basex.query.expr.gflwor;
+
+import static org.basex.query.QueryError.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.expr.gflwor.OrderBy.Key;
+import org.basex.query.util.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.util.*;
+
+/**
+ * Sorts the tuples of an {@code order by} clause.
+ *
+ * Incoming tuples are buffered in main memory. When the buffer is sorted, the keys are
+ * copied to columns of primitive values if all keys of a column are integers, doubles,
+ * floats or strings, and the tuple positions are sorted with an unboxed, stable merge sort.
+ *
+ * If a limit is specified, the buffer will be sorted and written to a temporary file
+ * whenever the limit is reached (see {@link Spill}). The sorted runs are finally merged
+ * with a heap. Temporary files are deleted when they have been read. If the evaluation is
+ * aborted before, the open runs are closed and their files are deleted when the query is
+ * closed.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+final class TupleSort {
+  /** Sort keys. */
+  private final Key[] keys;
+  /** Number of values per tuple. */
+  private final int values;
+  /** Maximum number of buffered tuples (0: no limit, see {@link MainOptions#SORTLIMIT}). */
+  private final int limit;
+  /** Query context. */
+  private final QueryContext qc;
+  /** Input info. */
+  private final InputInfo info;
+
+  /** Buffered keys. */
+  private Item[][] bkeys = new Item[Array.CAPACITY][];
+  /** Buffered tuples. */
+  private Value[][] btuples = new Value[Array.CAPACITY][];
+  /** Number of buffered tuples. */
+  private int size;
+  /** Temporary files with sorted runs. */
+  private final ArrayList<IOFile> files = new ArrayList<>();
+  /** Serializer for spilled tuples ({@code null} if no tuples have been spilled). */
+  private Spill spill;
+
+  /** Sorted positions of the buffered tuples. */
+  private int[] order;
+  /** Current position in the sorted buffer. */
+  private int pos;
+  /** Runs to be merged ({@code null} if no run has been spilled). */
+  private MinHeap<Run, Run> heap;
+
+  /**
+   * Constructor.
+   * @param keys sort keys
+   * @param values number of values per tuple
+   * @param qc query context
+   * @param info input info
+   */
+  TupleSort(final Key[] keys, final int values, final QueryContext qc, final InputInfo info) {
+    this.keys = keys;
+    this.values = values;
+    this.qc = qc;
+    this.info = info;
+    limit = qc.context.options.get(MainOptions.SORTLIMIT);
+  }
+
+  /**
+   * Adds a tuple.
+   * @param key keys of the tuple
+   * @param tuple values of the tuple
+   * @throws QueryException query exception
+   */
+  void add(final Item[] key, final Value[] tuple) throws QueryException {
+    final int kl = key.length;
+    for(int k = 0; k < kl; k++) {
+      final Item it = key[k];
+      if(it == Dbl.NAN || it == Flt.NAN) key[k] = null;
+    }
+
+    if(size == bkeys.length) {
+      final int s = Array.newSize(size);
+      bkeys = Arrays.copyOf(bkeys, s);
+      btuples = Arrays.copyOf(btuples, s);
+    }
+    bkeys[size] = key;
+    btuples[size++] = tuple;
+    if(limit > 0 && size >= limit) write();
+  }
+
+  /**
+   * Returns the next tuple in sort order.
+   * @return tuple, or {@code null} if all tuples have been returned
+   * @throws QueryException query exception
+   */
+  Value[] next() throws QueryException {
+    if(order == null) finish();
+    if(heap == null) {
+      if(pos == order.length) return null;
+      final int p = order[pos++];
+      final Value[] tuple = btuples[p];
+      // free the space occupied by the tuple
+      btuples[p] = null;
+      bkeys[p] = null;
+      return tuple;
+    }
+
+    if(heap.isEmpty()) return null;
+    try {
+      final Run run = heap.removeMin();
+      final Value[] tuple = run.tuple;
+      if(run.next()) heap.insert(run, run);
+      return tuple;
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Sorts the buffered tuples and prepares the merge of all runs.
+   * @throws QueryException query exception
+   */
+  private void finish() throws QueryException {
+    order = sort();
+    if(files.isEmpty()) return;
+
+    heap = new MinHeap<>(files.size() + 1, new Comparator<Run>() {
+      @Override
+      public int compare(final Run r1, final Run r2) {
+        try {
+          final int c = diff(r1.key, r2.key);
+          return c != 0 ? c : r1.id - r2.id;
+        } catch(final QueryException ex) {
+          throw new QueryRTException(ex);
+        }
+      }
+    });
+    try {
+      final int fs = files.size();
+      for(int f = 0; f < fs; f++) {
+        final Run run = new FileRun(f, files.get(f));
+        if(run.next()) heap.insert(run, run);
+      }
+      final Run run = new BufferRun(fs);
+      if(run.next()) heap.insert(run, run);
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Sorts the buffered tuples.
+   * @return sorted positions
+   * @throws QueryException query exception
+   */
+  private int[] sort() throws QueryException {
+    final int kl = keys.length;
+    final Column[] columns = new Column[kl];
+    for(int k = 0; k < kl; k++) columns[k] = new Column(k);
+    return new MergeSort() {
+      @Override
+      protected int compare(final int p1, final int p2) throws QueryException {
+        for(final Column column : columns) {
+          final int c = column.compare(p1, p2);
+          if(c != 0) return c;
+        }
+        return 0;
+      }
+    }.sort(size);
+  }
+
+  /**
+   * Sorts the buffered tuples and writes them to a temporary file.
+   * @throws QueryException query exception
+   */
+  private void write() throws QueryException {
+    final int[] ord = sort();
+    if(spill == null) spill = new Spill(qc, info);
+    final IOFile file = spill.file("sort");
+    files.add(file);
+    try(final DataOutput out = new DataOutput(file)) {
+      out.writeNum(size);
+      for(final int o : ord) {
+        for(final Item it : bkeys[o]) spill.write(it, out);
+        for(final Value v : btuples[o]) spill.write(v, out);
+      }
+    } catch(final IOException ex) {
+      throw spill.error(ex);
+    }
+    Arrays.fill(bkeys, 0, size, null);
+    Arrays.fill(btuples, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * Compares the keys of two tuples.
+   * @param k1 first keys
+   * @param k2 second keys
+   * @return difference
+   * @throws QueryException query exception
+   */
+  private int diff(final Item[] k1, final Item[] k2) throws QueryException {
+    final int kl = keys.length;
+    for(int k = 0; k < kl; k++) {
+      final Key or = keys[k];
+      final Item m = k1[k], n = k2[k];
+      if(m != null && n != null && !m.comparable(n)) throw castError(or.info, n, m.type);
+      final int c = m == null ? n == null ? 0 : or.least ? -1 : 1 :
+        n == null ? or.least ? 1 : -1 : m.diff(n, or.coll, or.info);
+      if(c != 0) return or.desc ? -c : c;
+    }
+    return 0;
+  }
+
+  /**
+   * Column with the keys of the buffered tuples. If all keys have the same type, their
+   * values are stored in primitive arrays.
+   */
+  private final class Column {
+    /** Sort key. */
+    private final Key key;
+    /** Absent keys ({@code null} if all keys are present). */
+    private boolean[] empty;
+    /** Integer values. */
+    private long[] longs;
+    /** Double values. */
+    private double[] doubles;
+    /** String values. */
+    private byte[][] tokens;
+    /** Items (used if no primitive representation exists). */
+    private Item[] items;
+
+    /**
+     * Constructor.
+     * @param k index of the key
+     */
+    Column(final int k) {
+      key = keys[k];
+      boolean itr = true, dbl = true, flt = true, str = key.coll == null;
+      for(int s = 0; s < size; s++) {
+        final Item it = bkeys[s][k];
+        if(it == null) {
+          if(empty == null) empty = new boolean[size];
+          empty[s] = true;
+        } else {
+          final Class<?> c = it.getClass();
+          itr &= c == Int.class;
+          dbl &= c == Dbl.class;
+          flt &= c == Flt.class;
+          str &= c == Str.class || c == Atm.class;
+        }
+      }
+
+      if(itr) {
+        longs = new long[size];
+        for(int s = 0; s < size; s++) {
+          final Item it = bkeys[s][k];
+          if(it != null) longs[s] = ((Int) it).itr();
+        }
+      } else if(dbl || flt) {
+        doubles = new double[size];
+        for(int s = 0; s < size; s++) {
+          final Item it = bkeys[s][k];
+          if(it != null) doubles[s] = dbl ? ((Dbl) it).dbl() : ((Flt) it).flt();
+        }
+      } else if(str) {
+        tokens = new byte[size][];
+        for(int s = 0; s < size; s++) {
+          final Item it = bkeys[s][k];
+          if(it != null) tokens[s] = it instanceof Str ? ((Str) it).string() :
+            ((Atm) it).string(null);
+        }
+      } else {
+        items = new Item[size];
+        for(int s = 0; s < size; s++) items[s] = bkeys[s][k];
+      }
+    }
+
+    /**
+     * Compares the keys at the specified positions.
+     * @param p1 first position
+     * @param p2 second position
+     * @return difference
+     * @throws QueryException query exception
+     */
+    int compare(final int p1, final int p2) throws QueryException {
+      final int c;
+      final boolean e1 = empty != null && empty[p1], e2 = empty != null && empty[p2];
+      if(e1 || e2) {
+        c = e1 ? e2 ? 0 : key.least ? -1 : 1 : key.least ? 1 : -1;
+      } else if(longs != null) {
+        final long l1 = longs[p1], l2 = longs[p2];
+        c = l1 < l2 ? -1 : l1 > l2 ? 1 : 0;
+      } else if(doubles != null) {
+        final double d1 = doubles[p1], d2 = doubles[p2];
+        c = d1 < d2 ? -1 : d1 > d2 ? 1 : 0;
+      } else if(tokens != null) {
+        c = Token.diff(tokens[p1], tokens[p2]);
+      } else {
+        final Item m = items[p1], n = items[p2];
+        if(!m.comparable(n)) throw castError(key.info, n, m.type);
+        c = m.diff(n, key.coll, key.info);
+      }
+      return key.desc ? -c : c;
+    }
+  }
+
+  /**
+   * Sorted run.
+   */
+  private abstract class Run {
+    /** Index of the run (tuples of runs with smaller indexes precede equal tuples). */
+    final int id;
+    /** Keys of the current tuple. */
+    Item[] key;
+    /** Values of the current tuple. */
+    Value[] tuple;
+
+    /**
+     * Constructor.
+     * @param id index of the run
+     */
+    Run(final int id) {
+      this.id = id;
+    }
+
+    /**
+     * Proceeds to the next tuple.
+     * @return {@code true} if a tuple was found
+     * @throws QueryException query exception
+     */
+    abstract boolean next() throws QueryException;
+  }
+
+  /**
+   * Run in main memory.
+   */
+  private final class BufferRun extends Run {
+    /**
+     * Constructor.
+     * @param id index of the run
+     */
+    BufferRun(final int id) {
+      super(id);
+    }
+
+    @Override
+    boolean next() {
+      if(pos == order.length) return false;
+      final int p = order[pos++];
+      key = bkeys[p];
+      tuple = btuples[p];
+      bkeys[p] = null;
+      btuples[p] = null;
+      return true;
+    }
+  }
+
+  /**
+   * Run in a temporary file.
+   */
+  private final class FileRun extends Run {
+    /** File. */
+    private final IOFile file;
+    /** Input stream. */
+    private final DataInput in;
+    /** Number of remaining tuples. */
+    private int remaining;
+
+    /**
+     * Constructor.
+     * @param id index of the run
+     * @param file file
+     * @throws QueryException query exception
+     */
+    FileRun(final int id, final IOFile file) throws QueryException {
+      super(id);
+      this.file = file;
+      in = spill.open(file);
+      try {
+        remaining = in.readNum();
+      } catch(final IOException ex) {
+        throw spill.error(ex);
+      }
+    }
+
+    @Override
+    boolean next() throws QueryException {
+      try {
+        if(remaining == 0) {
+          spill.delete(in, file);
+          return false;
+        }
+        remaining--;
+        final int kl = keys.length;
+        key = new Item[kl];
+        for(int k = 0; k < kl; k++) key[k] = spill.item(in);
+        tuple = new Value[values];
+        for(int t = 0; t < values; t++) tuple[t] = spill.value(in);
+        return true;
+      } catch(final IOException ex) {
+        throw spill.error(ex);
+      }
+    }
+  }
+}
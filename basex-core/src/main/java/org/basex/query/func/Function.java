@@ -547,6 +547,8 @@ public enum Function {
   /** XQuery function. */
   _ADMIN_SESSIONS(AdminSessions.class, "sessions()", arg(), ELM_ZM, flag(NDT), ADMIN_URI),
   /** XQuery function. */
+  _ADMIN_LOCKS(AdminLocks.class, "locks()", arg(), ELM_ZM, flag(NDT), ADMIN_URI),
+  /** XQuery function. */
   _ADMIN_LOGS(AdminLogs.class, "logs([date[,merge]])", arg(STR, BLN), ELM_ZM, flag(NDT), ADMIN_URI),
   /** XQuery function. */
   _ADMIN_WRITE_LOG(AdminWriteLog.class, "write-log(message[,type])",
@@ -142,6 +142,11 @@ public abstract class StandardFunc extends Arr {
     return !has(Flag.UPD) && seqType.eq(SeqType.EMP);
   }
 
+  @Override
+  public boolean accept(final ASTVisitor visitor) {
+    return visitor.funcCall(this) && super.accept(visitor);
+  }
+
   @Override
   public final String description() {
     return sig.toString();
@@ -96,6 +96,33 @@ public final class StaticFunc extends StaticDecl implements XQFunction {
     compiling = false;
   }
 
+  /**
+   * Creates an uncompiled copy of this function for another query context.
+   * The function body is assigned by {@link #copyExpr(QueryContext, StaticFunc)}.
+   * @param qc query context
+   * @return copy
+   */
+  StaticFunc copy(final QueryContext qc) {
+    final VarScope scp = new VarScope(sc);
+    final int al = args.length;
+    final Var[] as = new Var[al];
+    for(int a = 0; a < al; a++) as[a] = scp.newCopyOf(qc, args[a]);
+    return new StaticFunc(anns, name, as, declType, null, sc, scp, docString(), info);
+  }
+
+  /**
+   * Assigns a copy of the body of the function from which this function was copied.
+   * @param qc query context
+   * @param sf original function
+   */
+  void copyExpr(final QueryContext qc, final StaticFunc sf) {
+    if(sf.expr == null) return;
+    final IntObjMap<Var> vs = new IntObjMap<>();
+    final int al = args.length;
+    for(int a = 0; a < al; a++) vs.put(sf.args[a].id, args[a]);
+    expr = sf.expr.copy(qc, scope, vs);
+  }
+
   @Override
   public void plan(final FElem plan) {
     final FElem el = planElem(NAM, name.string());
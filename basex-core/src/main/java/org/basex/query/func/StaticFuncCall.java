@@ -86,7 +86,7 @@ public final class StaticFuncCall extends FuncCall {
     final StaticFuncCall call = new StaticFuncCall(name, args, sc, func, info);
     call.seqType = seqType;
     call.size = size;
-    return call;
+    return qc.funcs.copy(call);
   }
 
   /**
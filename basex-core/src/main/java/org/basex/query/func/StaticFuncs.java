@@ -4,6 +4,7 @@ import static org.basex.query.QueryError.*;
 import static org.basex.util.Token.*;
 
 import java.util.*;
+import java.util.Map.Entry;
 
 import org.basex.core.*;
 import org.basex.query.*;
@@ -27,6 +28,8 @@ import org.basex.util.list.*;
 public final class StaticFuncs extends ExprInfo {
   /** User-defined functions. */
   private final TokenObjMap<FuncCache> funcs = new TokenObjMap<>();
+  /** Functions of a parsed query and their copies (only assigned while the query is copied). */
+  private LinkedHashMap<StaticFunc, FuncCache> copies;
 
   /**
    * returns the signature of the function with the given name and arity.
@@ -173,6 +176,53 @@ public final class StaticFuncs extends ExprInfo {
     }
   }
 
+  /**
+   * Declares copies of the functions of another query context. Until {@link #copied()} is
+   * called, copied calls to the original functions will be redirected to the copies.
+   * @param qc query context
+   * @param sf functions to be copied
+   */
+  public void copy(final QueryContext qc, final StaticFuncs sf) {
+    copies = new LinkedHashMap<>();
+    for(final byte[] sig : sf.funcs) {
+      final StaticFunc func = sf.funcs.get(sig).func;
+      final FuncCache fc = new FuncCache(func.copy(qc));
+      funcs.put(sig, fc);
+      copies.put(func, fc);
+    }
+  }
+
+  /**
+   * Assigns copies of the function bodies to the declared copies.
+   * @param qc query context
+   */
+  public void copyExprs(final QueryContext qc) {
+    for(final Entry<StaticFunc, FuncCache> e : copies.entrySet()) {
+      e.getValue().func.copyExpr(qc, e.getKey());
+    }
+  }
+
+  /**
+   * Finishes copying functions.
+   */
+  public void copied() {
+    copies = null;
+  }
+
+  /**
+   * Redirects a copied function call to the copy of the called function.
+   * @param call function call
+   * @return function call
+   */
+  StaticFuncCall copy(final StaticFuncCall call) {
+    final FuncCache fc = copies != null ? copies.get(call.func) : null;
+    if(fc != null) {
+      call.func = fc.func;
+      fc.calls.add(call);
+    }
+    return call;
+  }
+
   /**
    * Checks if the functions perform updates.
    * @throws QueryException query exception
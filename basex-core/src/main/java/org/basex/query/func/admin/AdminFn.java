@@ -29,6 +29,22 @@ abstract class AdminFn extends StandardFunc {
   static final String TYPE = "type";
   /** QName: ms. */
   static final String MS = "ms";
+  /** QName: lock. */
+  static final String LOCK = "lock";
+  /** QName: name. */
+  static final String NAME = "name";
+  /** QName: readers. */
+  static final String READERS = "readers";
+  /** QName: writers. */
+  static final String WRITERS = "writers";
+  /** QName: queue. */
+  static final String QUEUE = "queue";
+  /** QName: acquired. */
+  static final String ACQUIRED = "acquired";
+  /** QName: holders. */
+  static final String HOLDERS = "holders";
+  /** QName: wait. */
+  static final String WAIT = "wait";
 
   @Override
   public final boolean accept(final ASTVisitor visitor) {
@@ -0,0 +1,42 @@
+package org.basex.query.func.admin;
+
+import static org.basex.util.Token.*;
+
+import org.basex.core.locks.*;
+import org.basex.query.*;
+import org.basex.query.iter.*;
+import org.basex.query.value.*;
+import org.basex.query.value.node.*;
+
+/**
+ * Function implementation.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class AdminLocks extends AdminFn {
+  @Override
+  public Iter iter(final QueryContext qc) throws QueryException {
+    return value(qc).iter();
+  }
+
+  @Override
+  public Value value(final QueryContext qc) throws QueryException {
+    checkAdmin(qc);
+
+    final ValueBuilder vb = new ValueBuilder();
+    for(final LockInfo li : qc.context.locks()) {
+      final FElem elem = new FElem(LOCK).add(NAME, li.name);
+      elem.add(READERS, token(li.readers)).add(WRITERS, token(li.writers));
+      elem.add(QUEUE, token(li.queue)).add(ACQUIRED, token(li.acquired));
+      elem.add(MS, token(li.waited / 1000000));
+      if(!li.holders.isEmpty()) elem.add(HOLDERS, li.holders);
+      final int hl = li.histogram.length;
+      for(int h = 0; h < hl; h++) {
+        elem.add(new FElem(WAIT).add(TIME, LockInfo.label(h)).add(token(li.histogram[h])));
+      }
+      vb.add(elem);
+    }
+    return vb.value();
+  }
+}
@@ -2,11 +2,10 @@ package org.basex.query.func.fn;
 
 import static org.basex.query.QueryError.*;
 
-import java.util.*;
-
 import org.basex.query.*;
 import org.basex.query.func.*;
 import org.basex.query.iter.*;
+import org.basex.query.util.*;
 import org.basex.query.util.list.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
@@ -31,7 +30,7 @@ public final class FnSort extends StandardFunc {
       for(final Value v : value) vl.add(v);
     }
 
-    final Integer[] order = sort(vl, this);
+    final int[] order = sort(vl, this);
     return new ValueIter() {
       int c;
       @Override
@@ -61,36 +60,24 @@ public final class FnSort extends StandardFunc {
    * @return item order
    * @throws QueryException query exception
    */
-  public static Integer[] sort(final ValueList vl, final StandardFunc sf) throws QueryException {
-    final int al = vl.size();
-    final Integer[] order = new Integer[al];
-    for(int o = 0; o < al; o++) order[o] = o;
-    try {
-      Arrays.sort(order, new Comparator<Integer>() {
-        @Override
-        public int compare(final Integer i1, final Integer i2) {
-          try {
-            final Value v1 = vl.get(i1), v2 = vl.get(i2);
-            final long s1 = v1.size(), s2 = v2.size(), sl = Math.min(s1, s2);
-            for(int v = 0; v < sl; v++) {
-              final Item it1 = v1.itemAt(v), it2 = v2.itemAt(v);
-              if(!it1.comparable(it2)) {
-                if(it1 instanceof FItem) throw FIEQ_X.get(sf.info, it1.type);
-                if(it2 instanceof FItem) throw FIEQ_X.get(sf.info, it2.type);
-                throw diffError(sf.info, it1, it2);
-              }
-              final int d = it1.diff(it2, sf.sc.collation, sf.info);
-              if(d != 0) return d;
-            }
-            return (int) (s1 - s2);
-          } catch(final QueryException ex) {
-            throw new QueryRTException(ex);
+  public static int[] sort(final ValueList vl, final StandardFunc sf) throws QueryException {
+    return new MergeSort() {
+      @Override
+      protected int compare(final int p1, final int p2) throws QueryException {
+        final Value v1 = vl.get(p1), v2 = vl.get(p2);
+        final long s1 = v1.size(), s2 = v2.size(), sl = Math.min(s1, s2);
+        for(int v = 0; v < sl; v++) {
+          final Item it1 = v1.itemAt(v), it2 = v2.itemAt(v);
+          if(!it1.comparable(it2)) {
+            if(it1 instanceof FItem) throw FIEQ_X.get(sf.info, it1.type);
+            if(it2 instanceof FItem) throw FIEQ_X.get(sf.info, it2.type);
+            throw diffError(sf.info, it1, it2);
           }
+          final int d = it1.diff(it2, sf.sc.collation, sf.info);
+          if(d != 0) return d;
         }
-      });
-    } catch(final QueryRTException ex) {
-      throw ex.getCause();
-    }
-    return order;
+        return (int) (s1 - s2);
+      }
+    }.sort(vl.size());
   }
 }
@@ -7,12 +7,17 @@ import java.util.*;
 
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.index.ft.*;
 import org.basex.query.*;
 import org.basex.query.expr.ft.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.util.list.*;
 import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
 import org.basex.util.ft.*;
+import org.basex.util.list.*;
 
 /**
  * Function implementation.
@@ -25,7 +30,7 @@ public final class FtSearch extends FtAccess {
   public Iter iter(final QueryContext qc) throws QueryException {
     final Data data = checkData(qc);
     final Value terms = qc.value(exprs[1]);
-    final FtIndexOptions opts = toOptions(2, Q_OPTIONS, new FtIndexOptions(), qc);
+    final FtSearchOptions opts = toOptions(2, Q_OPTIONS, new FtSearchOptions(), qc);
 
     final IndexContext ic = new IndexContext(data, false);
     if(!data.meta.ftxtindex) throw BXDB_INDEX_X.get(info, data.meta.name,
@@ -37,11 +42,101 @@ public final class FtSearch extends FtAccess {
     opt.set(WC, opts.get(FtIndexOptions.WILDCARDS));
     if(opt.is(FZ) && opt.is(WC)) throw BXFT_MATCH.get(info, this);
 
+    // rank results of simple searches via the index
+    final int top = opts.get(FtSearchOptions.TOP);
+    if(top > 0) {
+      final TokenList tokens = tokens(data, terms, opt, mode, opts);
+      if(tokens != null) {
+        final FTTop ft = ((FTIndex) data.ftxtIndex).top(tokens,
+            mode == FTMode.ALL || mode == FTMode.ALL_WORDS, top);
+        final double[] scores = new double[ft.size()];
+        final int[] pres = ft.finish(scores);
+        final int pl = pres.length;
+        final ANodeList list = new ANodeList(pl);
+        for(int p = 0; p < pl; p++) {
+          final DBNode node = new DBNode(data, pres[p]);
+          node.score(scores[p]);
+          list.add(node);
+        }
+        return list.iter();
+      }
+    }
+
     final FTOpt tmp = qc.ftOpt();
     qc.ftOpt(opt);
     final FTExpr fte = new FTWords(info, data, terms, mode).compile(qc, null);
     qc.ftOpt(tmp);
-    return new FTIndexAccess(info, options(fte, opts), ic).iter(qc);
+    final Iter iter = new FTIndexAccess(info, options(fte, opts), ic).iter(qc);
+    return top > 0 ? top(iter, top, qc) : iter;
+  }
+
+  /**
+   * Returns the tokens of a search that can be ranked by the index. All tokens must be
+   * searched as single words, and no other match options may be specified.
+   * @param data data reference
+   * @param terms search terms
+   * @param opt full-text options
+   * @param mode search mode
+   * @param opts function options
+   * @return tokens, or {@code null} if the search cannot be ranked by the index
+   * @throws QueryException query exception
+   */
+  private TokenList tokens(final Data data, final Value terms, final FTOpt opt,
+      final FTMode mode, final FtIndexOptions opts) throws QueryException {
+
+    if(opt.is(FZ) || opt.is(WC) || opts.get(FtIndexOptions.ORDERED) ||
+        opts.contains(FtIndexOptions.DISTANCE) || opts.contains(FtIndexOptions.WINDOW) ||
+        opts.contains(FtIndexOptions.SCOPE) || opts.contains(FtIndexOptions.CONTENT)) return null;
+
+    final boolean words = mode == FTMode.ANY_WORD || mode == FTMode.ALL_WORDS;
+    final TokenList tokens = new TokenList();
+    final FTLexer lexer = new FTLexer(opt);
+    for(final Item item : terms) {
+      lexer.init(toToken(item));
+      int c = 0;
+      while(lexer.hasNext()) {
+        final byte[] token = lexer.nextToken();
+        if(token.length > data.meta.maxlen) return null;
+        if(opt.sw != null && opt.sw.contains(token)) continue;
+        tokens.add(token);
+        c++;
+      }
+      // phrases cannot be ranked by the index
+      if(c > 1 && !words) return null;
+    }
+    return mode == FTMode.PHRASE && tokens.size() > 1 ? null : tokens;
+  }
+
+  /**
+   * Returns the results with the highest scores, computed by the default scoring model.
+   * @param iter results
+   * @param top maximum number of results
+   * @param qc query context
+   * @return iterator
+   * @throws QueryException query exception
+   */
+  private static Iter top(final Iter iter, final int top, final QueryContext qc)
+      throws QueryException {
+
+    final ArrayList<ANode> nodes = new ArrayList<>();
+    final boolean scoring = qc.scoring;
+    qc.scoring = true;
+    try {
+      for(Item item; (item = iter.next()) != null;) nodes.add((ANode) item);
+    } finally {
+      qc.scoring = scoring;
+    }
+    // stable sort: results with identical scores are returned in document order
+    Collections.sort(nodes, new Comparator<ANode>() {
+      @Override
+      public int compare(final ANode n1, final ANode n2) {
+        return Double.compare(n2.score(), n1.score());
+      }
+    });
+    final int ns = Math.min(top, nodes.size());
+    final ANodeList list = new ANodeList(ns);
+    for(int n = 0; n < ns; n++) list.add(nodes.get(n));
+    return list.iter();
   }
 
   @Override
@@ -59,6 +59,8 @@ public final class DBNew {
 
   /**
    * Inserts all documents to be added to a temporary database.
+   * Consecutive file inputs are parsed in a single run, and the resulting documents are
+   * appended to the target database in a single step.
    * @param dt target database
    * @param name name of database
    * @param options main options
@@ -68,38 +70,58 @@ public final class DBNew {
       throws QueryException {
 
     data = dt;
-    final long ds = inputs.size();
-    for(int i = 0; i < ds; i++) {
-      data.insert(data.meta.size, -1, data(inputs.get(i), name, options));
-      // clear list to recover memory
-      inputs.set(i, null);
+    final int is = inputs.size();
+    for(int i = 0; i < is;) {
+      final DataClip clip;
+      if(inputs.get(i).node != null) {
+        clip = node(inputs.get(i), options);
+        inputs.set(i++, null);
+      } else {
+        int e = i + 1;
+        while(e < is && inputs.get(e).node == null) e++;
+        clip = parse(inputs.subList(i, e), name, options);
+        // clear list to recover memory
+        for(; i < e; i++) inputs.set(i, null);
+      }
+      data.insert(data.meta.size, -1, clip);
     }
     inputs = null;
   }
 
   /**
-   * Creates a {@link DataClip} instance for the specified document.
+   * Creates a {@link DataClip} instance for the specified document node.
    * @param ni new database input
+   * @param options main options
+   * @return database clip
+   */
+  private static DataClip node(final NewInput ni, final MainOptions options) {
+    final MemData mdata = (MemData) ni.node.dbCopy(options).data();
+    mdata.update(0, Data.DOC, ni.path);
+    return new DataClip(mdata);
+  }
+
+  /**
+   * Creates a {@link DataClip} instance for the specified file inputs.
+   * @param nis new database inputs
    * @param dbname name of database
    * @param options main options
    * @return database clip
    * @throws QueryException query exception
    */
-  private DataClip data(final NewInput ni, final String dbname, final MainOptions options)
-      throws QueryException {
+  private DataClip parse(final List<NewInput> nis, final String dbname,
+      final MainOptions options) throws QueryException {
 
-    // add document node
     final Context ctx = qc.context;
-    if(ni.node != null) {
-      final MemData mdata = (MemData) ni.node.dbCopy(options).data();
-      mdata.update(0, Data.DOC, ni.path);
-      return new DataClip(mdata);
-    }
-
-    // add input
-    final IOFile dbpath = ctx.soptions.dbpath(string(ni.dbname));
+    final Parser parser = new Parser(nis.get(0).io, options) {
+      @Override
+      public void parse(final Builder build) throws IOException {
+        for(final NewInput ni : nis) {
+          final IOFile dbpath = ctx.soptions.dbpath(string(ni.dbname));
+          new DirParser(ni.io, options, dbpath).target(string(ni.path)).parse(build);
+        }
+      }
+    };
     try {
-      final Parser parser = new DirParser(ni.io, options, dbpath).target(string(ni.path));
       return new MemBuilder(dbname, parser).dataClip();
     } catch(final IOException ex) {
       throw IOERR_X.get(info, ex);
@@ -68,6 +68,7 @@ public final class DBOptimize extends DBUpdate {
     options.assign(MainOptions.FTINDEX,      meta.createftxt);
     options.assign(MainOptions.UPDINDEX,     meta.updindex);
     options.assign(MainOptions.AUTOOPTIMIZE, meta.autoopt);
+    options.assign(MainOptions.MAPTABLE,     meta.maptable);
     options.assignTo(opts);
 
     // adopt runtime options
@@ -85,15 +86,18 @@ public final class DBOptimize extends DBUpdate {
     final boolean st = opts.get(MainOptions.STEMMING);
     final boolean cs = opts.get(MainOptions.CASESENS);
     final boolean dc = opts.get(MainOptions.DIACRITICS);
+    final boolean ng = opts.get(MainOptions.FTNGRAMS);
     final String sw = opts.get(MainOptions.STOPWORDS);
     final Language ln = Language.get(opts);
     final boolean rebuildFT = rebuild || !ln.equals(meta.language) || st != meta.stemming ||
-        cs != meta.casesens || dc != meta.diacritics || !sw.equals(meta.stopwords);
+        cs != meta.casesens || dc != meta.diacritics || ng != meta.ftngrams ||
+        !sw.equals(meta.stopwords);
 
     meta.language   = ln;
     meta.stemming   = st;
     meta.casesens   = cs;
     meta.diacritics = dc;
+    meta.ftngrams   = ng;
     meta.stopwords  = sw;
     meta.maxcats    = mc;
     meta.maxlen     = ml;
@@ -0,0 +1,73 @@
+package org.basex.query.util;
+
+import org.basex.query.*;
+
+/**
+ * Stable merge sort for the positions of a sequence. In contrast to sorting an array of
+ * {@link Integer} objects with a comparator, no positions need to be boxed, and
+ * comparisons may directly raise query exceptions.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public abstract class MergeSort {
+  /** Maximum size of ranges that will be sorted via insertion sort. */
+  private static final int INSERTION = 16;
+
+  /**
+   * Returns the sorted positions {@code [0, size)}.
+   * @param size number of positions
+   * @return sorted positions
+   * @throws QueryException query exception
+   */
+  public final int[] sort(final int size) throws QueryException {
+    final int[] order = new int[size];
+    for(int o = 0; o < size; o++) order[o] = o;
+    if(size > 1) sort(order.clone(), order, 0, size);
+    return order;
+  }
+
+  /**
+   * Compares two positions.
+   * @param p1 first position
+   * @param p2 second position
+   * @return difference
+   * @throws QueryException query exception
+   */
+  protected abstract int compare(int p1, int p2) throws QueryException;
+
+  /**
+   * Sorts the specified range. Both arrays must contain the same entries in that range.
+   * @param src source array
+   * @param dst destination array, containing the sorted range afterwards
+   * @param lo start of the range
+   * @param hi end of the range (exclusive)
+   * @throws QueryException query exception
+   */
+  private void sort(final int[] src, final int[] dst, final int lo, final int hi)
+      throws QueryException {
+
+    if(hi - lo < INSERTION) {
+      for(int i = lo + 1; i < hi; i++) {
+        final int p = dst[i];
+        int j = i;
+        for(; j > lo && compare(dst[j - 1], p) > 0; j--) dst[j] = dst[j - 1];
+        dst[j] = p;
+      }
+      return;
+    }
+
+    final int mid = lo + hi >>> 1;
+    sort(dst, src, lo, mid);
+    sort(dst, src, mid, hi);
+
+    // skip merge if both halves are already in order
+    if(compare(src[mid - 1], src[mid]) <= 0) {
+      System.arraycopy(src, lo, dst, lo, hi - lo);
+      return;
+    }
+    for(int i = lo, p = lo, q = mid; i < hi; i++) {
+      dst[i] = q >= hi || p < mid && compare(src[p], src[q]) <= 0 ? src[p++] : src[q++];
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package org.basex.query.util;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.query.*;
+import org.basex.util.*;
+
+/**
+ * Temporary files that are created during query evaluation. All input streams that are
+ * still open will be closed, and all files that still exist will be deleted, when the
+ * query is closed. This way, no resources are left behind if the evaluation is aborted
+ * or if not all results are requested.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class TempFiles implements QueryResource {
+  /** Created files. */
+  private final ArrayList<IOFile> files = new ArrayList<>();
+  /** Open input streams. */
+  private final ArrayList<DataInput> inputs = new ArrayList<>();
+
+  /**
+   * Creates a new temporary file.
+   * @param qc query context
+   * @param prefix prefix of the file name
+   * @return file
+   * @throws IOException I/O exception
+   */
+  public static IOFile create(final QueryContext qc, final String prefix) throws IOException {
+    final TempFiles tmp = get(qc);
+    final IOFile file = new IOFile(File.createTempFile(prefix, IO.BASEXSUFFIX));
+    synchronized(tmp) {
+      tmp.files.add(file);
+    }
+    return file;
+  }
+
+  /**
+   * Opens an input stream for a temporary file.
+   * @param qc query context
+   * @param file file
+   * @return input stream
+   * @throws IOException I/O exception
+   */
+  public static DataInput open(final QueryContext qc, final IOFile file) throws IOException {
+    final TempFiles tmp = get(qc);
+    final DataInput in = new DataInput(file);
+    synchronized(tmp) {
+      tmp.inputs.add(in);
+    }
+    return in;
+  }
+
+  /**
+   * Closes an input stream and deletes its temporary file.
+   * @param qc query context
+   * @param in input stream
+   * @param file file
+   */
+  public static void delete(final QueryContext qc, final DataInput in, final IOFile file) {
+    final TempFiles tmp = get(qc);
+    synchronized(tmp) {
+      tmp.inputs.remove(in);
+      tmp.files.remove(file);
+    }
+    close(in);
+    file.delete();
+  }
+
+  @Override
+  public synchronized void close() {
+    for(final DataInput in : inputs) close(in);
+    inputs.clear();
+    for(final IOFile file : files) file.delete();
+    files.clear();
+  }
+
+  /**
+   * Returns the temporary files of the specified query.
+   * @param qc query context
+   * @return temporary files
+   */
+  private static TempFiles get(final QueryContext qc) {
+    synchronized(qc.resources) {
+      TempFiles tmp = qc.resources.get(TempFiles.class);
+      if(tmp == null) {
+        tmp = new TempFiles();
+        qc.resources.add(tmp);
+      }
+      return tmp;
+    }
+  }
+
+  /**
+   * Closes an input stream.
+   * @param in input stream
+   */
+  private static void close(final DataInput in) {
+    try {
+      in.close();
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+  }
+}
@@ -151,6 +151,14 @@ public final class ModuleLoader {
     return loader == LOADER ? Reflect.forName(name) : Class.forName(name, true, loader);
   }
 
+  /**
+   * Indicates if Java modules have been instantiated.
+   * @return result of check
+   */
+  public boolean java() {
+    return javaModules != null;
+  }
+
   /**
    * Returns an instance of the specified Java module class.
    * @param clz class to be found
@@ -36,6 +36,17 @@ public final class QueryStack {
     return s;
   }
 
+  /**
+   * Enters a new stack frame and adopts the bindings of the current frame of another stack.
+   * @param qs query stack
+   */
+  public void enterFrame(final QueryStack qs) {
+    final int s = qs.start, l = qs.end - s;
+    enterFrame(l);
+    System.arraycopy(qs.stack, s, stack, start, l);
+    System.arraycopy(qs.vars, s, vars, start, l);
+  }
+
   /**
    * Prepares the current stack frame to be reused.
    * @param size new frame size
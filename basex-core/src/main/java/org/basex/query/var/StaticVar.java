@@ -15,6 +15,7 @@ import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
 import org.basex.query.value.type.*;
 import org.basex.util.*;
+import org.basex.util.hash.*;
 
 /**
  * Static variable to which an expression can be assigned.
@@ -140,6 +141,25 @@ public final class StaticVar extends StaticDecl {
     return val;
   }
 
+  /**
+   * Creates an uncompiled copy of this variable for another query context.
+   * The bound expression is assigned by {@link #copyExpr(QueryContext, StaticVar)}.
+   * @return copy
+   */
+  StaticVar copy() {
+    return new StaticVar(sc, new VarScope(sc), anns, name, declType, null, external, docString(),
+        info);
+  }
+
+  /**
+   * Assigns a copy of the expression of the variable from which this variable was copied.
+   * @param qc query context
+   * @param var original variable
+   */
+  void copyExpr(final QueryContext qc, final StaticVar var) {
+    if(var.expr != null) expr = var.expr.copy(qc, scope, new IntObjMap<Var>());
+  }
+
   @Override
   public void plan(final FElem plan) {
     final FElem e = planElem(NAM, name.string());
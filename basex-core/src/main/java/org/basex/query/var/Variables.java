@@ -23,6 +23,8 @@ import org.basex.util.*;
 public final class Variables extends ExprInfo implements Iterable<StaticVar> {
   /** The variables. */
   private final HashMap<QNm, VarEntry> vars = new HashMap<>();
+  /** Variables of a parsed query and their copies (only assigned while the query is copied). */
+  private LinkedHashMap<StaticVar, StaticVar> copies;
 
   /**
    * Declares a new static variable.
@@ -49,6 +51,47 @@ public final class Variables extends ExprInfo implements Iterable<StaticVar> {
     return var;
   }
 
+  /**
+   * Declares copies of the variables of another query context. Until {@link #copied()} is
+   * called, copied references to the original variables will be redirected to the copies.
+   * @param vrs variables to be copied
+   */
+  public void copy(final Variables vrs) {
+    copies = new LinkedHashMap<>();
+    for(final Entry<QNm, VarEntry> e : vrs.vars.entrySet()) {
+      final StaticVar var = e.getValue().var, cp = var.copy();
+      vars.put(e.getKey(), new VarEntry(cp));
+      copies.put(var, cp);
+    }
+  }
+
+  /**
+   * Assigns copies of the bound expressions to the declared copies.
+   * @param qc query context
+   */
+  public void copyExprs(final QueryContext qc) {
+    for(final Entry<StaticVar, StaticVar> e : copies.entrySet()) {
+      e.getValue().copyExpr(qc, e.getKey());
+    }
+  }
+
+  /**
+   * Finishes copying variables.
+   */
+  public void copied() {
+    copies = null;
+  }
+
+  /**
+   * Returns the variable to be referenced by a copied variable reference.
+   * @param var referenced variable
+   * @return copy of the variable, or specified variable
+   */
+  StaticVar copy(final StaticVar var) {
+    final StaticVar cp = copies != null ? copies.get(var) : null;
+    return cp != null ? cp : var;
+  }
+
   /**
    * Checks if none of the variables contains an updating expression.
    * @throws QueryException query exception
@@ -0,0 +1,52 @@
+package org.basex.server;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * This class writes bytes to a non-blocking socket channel. If the socket buffer is full,
+ * the calling thread waits until the client has consumed data.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+final class ChannelOutput extends OutputStream {
+  /** Timeout for waiting for a writable channel (milliseconds). */
+  private static final long WAIT = 1000;
+  /** Socket channel. */
+  private final SocketChannel channel;
+
+  /**
+   * Constructor.
+   * @param channel socket channel
+   */
+  ChannelOutput(final SocketChannel channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    final ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+    Selector selector = null;
+    try {
+      while(bb.hasRemaining()) {
+        if(channel.write(bb) != 0) continue;
+        // socket buffer is full: wait until channel is writable again
+        if(selector == null) {
+          selector = Selector.open();
+          channel.register(selector, SelectionKey.OP_WRITE);
+        }
+        selector.select(WAIT);
+        selector.selectedKeys().clear();
+      }
+    } finally {
+      if(selector != null) selector.close();
+    }
+  }
+}
@@ -52,6 +52,8 @@ public final class ClientListener extends Thread {
   private int id;
   /** Indicates if the server thread is running. */
   private boolean running;
+  /** Nonce of the authentication challenge ({@code null} if login data has been evaluated). */
+  private String nonce;
 
   /**
    * Constructor.
@@ -70,94 +72,126 @@ public final class ClientListener extends Thread {
   @Override
   public void run() {
     if(!authenticate()) return;
+    while(running && request());
+  }
+
+  /**
+   * Processes a complete request that has been received by the non-blocking server
+   * (see {@link ServerSelector}). The first request of a session contains the login data.
+   * @param request request
+   * @return {@code true} if the session is still open
+   */
+  boolean process(final byte[] request) {
+    in = new ArrayInput(request);
+    return nonce != null ? login() : running && request();
+  }
+
+  /**
+   * Sends the authentication challenge {REALM:NONCE}0 to the client.
+   * @param os output stream
+   * @throws IOException I/O exception
+   */
+  void greet(final OutputStream os) throws IOException {
+    nonce = Long.toString(System.nanoTime());
+    out = PrintOutput.get(os);
+    out.print(Prop.NAME + ':' + nonce);
+    send(true);
+  }
 
+  /**
+   * Processes a single client request.
+   * @return {@code false} if the session has been closed
+   */
+  private boolean request() {
     try {
-      while(running) {
-        command = null;
-        String cmd;
-        final ServerCmd sc;
-        try {
-          final int b = in.read();
-          if(b == -1) {
-            // end of stream: exit session
-            quit();
-            break;
-          }
-
-          last = System.currentTimeMillis();
-          perf.time();
-          sc = ServerCmd.get(b);
-          cmd = null;
-          if(sc == ServerCmd.CREATE) {
-            create();
-          } else if(sc == ServerCmd.ADD) {
-            add();
-          } else if(sc == ServerCmd.REPLACE) {
-            replace();
-          } else if(sc == ServerCmd.STORE) {
-            store();
-          } else if(sc != ServerCmd.COMMAND) {
-            query(sc);
-          } else {
-            // database command
-            cmd = new ByteList().add(b).add(in.readBytes()).toString();
-          }
-        } catch(final IOException ex) {
-          // this exception may be thrown if a session is stopped
+      command = null;
+      String cmd;
+      final ServerCmd sc;
+      try {
+        final int b = in.read();
+        if(b == -1) {
+          // end of stream: exit session
           quit();
-          break;
-        }
-        if(sc != ServerCmd.COMMAND) continue;
-
-        // parse input and create command instance
-        try {
-          command = new CommandParser(cmd, context).parseSingle();
-          log(LogType.REQUEST, command.toString(true));
-        } catch(final QueryException ex) {
-          // log invalid command
-          final String msg = ex.getMessage();
-          log(LogType.REQUEST, cmd);
-          log(LogType.ERROR, msg);
-          // send 0 to mark end of potential result
-          out.write(0);
-          // send {INFO}0
-          out.print(msg);
-          out.write(0);
-          // send 1 to mark error
-          send(false);
-          continue;
+          return false;
         }
 
-        // execute command and send {RESULT}
-        boolean ok = true;
-        String info;
-        try {
-          // run command
-          command.execute(context, new EncodingOutput(out));
-          info = command.info();
-        } catch(final BaseXException ex) {
-          ok = false;
-          info = ex.getMessage();
-          if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
+        last = System.currentTimeMillis();
+        perf.time();
+        sc = ServerCmd.get(b);
+        cmd = null;
+        if(sc == ServerCmd.CREATE) {
+          create();
+        } else if(sc == ServerCmd.ADD) {
+          add();
+        } else if(sc == ServerCmd.REPLACE) {
+          replace();
+        } else if(sc == ServerCmd.STORE) {
+          store();
+        } else if(sc != ServerCmd.COMMAND) {
+          query(sc);
+        } else {
+          // database command
+          cmd = new ByteList().add(b).add(in.readBytes()).toString();
         }
-
-        // send 0 to mark end of result
+      } catch(final IOException ex) {
+        // this exception may be thrown if a session is stopped
+        quit();
+        return false;
+      }
+      if(sc != ServerCmd.COMMAND) return true;
+
+      // parse input and create command instance
+      try {
+        command = new CommandParser(cmd, context).parseSingle();
+        log(LogType.REQUEST, command.toString(true));
+      } catch(final QueryException ex) {
+        // log invalid command
+        final String msg = ex.getMessage();
+        log(LogType.REQUEST, cmd);
+        log(LogType.ERROR, msg);
+        // send 0 to mark end of potential result
+        out.write(0);
+        // send {INFO}0
+        out.print(msg);
         out.write(0);
-        // send info
-        info(info, ok);
+        // send 1 to mark error
+        send(false);
+        return true;
+      }
 
-        // stop console
-        if(command instanceof Exit) {
-          command = null;
-          quit();
-        }
+      // execute command and send {RESULT}
+      boolean ok = true;
+      String info;
+      try {
+        // run command
+        command.execute(context, new EncodingOutput(out));
+        info = command.info();
+      } catch(final BaseXException ex) {
+        ok = false;
+        info = ex.getMessage();
+        if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
+      }
+
+      // send 0 to mark end of result
+      out.write(0);
+      // send info
+      info(info, ok);
+
+      // stop console
+      if(command instanceof Exit) {
+        command = null;
+        quit();
+        return false;
       }
+      return true;
     } catch(final IOException ex) {
       log(LogType.ERROR, Util.message(ex));
       command = null;
       quit();
+      return false;
+    } finally {
+      command = null;
     }
-    command = null;
   }
 
   /**
@@ -166,17 +200,23 @@ public final class ClientListener extends Thread {
    */
   private boolean authenticate() {
     try {
-      final String nonce = Long.toString(System.nanoTime());
-      final byte[] address = socket.getInetAddress().getAddress();
-
-      // send {REALM:TIMESTAMP}0
-      out = PrintOutput.get(socket.getOutputStream());
-      out.print(Prop.NAME + ':' + nonce);
-      send(true);
-
-      // evaluate login data
+      greet(socket.getOutputStream());
       in = new BufferInput(socket.getInputStream());
-      // receive {USER}0{DIGEST-HASH}0
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      server.remove(this);
+      return false;
+    }
+    return login();
+  }
+
+  /**
+   * Evaluates the login data {USER}0{DIGEST-HASH}0 sent by the client.
+   * @return success flag
+   */
+  private boolean login() {
+    try {
+      final byte[] address = socket.getInetAddress().getAddress();
       final String us = in.readString(), hash = in.readString();
       final User user = context.users.get(us);
       running = user != null &&
@@ -203,6 +243,7 @@ public final class ClientListener extends Thread {
       }
     }
 
+    nonce = null;
     server.remove(this);
     return running;
   }
@@ -190,7 +190,7 @@ public final class ServerQuery extends Proc {
    */
   private QueryProcessor init() {
     if(parsed || qp == null) {
-      qp = new QueryProcessor(query, ctx);
+      qp = new QueryProcessor(query, ctx).cachePlan();
       parsed = false;
     }
     return qp;
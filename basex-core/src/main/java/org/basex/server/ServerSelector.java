@@ -0,0 +1,301 @@
+package org.basex.server;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.server.Log.LogType;
+import org.basex.util.*;
+
+/**
+ * Non-blocking front-end of the database server.
+ *
+ * A single thread accepts new connections and reads the input of all clients. As soon as a
+ * request has been completely received, it is processed by a bounded pool of worker threads,
+ * which write the response back to the client. No further input is read from a client while
+ * one of its requests is being processed. Idle sessions hence occupy no threads, and the
+ * wire format of the client/server protocol is not changed.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class ServerSelector {
+  /** Connections whose requests have been processed. */
+  private final ConcurrentLinkedQueue<Connection> resumed = new ConcurrentLinkedQueue<>();
+  /** Input buffer. */
+  private final ByteBuffer buffer = ByteBuffer.allocate(IO.BLOCKSIZE);
+  /** Server socket channel. */
+  private final ServerSocketChannel channel;
+  /** Selector. */
+  private final Selector selector;
+  /** Worker threads. */
+  private final ExecutorService workers;
+  /** Server reference. */
+  private final BaseXServer server;
+  /** Database context. */
+  private final Context context;
+
+  /**
+   * Constructor.
+   * @param channel bound server socket channel
+   * @param threads number of worker threads
+   * @param context database context
+   * @param server server reference
+   * @throws IOException I/O exception
+   */
+  public ServerSelector(final ServerSocketChannel channel, final int threads,
+      final Context context, final BaseXServer server) throws IOException {
+
+    this.channel = channel;
+    this.context = context;
+    this.server = server;
+    selector = Selector.open();
+    channel.configureBlocking(false);
+    channel.register(selector, SelectionKey.OP_ACCEPT);
+    workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        final Thread t = new Thread(r, Util.className(ServerSelector.class));
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Accepts connections and reads client input until the server socket channel is closed.
+   */
+  public void run() {
+    try {
+      while(channel.isOpen()) {
+        selector.select();
+        for(Connection conn; (conn = resumed.poll()) != null;) conn.dispatch();
+
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while(keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          final Connection conn = (Connection) key.attachment();
+          try {
+            if(!key.isValid()) continue;
+            if(key.isAcceptable()) {
+              accept();
+            } else if(key.isReadable()) {
+              conn.read();
+            }
+          } catch(final CancelledKeyException ex) {
+            // channel has been closed by another thread
+            Util.debug(ex);
+          } catch(final IOException ex) {
+            // connection may have been unexpectedly closed
+            context.log.writeServer(LogType.ERROR, Util.message(ex));
+            if(conn != null) conn.exit();
+          }
+        }
+      }
+    } catch(final IOException ex) {
+      Util.errln(ex);
+      context.log.writeServer(LogType.ERROR, Util.message(ex));
+    } finally {
+      workers.shutdown();
+      for(final SelectionKey key : selector.keys()) close(key.channel());
+      close(selector);
+    }
+  }
+
+  /**
+   * Stops the selector thread. Called after the server socket channel has been closed.
+   */
+  public void close() {
+    selector.wakeup();
+  }
+
+  /**
+   * Accepts a new connection and sends the authentication challenge.
+   * @throws IOException I/O exception
+   */
+  private void accept() throws IOException {
+    final SocketChannel ch = channel.accept();
+    if(ch == null) return;
+
+    final ClientListener cl = server.accept(ch.socket());
+    if(cl == null) {
+      // server has been stopped
+      close(ch);
+      return;
+    }
+    ch.configureBlocking(false);
+    final Connection conn = new Connection(ch, cl);
+    conn.key = ch.register(selector, SelectionKey.OP_READ, conn);
+    try {
+      cl.greet(new ChannelOutput(ch));
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      server.remove(cl);
+      conn.key.cancel();
+      close(ch);
+    }
+  }
+
+  /**
+   * Closes a resource and ignores errors.
+   * @param closeable resource
+   */
+  private static void close(final Closeable closeable) {
+    try {
+      closeable.close();
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+  }
+
+  /**
+   * Client connection.
+   * Input is only read and decoded by the selector thread.
+   */
+  private final class Connection implements Runnable {
+    /** Socket channel. */
+    private final SocketChannel ch;
+    /** Client listener. */
+    private final ClientListener listener;
+    /** Selection key. */
+    private SelectionKey key;
+
+    /** Buffered input. */
+    private byte[] input = new byte[IO.BLOCKSIZE];
+    /** Number of buffered bytes. */
+    private int size;
+    /** Number of decoded bytes of the next request. */
+    private int pos;
+    /** Number of 0-terminated strings to be decoded ({@code -1}: request code is expected). */
+    private int strings = 2;
+    /** Indicates if an encoded input stream follows the strings. */
+    private boolean stream;
+    /** Indicates if the next byte of an input stream is escaped. */
+    private boolean escaped;
+    /** Request that is currently processed. */
+    private byte[] request;
+
+    /**
+     * Constructor. The first request consists of the login data {USER}0{DIGEST-HASH}0.
+     * @param ch socket channel
+     * @param listener client listener
+     */
+    private Connection(final SocketChannel ch, final ClientListener listener) {
+      this.ch = ch;
+      this.listener = listener;
+    }
+
+    /**
+     * Reads new input from the client.
+     * @throws IOException I/O exception
+     */
+    private void read() throws IOException {
+      buffer.clear();
+      final int n = ch.read(buffer);
+      if(n == -1) {
+        // end of stream: exit session
+        exit();
+        return;
+      }
+      if(size + n > input.length) input = Arrays.copyOf(input, Array.newSize(size + n));
+      System.arraycopy(buffer.array(), 0, input, size, n);
+      size += n;
+      dispatch();
+    }
+
+    /**
+     * Passes on the next complete request to a worker thread. Otherwise, waits for more input.
+     */
+    private void dispatch() {
+      if(!key.isValid()) return;
+      request = next();
+      if(request != null) {
+        key.interestOps(0);
+        workers.execute(this);
+      } else {
+        key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    @Override
+    public void run() {
+      boolean open = false;
+      try {
+        open = listener.process(request);
+      } finally {
+        request = null;
+        if(open) {
+          resumed.add(this);
+          selector.wakeup();
+        } else {
+          close();
+        }
+      }
+    }
+
+    /**
+     * Exits the session in a worker thread.
+     */
+    private void exit() {
+      key.cancel();
+      workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          listener.quit();
+          close();
+        }
+      });
+    }
+
+    /**
+     * Closes the connection.
+     */
+    private void close() {
+      server.remove(listener);
+      key.cancel();
+      ServerSelector.close(ch);
+    }
+
+    /**
+     * Returns the next complete request, or {@code null} if it has not been completely
+     * received yet. The decoding state is preserved between calls.
+     * @return request or {@code null}
+     */
+    private byte[] next() {
+      while(pos < size) {
+        final byte b = input[pos++];
+        if(strings == -1) {
+          // request code, or first byte of a database command
+          final ServerCmd sc = ServerCmd.get(b & 0xFF);
+          strings = sc == ServerCmd.BIND ? 4 : sc == ServerCmd.CONTEXT ? 3 : 1;
+          stream = sc == ServerCmd.CREATE || sc == ServerCmd.ADD ||
+              sc == ServerCmd.REPLACE || sc == ServerCmd.STORE;
+        } else if(strings > 0) {
+          if(b == 0) strings--;
+        } else if(escaped) {
+          escaped = false;
+        } else if(b == (byte) 0xFF) {
+          escaped = true;
+        } else if(b == 0) {
+          stream = false;
+        }
+
+        if(strings == 0 && !stream) {
+          final byte[] req = Arrays.copyOf(input, pos);
+          size -= pos;
+          System.arraycopy(input, pos, input, 0, size);
+          pos = 0;
+          strings = -1;
+          return req;
+        }
+      }
+      return null;
+    }
+  }
+}
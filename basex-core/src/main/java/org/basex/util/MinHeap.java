@@ -74,6 +74,14 @@ public final class MinHeap<K, V> {
     return val;
   }
 
+  /**
+   * Returns the value of the smallest key without removing it.
+   * @return value of the smallest key, or {@code null} if the heap is empty
+   */
+  public V peek() {
+    return size == 0 ? null : minValue();
+  }
+
   /**
    * returns the value of the smallest key from this heap.
    * @return value of the smallest key
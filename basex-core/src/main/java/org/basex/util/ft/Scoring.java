@@ -11,6 +11,10 @@ import static java.lang.StrictMath.*;
 public final class Scoring {
   /** Logarithmic base for calculating the score value. */
   private static final double LOG = Math.E - 1;
+  /** BM25: saturation of token frequencies. */
+  private static final double K1 = 1.2;
+  /** BM25: influence of text lengths. */
+  private static final double B = 0.75;
 
   /** Private constructor. */
   private Scoring() { }
@@ -74,4 +78,27 @@ public final class Scoring {
       final int length) {
     return max((double) number / size, log(token * number + 1) / log(length + 1));
   }
+
+  /**
+   * Calculates the inverse document frequency of a token (BM25 variant).
+   * @param count number of texts that contain the token
+   * @param total total number of texts
+   * @return inverse document frequency
+   */
+  public static double idf(final int count, final int total) {
+    return log(1 + (total - count + 0.5) / (count + 0.5));
+  }
+
+  /**
+   * Calculates the BM25 score of a token in a text.
+   * @param idf inverse document frequency of the token
+   * @param freq number of occurrences of the token in the text
+   * @param length number of tokens in the text
+   * @param avg average number of tokens per text
+   * @return score
+   */
+  public static double bm25(final double idf, final int freq, final double length,
+      final double avg) {
+    return idf * freq * (K1 + 1) / (freq + K1 * (1 - B + B * length / avg));
+  }
 }
@@ -140,7 +140,7 @@ public class TokenSet extends ASet implements Iterable<byte[]> {
     for(int p = 0, i = buckets[b]; i != 0; p = i, i = next[i]) {
       if(!eq(key, keys[i])) continue;
       if(p == 0) buckets[b] = next[i];
-      else next[p] = next[next[i]];
+      else next[p] = next[i];
       keys[i] = null;
       return i;
     }
@@ -249,6 +249,56 @@ public final class AddDeleteTest extends SandboxTest {
     assertTrue(io.delete());
   }
 
+  /**
+   * Adds folders and archives by parsing documents in parallel.
+   * @throws BaseXException exception
+   */
+  @Test
+  public void addParallel() throws BaseXException {
+    final String query = "for $d in db:open('" + NAME + "') return (db:path($d), serialize($d))";
+    new Add("", FLDR).execute(context);
+    new Add("zip", ZIPFILE).execute(context);
+    final String expected = new XQuery(query).execute(context);
+
+    new Set(MainOptions.PARSERTHREADS, 4).execute(context);
+    try {
+      new CreateDB(NAME, FLDR).execute(context);
+      new Add("zip", ZIPFILE).execute(context);
+      assertEquals(expected, new XQuery(query).execute(context));
+    } finally {
+      new Set(MainOptions.PARSERTHREADS, 1).execute(context);
+    }
+  }
+
+  /**
+   * Skips corrupt files while parsing documents in parallel.
+   * @throws Exception exception
+   */
+  @Test
+  public void skipCorruptParallel() throws Exception {
+    final IOFile dir = new IOFile(Prop.TMP + NAME + '/');
+    for(int i = 0; i < 20; i++) {
+      new IOFile(dir, i + IO.XMLSUFFIX).write(Token.token(i % 3 == 0 ? "<x" : "<x/>"));
+    }
+
+    new Set(MainOptions.PARSERTHREADS, 4).execute(context);
+    try {
+      new Set(MainOptions.SKIPCORRUPT, true).execute(context);
+      new Add("", dir.path()).execute(context);
+      assertEquals(13, docs());
+      new Set(MainOptions.SKIPCORRUPT, false).execute(context);
+      try {
+        new Add("", dir.path()).execute(context);
+        fail("Broken file was added to the database.");
+      } catch(final BaseXException ignored) { }
+      assertEquals(13, docs());
+    } finally {
+      new Set(MainOptions.PARSERTHREADS, 1).execute(context);
+      new Set(MainOptions.SKIPCORRUPT, false).execute(context);
+      assertTrue(dir.delete());
+    }
+  }
+
   /**
    * Returns the number of documents in the current database.
    * @return number of documents
@@ -561,6 +561,44 @@ public final class LockingTest extends SandboxTest {
             TimeUnit.MILLISECONDS));
   }
 
+  /**
+   * Lock information: holders of the global lock, statistics of discarded locks.
+   * @throws InterruptedException Got interrupted.
+   */
+  @Test
+  public void infoTest() throws InterruptedException {
+    final CountDownLatch test = new CountDownLatch(1);
+    final LockTester th1 = new LockTester(null, null, null, test);
+    th1.start();
+    assertTrue("Thread should be able to acquire lock.",
+        test.await(WAIT, TimeUnit.MILLISECONDS));
+    assertEquals(th1.getId() + "(w)", info(DBLocking.GLOBAL).holders);
+    th1.release();
+    th1.join();
+    assertEquals("", info(DBLocking.GLOBAL).holders);
+
+    // statistics of unused locks are only kept for a limited number of objects
+    final StringList write = new StringList();
+    for(int o = 0; o < 5000; o++) write.add("db" + o);
+    final Command cmd = new Cmd(true);
+    locks.acquire(cmd, new StringList(0), write, new StringList(0));
+    assertTrue(locks.info().size() > 5000);
+    locks.release(cmd);
+    assertTrue(locks.info().size() < 5000);
+  }
+
+  /**
+   * Returns the lock information of the specified object.
+   * @param name name of the object
+   * @return lock information
+   */
+  private LockInfo info(final String name) {
+    for(final LockInfo li : locks.info()) {
+      if(li.name.equals(name)) return li;
+    }
+    throw new AssertionError("No lock information found: " + name);
+  }
+
   /**
    * Default implementation for setting locks and latches.
    */
@@ -608,7 +646,7 @@ public final class LockingTest extends SandboxTest {
       final Command cmd = new Cmd(writing);
       locks.acquire(cmd,
         readObjects != null ? new StringList().add(readObjects) : null,
-        writeObjects != null ? new StringList().add(writeObjects) : null);
+        writeObjects != null ? new StringList().add(writeObjects) : null, new StringList(0));
 
       // We hold the lock, count down
       if(countDown != null) countDown.countDown();
@@ -0,0 +1,202 @@
+package org.basex.core;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.basex.core.locks.*;
+import org.basex.util.list.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DBLocking} with snapshot reads.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class SnapshotLockingTest extends SandboxTest {
+  /** How many milliseconds to wait for threads to finish. */
+  private static final long WAIT = 200L;
+  /** Database. */
+  private static final String DB = "db";
+
+  /** Locking instance used for testing. */
+  private DBLocking locks;
+
+  /** Creates the locking instance. */
+  @Before
+  public void before() {
+    context.soptions.set(StaticOptions.SNAPSHOTREADS, true);
+    locks = new DBLocking(context.soptions);
+  }
+
+  /** Resets the options. */
+  @After
+  public void after() {
+    context.soptions.set(StaticOptions.SNAPSHOTREADS, false);
+  }
+
+  /**
+   * Readers are only blocked after the write locks of an updating query have been acquired.
+   * @throws Exception exception
+   */
+  @Test
+  public void deferred() throws Exception {
+    final Locker writer = new Locker(true, true).go();
+    assertTrue(writer.locked.await(WAIT, TimeUnit.MILLISECONDS));
+
+    // reader is not blocked before the updates are applied
+    final Locker reader = new Locker(false, false).go();
+    assertTrue(reader.locked.await(WAIT, TimeUnit.MILLISECONDS));
+
+    // writer waits for the reader
+    writer.upgrade.countDown();
+    assertFalse(writer.upgraded.await(WAIT, TimeUnit.MILLISECONDS));
+    reader.release.countDown();
+    assertTrue(writer.upgraded.await(WAIT, TimeUnit.MILLISECONDS));
+
+    // new reader waits for the writer
+    final Locker reader2 = new Locker(false, false).go();
+    assertFalse(reader2.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    writer.release.countDown();
+    assertTrue(reader2.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    reader2.release.countDown();
+  }
+
+  /**
+   * Writers exclude each other before their write locks have been acquired.
+   * @throws Exception exception
+   */
+  @Test
+  public void writers() throws Exception {
+    final Locker writer = new Locker(true, true).go();
+    assertTrue(writer.locked.await(WAIT, TimeUnit.MILLISECONDS));
+
+    final Locker writer2 = new Locker(true, true).go();
+    assertFalse(writer2.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    writer.upgrade.countDown();
+    writer.release.countDown();
+    assertTrue(writer2.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    writer2.upgrade.countDown();
+    writer2.release.countDown();
+  }
+
+  /**
+   * Write locks of other processes are acquired immediately.
+   * @throws Exception exception
+   */
+  @Test
+  public void immediate() throws Exception {
+    final Locker writer = new Locker(true, false).go();
+    assertTrue(writer.locked.await(WAIT, TimeUnit.MILLISECONDS));
+
+    final Locker reader = new Locker(false, false).go();
+    assertFalse(reader.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    writer.release.countDown();
+    assertTrue(reader.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    reader.release.countDown();
+  }
+
+  /**
+   * Only the write locks of trailing databases are deferred; names of databases may start
+   * with the prefixes of other locks.
+   * @throws Exception exception
+   */
+  @Test
+  public void prefixes() throws Exception {
+    // database whose name starts with the prefix of user locks
+    final StringList db = new StringList("+db");
+    final Locker writer = new Locker(db, db, true).go();
+    assertTrue(writer.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    final Locker reader = new Locker(db, null, false).go();
+    assertTrue(reader.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    reader.release.countDown();
+    writer.upgrade.countDown();
+    assertTrue(writer.upgraded.await(WAIT, TimeUnit.MILLISECONDS));
+    writer.release.countDown();
+
+    // database is sorted before a user lock: its write lock cannot be deferred
+    final StringList objects = new StringList("!db", DBLocking.USER_PREFIX + "lock");
+    final Locker writer2 = new Locker(objects, new StringList("!db"), true).go();
+    assertTrue(writer2.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    final Locker reader2 = new Locker(new StringList("!db"), null, false).go();
+    assertFalse(reader2.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    writer2.upgrade.countDown();
+    writer2.release.countDown();
+    assertTrue(reader2.locked.await(WAIT, TimeUnit.MILLISECONDS));
+    reader2.release.countDown();
+  }
+
+  /** Thread that acquires and releases locks. */
+  private final class Locker extends Thread {
+    /** Signals that the locks have been acquired. */
+    private final CountDownLatch locked = new CountDownLatch(1);
+    /** Signals that deferred locks have been acquired. */
+    private final CountDownLatch upgraded = new CountDownLatch(1);
+    /** Triggers the acquisition of deferred locks. */
+    private final CountDownLatch upgrade = new CountDownLatch(1);
+    /** Triggers the release of the locks. */
+    private final CountDownLatch release = new CountDownLatch(1);
+    /** Objects to lock. */
+    private final StringList objects;
+    /** Databases whose write locks may be deferred ({@code null}: read locks). */
+    private final StringList dbs;
+    /** Write flag. */
+    private final boolean write;
+    /** Process. */
+    private final Proc proc = new Proc() { };
+
+    /**
+     * Constructor.
+     * @param write write flag
+     * @param deferrable deferrable flag
+     */
+    private Locker(final boolean write, final boolean deferrable) {
+      this(new StringList(DB), write && deferrable ? new StringList(DB) : new StringList(0),
+          write);
+    }
+
+    /**
+     * Constructor.
+     * @param objects objects to lock
+     * @param dbs databases whose write locks may be deferred
+     * @param write write flag
+     */
+    private Locker(final StringList objects, final StringList dbs, final boolean write) {
+      this.objects = objects;
+      this.dbs = dbs == null ? new StringList(0) : dbs;
+      this.write = write;
+      setDaemon(true);
+    }
+
+    /**
+     * Starts the thread.
+     * @return self reference
+     */
+    private Locker go() {
+      start();
+      return this;
+    }
+
+    @Override
+    public void run() {
+      final StringList none = new StringList(0);
+      locks.acquire(proc, write ? none : objects, write ? objects : none, dbs);
+      locked.countDown();
+      try {
+        if(write && !dbs.isEmpty()) {
+          upgrade.await();
+          locks.upgrade(proc);
+          upgraded.countDown();
+        }
+        release.await();
+      } catch(final InterruptedException ex) {
+        throw new AssertionError(ex);
+      } finally {
+        locks.release(proc);
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.basex.data;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.index.value.*;
+import org.basex.query.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests the {@link MainOptions#INDEXDELTA} option.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class DeltaIndexTest extends AdvancedQueryTest {
+  /**
+   * Initializes a test.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void before() throws BaseXException {
+    run(new Set(MainOptions.UPDINDEX, true));
+  }
+
+  /**
+   * Finalizes a test.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void after() throws BaseXException {
+    run(new DropDB(NAME));
+    run(new Set(MainOptions.UPDINDEX, false));
+    run(new Set(MainOptions.INDEXDELTA, 0));
+  }
+
+  /**
+   * Merges buffered entries with the entries on disk.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void buffered() throws BaseXException {
+    run(new Set(MainOptions.INDEXDELTA, 1000));
+    run(new CreateDB(NAME, "<x><a>A</a><a b='1'>B</a></x>"));
+    run(new Add("y.xml", "<y><a>A</a><a>C</a><a b='2'>10</a><a>2</a></y>"));
+    assertEquals(4, ((DeltaValues) context.data().textIndex).buffered());
+
+    query(_DB_TEXT.args(NAME, "A") + "/../../name()", "x\ny");
+    query(_DB_TEXT.args(NAME, "C") + "/../../name()", "y");
+    query(_DB_ATTRIBUTE.args(NAME, "2") + "/../name()", "a");
+    query(COUNT.args(_DB_TEXT_RANGE.args(NAME, "A", "C")), 4);
+    query("//a[text() = 'C']/string()", "C");
+    query(_INDEX_TEXTS.args(NAME) + "/string()", "10\n2\nA\nB\nC");
+    query(_INDEX_TEXTS.args(NAME, "A") + "/@count/string()", 2);
+    query(_INDEX_TEXTS.args(NAME, "B", false) + "/string()", "A\n2\n10");
+
+    // update buffered and stored entries
+    query("replace value of node /y/a[1] with 'D'");
+    query("delete node /x/a[1]");
+    query("delete node /y/a[2]");
+    query(_DB_TEXT.args(NAME, "A"), "");
+    query(_DB_TEXT.args(NAME, "C"), "");
+    query(_DB_TEXT.args(NAME, "D") + "/../../name()", "y");
+    query(_INDEX_TEXTS.args(NAME) + "/string()", "10\n2\nB\nD");
+
+    // reopen database
+    run(new Close());
+    run(new Open(NAME));
+    query(_DB_INFO.args(NAME) + "//textindex/text()", "true");
+    query(_INDEX_TEXTS.args(NAME) + "/string()", "10\n2\nB\nD");
+    query(_DB_TEXT.args(NAME, "D") + "/../../name()", "y");
+  }
+
+  /**
+   * Merges buffered entries into the disk index.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void merge() throws BaseXException {
+    run(new Set(MainOptions.INDEXDELTA, 10));
+    run(new CreateDB(NAME, "<x/>"));
+    for(int i = 0; i < 50; i++) {
+      query("insert node <a b='" + i + "'>" + i + "</a> into /x");
+      query(_DB_TEXT.args(NAME, i) + "/string()", i);
+      query(_DB_ATTRIBUTE.args(NAME, i) + "/string()", i);
+    }
+    query(COUNT.args(_INDEX_TEXTS.args(NAME)), 50);
+    query("delete node //a[. mod 2 = 0]");
+    query(COUNT.args(_INDEX_ATTRIBUTES.args(NAME)), 25);
+    query(_DB_TEXT.args(NAME, 48), "");
+    query(_DB_TEXT.args(NAME, 49) + "/string()", 49);
+    query(_DB_INFO.args(NAME) + "//textindex/text()", "true");
+  }
+
+  /**
+   * Runs the specified command.
+   * @param cmd command to be run
+   * @return string result
+   * @throws BaseXException database exception
+   */
+  private static String run(final Command cmd) throws BaseXException {
+    return cmd.execute(context);
+  }
+}
@@ -0,0 +1,94 @@
+package org.basex.data;
+
+import static org.junit.Assert.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for the compaction of the ID -> PRE mapping.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class IdPreMapCompactTest extends SandboxTest {
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void init() throws BaseXException {
+    new Set(MainOptions.UPDINDEX, true).execute(context);
+    final String doc = "<x>{ for $i in 1 to 5000 return <a b='{ $i }'>{ $i }</a> }</x>";
+    new CreateDB(NAME, new XQuery(doc).execute(context)).execute(context);
+  }
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    new Set(MainOptions.UPDINDEX, false).execute(context);
+  }
+
+  /**
+   * Compacts the mapping and reopens the database.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void compact() throws BaseXException {
+    new XQuery("for $a in //a return insert node <c/> before $a").execute(context);
+    check();
+    assertEquals(0, context.data().idmap.size());
+
+    new XQuery("delete node //a[@b mod 3 = 0]").execute(context);
+    new XQuery("for $a in //a[@b mod 5 = 0] return replace node $a with <e/>").execute(context);
+    check();
+    new Close().execute(context);
+
+    new Open(NAME).execute(context);
+    check();
+    new XQuery("for $c in //c return (delete node $c, insert node <d/> into /x)").
+      execute(context);
+    check();
+    assertEquals(1, new XQuery("count(db:open-id('" + NAME + "', 0))").execute(context).length());
+  }
+
+  /**
+   * Commits the compacted mapping when the database is flushed.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void flush() throws BaseXException {
+    new Set(MainOptions.AUTOFLUSH, false).execute(context);
+    try {
+      new XQuery("for $a in //a return insert node <c/> before $a").execute(context);
+      final IOFile base = context.data().meta.dbfile(DataText.DATAIDB + DataText.DATATMP);
+      assertTrue(base.exists());
+      check();
+      new Flush().execute(context);
+      assertFalse(base.exists());
+      check();
+    } finally {
+      new Set(MainOptions.AUTOFLUSH, true).execute(context);
+    }
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    check();
+  }
+
+  /**
+   * Checks if the ids of all nodes are resolved to their pre values.
+   */
+  private static void check() {
+    final Data data = context.data();
+    final int size = data.meta.size;
+    for(int pre = 0; pre < size; pre++) assertEquals(pre, data.pre(data.id(pre)));
+  }
+}
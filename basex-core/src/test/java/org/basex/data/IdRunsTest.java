@@ -0,0 +1,102 @@
+package org.basex.data;
+
+import static org.junit.Assert.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * ID -> PRE lookup tests for databases without updatable index structures.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class IdRunsTest extends SandboxTest {
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void init() throws BaseXException {
+    final String doc = "<x>{ for $i in 1 to 1000 return <a b='{ $i }'>{ $i }</a> }</x>";
+    new CreateDB(NAME, new XQuery(doc).execute(context)).execute(context);
+  }
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Resolves ids after updates.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void updates() throws BaseXException {
+    check();
+    new XQuery("delete node //a[@b mod 7 = 0]").execute(context);
+    check();
+    new XQuery("for $a in //a[@b mod 5 = 0] return insert node <c d=''>c</c> before $a").
+      execute(context);
+    check();
+    new XQuery("for $a in //a[@b mod 3 = 0] return replace node $a with <e/>").execute(context);
+    check();
+    assertEquals(-1, context.data().pre(context.data().meta.lastid + 1));
+  }
+
+  /**
+   * Writes runs that have been created in main memory when the database is closed,
+   * and reads them from disk after the database has been reopened.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void reopen() throws BaseXException {
+    // runs are not created by updates
+    new XQuery("insert node <c/> into /x").execute(context);
+    assertFalse(context.data().meta.idindex);
+    check();
+    new Close().execute(context);
+
+    new Open(NAME).execute(context);
+    assertTrue(context.data().meta.idindex);
+    check();
+    new XQuery("delete node /x/c").execute(context);
+    assertFalse(context.data().meta.idindex);
+    check();
+    new Close().execute(context);
+
+    new Open(NAME).execute(context);
+    assertTrue(context.data().meta.idindex);
+    check();
+  }
+
+  /**
+   * Does not write runs when ids are resolved.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void read() throws BaseXException {
+    final Data data = context.data();
+    data.meta.idindex = false;
+    data.meta.dirty = false;
+    check();
+    assertFalse(data.meta.idindex);
+    assertFalse(data.meta.dirty);
+  }
+
+  /**
+   * Checks if the ids of all nodes are resolved to their pre values.
+   */
+  private static void check() {
+    final Data data = context.data();
+    final int size = data.meta.size;
+    for(int pre = 0; pre < size; pre++) assertEquals(pre, data.pre(data.id(pre)));
+  }
+}
@@ -42,6 +42,25 @@ public final class IndexTest extends AdvancedQueryTest {
     query(_DB_INFO.args(NAME) + "//textindex/text()", "true");
   }
 
+  /**
+   * Intersects index results.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void intersect() throws BaseXException {
+    for(final boolean updindex : new boolean[] { false, true }) {
+      run(new Set(MainOptions.UPDINDEX, updindex));
+      run(new CreateDB(NAME, new XQuery("<x>{ for $i in 1 to 2000 return <a b='{ $i mod 3 }'>{ "
+          + "if($i mod 500 = 0) then 'rare' else $i mod 7 }</a> }</x>").execute(context)));
+      query(COUNT.args(_DB_TEXT.args(NAME, " ('rare', '1')") + " intersect " +
+          _DB_TEXT.args(NAME, "rare")), 4);
+      query(COUNT.args(_DB_TEXT.args(NAME, " ('1', '3')") + " intersect " +
+          _DB_TEXT.args(NAME, "3")), 285);
+      query(COUNT.args(_DB_ATTRIBUTE.args(NAME, " ('0', '2')") + " intersect " +
+          _DB_ATTRIBUTE.args(NAME, "2")), 667);
+    }
+  }
+
   /**
    * Test.
    * @throws BaseXException database exception
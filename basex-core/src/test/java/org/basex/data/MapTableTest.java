@@ -0,0 +1,112 @@
+package org.basex.data;
+
+import static org.basex.query.func.Function.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.query.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests the {@link MainOptions#MAPTABLE} option.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class MapTableTest extends AdvancedQueryTest {
+  /**
+   * Finalize test.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void after() throws BaseXException {
+    run(new DropDB(NAME));
+    run(new Set(MainOptions.MAPTABLE, false));
+  }
+
+  /**
+   * Reads a mapped table.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void read() throws BaseXException {
+    run(new Set(MainOptions.MAPTABLE, true));
+    run(new CreateDB(NAME, "<x>" + entries(10000) + "</x>"));
+    query("count(//a)", 10000);
+    query("count(//a[@n > 5000])", 5000);
+    query(_DB_INFO.args(NAME) + "//maptable/text()", "true");
+
+    run(new Close());
+    run(new Open(NAME));
+    query("(//a)[last()]/@n/string()", 10000);
+  }
+
+  /**
+   * Updates a mapped table.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    run(new Set(MainOptions.MAPTABLE, true));
+    run(new CreateDB(NAME, "<x>" + entries(1000) + "</x>"));
+    query("insert node " + "<y>" + entries(5000) + "</y> into /x");
+    query("count(//a)", 6000);
+    query("delete node //y/a[@n > 100]");
+    query("count(//a)", 1100);
+    query("(//a)[last()]/@n/string()", 100);
+  }
+
+  /**
+   * Releases mappings after updates and before the database is overwritten.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void release() throws BaseXException {
+    run(new Set(MainOptions.MAPTABLE, true));
+    run(new CreateDB(NAME, "<x>" + entries(1000) + "</x>"));
+    for(int i = 1; i <= 5; i++) {
+      query("insert node <a n='0'/> into /x");
+      run(new Close());
+      run(new Open(NAME));
+      query("count(//a)", 1000 + i);
+    }
+    run(new CreateDB(NAME, "<x>" + entries(10) + "</x>"));
+    query("count(//a)", 10);
+  }
+
+  /**
+   * Disables mapping via the optimize command.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void optimize() throws BaseXException {
+    run(new CreateDB(NAME, "<x>" + entries(1000) + "</x>"));
+    query(_DB_INFO.args(NAME) + "//maptable/text()", "false");
+    run(new Set(MainOptions.MAPTABLE, true));
+    run(new Optimize());
+    query(_DB_INFO.args(NAME) + "//maptable/text()", "true");
+    query("count(//a)", 1000);
+  }
+
+  /**
+   * Returns the specified number of elements.
+   * @param n number of elements
+   * @return string
+   */
+  private static String entries(final int n) {
+    final StringBuilder sb = new StringBuilder();
+    for(int i = 1; i <= n; i++) sb.append("<a n='").append(i).append("'>").append(i).append("</a>");
+    return sb.toString();
+  }
+
+  /**
+   * Runs the specified command.
+   * @param cmd command to be run
+   * @return string result
+   * @throws BaseXException database exception
+   */
+  private static String run(final Command cmd) throws BaseXException {
+    return cmd.execute(context);
+  }
+}
@@ -0,0 +1,102 @@
+package org.basex.index;
+
+import static org.junit.Assert.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for building index structures in parallel.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class IndexBuildersTest extends SandboxTest {
+  /** Query for generating the test document (more than two partitions). */
+  private static final String DOC = "<x>{ for $i in 1 to 50000 return "
+      + "<a b='{ $i mod 1000 }'>{ $i mod 777 } w{ $i mod 10 }</a> }</x>";
+  /** Query for retrieving the index contents. */
+  private static final String INDEXES = "(index:texts('" + NAME + "'), "
+      + "index:attributes('" + NAME + "'), ft:tokens('" + NAME + "'), "
+      + "count(ft:search('" + NAME + "', 'w7')), "
+      + "count(db:text('" + NAME + "', '5 w5')))";
+
+  /**
+   * Resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    new Set(MainOptions.INDEXTHREADS, 1).execute(context);
+    new Set(MainOptions.INDEXSPLITSIZE, 0).execute(context);
+    new Set(MainOptions.FTINDEXSPLITSIZE, 0).execute(context);
+    new Set(MainOptions.FTINDEX, false).execute(context);
+  }
+
+  /**
+   * Compares indexes that have been built sequentially and in parallel.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void create() throws BaseXException {
+    new Set(MainOptions.FTINDEX, true).execute(context);
+    final String input = new XQuery(DOC).execute(context);
+    new CreateDB(NAME, input).execute(context);
+    final String expected = new XQuery(INDEXES).execute(context);
+
+    new Set(MainOptions.INDEXTHREADS, 8).execute(context);
+    new CreateDB(NAME, input).execute(context);
+    assertEquals(expected, new XQuery(INDEXES).execute(context));
+
+    // partial indexes of partitions
+    new Set(MainOptions.INDEXSPLITSIZE, 5000).execute(context);
+    new CreateDB(NAME, input).execute(context);
+    assertEquals(expected, new XQuery(INDEXES).execute(context));
+
+    new Optimize().execute(context);
+    assertEquals(expected, new XQuery(INDEXES).execute(context));
+    new OptimizeAll().execute(context);
+    assertEquals(expected, new XQuery(INDEXES).execute(context));
+  }
+
+  /**
+   * Compares indexes that have been built in one go and merged from many partial indexes.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void merge() throws BaseXException {
+    new Set(MainOptions.FTINDEX, true).execute(context);
+    final String input = new XQuery(DOC).execute(context);
+    new CreateDB(NAME, input).execute(context);
+    final String expected = new XQuery(INDEXES).execute(context);
+
+    new Set(MainOptions.INDEXSPLITSIZE, 1000).execute(context);
+    new Set(MainOptions.FTINDEXSPLITSIZE, 1000).execute(context);
+    final CreateDB cmd = new CreateDB(NAME, input);
+    cmd.execute(context);
+    assertEquals(expected, new XQuery(INDEXES).execute(context));
+
+    // merge operations are reported in the command info
+    final String info = cmd.info();
+    for(final IndexType type : new IndexType[] {
+        IndexType.TEXT, IndexType.ATTRIBUTE, IndexType.FULLTEXT }) {
+      assertTrue(info, info.contains("'" + type + "'"));
+    }
+  }
+
+  /**
+   * Creates no indexes.
+   * @throws Exception exception
+   */
+  @Test
+  public void none() throws Exception {
+    new Set(MainOptions.INDEXTHREADS, 8).execute(context);
+    new CreateDB(NAME, "<x>a</x>").execute(context);
+    context.data().createIndexes(new IndexType[0], context.options, null);
+    assertEquals("a", new XQuery("string(db:open('" + NAME + "'))").execute(context));
+  }
+}
@@ -0,0 +1,153 @@
+package org.basex.index;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.io.*;
+import org.basex.io.out.DataOutput;
+import org.basex.io.random.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+import org.junit.*;
+
+/**
+ * Tests for {@link Postings}.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class PostingsTest {
+  /** Temporary file. */
+  private IOFile file;
+  /** Data access. */
+  private DataAccess da;
+  /** Reader. */
+  private DataReader reader;
+
+  /** Set up method. */
+  @Before
+  public void setUp() {
+    file = new IOFile(Prop.TMP, "postings" + IO.BASEXSUFFIX);
+  }
+
+  /** Clean up method. */
+  @After
+  public void tearDown() {
+    if(da != null) da.close();
+    file.delete();
+  }
+
+  /**
+   * Decodes lists of different sizes.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void read() throws IOException {
+    for(final int size : new int[] { 1, 2, Postings.BLOCK - 1, Postings.BLOCK,
+        Postings.BLOCK + 1, 1000 }) {
+      final int[] vals = values(size, 7), poss = new int[size];
+      for(int s = 0; s < size; s++) poss[s] = s % 13;
+      final Postings postings = postings(vals, poss);
+
+      final IntList vl = new IntList(), pl = new IntList();
+      postings.read(vl, pl);
+      assertArrayEquals(vals, vl.finish());
+      assertArrayEquals(poss, pl.finish());
+      assertEquals(file.length(), reader.pos());
+      da.close();
+      da = null;
+    }
+  }
+
+  /**
+   * Decodes lists with large and identical values.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void largeValues() throws IOException {
+    final int[] vals = new int[300];
+    for(int v = 100; v < 200; v++) vals[v] = 5;
+    for(int v = 200; v < 300; v++) vals[v] = Integer.MAX_VALUE - 300 + v;
+    final IntList vl = new IntList();
+    postings(vals, null).read(vl, null);
+    assertArrayEquals(vals, vl.finish());
+  }
+
+  /**
+   * Skips entries.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void advance() throws IOException {
+    final int size = 1000;
+    final int[] vals = values(size, 5);
+    for(int target = 0; target < vals[size - 1] + 10; target += 97) {
+      final Postings postings = postings(vals, null);
+      int i = 0;
+      while(i < size && vals[i] < target) i++;
+      if(i < size) {
+        assertTrue(postings.advance(target));
+        assertEquals(vals[i], postings.value());
+        // advancing to a smaller value keeps the current entry
+        assertTrue(postings.advance(target - 1));
+        assertEquals(vals[i], postings.value());
+        // continue with the next entry
+        if(i + 1 < size) {
+          assertTrue(postings.more());
+          assertEquals(vals[i + 1], postings.value());
+        }
+      } else {
+        assertFalse(postings.advance(target));
+      }
+      da.close();
+      da = null;
+    }
+  }
+
+  /**
+   * Returns the first value of a list.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void first() throws IOException {
+    for(final int size : new int[] { 1, Postings.BLOCK, Postings.BLOCK + 1 }) {
+      final int[] vals = values(size, 3);
+      postings(vals, null);
+      assertEquals(vals[0], Postings.first(da, 0, size));
+      da.close();
+      da = null;
+    }
+  }
+
+  /**
+   * Returns ascending values.
+   * @param size number of values
+   * @param gap maximum gap between two values
+   * @return values
+   */
+  private static int[] values(final int size, final int gap) {
+    final int[] vals = new int[size];
+    for(int s = 0, v = 11; s < size; s++) {
+      v += s * 31 % gap;
+      vals[s] = v;
+    }
+    return vals;
+  }
+
+  /**
+   * Writes the specified values and returns an iterator.
+   * @param vals values
+   * @param poss positions (can be {@code null})
+   * @return iterator
+   * @throws IOException I/O exception
+   */
+  private Postings postings(final int[] vals, final int[] poss) throws IOException {
+    try(final DataOutput out = new DataOutput(file)) {
+      out.writeBytes(Postings.encode(vals, poss, vals.length));
+    }
+    da = new DataAccess(file);
+    reader = da.reader(0);
+    return new Postings(reader, vals.length, poss != null);
+  }
+}
@@ -0,0 +1,169 @@
+package org.basex.index;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.io.in.DataInput;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for the document paths of a database.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class ResourcesTest extends SandboxTest {
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void init() throws BaseXException {
+    new CreateDB(NAME).execute(context);
+    for(final String path : new String[] { "a.xml", "d/b.xml", "d/c.xml", "d/e/f.xml", "g.xml" }) {
+      new Add(path, "<x/>").execute(context);
+    }
+  }
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Exact and prefix lookups.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void lookup() throws BaseXException {
+    check();
+  }
+
+  /**
+   * Lookups after updates.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void updates() throws BaseXException {
+    new Delete("d/c.xml").execute(context);
+    assertEquals("d/b.xml d/e/f.xml", query("db:list('" + NAME + "', 'd')"));
+    assertEquals("", query("db:list('" + NAME + "', 'd/c.xml')"));
+
+    new Rename("d/b.xml", "h/b.xml").execute(context);
+    assertEquals("d/e/f.xml", query("db:list('" + NAME + "', 'd')"));
+    assertEquals("h/b.xml", query("db:list('" + NAME + "', 'h')"));
+    assertEquals("true", query("db:is-xml('" + NAME + "', 'h/b.xml')"));
+
+    new Replace("a.xml", "<y/>").execute(context);
+    assertEquals("y", query("name(db:open('" + NAME + "', 'a.xml')/*)"));
+    // pre values of subsequent documents must have been adjusted
+    assertEquals("h/b.xml", query("db:path(db:open('" + NAME + "', 'h/b.xml'))"));
+    assertEquals("g.xml", query("db:path(db:open('" + NAME + "', 'g.xml'))"));
+
+    new Add("d/c.xml", "<x/>").execute(context);
+    new Add("d/c.xml", "<z/>").execute(context);
+    assertEquals("x z", query("db:open('" + NAME + "', 'd/c.xml')/*/name()"));
+    new Delete("d").execute(context);
+    new Delete("h").execute(context);
+    new Add("d/b.xml", "<x/>").execute(context);
+    new Add("d/c.xml", "<x/>").execute(context);
+    new Add("d/e/f.xml", "<x/>").execute(context);
+    check();
+  }
+
+  /**
+   * Reads the paths from disk after the database has been reopened.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void reopen() throws BaseXException {
+    new Rename("g.xml", "d/e/g.xml").execute(context);
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    assertEquals("d/e/f.xml d/e/g.xml", query("db:list('" + NAME + "', 'd/e/')"));
+    new Rename("d/e/g.xml", "g.xml").execute(context);
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    check();
+  }
+
+  /**
+   * Checks the format of the stored paths.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void stored() throws IOException {
+    new Delete("d/b.xml").execute(context);
+    new Close().execute(context);
+    try(final DataInput in = new DataInput(MetaData.file(context.soptions.dbpath(NAME),
+        DataText.DATAPTH))) {
+      final StringBuilder sb = new StringBuilder();
+      for(final byte[] path : in.readTokens()) sb.append(string(path)).append(' ');
+      assertEquals("/a.xml /d/c.xml /d/e/f.xml /g.xml", sb.toString().trim());
+    }
+    new Open(NAME).execute(context);
+    assertEquals("d/c.xml d/e/f.xml", query("db:list('" + NAME + "', 'd')"));
+  }
+
+  /**
+   * Lookups after a large number of updates.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void manyUpdates() throws BaseXException {
+    for(int i = 0; i < 1000; i++) {
+      new Add("d/e/f.xml", "<x/>").execute(context);
+      new Delete("d/e/f.xml").execute(context);
+      new Add("d/e/f.xml", "<x/>").execute(context);
+      new Replace("a.xml", "<x/>").execute(context);
+    }
+    check();
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    check();
+  }
+
+  /**
+   * Checks the paths of the initial database.
+   * @throws BaseXException database exception
+   */
+  private static void check() throws BaseXException {
+    assertEquals("a.xml d/b.xml d/c.xml d/e/f.xml g.xml", query("sort(db:list('" + NAME + "'))"));
+    assertEquals("d/b.xml d/c.xml d/e/f.xml", query("db:list('" + NAME + "', 'd')"));
+    assertEquals("d/b.xml d/c.xml d/e/f.xml", query("db:list('" + NAME + "', '/d/')"));
+    assertEquals("d/e/f.xml", query("db:list('" + NAME + "', 'd/e')"));
+    assertEquals("", query("db:list('" + NAME + "', 'd/b')"));
+    assertEquals("", query("db:list('" + NAME + "', 'x')"));
+    assertEquals("3", query("count(db:open('" + NAME + "', 'd'))"));
+    assertEquals("true", query("db:is-xml('" + NAME + "', 'd/c.xml')"));
+    assertEquals("false", query("db:is-xml('" + NAME + "', 'd')"));
+    assertEquals("d/c.xml", query("db:path(db:open('" + NAME + "', 'd/c.xml'))"));
+    assertEquals("2", query("count(collection('" + NAME + "/d/e/f.xml') | " +
+        "collection('" + NAME + "/a.xml'))"));
+    assertTrue(context.data().resources.isDir(token("/d/e")));
+    assertFalse(context.data().resources.isDir(token("/d/e/f.xml")));
+    assertEquals(2, context.data().resources.children(token("d"), false).size());
+    assertEquals(1, context.data().resources.children(token("d"), true).size());
+  }
+
+  /**
+   * Runs a query.
+   * @param query query
+   * @return result
+   * @throws BaseXException database exception
+   */
+  private static String query(final String query) throws BaseXException {
+    return new XQuery("string-join((" + query + ") ! string(), ' ')").execute(context);
+  }
+}
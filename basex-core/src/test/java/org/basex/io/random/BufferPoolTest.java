@@ -0,0 +1,126 @@
+package org.basex.io.random;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link BufferPool}.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class BufferPoolTest {
+  /** Test file. */
+  private static final IOFile FILE = new IOFile(Prop.TMP, "pool" + IO.BASEXSUFFIX);
+
+  /** Activates the pool. */
+  @Before
+  public void before() {
+    BufferPool.size(1);
+  }
+
+  /** Deactivates the pool. */
+  @After
+  public void after() {
+    BufferPool.size(0);
+    FILE.delete();
+  }
+
+  /**
+   * Stores and retrieves blocks.
+   */
+  @Test
+  public void readWrite() {
+    final long file = BufferPool.file();
+    final byte[] data = block(1);
+    assertFalse(BufferPool.read(file, 0, data));
+    BufferPool.write(file, 0, block(2));
+    assertTrue(BufferPool.read(file, 0, data));
+    assertEquals(2, data[0]);
+    // different file
+    assertFalse(BufferPool.read(BufferPool.file(), 0, data));
+    // overwrite existing block
+    BufferPool.write(file, 0, block(3));
+    assertTrue(BufferPool.read(file, 0, data));
+    assertEquals(3, data[IO.BLOCKSIZE - 1]);
+  }
+
+  /**
+   * Evicts blocks.
+   */
+  @Test
+  public void evict() {
+    final long file = BufferPool.file();
+    final int blocks = (1 << 20) / IO.BLOCKSIZE * 4;
+    for(int b = 0; b < blocks; b++) BufferPool.write(file, (long) b * IO.BLOCKSIZE, block(b));
+
+    final byte[] data = new byte[IO.BLOCKSIZE];
+    int hits = 0;
+    for(int b = 0; b < blocks; b++) {
+      if(BufferPool.read(file, (long) b * IO.BLOCKSIZE, data)) {
+        assertEquals((byte) b, data[0]);
+        hits++;
+      }
+    }
+    assertTrue(hits > 0 && hits < blocks);
+  }
+
+  /**
+   * Drops the blocks of a file.
+   */
+  @Test
+  public void drop() {
+    final long file1 = BufferPool.file(), file2 = BufferPool.file();
+    for(int b = 0; b < 16; b++) {
+      BufferPool.write(file1, (long) b * IO.BLOCKSIZE, block(b));
+      BufferPool.write(file2, (long) b * IO.BLOCKSIZE, block(b));
+    }
+    BufferPool.drop(file1);
+    final byte[] data = new byte[IO.BLOCKSIZE];
+    for(int b = 0; b < 16; b++) {
+      assertFalse(BufferPool.read(file1, (long) b * IO.BLOCKSIZE, data));
+      assertTrue(BufferPool.read(file2, (long) b * IO.BLOCKSIZE, data));
+    }
+    // reuse released slots
+    final long file3 = BufferPool.file();
+    final int blocks = (1 << 20) / IO.BLOCKSIZE * 2;
+    for(int b = 0; b < blocks; b++) BufferPool.write(file3, (long) b * IO.BLOCKSIZE, block(b));
+    assertTrue(BufferPool.read(file3, (long) (blocks - 1) * IO.BLOCKSIZE, data));
+  }
+
+    /**
+   * Reads and writes a file via the pool.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void dataAccess() throws IOException {
+    final int size = IO.BLOCKSIZE * 40;
+    try(final DataAccess da = new DataAccess(FILE)) {
+      for(int i = 0; i < size; i += 4) da.write4(i, i);
+    }
+    for(int r = 0; r < 2; r++) {
+      try(final DataAccess da = new DataAccess(FILE)) {
+        for(int i = 0; i < size; i += 4) assertEquals(i, da.read4(i));
+      }
+    }
+    assertTrue(BufferPool.info().contains("hits"));
+  }
+
+  /**
+   * Returns a block filled with the specified value.
+   * @param value value
+   * @return block
+   */
+  private static byte[] block(final int value) {
+    final byte[] data = new byte[IO.BLOCKSIZE];
+    Arrays.fill(data, (byte) value);
+    return data;
+  }
+}
@@ -218,6 +218,38 @@ public class DataAccessTest {
     assertEquals(STR, Token.string(da.readBytes(bytes.length)));
   }
 
+  /** Test method for {@link DataAccess#reader(long)}. */
+  @Test
+  public final void testReader() {
+    final long off = STR_BIN.length;
+    final DataReader dr = da.reader(off);
+    assertEquals(BYTE, dr.read1());
+    assertEquals(LONG, dr.read5());
+    assertEquals(INT, dr.read4());
+    assertEquals(CINT5, dr.readNum());
+    assertEquals(CINT4, dr.readNum());
+    assertEquals(CINT2, dr.readNum());
+    assertEquals(CINT1, dr.readNum());
+    assertEquals(STR, Token.string(da.reader(0L).readToken()));
+    assertEquals(STR, Token.string(da.reader(BLOCK_BOUNDARY_POS).readToken()));
+    // reader must not move the cursor of the data access
+    assertEquals(0L, da.cursor());
+  }
+
+  /** Test method for {@link DataAccess#reader(long)}, reading pending and flushed changes. */
+  @Test
+  public final void testReaderChanges() {
+    final long pos = da.length() + IO.BLOCKSIZE;
+    da.writeToken(pos, Token.token(STR_LONG));
+    assertEquals(STR_LONG, Token.string(da.reader(pos).readToken()));
+    da.flush();
+    assertEquals(STR_LONG, Token.string(da.reader(pos).readToken()));
+    da.writeToken(pos, Token.token(STR));
+    assertEquals(STR, Token.string(da.reader(pos).readToken()));
+    da.flush();
+    assertEquals(STR, Token.string(da.reader(pos).readToken()));
+  }
+
   /** Test method for {@link DataAccess#cursor(long)}. */
   @Test
   public final void testCursorLong() {
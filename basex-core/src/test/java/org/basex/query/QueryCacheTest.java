@@ -0,0 +1,90 @@
+package org.basex.query;
+
+import static org.junit.Assert.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for the query result cache.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCacheTest extends SandboxTest {
+  /**
+   * Enables the cache.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void init() throws BaseXException {
+    context.soptions.set(StaticOptions.QUERYCACHE, 1024);
+    context.results.invalidate(null);
+    new CreateDB(NAME, "<x><a>1</a><a>2</a></x>").execute(context);
+  }
+
+  /**
+   * Disables the cache.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    context.soptions.set(StaticOptions.QUERYCACHE, 0);
+    context.results.invalidate(null);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Caches results and invalidates them after updates.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    final String query = "sum(db:open('" + NAME + "')//a)";
+    assertEquals("3", new XQuery(query).execute(context));
+    assertEquals(1, context.results.size());
+    assertEquals("3", new XQuery(query).execute(context));
+    assertEquals(1, context.results.size());
+
+    new XQuery("insert node <a>3</a> into db:open('" + NAME + "')/x").execute(context);
+    assertEquals(0, context.results.size());
+    assertEquals("6", new XQuery(query).execute(context));
+
+    // currently opened database
+    new Open(NAME).execute(context);
+    assertEquals("2", new XQuery("count(//a) - 1").execute(context));
+    assertEquals("2", new XQuery("count(//a) - 1").execute(context));
+    new Add("doc.xml", "<x><a/></x>").execute(context);
+    assertEquals("3", new XQuery("count(//a) - 1").execute(context));
+    new Close().execute(context);
+  }
+
+  /**
+   * Distinguishes results with different bindings.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void bindings() throws BaseXException {
+    final String query = "declare variable $n external; db:open('" + NAME + "')//a[. = $n]";
+    assertEquals("<a>1</a>", new XQuery(query).bind("n", "1").execute(context));
+    assertEquals("<a>2</a>", new XQuery(query).bind("n", "2").execute(context));
+    assertEquals(2, context.results.size());
+    assertEquals("<a>1</a>", new XQuery(query).bind("n", "1").execute(context));
+    assertEquals(2, context.results.size());
+  }
+
+  /**
+   * Does not cache results of non-deterministic queries.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void nondeterministic() throws BaseXException {
+    new XQuery("random:double()").execute(context);
+    new XQuery("current-dateTime()").execute(context);
+    new XQuery("declare function local:f() { random:integer() }; local:f()").execute(context);
+    assertEquals(0, context.results.size());
+  }
+}
@@ -0,0 +1,108 @@
+package org.basex.query;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for the query plan cache.
+ *
+ * @author BaseX Team 2005-15, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryPlansTest extends SandboxTest {
+  /**
+   * Enables the cache.
+   */
+  @Before
+  public void init() {
+    context.soptions.set(StaticOptions.PLANCACHE, 16);
+    context.plans.close();
+  }
+
+  /**
+   * Disables the cache.
+   */
+  @After
+  public void finish() {
+    context.soptions.set(StaticOptions.PLANCACHE, 0);
+    context.plans.close();
+  }
+
+  /**
+   * Reuses parsed functions, variables and closures.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void reuse() throws BaseXException {
+    final String query = "declare variable $v := local:f(3); "
+        + "declare function local:f($n) { if($n = 0) then 0 else $n + local:f($n - 1) }; "
+        + "declare function local:g($f) { $f($v) }; "
+        + "local:g(function($x) { for $i in 1 to $x return <a>{ $i * $v }</a> })";
+    final String result = "<a>6</a>\n<a>12</a>\n<a>18</a>\n<a>24</a>\n<a>30</a>\n<a>36</a>";
+    for(int i = 0; i < 3; i++) {
+      assertEquals(result, new XQuery(query).execute(context));
+      assertEquals(1, context.plans.size());
+    }
+  }
+
+  /**
+   * Compiles copies with different bindings.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void bindings() throws BaseXException {
+    final String query = "declare variable $n external; for $i in 1 to $n return $i";
+    assertEquals("1\n2", new XQuery(query).bind("n", "2", "xs:integer").execute(context));
+    assertEquals("1\n2\n3", new XQuery(query).bind("n", "3", "xs:integer").execute(context));
+    assertEquals(1, context.plans.size());
+  }
+
+  /**
+   * Returns separate copies of parsed library modules.
+   * @throws QueryException query exception
+   */
+  @Test
+  public void library() throws QueryException {
+    final String query = "module namespace m = 'm'; declare function m:f() { 1 };";
+    final StaticScope[] scopes = new StaticScope[2];
+    for(int i = 0; i < 2; i++) {
+      try(final QueryContext qc = new QueryContext(context)) {
+        scopes[i] = context.plans.parse(qc, query, true, null);
+        assertTrue(scopes[i] instanceof LibraryModule);
+        assertEquals("m", Token.string(((LibraryModule) scopes[i]).name.uri()));
+      }
+      assertEquals(1, context.plans.size());
+    }
+    assertNotSame(scopes[0], scopes[1]);
+  }
+
+  /**
+   * Discards templates if an imported module has been modified.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void modules() throws IOException {
+    final IOFile file = new IOFile(sandbox(), "module.xqm");
+    final String query = "import module namespace m = 'm' at '" + file.path() + "'; m:f()";
+
+    file.write(Token.token("module namespace m = 'm'; declare function m:f() { 1 };"));
+    assertEquals("1", new XQuery(query).execute(context));
+    assertEquals("1", new XQuery(query).execute(context));
+    assertEquals(1, context.plans.size());
+
+    final long time = file.timeStamp();
+    file.write(Token.token("module namespace m = 'm'; declare function m:f() { 2 };"));
+    if(!file.file().setLastModified(time + 2000)) throw new IOException("Timestamp not changed");
+    assertEquals("2", new XQuery(query).execute(context));
+    file.delete();
+  }
+}
@@ -257,6 +257,54 @@ public final class GFLWOROptimizeTest extends QueryPlanTest {
     );
   }
 
+  /** Tests the rewriting of for and where clauses to hash joins. */
+  @Test public void join() {
+    final String join = Util.info("exists(//%) and empty(//%)", Join.class, Where.class);
+    check("for $a in (<a id='1'/>, <a id='2'/>, <a id='3'/>) " +
+        "for $b in (<b ref='2'>x</b>, <b ref='1'>y</b>, <b ref='2'>z</b>) " +
+        "where $a/@id = $b/@ref " +
+        "return $a/@id || $b",
+        "1y\n2x\n2z",
+        join
+    );
+    // multiple keys: return items in their original order, without duplicates
+    check("for $a in (<a><r>2</r><r>1</r><r>2</r></a>, <a/>) " +
+        "for $b in (<b id='1'/>, <b id='2'/>, <b id='3'/>) " +
+        "where $a/r = $b/@id " +
+        "return string($b/@id)",
+        "1\n2",
+        join
+    );
+    // numeric and untyped keys: compare all items
+    check("for $i in 1 to 3 " +
+        "for $b in (<b>3</b>, <b>1</b>, <b>01</b>) " +
+        "where $b = $i " +
+        "return $i * 10 + count($b/preceding-sibling::node())",
+        "10\n10\n30",
+        join
+    );
+    check("for $i in 1 to 3 " +
+        "for $j in (3, 2.0, 1e0) " +
+        "where $i = $j " +
+        "return $j",
+        "1\n2\n3",
+        join
+    );
+
+    // joins of unnested FLWOR expressions that depend on outer clauses
+    check("for $o in 1 to 3 return " +
+        "for $a in (<a>1</a>, <a>2</a>, <a>3</a>) for $b in (1 to $o) ! string() " +
+        "where $a = $b return $o * 10 + number($b)",
+        "11\n21\n22\n31\n32\n33"
+    );
+    // a join can prevent errors in subsequent clauses
+    check("declare function local:f($s) { " +
+        "for $i in 1 to 3 for $b in (<b>4</b>, <b>5</b>) where $b = string($i) " +
+        "return xs:integer($s) }; local:f('x')",
+        ""
+    );
+  }
+
   /** Checks that clauses can be removed during inlining. */
   @Test public void gh1150() {
     check("for $i in 1 to xs:integer(random:double()) let $x := 'does-not-exist.xml' "
@@ -3,9 +3,15 @@ package org.basex.query.expr;
 import static org.basex.query.QueryError.*;
 import static org.junit.Assert.*;
 
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.core.cmd.Set;
+import org.basex.io.*;
 import org.basex.query.*;
+import org.basex.query.ast.*;
 import org.basex.util.*;
 import org.junit.*;
+import org.junit.Test;
 
 /**
  * Test cases for FLWOR expressions.
@@ -13,7 +19,7 @@ import org.junit.*;
  * @author BaseX Team 2005-15, BSD License
  * @author Leo Woerteler
  */
-public final class GFLWORTest extends AdvancedQueryTest {
+public final class GFLWORTest extends QueryPlanTest {
   /** Tests shadowing of outer variables. */
   @Test
   public void shadowTest() {
@@ -28,6 +34,143 @@ public final class GFLWORTest extends AdvancedQueryTest {
     query("let $i := 1 group by $i, $i return $i", "1");
   }
 
+  /**
+   * Tests the parallel evaluation of for clauses.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void parallelTest() throws BaseXException {
+    new Set(MainOptions.FORKJOIN, 4).execute(context);
+    try {
+      query("sum(for $i in 1 to 100000 where $i mod 3 = 0 return $i * 2)", "3333366666");
+      query("string-join(for $i at $p in 1 to 10 let $j := $i * $p return string($j), ',')",
+          "1,4,9,16,25,36,49,64,81,100");
+      query("deep-equal(for $i in 1 to 1000 for $j in 1 to 3 return $i * $j, " +
+          "(# db:forkjoin 1 #) { for $i in 1 to 1000 for $j in 1 to 3 return $i * $j })", "true");
+      query("count(for $i in 1 to 100 return <a>{ $i }</a>/self::a)", "100");
+      query("let $s := 5 return sum(for $i in 1 to 100 return $i + $s)", "5550");
+      query("(# db:forkjoin 2 #) { string-join(for $i in 1 to 6 return string($i)) }", "123456");
+      error("for $i in 1 to 100 return if($i = 77) then error() else $i", FUNERR1);
+      // remaining chunks are stopped, but the query itself can proceed
+      query("try { sum(for $i in 1 to 100000 return if($i = 77) then error() else $i) } " +
+          "catch * { 'caught' }", "caught");
+      query("declare variable $v := sum(1 to 10); sum(for $i in 1 to 1000 return $i + $v)",
+          "555500");
+      query("declare %basex:lazy variable $v := <a>55</a>; " +
+          "sum(for $i in 1 to 1000 return $i + $v)", "555500");
+    } finally {
+      new Set(MainOptions.FORKJOIN, 1).execute(context);
+    }
+  }
+
+  /** Checks which FLWOR expressions are evaluated in parallel. */
+  @Test
+  public void parallelPlanTest() {
+    final String par = "exists(//GFLWOR[@parallel = 'true'])";
+    final String seq = "empty(//GFLWOR[@parallel])";
+    check("for $i in 1 to 10 where $i mod 2 = 0 return $i * 2", "4\n8\n12\n16\n20", par);
+    // lazy static variables are bound on first access
+    check("declare %basex:lazy variable $v := <a>1</a>; " +
+        "for $i in 1 to 5 where $i mod 2 = 0 return $i + $v", "3\n5", seq);
+    // non-deterministic expressions
+    check("count(for $i in 1 to 5 where $i mod 2 = 0 return random:integer($i))", "2", seq);
+    // updating expressions
+    check("for $i in 1 to 5 where $i mod 2 = 0 return db:output($i)", "2\n4", seq);
+  }
+
+  /**
+   * Tests the sorting of tuples if the {@link MainOptions#SORTLIMIT} is exceeded.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void sortLimitTest() throws BaseXException {
+    new CreateDB(NAME, "<x><a>3</a><a>1</a><a>2</a><a>1</a><a/></x>").execute(context);
+    context.options.set(MainOptions.SORTLIMIT, 2);
+    try {
+      query("string-join(for $i in (5, 3, 8, 1, 9, 2, 7) order by $i return string($i), ',')",
+          "1,2,3,5,7,8,9");
+      query("string-join(for $i in 1 to 7 order by $i mod 3 descending, $i return string($i))",
+          "2514736");
+      query("string-join(for $s in ('b', 'a', 'c', 'a', 'b') count $c order by $s " +
+          "return $s || $c, ',')", "a2,a4,b1,b5,c3");
+      query("string-join(for $d in (1.5, 1e0, -2, 0.5, xs:float('NaN'), 2) " +
+          "order by $d empty greatest return string($d), ',')", "-2,0.5,1,1.5,2,NaN");
+      query("string-join(for $a in db:open('" + NAME + "')//a order by $a empty least " +
+          "return string($a/preceding-sibling::a => count()), ',')", "4,1,3,2,0");
+      query("string-join(for $i in 1 to 5 let $s := (1 to $i) order by -$i " +
+          "return string(count($s)))", "54321");
+      query("string-join(for $a in (<a>2</a>, <a>1</a>, <a>3</a>) order by $a return $a)",
+          "123");
+      error("for $i in (1, 'a', 2, 3) order by $i return $i", INVCAST_X_X_X);
+
+      // open runs are closed and deleted if not all tuples are requested
+      final int files = tempFiles("sort");
+      query("string-join((for $i in 1 to 20 order by -$i return string($i))" +
+          "[position() < 3], ',')", "20,19");
+      assertEquals(files, tempFiles("sort"));
+    } finally {
+      context.options.set(MainOptions.SORTLIMIT, 0);
+      new DropDB(NAME).execute(context);
+    }
+  }
+
+  /** Tests the aggregation of non-grouping variables during grouping. */
+  @Test
+  public void aggregateTest() {
+    query("string-join(for $i in 1 to 20 let $k := $i mod 4 group by $k return " +
+        "string-join(($k, count($i), sum($i), avg($i), min($i), max($i)) ! string(), ':'), ' ')",
+        "1:5:45:9:1:17 2:5:50:10:2:18 3:5:55:11:3:19 0:5:60:12:4:20");
+    query("string-join(for $i in 1 to 6 let $k := $i mod 2 group by $k " +
+        "return count($i) || ':' || string-join($i ! string(), ','), ' ')", "3:1,3,5 3:2,4,6");
+    query("string-join(for $s in ('a', 'bb', 'a', 'c') let $l := string-length($s) " +
+        "group by $l return min($s) || max($s), ',')", "ac,bbbb");
+    query("string-join(for $v in (<a>1</a>, 2.5, <a>3</a>, ()) let $k := 1 group by $k " +
+        "return (sum($v), avg($v)) ! string(), ',')", "6.5,2.1666666666666665");
+    // errors are only raised if the result is requested
+    query("string-join(for $i in (1, 'x', 2, 3) let $k := $i instance of xs:integer " +
+        "group by $k return if($k) then string(sum($i)) else 'x', ',')", "6,x");
+    error("for $i in (1, 'x', 2, 3) let $k := 1 group by $k return sum($i)", SUMNUM_X_X);
+    // aggregated calls in inlined copies of a function body
+    query("declare function local:f($n) { for $i in 1 to $n let $k := $i mod 2 group by $k " +
+        "return sum($i) || ':' || count($i) }; string-join((local:f(4), local:f(6)), ',')",
+        "4:2,6:2,9:3,12:3");
+  }
+
+  /** Tests the grouping of tuples if the {@link MainOptions#GROUPLIMIT} is exceeded. */
+  @Test
+  public void groupLimitTest() {
+    context.options.set(MainOptions.GROUPLIMIT, 2);
+    try {
+      query("string-join(for $i in 1 to 100 let $k := $i mod 40 group by $k order by $k " +
+          "return string(sum($i)), ',')", "120,123,126,129,132,135,138,141,144,147,150,153," +
+          "156,159,162,165,168,171,174,177,180,82,84,86,88,90,92,94,96,98,100,102,104,106," +
+          "108,110,112,114,116,118");
+      query("string-join(for $i in 1 to 30 let $k := $i mod 7, $s := string($i) group by $k " +
+          "order by $k return $k || ':' || string-join($s, ','), ' ')",
+          "0:7,14,21,28 1:1,8,15,22,29 2:2,9,16,23,30 3:3,10,17,24 4:4,11,18,25 5:5,12,19,26 " +
+          "6:6,13,20,27");
+      query("string-join(for $i in 1 to 10 let $k := $i mod 5, $n := <a>{ $i }</a> " +
+          "group by $k order by $k return string-join($n, ','), ' ')", "5,10 1,6 2,7 3,8 4,9");
+      query("count(for $i in 1 to 10000 let $k := $i mod 1000 group by $k return $k)", "1000");
+    } finally {
+      context.options.set(MainOptions.GROUPLIMIT, 0);
+    }
+  }
+
+  /**
+   * Returns the number of temporary files with the specified prefix.
+   * @param prefix prefix
+   * @return number of files
+   */
+  private static int tempFiles(final String prefix) {
+    int c = 0;
+    for(final IOFile file : new IOFile(System.getProperty("java.io.tmpdir")).children()) {
+      final String name = file.name();
+      if(name.startsWith(prefix) && name.endsWith(IO.BASEXSUFFIX)) c++;
+    }
+    return c;
+  }
+
   /**
    * Runs an updating query and matches the result of the second query
    * against the expected output.
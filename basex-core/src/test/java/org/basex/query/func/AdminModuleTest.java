@@ -44,6 +44,14 @@ public final class AdminModuleTest extends AdvancedQueryTest {
     query(_ADMIN_SESSIONS.args(), "");
   }
 
+  /** Test method. */
+  @Test
+  public void locks() {
+    query("exists(" + _ADMIN_LOCKS.args() + "[@name = '%PARALLEL'])", true);
+    query("exists(" + _ADMIN_LOCKS.args() + "[@name = '%GLOBAL'])", true);
+    query("count(" + _ADMIN_LOCKS.args() + "[1]/wait)", 5);
+  }
+
   /** Test method. */
   @Test
   public void logs() {
@@ -304,6 +304,28 @@ public final class DbModuleTest extends AdvancedQueryTest {
     query(_DB_OPEN.args(NAME, "nochop.xml"), "<a> </a>");
   }
 
+  /**
+   * Adds many documents in a single query.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void addBulk() throws BaseXException {
+    context.options.set(MainOptions.UPDINDEX, true);
+    try {
+      new CreateDB(NAME, FILE).execute(context);
+      query("for $i in 1 to 500 return " + _DB_ADD.args(NAME,
+          " if($i mod 3 = 0) then <a>{ $i }</a> else '<a>' || $i || '</a>'", "\"d/\" || $i"));
+      query(COUNT.args(COLLECTION.args(NAME + "/d")), 500);
+      query(_DB_OPEN.args(NAME, "d/123") + "/a/string()", 123);
+      query(_DB_OPEN.args(NAME, "d/124") + "/a/string()", 124);
+      query("every $d in " + COLLECTION.args(NAME + "/d") +
+          " satisfies " + _DB_PATH.args(" $d") + " = 'd/' || $d/a", true);
+      query(_DB_TEXT.args(NAME, 250) + "/../string()", 250);
+    } finally {
+      context.options.set(MainOptions.UPDINDEX, false);
+    }
+  }
+
   /** Test method. */
   @Test
   public void addWithNS() {
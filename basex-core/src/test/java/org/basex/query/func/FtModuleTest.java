@@ -2,14 +2,19 @@ package org.basex.query.func;
 
 import static org.basex.query.QueryError.*;
 import static org.basex.query.func.Function.*;
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
 
 import java.io.*;
 
 import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.core.parse.Commands.CmdIndex;
+import org.basex.data.*;
 import org.basex.index.*;
 import org.basex.query.*;
+import org.basex.query.expr.ft.*;
+import org.basex.util.*;
 import org.junit.*;
 import org.junit.Test;
 
@@ -121,6 +126,143 @@ public final class FtModuleTest extends AdvancedQueryTest {
     error(_FT_SEARCH.args(NAME, "x", " 1"), ELMMAP_X_X_X);
   }
 
+  /**
+   * Fuzzy index requests.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void searchFuzzy() throws BaseXException {
+    final String[] words = words();
+    new CreateIndex(CmdIndex.FULLTEXT).execute(context);
+
+    // compare index results with the number of similar words
+    final Levenshtein ls = new Levenshtein();
+    for(int w = 0; w < 100; w++) {
+      final byte[] word = token(words[w]);
+      final int k = word.length >> 2;
+      int count = 0;
+      for(final String wrd : words) {
+        if(Math.abs(wrd.length() - word.length) <= k && ls.similar(token(wrd), word, k)) count++;
+      }
+      query(COUNT.args(_FT_SEARCH.args(NAME, words[w], " map { 'fuzzy':'yes' }")), count);
+    }
+  }
+
+  /**
+   * Wildcard index requests, with and without indexed n-grams.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void searchWildcards() throws BaseXException {
+    final String[] words = words();
+    final String[] patterns = { "abc.*", ".*bcd", ".*dab.*", ".+aaa.?", ".*a.*dd", ".{2,4}cc",
+      ".*dcba.*bb.*", ".*" };
+    try {
+      for(final boolean ngrams : new boolean[] { false, true }) {
+        new Set(MainOptions.FTNGRAMS, ngrams).execute(context);
+        new CreateIndex(CmdIndex.FULLTEXT).execute(context);
+        assertEquals(ngrams, context.data().meta.dbfile(DataText.DATAFTX + 'n').exists());
+        for(final String pattern : patterns) {
+          final FTWildcard wc = new FTWildcard(token(pattern));
+          wc.parse();
+          int count = 0;
+          for(final String word : words) {
+            if(wc.match(token(word))) count++;
+          }
+          query(COUNT.args(_FT_SEARCH.args(NAME, pattern, " map { 'wildcards':true() }")),
+              count);
+        }
+      }
+    } finally {
+      new Set(MainOptions.FTNGRAMS, false).execute(context);
+    }
+  }
+
+  /**
+   * Test method.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void searchTop() throws BaseXException {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int t = 0; t < 200; t++) {
+      sb.append("<t>");
+      for(int w = 0; w < 1 + t % 7; w++) sb.append(" a").append((t + w) % 5);
+      sb.append(t % 3 == 0 ? " b" : "").append("</t>");
+    }
+    new CreateDB(NAME, sb.append("</x>").toString()).execute(context);
+    new CreateIndex(CmdIndex.FULLTEXT).execute(context);
+
+    final String all = _FT_SEARCH.args(NAME, " ('a1', 'b')", " map { 'mode':'any word' }");
+    final String top = " map { 'mode':'any word', 'top':10 }";
+    query(COUNT.args(_FT_SEARCH.args(NAME, " ('a1', 'b')", top)), 10);
+    // results are ordered by descending scores
+    query("let $s := " + _FT_SEARCH.args(NAME, " ('a1', 'b')", top) + "!" + _FT_SCORE.args(" .")
+        + " return every $i in 2 to count($s) satisfies $s[$i - 1] >= $s[$i]", true);
+    // best results equal the first results of the full ranking
+    query("deep-equal(" + _FT_SEARCH.args(NAME, " ('a1', 'b')", top) + ", (for $n in "
+        + _FT_SEARCH.args(NAME, " ('a1', 'b')", " map { 'mode':'any word', 'top':1000 }")
+        + " return $n)[position() <= 10])", true);
+    query("count(" + _FT_SEARCH.args(NAME, " ('a1', 'b')",
+        " map { 'mode':'any word', 'top':1000 }") + ") = count(" + all + ")", true);
+    // best results are identical for all limits
+    query("let $all := " + _FT_SEARCH.args(NAME, " ('a1', 'a3', 'b')",
+        " map { 'mode':'any word', 'top':1000 }") + " return every $k in (1, 7, 30, 99) " +
+        "satisfies (let $t := " + _FT_SEARCH.args(NAME, " ('a1', 'a3', 'b')",
+        " map { 'mode':'any word', 'top':$k }") +
+        " return every $i in 1 to $k satisfies $t[$i] is $all[$i])", true);
+    // large limits do not allocate memory in advance
+    query("count(" + _FT_SEARCH.args(NAME, " ('a1', 'b')",
+        " map { 'mode':'any word', 'top':2000000000 }") + ") = count(" + all + ")", true);
+    query(COUNT.args(_FT_SEARCH.args(NAME, "a1 b",
+        " map { 'mode':'all words', 'top':2000000000 }")),
+        query(COUNT.args(_FT_SEARCH.args(NAME, "a1 b", " map { 'mode':'all words' }"))));
+    // conjunctive search
+    query(COUNT.args(_FT_SEARCH.args(NAME, "a1 b", " map { 'mode':'all words', 'top':1000 }")),
+        query(COUNT.args(_FT_SEARCH.args(NAME, "a1 b", " map { 'mode':'all words' }"))));
+    query(COUNT.args(_FT_SEARCH.args(NAME, "a1 c", " map { 'mode':'all words', 'top':5 }")), 0);
+    // complex searches are ranked by the default scoring model
+    query(COUNT.args(_FT_SEARCH.args(NAME, "a.*", " map { 'wildcards':true(), 'top':3 }")), 3);
+  }
+
+  /**
+   * Test method: conjunctive searches with tokens of different frequencies.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void searchAll() throws BaseXException {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int t = 0; t < 2000; t++) {
+      sb.append("<t>a").append(t % 3).append(t % 250 == 0 ? " rare" : "").append(" b</t>");
+    }
+    new CreateDB(NAME, sb.append("</x>").toString()).execute(context);
+    new CreateIndex(CmdIndex.FULLTEXT).execute(context);
+
+    query(COUNT.args(_FT_SEARCH.args(NAME, "rare a1", " map { 'mode':'all words' }")), 3);
+    query(COUNT.args(_FT_SEARCH.args(NAME, "a2 b", " map { 'mode':'all words' }")), 666);
+    query(COUNT.args(_FT_SEARCH.args(NAME, "a1 rare", " map { 'mode':'phrase' }")), 3);
+    query(COUNT.args(_FT_SEARCH.args(NAME, "rare b", " map { 'mode':'phrase' }")), 8);
+    query(COUNT.args(_FT_SEARCH.args(NAME, "b rare", " map { 'mode':'phrase' }")), 0);
+    query(COUNT.args(_FT_SEARCH.args(NAME, "a0 a1", " map { 'mode':'all words' }")), 0);
+  }
+
+  /**
+   * Creates a database with words of different lengths, composed of four characters.
+   * @return words
+   * @throws BaseXException database exception
+   */
+  private static String[] words() throws BaseXException {
+    final String[] words = new String[1000];
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int w = 0; w < words.length; w++) {
+      final String digits = Long.toString(w * 0x9E3779B1L % 0x100000, 4);
+      words[w] = digits.replace('0', 'a').replace('1', 'b').replace('2', 'c').replace('3', 'd');
+      sb.append("<w>").append(words[w]).append("</w>");
+    }
+    new CreateDB(NAME, sb.append("</x>").toString()).execute(context);
+    return words;
+  }
+
   /** Test method. */
   @Test
   public void count() {